@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.alignment.*;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pairwise aligners on pairs of highly similar sequences (reference and its mutated copy).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AlignersBenchmark {
+    private static final int PAIRS = 256;
+
+    static final LinearGapAlignmentScoring<NucleotideSequence> LINEAR =
+            LinearGapAlignmentScoring.getNucleotideBLASTScoring();
+    static final AffineGapAlignmentScoring<NucleotideSequence> AFFINE =
+            AffineGapAlignmentScoring.getNucleotideBLASTScoring();
+
+    @Param({"100", "500"})
+    public int length;
+
+    @Param({"10"})
+    public double mutationRateFactor;
+
+    @Param({"10"})
+    public int width;
+
+    NucleotideSequence[] seq1, seq2;
+    int index;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData(mutationRateFactor);
+        seq1 = new NucleotideSequence[PAIRS];
+        seq2 = new NucleotideSequence[PAIRS];
+        for (int i = 0; i < PAIRS; ++i) {
+            seq1[i] = data.randomSequence(length);
+            seq2[i] = data.mutate(seq1[i]);
+        }
+    }
+
+    private int next() {
+        return index = (index + 1) % PAIRS;
+    }
+
+    @Benchmark
+    public Alignment<NucleotideSequence> bandedLinear() {
+        int i = next();
+        return BandedLinearAligner.align(LINEAR, seq1[i], seq2[i], width);
+    }
+
+    @Benchmark
+    public Alignment<NucleotideSequence> bandedAffine() {
+        int i = next();
+        return BandedAffineAligner.align(AFFINE, seq1[i], seq2[i], width);
+    }
+
+    @Benchmark
+    public Alignment<NucleotideSequence> globalLinear() {
+        int i = next();
+        return Aligner.alignGlobal(LINEAR, seq1[i], seq2[i]);
+    }
+
+    @Benchmark
+    public Alignment<NucleotideSequence> globalAffine() {
+        int i = next();
+        return Aligner.alignGlobal(AFFINE, seq1[i], seq2[i]);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.motif.BitapMatcher;
+import com.milaboratory.core.motif.BitapPattern;
+import com.milaboratory.core.motif.Motif;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceBuilder;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BitapPattern} matchers scanning the whole target sequence containing mutated occurrences of the pattern.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitapBenchmark {
+    @Param({"20", "60"})
+    public int patternLength;
+
+    @Param({"10000"})
+    public int targetLength;
+
+    @Param({"20"})
+    public int occurrences;
+
+    @Param({"2"})
+    public int maxErrors;
+
+    BitapPattern pattern;
+    NucleotideSequence target;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData(2);
+        NucleotideSequence motif = data.randomSequence(patternLength);
+        pattern = new Motif<>(motif).getBitapPattern();
+
+        // Random sequence with mutated copies of pattern inserted at regular intervals
+        int chunk = targetLength / occurrences;
+        SequenceBuilder<NucleotideSequence> builder = NucleotideSequence.ALPHABET.createBuilder();
+        for (int i = 0; i < occurrences; ++i) {
+            NucleotideSequence occurrence = data.mutate(motif);
+            builder.append(data.randomSequence(Math.max(0, chunk - occurrence.size())));
+            builder.append(occurrence);
+        }
+        target = builder.createAndDestroy();
+    }
+
+    private int countAll(BitapMatcher matcher) {
+        int count = 0;
+        while (matcher.findNext() >= 0)
+            ++count;
+        return count;
+    }
+
+    @Benchmark
+    public int exact() {
+        return countAll(pattern.exactMatcher(target, 0, target.size()));
+    }
+
+    @Benchmark
+    public int substitutionOnlyFirst() {
+        return countAll(pattern.substitutionOnlyMatcherFirst(maxErrors, target));
+    }
+
+    @Benchmark
+    public int substitutionAndIndelFirst() {
+        return countAll(pattern.substitutionAndIndelMatcherFirst(maxErrors, target));
+    }
+
+    @Benchmark
+    public int substitutionAndIndelLast() {
+        return countAll(pattern.substitutionAndIndelMatcherLast(maxErrors, target));
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.fastq.QualityFormat;
+import com.milaboratory.core.io.sequence.fastq.SingleFastqReader;
+import com.milaboratory.core.io.sequence.fastq.SingleFastqWriter;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of in-memory FASTQ data with {@link SingleFastqReader} (reading from memory excludes disk from
+ * measurements). Sequences and qualities of all reads are accessed, so lazy reads are fully parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FastqReaderBenchmark {
+    @Param({"100000"})
+    public int reads;
+
+    @Param({"150"})
+    public int readLength;
+
+    @Param({"None", "GZIP"})
+    public CompressionType compression;
+
+    @Param({"true", "false"})
+    public boolean lazyReads;
+
+    byte[] content;
+
+    @Setup
+    public void setup() throws IOException {
+        SyntheticData data = new SyntheticData(10);
+        NucleotideSequence reference = data.randomSequence(100_000);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (SingleFastqWriter writer = new SingleFastqWriter(bos, QualityFormat.Phred33, compression)) {
+            for (int i = 0; i < reads; ++i)
+                writer.write(data.singleRead(i, reference, readLength));
+        }
+        content = bos.toByteArray();
+    }
+
+    @Benchmark
+    public void read(Blackhole blackhole) throws IOException {
+        try (SingleFastqReader reader = new SingleFastqReader(new ByteArrayInputStream(content),
+                QualityFormat.Phred33, compression, false, SingleFastqReader.DEFAULT_BUFFER_SIZE, false, lazyReads)) {
+            SingleRead read;
+            while ((read = reader.take()) != null) {
+                blackhole.consume(read.getData().getSequence());
+                blackhole.consume(read.getData().getQuality());
+            }
+        }
+    }
+}
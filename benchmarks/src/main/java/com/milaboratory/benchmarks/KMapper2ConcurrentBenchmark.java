@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.alignment.AffineGapAlignmentScoring;
+import com.milaboratory.core.alignment.kaligner2.KAlignerParameters2;
+import com.milaboratory.core.alignment.kaligner2.KMapper2;
+import com.milaboratory.core.alignment.kaligner2.KMappingResult2;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of {@link KMapper2#align(NucleotideSequence)} without and with concurrent {@link
+ * KMapper2#addReference(NucleotideSequence)} calls from another thread (compare percentiles of {@code align} in {@code
+ * readOnly} and {@code insertion} groups). Mapper is recreated on each iteration, and no more than {@link #toAdd}
+ * references are added during iteration.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KMapper2ConcurrentBenchmark {
+    private static final int READS = 1024;
+
+    @Param({"100"})
+    public int references;
+
+    @Param({"20000"})
+    public int toAdd;
+
+    @Param({"400"})
+    public int referenceLength;
+
+    @Param({"150"})
+    public int readLength;
+
+    @Param({"10"})
+    public double mutationRateFactor;
+
+    NucleotideSequence[] refs, reads;
+    KMapper2 kMapper2;
+    int readIndex, added;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        SyntheticData data = new SyntheticData(mutationRateFactor);
+        refs = new NucleotideSequence[references + toAdd];
+        for (int i = 0; i < refs.length; ++i)
+            refs[i] = data.randomSequence(referenceLength);
+
+        reads = new NucleotideSequence[READS];
+        for (int i = 0; i < READS; ++i)
+            reads[i] = data.read(refs[data.getRandom().nextInt(references)], readLength);
+    }
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        kMapper2 = KMapper2.createFromParameters(new KAlignerParameters2(10, 2, true, true,
+                99, -1, 100, 0.87f, 48, -3,
+                -1, 3, 3, 4, 7, 2, 4, -1000, 150, 0.87f, 2,
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring()));
+        for (int i = 0; i < references; ++i)
+            kMapper2.addReference(refs[i]);
+        added = references;
+    }
+
+    private KMappingResult2 nextAlign() {
+        return kMapper2.align(reads[readIndex = (readIndex + 1) % READS]);
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    public KMappingResult2 readOnlyAlign() {
+        return nextAlign();
+    }
+
+    @Benchmark
+    @Group("insertion")
+    public KMappingResult2 align() {
+        return nextAlign();
+    }
+
+    @Benchmark
+    @Group("insertion")
+    public int addReference() {
+        return added < refs.length ? kMapper2.addReference(refs[added++]) : -1;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.alignment.AffineGapAlignmentScoring;
+import com.milaboratory.core.alignment.kaligner1.KAlignerParameters;
+import com.milaboratory.core.alignment.kaligner1.KMapper;
+import com.milaboratory.core.alignment.kaligner1.KMappingResult;
+import com.milaboratory.core.alignment.kaligner2.KAlignerParameters2;
+import com.milaboratory.core.alignment.kaligner2.KMapper2;
+import com.milaboratory.core.alignment.kaligner2.KMappingResult2;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * K-mer based mappers ({@link KMapper} and {@link KMapper2}) on mutated fragments of references (one read of each
+ * {@link #noiseReadsRatio} reads is a random sequence not present in references).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KMappersBenchmark {
+    private static final int READS = 1024;
+
+    @Param({"100"})
+    public int references;
+
+    @Param({"400"})
+    public int referenceLength;
+
+    @Param({"150"})
+    public int readLength;
+
+    @Param({"10"})
+    public double mutationRateFactor;
+
+    @Param({"8"})
+    public int noiseReadsRatio;
+
+    KMapper kMapper;
+    KMapper2 kMapper2;
+    NucleotideSequence[] reads;
+    int index;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData(mutationRateFactor);
+        kMapper = KMapper.createFromParameters(KAlignerParameters.getByName("default"));
+        kMapper2 = KMapper2.createFromParameters(new KAlignerParameters2(10, 2, true, true,
+                99, -1, 100, 0.87f, 48, -3,
+                -1, 3, 3, 4, 7, 2, 4, -1000, 150, 0.87f, 2,
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring()));
+
+        NucleotideSequence[] refs = new NucleotideSequence[references];
+        for (int i = 0; i < references; ++i) {
+            refs[i] = data.randomSequence(referenceLength);
+            kMapper.addReference(refs[i]);
+            kMapper2.addReference(refs[i]);
+        }
+
+        reads = new NucleotideSequence[READS];
+        for (int i = 0; i < READS; ++i)
+            reads[i] = i % noiseReadsRatio == 0
+                    ? data.randomSequence(readLength)
+                    : data.read(refs[data.getRandom().nextInt(references)], readLength);
+    }
+
+    private NucleotideSequence next() {
+        return reads[index = (index + 1) % READS];
+    }
+
+    @Benchmark
+    public KMappingResult kMapper() {
+        return kMapper.align(next());
+    }
+
+    @Benchmark
+    public KMappingResult2 kMapper2() {
+        return kMapper2.align(next());
+    }
+}
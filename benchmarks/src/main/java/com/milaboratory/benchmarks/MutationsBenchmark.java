@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.mutations.Mutations;
+import com.milaboratory.core.mutations.MutationsBuilder;
+import com.milaboratory.core.mutations.MutationsUtil;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Operations on mutations performed for each read in alignment pipelines: variants returning new {@link Mutations}
+ * and variants writing to reused {@link MutationsBuilder}. Run with {@code -prof gc} to compare allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MutationsBenchmark {
+    private static final int INPUTS = 256;
+
+    @Param({"300"})
+    public int length;
+
+    @Param({"10"})
+    public double mutationRateFactor;
+
+    NucleotideSequence[] sequences;
+    // first[i] transforms sequences[i] to an intermediate sequence, second[i] transforms intermediate sequence
+    Mutations<NucleotideSequence>[] first, second;
+    MutationsBuilder<NucleotideSequence> builder = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+    int index;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        SyntheticData data = new SyntheticData(mutationRateFactor);
+        sequences = new NucleotideSequence[INPUTS];
+        first = new Mutations[INPUTS];
+        second = new Mutations[INPUTS];
+        for (int i = 0; i < INPUTS; ++i) {
+            sequences[i] = data.randomSequence(length);
+            first[i] = data.mutations(sequences[i]);
+            second[i] = data.mutations(first[i].mutate(sequences[i]));
+        }
+    }
+
+    private int next() {
+        return index = (index + 1) % INPUTS;
+    }
+
+    @Benchmark
+    public Mutations<NucleotideSequence> combine() {
+        int i = next();
+        return first[i].combineWith(second[i]);
+    }
+
+    @Benchmark
+    public MutationsBuilder<NucleotideSequence> combineIntoBuilder() {
+        int i = next();
+        return first[i].combineWith(second[i], builder.clear());
+    }
+
+    @Benchmark
+    public Mutations<NucleotideSequence> extract() {
+        int i = next();
+        return first[i].extractRelativeMutationsForRange(length / 4, 3 * length / 4);
+    }
+
+    @Benchmark
+    public MutationsBuilder<NucleotideSequence> extractIntoBuilder() {
+        int i = next();
+        return first[i].extractRelativeMutationsForRange(length / 4, 3 * length / 4, builder.clear());
+    }
+
+    @Benchmark
+    public Mutations<NucleotideSequence> shift() {
+        int i = next();
+        return MutationsUtil.shiftIndelsAtHomopolymers(sequences[i], first[i]);
+    }
+
+    @Benchmark
+    public MutationsBuilder<NucleotideSequence> shiftInBuilder() {
+        int i = next();
+        builder.clear().append(first[i]);
+        MutationsUtil.shiftIndelsAtHomopolymers(sequences[i], 0, builder);
+        return builder;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.alignment.Aligner;
+import com.milaboratory.core.alignment.Alignment;
+import com.milaboratory.core.alignment.LinearGapAlignmentScoring;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.primitivio.PrimitivI;
+import com.milaboratory.primitivio.PrimitivO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of reads and alignments with {@link PrimitivO} and deserialization with {@link PrimitivI} (in
+ * memory).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrimitivIOBenchmark {
+    @Param({"10000"})
+    public int objects;
+
+    @Param({"150"})
+    public int length;
+
+    SingleRead[] reads;
+    Alignment<NucleotideSequence>[] alignments;
+    byte[] serializedReads, serializedAlignments;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        SyntheticData data = new SyntheticData(10);
+        NucleotideSequence reference = data.randomSequence(10_000);
+        LinearGapAlignmentScoring<NucleotideSequence> scoring = LinearGapAlignmentScoring.getNucleotideBLASTScoring();
+
+        reads = new SingleRead[objects];
+        alignments = new Alignment[objects];
+        for (int i = 0; i < objects; ++i) {
+            reads[i] = data.singleRead(i, reference, length);
+            NucleotideSequence seq1 = data.randomSequence(length);
+            alignments[i] = Aligner.alignGlobal(scoring, seq1, data.mutate(seq1));
+        }
+        serializedReads = write(reads);
+        serializedAlignments = write(alignments);
+    }
+
+    static byte[] write(Object[] objects) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (PrimitivO o = new PrimitivO(bos)) {
+            for (Object object : objects)
+                o.writeObject(object);
+        }
+        return bos.toByteArray();
+    }
+
+    static void read(byte[] content, int count, Class<?> type, Blackhole blackhole) {
+        try (PrimitivI i = new PrimitivI(new ByteArrayInputStream(content))) {
+            for (int j = 0; j < count; ++j)
+                blackhole.consume(i.readObject(type));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeReads() {
+        return write(reads);
+    }
+
+    @Benchmark
+    public void readReads(Blackhole blackhole) {
+        read(serializedReads, objects, SingleRead.class, blackhole);
+    }
+
+    @Benchmark
+    public void roundTripReads(Blackhole blackhole) {
+        read(write(reads), objects, SingleRead.class, blackhole);
+    }
+
+    @Benchmark
+    public byte[] writeAlignments() {
+        return write(alignments);
+    }
+
+    @Benchmark
+    public void readAlignments(Blackhole blackhole) {
+        read(serializedAlignments, objects, Alignment.class, blackhole);
+    }
+
+    @Benchmark
+    public void roundTripAlignments(Blackhole blackhole) {
+        read(write(alignments), objects, Alignment.class, blackhole);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import cc.redberry.pipe.CUtils;
+import cc.redberry.pipe.OutputPortCloseable;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.util.ObjectSerializer;
+import com.milaboratory.util.Sorter;
+import com.milaboratory.util.TempFileManager;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * External sorting of reads by sequence with {@link Sorter} (PrimitivIO serialization of sorted blocks), with and
+ * without normalized keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SorterBenchmark {
+    static final Comparator<SingleRead> BY_SEQUENCE = new Comparator<SingleRead>() {
+        @Override
+        public int compare(SingleRead o1, SingleRead o2) {
+            return o1.getData().getSequence().compareTo(o2.getData().getSequence());
+        }
+    };
+
+    /**
+     * Sequence length followed by the first 12 nucleotides (consistent with {@link NucleotideSequence#compareTo})
+     */
+    static final ToLongFunction<SingleRead> SEQUENCE_KEY = new ToLongFunction<SingleRead>() {
+        @Override
+        public long applyAsLong(SingleRead read) {
+            NucleotideSequence sequence = read.getData().getSequence();
+            long key = Math.min(sequence.size(), 0x7FFF);
+            for (int i = 0; i < 12; ++i)
+                key = (key << 4) | (i < sequence.size() ? sequence.codeAt(i) : 0);
+            return key;
+        }
+    };
+
+    @Param({"200000"})
+    public int reads;
+
+    @Param({"10000", "100000"})
+    public int chunkSize;
+
+    @Param({"150"})
+    public int readLength;
+
+    List<SingleRead> input;
+    File tempFile;
+
+    @Setup
+    public void setup() {
+        SyntheticData data = new SyntheticData(10);
+        NucleotideSequence reference = data.randomSequence(100_000);
+        SingleRead[] array = new SingleRead[reads];
+        for (int i = 0; i < reads; ++i)
+            array[i] = data.singleRead(i, reference, readLength);
+        input = Arrays.asList(array);
+    }
+
+    @Setup(Level.Invocation)
+    public void createTempFile() {
+        tempFile = TempFileManager.getTempFile();
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteTempFile() {
+        tempFile.delete();
+    }
+
+    @Benchmark
+    public void sort(Blackhole blackhole) throws IOException {
+        try (OutputPortCloseable<SingleRead> sorted = Sorter.sort(CUtils.asOutputPort(input), BY_SEQUENCE,
+                chunkSize, SingleRead.class, tempFile)) {
+            SingleRead read;
+            while ((read = sorted.take()) != null)
+                blackhole.consume(read);
+        }
+    }
+
+    @Benchmark
+    public void sortByKey(Blackhole blackhole) throws IOException {
+        try (OutputPortCloseable<SingleRead> sorted = Sorter.sort(CUtils.asOutputPort(input), SEQUENCE_KEY,
+                BY_SEQUENCE, chunkSize, new ObjectSerializer.PrimitivIOObjectSerializer<>(SingleRead.class),
+                tempFile)) {
+            SingleRead read;
+            while ((read = sorted.take()) != null)
+                blackhole.consume(read);
+        }
+    }
+}
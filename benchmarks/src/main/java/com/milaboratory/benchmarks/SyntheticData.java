@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.benchmarks;
+
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.SingleReadImpl;
+import com.milaboratory.core.mutations.Mutations;
+import com.milaboratory.core.mutations.generator.MutationModels;
+import com.milaboratory.core.mutations.generator.MutationsGenerator;
+import com.milaboratory.core.mutations.generator.NucleotideMutationModel;
+import com.milaboratory.core.sequence.NSequenceWithQuality;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceBuilder;
+import com.milaboratory.core.sequence.SequenceQuality;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+
+/**
+ * Reproducible synthetic inputs for benchmarks.
+ *
+ * <p>All data is generated from fixed seeds, so the same inputs are used in all runs and releases. Mutated sequences
+ * are produced by {@link MutationsGenerator} with the empirical mutation model ({@link MutationModels}) scaled by the
+ * given factor.</p>
+ */
+public final class SyntheticData {
+    public static final long DEFAULT_SEED = 0x5EEDL;
+
+    final RandomGenerator random;
+    final NucleotideMutationModel model;
+
+    /**
+     * Creates generator with default seed.
+     *
+     * @param mutationRateFactor factor for probabilities of the empirical mutation model
+     */
+    public SyntheticData(double mutationRateFactor) {
+        this(DEFAULT_SEED, mutationRateFactor);
+    }
+
+    /**
+     * Creates generator.
+     *
+     * @param seed               random seed
+     * @param mutationRateFactor factor for probabilities of the empirical mutation model
+     */
+    public SyntheticData(long seed, double mutationRateFactor) {
+        this.random = new Well19937c(seed);
+        this.model = MutationModels.getEmpiricalNucleotideMutationModel().multiplyProbabilities(mutationRateFactor);
+        this.model.reseed(seed);
+    }
+
+    public RandomGenerator getRandom() {
+        return random;
+    }
+
+    /**
+     * Returns random sequence of basic nucleotides.
+     *
+     * @param length length of sequence
+     * @return random sequence
+     */
+    public NucleotideSequence randomSequence(int length) {
+        SequenceBuilder<NucleotideSequence> builder = NucleotideSequence.ALPHABET.createBuilder()
+                .ensureCapacity(length);
+        for (int i = 0; i < length; ++i)
+            builder.append((byte) random.nextInt(4));
+        return builder.createAndDestroy();
+    }
+
+    /**
+     * Returns random mutations of the sequence.
+     *
+     * @param sequence sequence
+     * @return mutations
+     */
+    public Mutations<NucleotideSequence> mutations(NucleotideSequence sequence) {
+        return MutationsGenerator.generateMutations(sequence, model);
+    }
+
+    /**
+     * Returns randomly mutated copy of the sequence.
+     *
+     * @param sequence sequence
+     * @return mutated sequence
+     */
+    public NucleotideSequence mutate(NucleotideSequence sequence) {
+        return mutations(sequence).mutate(sequence);
+    }
+
+    /**
+     * Returns randomly mutated subsequence of the reference of specified length at random position.
+     *
+     * @param reference reference sequence
+     * @param length    length of the subsequence (before mutation)
+     * @return mutated subsequence
+     */
+    public NucleotideSequence read(NucleotideSequence reference, int length) {
+        int from = random.nextInt(reference.size() - length + 1);
+        return mutate(reference.getRange(from, from + length));
+    }
+
+    /**
+     * Returns single read with random qualities from the read of the reference (see {@link #read(NucleotideSequence,
+     * int)}).
+     *
+     * @param id        read id
+     * @param reference reference sequence
+     * @param length    length of the read
+     * @return single read
+     */
+    public SingleRead singleRead(long id, NucleotideSequence reference, int length) {
+        NucleotideSequence sequence = read(reference, length);
+        byte[] quality = new byte[sequence.size()];
+        for (int i = 0; i < quality.length; ++i)
+            quality[i] = (byte) (2 + random.nextInt(39));
+        return new SingleReadImpl(id, new NSequenceWithQuality(sequence, new SequenceQuality(quality)), "R" + id);
+    }
+}
@@ -549,4 +549,116 @@ public final class Aligner {
         return new Alignment<>(seq1, mutations.createAndDestroy(),
                 new Range(seq1begin, seq1end), new Range(seq2begin, seq2end), max);
     }
+
+    /**
+     * Calculates score of global alignment of two sequences without building the alignment itself. Returns the same
+     * value as {@code alignGlobal(scoring, seq1, seq2).getScore()}, but uses linear memory and is faster.
+     *
+     * @param scoring scoring system
+     * @param seq1    first sequence
+     * @param seq2    second sequence
+     * @return score of global alignment
+     */
+    public static <S extends Sequence<S>> int scoreGlobal(AlignmentScoring<S> scoring, S seq1, S seq2) {
+        if (seq1.getAlphabet() != seq2.getAlphabet() || seq1.getAlphabet() != scoring.getAlphabet())
+            throw new IllegalArgumentException("Different alphabets.");
+        if (scoring instanceof AffineGapAlignmentScoring)
+            return scoreAffine((AffineGapAlignmentScoring<S>) scoring, seq1, seq2, false);
+        if (scoring instanceof LinearGapAlignmentScoring)
+            return scoreLinear((LinearGapAlignmentScoring<S>) scoring, seq1, seq2, false);
+        throw new RuntimeException("Unknown scoring type.");
+    }
+
+    /**
+     * Calculates score of local alignment of two sequences without building the alignment itself. Returns the same
+     * value as {@code alignLocal(scoring, seq1, seq2).getScore()} or 0 if {@link #alignLocal(AlignmentScoring,
+     * Sequence, Sequence)} returns {@code null}, but uses linear memory and is faster.
+     *
+     * @param scoring scoring system
+     * @param seq1    first sequence
+     * @param seq2    second sequence
+     * @return score of local alignment or 0 if sequences have no local alignment
+     */
+    public static <S extends Sequence<S>> int scoreLocal(AlignmentScoring<S> scoring, S seq1, S seq2) {
+        if (seq1.getAlphabet() != seq2.getAlphabet() || seq1.getAlphabet() != scoring.getAlphabet())
+            throw new IllegalArgumentException("Different alphabets.");
+        if (scoring instanceof AffineGapAlignmentScoring)
+            return scoreAffine((AffineGapAlignmentScoring<S>) scoring, seq1, seq2, true);
+        if (scoring instanceof LinearGapAlignmentScoring)
+            return scoreLinear((LinearGapAlignmentScoring<S>) scoring, seq1, seq2, true);
+        throw new RuntimeException("Unknown scoring type.");
+    }
+
+    /**
+     * Same recurrences as in {@link #alignGlobalLinear(LinearGapAlignmentScoring, Sequence, Sequence)} and {@link
+     * #alignLocalLinear(LinearGapAlignmentScoring, Sequence, Sequence)}, keeping only the previous row of the matrix
+     */
+    private static <S extends Sequence<S>> int scoreLinear(LinearGapAlignmentScoring<S> scoring,
+                                                           S seq1, S seq2, boolean local) {
+        int length2 = seq2.size(), gapPenalty = scoring.getGapPenalty();
+        int[] row = new int[length2 + 1];
+        if (!local)
+            for (int j = 0; j <= length2; ++j)
+                row[j] = gapPenalty * j;
+
+        int max = 0;
+        for (int i = 1; i <= seq1.size(); ++i) {
+            byte c1 = seq1.codeAt(i - 1);
+            // row[j - 1] from the previous row
+            int diagonal = row[0];
+            row[0] = local ? 0 : gapPenalty * i;
+            for (int j = 1; j <= length2; ++j) {
+                int value = max(diagonal + scoring.getScore(c1, seq2.codeAt(j - 1)),
+                        row[j] + gapPenalty,
+                        row[j - 1] + gapPenalty);
+                diagonal = row[j];
+                if (local) {
+                    value = Math.max(0, value);
+                    max = Math.max(max, value);
+                }
+                row[j] = value;
+            }
+        }
+        return local ? max : row[length2];
+    }
+
+    /**
+     * Same recurrences as in {@link #alignGlobalAffine(AffineGapAlignmentScoring, Sequence, Sequence)} and {@link
+     * #alignLocalAffine(AffineGapAlignmentScoring, Sequence, Sequence)}, keeping only the previous row of the matrices
+     */
+    private static <S extends Sequence<S>> int scoreAffine(AffineGapAlignmentScoring<S> scoring,
+                                                           S seq1, S seq2, boolean local) {
+        int length2 = seq2.size(),
+                gapExtensionPenalty = scoring.getGapExtensionPenalty(),
+                gapOpenPenalty = scoring.getGapOpenPenalty() - gapExtensionPenalty;
+        // matrix and gapIn2 values of the previous (then current) row
+        int[] row = new int[length2 + 1], gapIn2 = new int[length2 + 1];
+        for (int j = 1; j <= length2; ++j) {
+            row[j] = local ? 0 : gapOpenPenalty + j * gapExtensionPenalty;
+            gapIn2[j] = MIN_VALUE;
+        }
+
+        int max = 0;
+        for (int i = 1; i <= seq1.size(); ++i) {
+            byte c1 = seq1.codeAt(i - 1);
+            int diagonal = row[0];
+            row[0] = local ? 0 : gapOpenPenalty + i * gapExtensionPenalty;
+            int gapIn1 = MIN_VALUE;
+            for (int j = 1; j <= length2; ++j) {
+                gapIn1 = max(row[j - 1] + gapOpenPenalty + gapExtensionPenalty,
+                        gapIn1 + gapExtensionPenalty);
+                gapIn2[j] = max(row[j] + gapOpenPenalty + gapExtensionPenalty,
+                        gapIn2[j] + gapExtensionPenalty);
+                int value = max(diagonal + scoring.getScore(c1, seq2.codeAt(j - 1)),
+                        gapIn2[j], gapIn1);
+                diagonal = row[j];
+                if (local) {
+                    value = Math.max(0, value);
+                    max = Math.max(max, value);
+                }
+                row[j] = value;
+            }
+        }
+        return local ? max : row[length2];
+    }
 }
@@ -25,6 +25,31 @@ import com.milaboratory.core.sequence.Sequence;
  * Collection of custom aligners
  */
 public class AlignerCustom {
+    /**
+     * Flag which is indicating whether affine semi-local aligners use {@link StripedAffineAligner}
+     */
+    private static boolean stripedAlignment = false;
+
+    static {
+        if (System.getProperty("enableStripedAlignment") != null)
+            enableStripedAlignment();
+    }
+
+    /**
+     * Enables striped (SIMD-friendly) implementation of affine semi-local aligners. Alignments are identical to the
+     * ones produced by the default scalar implementation.
+     */
+    public static void enableStripedAlignment() {
+        stripedAlignment = true;
+    }
+
+    /**
+     * Switches affine semi-local aligners back to the default scalar implementation.
+     */
+    public static void disableStripedAlignment() {
+        stripedAlignment = false;
+    }
+
     /**
      * Align two sequences from left to right; left edges of both sequences considered to be already aligned.
      * Aligner optimize total alignment scoring using dynamic programing approach.
@@ -237,6 +262,10 @@ public class AlignerCustom {
         if (length1 == 0 || length2 == 0)
             return new Alignment<>(seq1, Mutations.empty(alphabet), new Range(offset1, offset1), new Range(offset2, offset2), 0);
 
+        if (stripedAlignment)
+            return StripedAffineAligner.alignAffineSemiLocalLeft0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                    boundSeq1, boundSeq2, alphabet, cache);
+
         int size1 = length1 + 1,
                 size2 = length2 + 1;
 
@@ -368,6 +397,10 @@ public class AlignerCustom {
         if (length1 == 0 || length2 == 0)
             return new Alignment<>(seq1, Mutations.empty(alphabet), new Range(offset1, offset1), new Range(offset2, offset2), 0);
 
+        if (stripedAlignment)
+            return StripedAffineAligner.alignAffineSemiLocalRight0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                    boundSeq1, boundSeq2, alphabet, cache);
+
         int size1 = length1 + 1,
                 size2 = length2 + 1;
 
@@ -508,6 +541,10 @@ public class AlignerCustom {
         public void set(int row, int col, int value) {
             data[width * row + col] = value;
         }
+
+        int[] data() {
+            return data;
+        }
     }
 
     public interface MatrixCache {
@@ -15,12 +15,15 @@
  */
 package com.milaboratory.core.alignment;
 
-import java.util.Arrays;
+import com.milaboratory.util.Factory;
+import com.milaboratory.util.ThreadLocalCache;
 
 /**
  * AlignmentCache - class which is providing cached array for {@link com.milaboratory.core.alignment.BandedLinearAligner}.
  *
  * <p>This cache helps to avoid creating new alignment array every time banded alignment is performed.</p>
+ *
+ * @see ThreadLocalCache
  */
 public final class AlignmentCache {
     private AlignmentCache() {
@@ -31,23 +34,23 @@ public final class AlignmentCache {
             enable();
     }
 
+    /**
+     * Maximum number of CachedArrays in AlignemtnCache
+     */
+    private static final int LIMIT = 20;
     /**
      * CachedArray Provider
      */
-    private static final ThreadLocal<CachedArrayProvider> local = new ThreadLocal<CachedArrayProvider>() {
+    private static final ThreadLocalCache<CachedIntArray> local = new ThreadLocalCache<>(new Factory<CachedIntArray>() {
         @Override
-        protected CachedArrayProvider initialValue() {
-            return new CachedArrayProvider();
+        public CachedIntArray create() {
+            return new CachedIntArray();
         }
-    };
+    }, LIMIT);
     /**
      * Flag which is indicating whether AlignemntCache is on or off
      */
     private static boolean enabled = false;
-    /**
-     * Maximum number of CachedArrays in AlignemtnCache
-     */
-    private static int limit = 20;
 
     /**
      * Enables CachedArray system
@@ -63,7 +66,7 @@ public final class AlignmentCache {
      */
     public static CachedIntArray get() {
         if (enabled)
-            return local.get().get();
+            return local.get();
         else
             return new CachedIntArray();
     }
@@ -73,32 +76,6 @@ public final class AlignmentCache {
      */
     public static void release() {
         if (enabled)
-            local.get().release();
-    }
-
-    private static final class CachedArrayProvider {
-        int pointer = 0;
-        CachedIntArray[] arrays = new CachedIntArray[3];
-
-        public CachedIntArray get() {
-            if (arrays.length == pointer) {
-                if (limit < pointer)
-                    throw new RuntimeException("Too many caches.");
-                arrays = Arrays.copyOf(arrays, pointer + 2);
-            }
-
-            CachedIntArray cia;
-            if ((cia = arrays[pointer]) == null)
-                cia = arrays[pointer] = new CachedIntArray();
-
-            ++pointer;
-
-            return cia;
-        }
-
-        public void release() {
-            if (--pointer < 0)
-                throw new IllegalStateException("All caches already released.");
-        }
+            local.release();
     }
 }
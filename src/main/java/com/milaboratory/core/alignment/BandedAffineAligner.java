@@ -510,6 +510,265 @@ public class BandedAffineAligner {
         return new BandedSemiLocalResult(offset1 + length1 - 1 - maxI, offset2 + length2 - 1 - maxJ, maxScore);
     }
 
+    /**
+     * Score-only version of {@link #align0(AffineGapAlignmentScoring, NucleotideSequence, NucleotideSequence, int, int,
+     * int, int, int, MutationsBuilder, MatrixCache)}.
+     *
+     * <p>Only two rows of the alignment matrices are kept in memory and no traceback is performed. Returned value is
+     * exactly the same as the one returned by the full version, so the alignment itself can be lazily recalculated
+     * later (only if it is required).</p>
+     *
+     * @param scoring scoring system
+     * @param seq1    first sequence
+     * @param seq2    second sequence
+     * @param offset1 offset in first sequence
+     * @param length1 length of first sequence's part to be aligned
+     * @param offset2 offset in second sequence
+     * @param length2 length of second sequence's part to be aligned
+     * @param width   width of banded alignment matrix. In other terms max allowed number of indels
+     * @param cache   matrix cache
+     * @return alignment score
+     */
+    public static int alignScore0(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
+                                  final NucleotideSequence seq1, final NucleotideSequence seq2,
+                                  final int offset1, final int length1, final int offset2, final int length2,
+                                  final int width, final MatrixCache cache) {
+        if (length1 == 0 && length2 == 0)
+            return 0;
+        return fillScoreOnly(scoring, seq1, seq2, offset1, length1, offset2, length2, width,
+                false, GLOBAL, 0, 0, cache).score;
+    }
+
+    /**
+     * Score-only version of {@link #semiLocalRight0(AffineGapAlignmentScoring, NucleotideSequence, NucleotideSequence,
+     * int, int, int, int, int, MutationsBuilder, MatrixCache)}; uses linear memory and returns exactly the same result
+     * (score and end positions) as the full version.
+     */
+    public static BandedSemiLocalResult semiLocalRightScore0(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
+                                                             final NucleotideSequence seq1, final NucleotideSequence seq2,
+                                                             final int offset1, int length1, final int offset2, int length2,
+                                                             final int width, final MatrixCache cache) {
+        if (length1 == 0 || length2 == 0)
+            return new BandedSemiLocalResult(offset1 - 1, offset2 - 1, 0);
+
+        int minLength = Math.min(length1, length2) + width;
+        length1 = Math.min(length1, minLength);
+        length2 = Math.min(length2, minLength);
+
+        BandedSemiLocalResult r = fillScoreOnly(scoring, seq1, seq2, offset1, length1, offset2, length2, width,
+                false, LOCAL, 0, 0, cache);
+        return new BandedSemiLocalResult(offset1 + r.sequence1Stop, offset2 + r.sequence2Stop, r.score);
+    }
+
+    /**
+     * Score-only version of {@link #semiLocalLeft0(AffineGapAlignmentScoring, NucleotideSequence, NucleotideSequence,
+     * int, int, int, int, int, MutationsBuilder, MatrixCache)}; uses linear memory and returns exactly the same result
+     * (score and end positions) as the full version.
+     */
+    public static BandedSemiLocalResult semiLocalLeftScore0(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
+                                                            final NucleotideSequence seq1, final NucleotideSequence seq2,
+                                                            int offset1, int length1, int offset2, int length2,
+                                                            final int width, final MatrixCache cache) {
+        if (length1 == 0 || length2 == 0)
+            return new BandedSemiLocalResult(offset1 + length1, offset2 + length2, 0);
+
+        offset1 += length1;
+        offset2 += length2;
+
+        int minLength = Math.min(length1, length2) + width;
+        length1 = Math.min(length1, minLength);
+        length2 = Math.min(length2, minLength);
+
+        offset1 -= length1;
+        offset2 -= length2;
+
+        BandedSemiLocalResult r = fillScoreOnly(scoring, seq1, seq2, offset1, length1, offset2, length2, width,
+                true, LOCAL, 0, 0, cache);
+        return new BandedSemiLocalResult(offset1 + length1 - 1 - r.sequence1Stop,
+                offset2 + length2 - 1 - r.sequence2Stop, r.score);
+    }
+
+    /**
+     * Score-only version of {@link #semiGlobalRight0(AffineGapAlignmentScoring, NucleotideSequence, NucleotideSequence,
+     * int, int, int, int, int, int, int, MutationsBuilder, MatrixCache)}; uses linear memory and returns exactly the same
+     * result (score and end positions) as the full version.
+     */
+    public static BandedSemiLocalResult semiGlobalRightScore0(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
+                                                              final NucleotideSequence seq1, final NucleotideSequence seq2,
+                                                              final int offset1, final int length1, final int addedNucleotides1,
+                                                              final int offset2, final int length2, final int addedNucleotides2,
+                                                              final int width, final MatrixCache cache) {
+        BandedSemiLocalResult r = fillScoreOnly(scoring, seq1, seq2, offset1, length1, offset2, length2, width,
+                false, SEMI_GLOBAL, addedNucleotides1, addedNucleotides2, cache);
+        return new BandedSemiLocalResult(offset1 + r.sequence1Stop, offset2 + r.sequence2Stop, r.score);
+    }
+
+    /**
+     * Score-only version of {@link #semiGlobalLeft0(AffineGapAlignmentScoring, NucleotideSequence, NucleotideSequence,
+     * int, int, int, int, int, int, int, MutationsBuilder, MatrixCache)}; uses linear memory and returns exactly the same
+     * result (score and end positions) as the full version.
+     */
+    public static BandedSemiLocalResult semiGlobalLeftScore0(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
+                                                             final NucleotideSequence seq1, final NucleotideSequence seq2,
+                                                             final int offset1, final int length1, final int addedNucleotides1,
+                                                             final int offset2, final int length2, final int addedNucleotides2,
+                                                             final int width, final MatrixCache cache) {
+        BandedSemiLocalResult r = fillScoreOnly(scoring, seq1, seq2, offset1, length1, offset2, length2, width,
+                true, SEMI_GLOBAL, addedNucleotides1, addedNucleotides2, cache);
+        return new BandedSemiLocalResult(offset1 + length1 - 1 - r.sequence1Stop,
+                offset2 + length2 - 1 - r.sequence2Stop, r.score);
+    }
+
+    private static final int GLOBAL = 0, LOCAL = 1, SEMI_GLOBAL = 2;
+
+    /**
+     * Calculates the same values as the main matrix filled by full versions of aligners, but keeps only two rolling
+     * rows (horizontal gap value depends only on the cell to the left, so it is kept in a local variable).
+     *
+     * @return position of the best cell (in coordinates of the matrix, i.e. relative to offsets and, if {@code
+     * reversed}, relative to the right ends of aligned ranges) and its score
+     */
+    private static BandedSemiLocalResult fillScoreOnly(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
+                                                       final NucleotideSequence seq1, final NucleotideSequence seq2,
+                                                       final int offset1, final int length1,
+                                                       final int offset2, final int length2,
+                                                       int width, final boolean reversed, final int mode,
+                                                       final int addedNucleotides1, final int addedNucleotides2,
+                                                       final MatrixCache cache) {
+        final int size1 = length1 + 1,
+                size2 = length2 + 1;
+
+        // Same band geometry as in BandedMatrix
+        if (width >= size1)
+            width = size1 - 1;
+        if (width >= size2)
+            width = size2 - 1;
+        final int rowFactor = 2 * width + Math.abs(size2 - size1);
+        final int columnDelta = -Math.min(0, size2 - size1) + width;
+        final int rightBound = rowFactor - columnDelta;
+
+        final int[] rows = cache.scoreRows(size2 + 1);
+        int mainPrev = 0, gapIn2Prev = size2 + 1, mainCur = 2 * (size2 + 1), gapIn2Cur = 3 * (size2 + 1), tmp;
+
+        final int gapOpenPenalty = scoring.getGapOpenPenalty(),
+                gapExtensionPenalty = scoring.getGapExtensionPenalty();
+        final int DEFAULT = BandedMatrix.DEFAULT_VALUE;
+
+        // First row; cell next to the right edge of the band is an out-of-band cell for the next row
+        rows[mainPrev] = 0;
+        rows[gapIn2Prev] = DEFAULT;
+        for (int j = 1; j <= rightBound; ++j) {
+            rows[mainPrev + j] = gapOpenPenalty + gapExtensionPenalty * (j - 1);
+            rows[gapIn2Prev + j] = DEFAULT;
+        }
+        if (rightBound < length2) {
+            rows[mainPrev + rightBound + 1] = DEFAULT;
+            rows[gapIn2Prev + rightBound + 1] = DEFAULT;
+        }
+
+        int maxI = -1, maxJ = -1, maxScore = 0;
+        int columnFrom = 0;
+        if (mode == SEMI_GLOBAL) {
+            maxI = 0;
+            maxJ = 0;
+            maxScore = Integer.MIN_VALUE;
+            columnFrom = length1 - addedNucleotides1;
+            // Rows with negative indices are out of band
+            if (columnFrom < 0) {
+                maxScore = DEFAULT;
+                maxI = columnFrom - 1;
+                maxJ = length2 - 1;
+                columnFrom = 0;
+            }
+            if (columnFrom == 0 && maxScore < cellValue(rows, mainPrev, 0, length2, columnDelta, rightBound)) {
+                maxScore = cellValue(rows, mainPrev, 0, length2, columnDelta, rightBound);
+                maxI = -1;
+                maxJ = length2 - 1;
+            }
+        }
+
+        int i, j, to, match, gap1, gap2, left, leftGap1, score;
+        byte code1;
+        for (i = 0; i < length1; ++i) {
+            j = Math.max(0, i - columnDelta);
+            to = Math.min(i + rightBound + 1, length2);
+
+            if (j == 0 && i + 1 <= columnDelta) {
+                left = gapOpenPenalty + gapExtensionPenalty * i;
+                rows[mainCur] = left;
+                rows[gapIn2Cur] = left;
+            } else {
+                left = DEFAULT;
+                rows[mainCur] = DEFAULT;
+                rows[gapIn2Cur] = DEFAULT;
+            }
+            leftGap1 = DEFAULT;
+
+            code1 = reversed ? seq1.codeAt(offset1 + length1 - 1 - i) : seq1.codeAt(offset1 + i);
+            for (; j < to; ++j) {
+                match = rows[mainPrev + j] + scoring.getScore(code1,
+                        reversed ? seq2.codeAt(offset2 + length2 - 1 - j) : seq2.codeAt(offset2 + j));
+
+                gap1 = Math.max(left + gapOpenPenalty, leftGap1 + gapExtensionPenalty);
+                gap2 = Math.max(rows[mainPrev + j + 1] + gapOpenPenalty, rows[gapIn2Prev + j + 1] + gapExtensionPenalty);
+
+                score = Math.max(match, Math.max(gap1, gap2));
+                rows[mainCur + j + 1] = score;
+                rows[gapIn2Cur + j + 1] = gap2;
+                left = score;
+                leftGap1 = gap1;
+
+                if (mode == LOCAL && score > maxScore) {
+                    maxScore = score;
+                    maxI = i;
+                    maxJ = j;
+                }
+            }
+            if (to < length2) {
+                rows[mainCur + to + 1] = DEFAULT;
+                rows[gapIn2Cur + to + 1] = DEFAULT;
+            }
+
+            if (mode == SEMI_GLOBAL && i + 1 >= columnFrom
+                    && maxScore < (score = cellValue(rows, mainCur, i + 1, length2, columnDelta, rightBound))) {
+                maxScore = score;
+                maxI = i;
+                maxJ = length2 - 1;
+            }
+
+            tmp = mainPrev;
+            mainPrev = mainCur;
+            mainCur = tmp;
+            tmp = gapIn2Prev;
+            gapIn2Prev = gapIn2Cur;
+            gapIn2Cur = tmp;
+        }
+
+        switch (mode) {
+            case GLOBAL:
+                return new BandedSemiLocalResult(length1 - 1, length2 - 1,
+                        cellValue(rows, mainPrev, length1, length2, columnDelta, rightBound));
+            case SEMI_GLOBAL:
+                for (j = length2 - addedNucleotides2; j < size2; ++j)
+                    if (maxScore < (score = cellValue(rows, mainPrev, length1, j, columnDelta, rightBound))) {
+                        maxScore = score;
+                        maxI = length1 - 1;
+                        maxJ = j - 1;
+                    }
+        }
+        return new BandedSemiLocalResult(maxI, maxJ, maxScore);
+    }
+
+    /**
+     * Returns value of the cell (i, j) from the row stored at {@code row} or {@link BandedMatrix#DEFAULT_VALUE} if cell
+     * is out of band
+     */
+    private static int cellValue(int[] rows, int row, int i, int j, int columnDelta, int rightBound) {
+        if (j - i < -columnDelta || j - i > rightBound)
+            return BandedMatrix.DEFAULT_VALUE;
+        return rows[row + j];
+    }
+
     public static Alignment<NucleotideSequence> align(final AffineGapAlignmentScoring<NucleotideSequence> scoring,
                                                       final NucleotideSequence seq1, final NucleotideSequence seq2,
                                                       final int offset1, final int length1,
@@ -600,6 +859,10 @@ public class BandedAffineAligner {
     public static final class MatrixCache {
         private final CachedIntArray mainCache, gapIn1Cache, gapIn2Cache;
         private BandedMatrix main, gapIn1, gapIn2;
+        /**
+         * Rolling rows for score-only aligners
+         */
+        private int[] scoreRows;
 
         public MatrixCache() {
             this.mainCache = new CachedIntArray();
@@ -607,6 +870,12 @@ public class BandedAffineAligner {
             this.gapIn2Cache = new CachedIntArray();
         }
 
+        private int[] scoreRows(int rowLength) {
+            if (scoreRows == null || scoreRows.length < 4 * rowLength)
+                scoreRows = new int[4 * rowLength];
+            return scoreRows;
+        }
+
         private void prepareMatrices(int size1, int size2, int width,
                                      AffineGapAlignmentScoring<NucleotideSequence> scoring) {
             BandedMatrix main = this.main = new BandedMatrix(mainCache, size1, size2, width);
@@ -0,0 +1,454 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.alignment;
+
+import com.milaboratory.core.Range;
+import com.milaboratory.core.mutations.MutationsBuilder;
+import com.milaboratory.core.sequence.NucleotideSequence;
+
+/**
+ * BitParallelBandedAligner - bit-vector (Myers / Hyyrö) implementation of {@link BandedLinearAligner}.
+ *
+ * <p>Alignment matrix is calculated 64 cells at a time (see {@link BitParallelBandedMatrix}), results (score,
+ * alignment ranges and mutations) are exactly the same as produced by corresponding methods of {@link
+ * BandedLinearAligner}.</p>
+ *
+ * <p>Only scoring systems which are equivalent to unit-cost edit distance are supported (see {@link
+ * #isCompatible(LinearGapAlignmentScoring)}), and both sequences must not contain wildcards. In all other cases
+ * methods of this class fall back to {@link BandedLinearAligner}.</p>
+ */
+public final class BitParallelBandedAligner {
+    private BitParallelBandedAligner() {
+    }
+
+    /**
+     * Returns {@code true} if bit-parallel algorithm can be used with the scoring system.
+     *
+     * <p>Scoring is compatible if it has uniform match ({@code m}) and mismatch ({@code x}) scores for basic letters,
+     * and {@code m = 2 * (x - g)} and {@code x > 2 * g}, where {@code g} is a gap penalty. Alignment score in this case
+     * is a linear function of unit-cost edit distance (e.g. {@code m = 0, x = -1, g = -1} or {@code m = 2, x = -1, g =
+     * -2}).</p>
+     *
+     * @param scoring scoring system
+     * @return {@code true} if bit-parallel algorithm can be used with the scoring system
+     */
+    public static boolean isCompatible(LinearGapAlignmentScoring scoring) {
+        if (scoring.getAlphabet() != NucleotideSequence.ALPHABET)
+            return false;
+
+        int size = NucleotideSequence.ALPHABET.basicSize();
+        int match = scoring.getScore((byte) 0, (byte) 0),
+                mismatch = scoring.getScore((byte) 0, (byte) 1),
+                gap = scoring.getGapPenalty();
+        for (byte i = 0; i < size; ++i)
+            for (byte j = 0; j < size; ++j)
+                if (scoring.getScore(i, j) != (i == j ? match : mismatch))
+                    return false;
+
+        return match == 2 * (mismatch - gap) && mismatch > 2 * gap;
+    }
+
+    private static boolean canAlign(LinearGapAlignmentScoring scoring,
+                                    NucleotideSequence seq1, NucleotideSequence seq2,
+                                    int offset1, int length1, int offset2, int length2) {
+        return isCompatible(scoring)
+                && !seq1.containsWildcards(offset1, offset1 + length1)
+                && !seq2.containsWildcards(offset2, offset2 + length2);
+    }
+
+    /**
+     * Classical Banded Alignment
+     *
+     * <p>Same as {@link BandedLinearAligner#align0(LinearGapAlignmentScoring, NucleotideSequence, NucleotideSequence,
+     * int, int, int, int, int, MutationsBuilder, CachedIntArray)}.</p>
+     *
+     * @param scoring   scoring system
+     * @param seq1      first sequence
+     * @param seq2      second sequence
+     * @param offset1   offset in first sequence
+     * @param length1   length of first sequence's part to be aligned
+     * @param offset2   offset in second sequence
+     * @param length2   length of second sequence's part to be aligned
+     * @param width     width of banded alignment matrix. In other terms max allowed number of indels
+     * @param mutations mutations array where all mutations will be kept
+     */
+    public static float align0(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                               int offset1, int length1, int offset2, int length2,
+                               int width, MutationsBuilder<NucleotideSequence> mutations) {
+        if (offset1 < 0 || length1 < 0 || offset2 < 0 || length2 < 0)
+            throw new IllegalArgumentException();
+
+        if (!canAlign(scoring, seq1, seq2, offset1, length1, offset2, length2))
+            try {
+                return BandedLinearAligner.align0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        width, mutations, AlignmentCache.get());
+            } finally {
+                AlignmentCache.release();
+            }
+
+        BitParallelBandedMatrix matrix = new BitParallelBandedMatrix(scoring, seq1, seq2,
+                offset1, length1, offset2, length2, width, false);
+
+        for (int i = 0; i < length1; ++i)
+            matrix.calculateNextRow();
+
+        int to = mutations.size();
+        int i = length1 - 1;
+        int j = length2 - 1;
+        byte c1, c2;
+        while (i >= 0 || j >= 0) {
+            if (i >= 0 && j >= 0 &&
+                    matrix.get(i + 1, j + 1) == matrix.get(i, j) +
+                            scoring.getScore(c1 = seq1.codeAt(offset1 + i),
+                                    c2 = seq2.codeAt(offset2 + j))) {
+                if (c1 != c2)
+                    mutations.appendSubstitution(offset1 + i, c1, c2);
+                --i;
+                --j;
+            } else if (i >= 0 &&
+                    matrix.get(i + 1, j + 1) ==
+                            matrix.get(i, j + 1) + scoring.getGapPenalty()) {
+                mutations.appendDeletion(offset1 + i, seq1.codeAt(offset1 + i));
+                --i;
+            } else if (j >= 0 &&
+                    matrix.get(i + 1, j + 1) ==
+                            matrix.get(i + 1, j) + scoring.getGapPenalty()) {
+                mutations.appendInsertion(offset1 + i + 1, seq2.codeAt(offset2 + j));
+                --j;
+            } else
+                throw new RuntimeException();
+        }
+
+        mutations.reverseRange(to, mutations.size());
+        return matrix.get(length1, length2);
+    }
+
+    /**
+     * Alignment which identifies what is the highly similar part of the both sequences.
+     *
+     * <p>Same as {@link BandedLinearAligner#alignSemiLocalLeft0(LinearGapAlignmentScoring, NucleotideSequence,
+     * NucleotideSequence, int, int, int, int, int, int, MutationsBuilder, CachedIntArray)}.</p>
+     *
+     * @param scoring     scoring system
+     * @param seq1        first sequence
+     * @param seq2        second sequence
+     * @param offset1     offset in first sequence
+     * @param length1     length of first sequence's part to be aligned
+     * @param offset2     offset in second sequence
+     * @param length2     length of second sequence's part to be aligned
+     * @param width       width of banded alignment matrix. In other terms max allowed number of indels
+     * @param stopPenalty alignment score value in banded alignment matrix at which alignment terminates
+     * @param mutations   array where all mutations will be kept
+     * @return object which contains positions at which alignment terminated and array of mutations
+     */
+    public static BandedSemiLocalResult alignSemiLocalLeft0(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                                                            int offset1, int length1, int offset2, int length2,
+                                                            int width, int stopPenalty, MutationsBuilder<NucleotideSequence> mutations) {
+        if (offset1 < 0 || length1 < 0 || offset2 < 0 || length2 < 0)
+            throw new IllegalArgumentException();
+
+        if (!canAlign(scoring, seq1, seq2, offset1, length1, offset2, length2))
+            try {
+                return BandedLinearAligner.alignSemiLocalLeft0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        width, stopPenalty, mutations, AlignmentCache.get());
+            } finally {
+                AlignmentCache.release();
+            }
+
+        BitParallelBandedMatrix matrix = new BitParallelBandedMatrix(scoring, seq1, seq2,
+                offset1, length1, offset2, length2, width, false);
+        int[] best = fill(matrix, scoring, length1, stopPenalty);
+        int iStop = best[1], jStop = best[2];
+
+        int fromL = mutations.size();
+
+        int i = iStop - 1;
+        int j = jStop - 1;
+        byte c1, c2;
+        while (i >= 0 || j >= 0) {
+            if (i >= 0 && j >= 0 &&
+                    matrix.get(i + 1, j + 1) == matrix.get(i, j) +
+                            scoring.getScore(c1 = seq1.codeAt(offset1 + i),
+                                    c2 = seq2.codeAt(offset2 + j))) {
+                if (c1 != c2)
+                    mutations.appendSubstitution(offset1 + i, c1, c2);
+                --i;
+                --j;
+            } else if (i >= 0 &&
+                    matrix.get(i + 1, j + 1) ==
+                            matrix.get(i, j + 1) + scoring.getGapPenalty()) {
+                mutations.appendDeletion(offset1 + i, seq1.codeAt(offset1 + i));
+                --i;
+            } else if (j >= 0 &&
+                    matrix.get(i + 1, j + 1) ==
+                            matrix.get(i + 1, j) + scoring.getGapPenalty()) {
+                mutations.appendInsertion(offset1 + i + 1, seq2.codeAt(offset2 + j));
+                --j;
+            } else
+                throw new RuntimeException();
+        }
+
+        mutations.reverseRange(fromL, mutations.size());
+
+        return new BandedSemiLocalResult(offset1 + iStop - 1, offset2 + jStop - 1, best[0]);
+    }
+
+    /**
+     * Alignment which identifies what is the highly similar part of the both sequences.
+     *
+     * <p>Same as {@link BandedLinearAligner#alignSemiLocalRight0(LinearGapAlignmentScoring, NucleotideSequence,
+     * NucleotideSequence, int, int, int, int, int, int, MutationsBuilder, CachedIntArray)}.</p>
+     *
+     * @param scoring     scoring system
+     * @param seq1        first sequence
+     * @param seq2        second sequence
+     * @param offset1     offset in first sequence
+     * @param length1     length of first sequence's part to be aligned
+     * @param offset2     offset in second sequence
+     * @param length2     length of second sequence's part to be aligned
+     * @param width       width of banded alignment matrix. In other terms max allowed number of indels
+     * @param stopPenalty alignment score value in banded alignment matrix at which alignment terminates
+     * @param mutations   array where all mutations will be kept
+     * @return object which contains positions at which alignment terminated and array of mutations
+     */
+    public static BandedSemiLocalResult alignSemiLocalRight0(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                                                             int offset1, int length1, int offset2, int length2,
+                                                             int width, int stopPenalty, MutationsBuilder<NucleotideSequence> mutations) {
+        if (offset1 < 0 || length1 < 0 || offset2 < 0 || length2 < 0)
+            throw new IllegalArgumentException();
+
+        if (!canAlign(scoring, seq1, seq2, offset1, length1, offset2, length2))
+            try {
+                return BandedLinearAligner.alignSemiLocalRight0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        width, stopPenalty, mutations, AlignmentCache.get());
+            } finally {
+                AlignmentCache.release();
+            }
+
+        BitParallelBandedMatrix matrix = new BitParallelBandedMatrix(scoring, seq1, seq2,
+                offset1, length1, offset2, length2, width, true);
+        int[] best = fill(matrix, scoring, length1, stopPenalty);
+        int iStop = best[1], jStop = best[2];
+
+        int i = iStop - 1;
+        int j = jStop - 1;
+        byte c1, c2;
+        while (i >= 0 || j >= 0) {
+            if (i >= 0 && j >= 0 &&
+                    matrix.get(i + 1, j + 1) == matrix.get(i, j) +
+                            scoring.getScore(c1 = seq1.codeAt(offset1 + length1 - 1 - i),
+                                    c2 = seq2.codeAt(offset2 + length2 - 1 - j))) {
+                if (c1 != c2)
+                    mutations.appendSubstitution(offset1 + length1 - 1 - i, c1, c2);
+                --i;
+                --j;
+            } else if (i >= 0 &&
+                    matrix.get(i + 1, j + 1) ==
+                            matrix.get(i, j + 1) + scoring.getGapPenalty()) {
+                mutations.appendDeletion(offset1 + length1 - 1 - i, seq1.codeAt(offset1 + length1 - 1 - i));
+                --i;
+            } else if (j >= 0 &&
+                    matrix.get(i + 1, j + 1) ==
+                            matrix.get(i + 1, j) + scoring.getGapPenalty()) {
+                mutations.appendInsertion(offset1 + length1 - 1 - i, seq2.codeAt(offset2 + length2 - 1 - j));
+                --j;
+            } else
+                throw new RuntimeException();
+        }
+
+        return new BandedSemiLocalResult(offset1 + length1 - iStop, offset2 + length2 - jStop, best[0]);
+    }
+
+    /**
+     * Fills the matrix row by row until score drops below stop penalty
+     *
+     * @return {maximal score, row, column}
+     */
+    private static int[] fill(BitParallelBandedMatrix matrix, LinearGapAlignmentScoring scoring,
+                              int length1, int stopPenalty) {
+        int matchReward = scoring.getScore((byte) 0, (byte) 0);
+        int[] best = {0, 0, 0};
+        int rowMax;
+        for (int i = 0; i < length1; ++i) {
+            matrix.calculateNextRow();
+            rowMax = matrix.scanLastRow(best);
+            if (rowMax - i * matchReward < stopPenalty)
+                break;
+        }
+        return best;
+    }
+
+    /**
+     * Classical Banded Alignment
+     *
+     * <p>Both sequences must be highly similar</p> <p>Align 2 sequence completely (i.e. while first sequence will be
+     * aligned against whole second sequence)</p>
+     *
+     * @param scoring scoring system
+     * @param seq1    first sequence
+     * @param seq2    second sequence
+     * @param width   width of banded alignment matrix. In other terms max allowed number of indels
+     */
+    public static Alignment<NucleotideSequence> align(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                                                      int width) {
+        return align(scoring, seq1, seq2, 0, seq1.size(), 0, seq2.size(), width);
+    }
+
+    /**
+     * Classical Banded Alignment
+     *
+     * <p>Both sequences must be highly similar</p> <p>Align 2 sequence completely (i.e. while first sequence will be
+     * aligned against whole second sequence)</p>
+     *
+     * @param scoring scoring system
+     * @param seq1    first sequence
+     * @param seq2    second sequence
+     * @param offset1 offset in first sequence
+     * @param length1 length of first sequence's part to be aligned
+     * @param offset2 offset in second sequence
+     * @param length2 length of second sequence's part to be aligned
+     * @param width   width of banded alignment matrix. In other terms max allowed number of indels
+     */
+    public static Alignment<NucleotideSequence> align(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                                                      int offset1, int length1, int offset2, int length2, int width) {
+        MutationsBuilder<NucleotideSequence> mutations = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+        float score = align0(scoring, seq1, seq2, offset1, length1, offset2, length2, width, mutations);
+        return new Alignment<>(seq1, mutations.createAndDestroy(),
+                new Range(offset1, offset1 + length1), new Range(offset2, offset2 + length2), score);
+    }
+
+    /**
+     * Performs global alignment. Result is the same as returned by {@link Aligner#alignGlobalLinear(LinearGapAlignmentScoring,
+     * com.milaboratory.core.sequence.Sequence, com.milaboratory.core.sequence.Sequence)}.
+     *
+     * @param scoring scoring system
+     * @param seq1    first sequence
+     * @param seq2    second sequence
+     * @return global alignment
+     */
+    public static Alignment<NucleotideSequence> alignGlobal(LinearGapAlignmentScoring scoring,
+                                                            NucleotideSequence seq1, NucleotideSequence seq2) {
+        if (!canAlign(scoring, seq1, seq2, 0, seq1.size(), 0, seq2.size()))
+            return Aligner.alignGlobalLinear(scoring, seq1, seq2);
+        return align(scoring, seq1, seq2, Math.max(seq1.size(), seq2.size()));
+    }
+
+    /**
+     * Alignment which identifies what is the highly similar part of the both sequences.
+     *
+     * <p>Alignment is done in the way that beginning of second sequences is aligned to beginning of first
+     * sequence.</p>
+     *
+     * <p>Alignment terminates when score in banded alignment matrix reaches {@code stopPenalty} value.</p>
+     *
+     * <p>In other words, only left part of second sequence is to be aligned</p>
+     *
+     * @param scoring     scoring system
+     * @param seq1        first sequence
+     * @param seq2        second sequence
+     * @param offset1     offset in first sequence
+     * @param length1     length of first sequence's part to be aligned
+     * @param offset2     offset in second sequence
+     * @param length2     length of second sequence's part to be aligned
+     * @param width       width of banded alignment matrix. In other terms max allowed number of indels
+     * @param stopPenalty alignment score value in banded alignment matrix at which alignment terminates
+     * @return object which contains positions at which alignment terminated and array of mutations
+     */
+    public static Alignment<NucleotideSequence> alignSemiLocalLeft(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                                                                   int offset1, int length1, int offset2, int length2,
+                                                                   int width, int stopPenalty) {
+        int minLength = Math.min(length1, length2) + width + 1;
+        length1 = Math.min(length1, minLength);
+        length2 = Math.min(length2, minLength);
+        MutationsBuilder<NucleotideSequence> mutations = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+        BandedSemiLocalResult result = alignSemiLocalLeft0(scoring, seq1, seq2,
+                offset1, length1, offset2, length2, width, stopPenalty, mutations);
+        return new Alignment<>(seq1, mutations.createAndDestroy(),
+                new Range(offset1, result.sequence1Stop + 1), new Range(offset2, result.sequence2Stop + 1),
+                result.score);
+    }
+
+    /**
+     * Alignment which identifies what is the highly similar part of the both sequences.
+     *
+     * <p>Alignment is done in the way that beginning of second sequences is aligned to beginning of first
+     * sequence.</p>
+     *
+     * @param scoring     scoring system
+     * @param seq1        first sequence
+     * @param seq2        second sequence
+     * @param width       width of banded alignment matrix. In other terms max allowed number of indels
+     * @param stopPenalty alignment score value in banded alignment matrix at which alignment terminates
+     * @return object which contains positions at which alignment terminated and array of mutations
+     */
+    public static Alignment<NucleotideSequence> alignSemiLocalLeft(LinearGapAlignmentScoring scoring,
+                                                                   NucleotideSequence seq1, NucleotideSequence seq2,
+                                                                   int width, int stopPenalty) {
+        return alignSemiLocalLeft(scoring, seq1, seq2, 0, seq1.size(), 0, seq2.size(), width, stopPenalty);
+    }
+
+    /**
+     * Alignment which identifies what is the highly similar part of the both sequences.
+     *
+     * <p>Alignment is done in the way that end of second sequence is aligned to end of first sequence.</p>
+     *
+     * @param scoring     scoring system
+     * @param seq1        first sequence
+     * @param seq2        second sequence
+     * @param offset1     offset in first sequence
+     * @param length1     length of first sequence's part to be aligned
+     * @param offset2     offset in second sequence
+     * @param length2     length of second sequence's part to be aligned
+     * @param width       width of banded alignment matrix. In other terms max allowed number of indels
+     * @param stopPenalty alignment score value in banded alignment matrix at which alignment terminates
+     * @return object which contains positions at which alignment terminated and array of mutations
+     */
+    public static Alignment<NucleotideSequence> alignSemiLocalRight(LinearGapAlignmentScoring scoring, NucleotideSequence seq1, NucleotideSequence seq2,
+                                                                    int offset1, int length1, int offset2, int length2,
+                                                                    int width, int stopPenalty) {
+        int minLength = Math.min(length1, length2) + width + 1;
+        int l1 = Math.min(length1, minLength);
+        int l2 = Math.min(length2, minLength);
+        offset1 = offset1 + length1 - l1;
+        offset2 = offset2 + length2 - l2;
+        length1 = l1;
+        length2 = l2;
+        MutationsBuilder<NucleotideSequence> mutations = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+        BandedSemiLocalResult result = alignSemiLocalRight0(scoring, seq1, seq2,
+                offset1, length1, offset2, length2, width, stopPenalty, mutations);
+        return new Alignment<>(seq1, mutations.createAndDestroy(),
+                new Range(result.sequence1Stop, offset1 + length1), new Range(result.sequence2Stop, offset2 + length2),
+                result.score);
+    }
+
+    /**
+     * Alignment which identifies what is the highly similar part of the both sequences.
+     *
+     * <p>Alignment is done in the way that end of second sequence is aligned to end of first sequence.</p>
+     *
+     * @param scoring     scoring system
+     * @param seq1        first sequence
+     * @param seq2        second sequence
+     * @param width       width of banded alignment matrix. In other terms max allowed number of indels
+     * @param stopPenalty alignment score value in banded alignment matrix at which alignment terminates
+     * @return object which contains positions at which alignment terminated and array of mutations
+     */
+    public static Alignment<NucleotideSequence> alignSemiLocalRight(LinearGapAlignmentScoring scoring,
+                                                                    NucleotideSequence seq1, NucleotideSequence seq2,
+                                                                    int width, int stopPenalty) {
+        return alignSemiLocalRight(scoring, seq1, seq2, 0, seq1.size(), 0, seq2.size(), width, stopPenalty);
+    }
+}
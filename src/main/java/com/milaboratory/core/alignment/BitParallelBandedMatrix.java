@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.alignment;
+
+import com.milaboratory.core.sequence.NucleotideSequence;
+
+/**
+ * BitParallelBandedMatrix - bit-vector (Myers / Hyyrö) representation of the banded alignment matrix used by {@link
+ * BitParallelBandedAligner}.
+ *
+ * <p>Each row of the matrix is stored as two bit vectors with horizontal differences of unit-cost edit distance values
+ * ({@code +1} and {@code -1}) for the cells inside the band, so 64 cells are computed at once. Band is aligned to
+ * the diagonals (window of each row is shifted by one cell relative to the previous one), cells to the left and to the
+ * right of the band are treated as cells that can never improve an in-band value, which is exactly what {@link
+ * BandedMatrix#DEFAULT_VALUE} does in {@link BandedLinearAligner}.</p>
+ *
+ * <p>Values returned by {@link #get(int, int)} are converted back to the scoring system units, so they are identical
+ * to the values of {@link BandedMatrix} filled by {@link BandedLinearAligner} with the same parameters. See {@link
+ * BitParallelBandedAligner#isCompatible(LinearGapAlignmentScoring)} for the list of supported scoring systems.</p>
+ */
+final class BitParallelBandedMatrix {
+    private final NucleotideSequence seq1;
+    private final int offset1, length1, length2;
+    private final boolean reversed;
+    /**
+     * Band boundaries: cell (i, j) is inside the band if {@code lo <= j - i <= hi}
+     */
+    private final int lo, hi;
+    /**
+     * Number of words per row
+     */
+    private final int words;
+    /**
+     * Positive and negative horizontal differences; bit k of row i corresponds to cell (i, firstColumn(i) + k)
+     */
+    private final long[] pv, mv;
+    /**
+     * Edit distance value of the cell (i, firstColumn(i) - 1)
+     */
+    private final int[] base;
+    /**
+     * Match bit masks for each basic letter of the second sequence
+     */
+    private final long[][] peq;
+    /**
+     * Coefficients of transformation from edit distance to score: score(i, j) = a * (i + j) - c * distance(i, j)
+     */
+    private final int a, c;
+    /**
+     * Number of calculated rows
+     */
+    private int rows = 0;
+
+    BitParallelBandedMatrix(LinearGapAlignmentScoring scoring,
+                            NucleotideSequence seq1, NucleotideSequence seq2,
+                            int offset1, int length1, int offset2, int length2,
+                            int width, boolean reversed) {
+        this.seq1 = seq1;
+        this.offset1 = offset1;
+        this.length1 = length1;
+        this.length2 = length2;
+        this.reversed = reversed;
+
+        // Same band geometry as in BandedMatrix
+        int size1 = length1 + 1, size2 = length2 + 1;
+        if (width >= size1)
+            width = size1 - 1;
+        if (width >= size2)
+            width = size2 - 1;
+        int rowFactor = 2 * width + Math.abs(size2 - size1);
+        int columnDelta = -Math.min(0, size2 - size1) + width;
+        this.lo = -columnDelta;
+        this.hi = rowFactor - columnDelta;
+
+        this.words = (rowFactor + 1 + 63) >>> 6;
+        this.pv = new long[size1 * words];
+        this.mv = new long[size1 * words];
+        this.base = new int[size1];
+
+        int words2 = ((length2 + 63) >>> 6) + words + 1;
+        this.peq = new long[NucleotideSequence.ALPHABET.basicSize()][words2];
+        for (int j = 0; j < length2; ++j) {
+            byte code = reversed
+                    ? seq2.codeAt(offset2 + length2 - 1 - j)
+                    : seq2.codeAt(offset2 + j);
+            peq[code][j >>> 6] |= 1L << (j & 63);
+        }
+
+        this.a = scoring.getScore((byte) 0, (byte) 0) / 2;
+        this.c = a - scoring.getGapPenalty();
+
+        // First row: distance(0, j) = j
+        for (int k = 0; k < words; ++k)
+            pv[k] = -1L;
+        base[0] = 0;
+        rows = 1;
+    }
+
+    /**
+     * Index of the first calculated cell in the row (or the cell next to the column 0)
+     */
+    private int firstColumn(int i) {
+        return Math.max(1, i + lo);
+    }
+
+    /**
+     * Index of the last calculated cell in the row
+     */
+    private int lastColumn(int i) {
+        return Math.min(length2, i + hi);
+    }
+
+    /**
+     * Calculates next row of the matrix.
+     *
+     * @return index of calculated row
+     */
+    int calculateNextRow() {
+        int i = rows;
+        if (i > length1)
+            throw new IllegalStateException();
+
+        int from = firstColumn(i);
+        boolean shift = from != firstColumn(i - 1);
+        int prev = (i - 1) * words, cur = i * words;
+
+        base[i] = base[i - 1] + 1 +
+                (shift ? (int) (pv[prev] & 1) - (int) (mv[prev] & 1) : 0);
+
+        byte code = reversed
+                ? seq1.codeAt(offset1 + length1 - i)
+                : seq1.codeAt(offset1 + i - 1);
+        long[] eqs = peq[code];
+        int eqWord = (from - 1) >>> 6, eqShift = (from - 1) & 63;
+
+        long pvIn, mvIn, eq, xv, xh, ph, mh, hinNeg, hinPos;
+        int hin = 1, hout;
+        for (int k = 0; k < words; ++k) {
+            if (shift) {
+                // Cells beyond the band in the previous row are "+1" cells, so the new cell comes with +1 difference
+                pvIn = (pv[prev + k] >>> 1) | (k + 1 < words ? pv[prev + k + 1] << 63 : 1L << 63);
+                mvIn = (mv[prev + k] >>> 1) | (k + 1 < words ? mv[prev + k + 1] << 63 : 0L);
+            } else {
+                pvIn = pv[prev + k];
+                mvIn = mv[prev + k];
+            }
+
+            eq = eqShift == 0
+                    ? eqs[eqWord + k]
+                    : (eqs[eqWord + k] >>> eqShift) | (eqs[eqWord + k + 1] << (64 - eqShift));
+
+            hinNeg = hin < 0 ? 1L : 0L;
+            hinPos = hin > 0 ? 1L : 0L;
+            xv = eq | mvIn;
+            eq |= hinNeg;
+            xh = (((eq & pvIn) + pvIn) ^ pvIn) | eq;
+            ph = mvIn | ~(xh | pvIn);
+            mh = pvIn & xh;
+            hout = (int) (ph >>> 63) - (int) (mh >>> 63);
+            ph = (ph << 1) | hinPos;
+            mh = (mh << 1) | hinNeg;
+            pv[cur + k] = mh | ~(xv | ph);
+            mv[cur + k] = ph & xv;
+            hin = hout;
+        }
+
+        // Cells to the right of the band
+        int length = lastColumn(i) - from + 1;
+        int k = length >>> 6;
+        if (k < words) {
+            long mask = (1L << (length & 63)) - 1;
+            pv[cur + k] |= ~mask;
+            mv[cur + k] &= mask;
+            for (++k; k < words; ++k) {
+                pv[cur + k] = -1L;
+                mv[cur + k] = 0L;
+            }
+        }
+
+        return rows++;
+    }
+
+    /**
+     * Scans cells of the last calculated row in the same order they are visited by {@link BandedLinearAligner} and
+     * updates position of the best cell.
+     *
+     * @param best array of three elements: {maximal score, row, column}; updated only if a cell with greater score is
+     *             found
+     * @return maximal score in the row or {@code Integer.MIN_VALUE} if row has no calculated cells
+     */
+    int scanLastRow(int[] best) {
+        int i = rows - 1;
+        int from = firstColumn(i), to = lastColumn(i);
+        int off = i * words;
+        int d = base[i], score, rowMax = Integer.MIN_VALUE;
+        long m;
+        for (int j = from, bit = 0; j <= to; ++j, ++bit) {
+            m = 1L << bit;
+            if ((pv[off + (bit >>> 6)] & m) != 0)
+                ++d;
+            else if ((mv[off + (bit >>> 6)] & m) != 0)
+                --d;
+            score = a * (i + j) - c * d;
+            if (best[0] < score) {
+                best[0] = score;
+                best[1] = i;
+                best[2] = j;
+            }
+            rowMax = Math.max(rowMax, score);
+        }
+        return rowMax;
+    }
+
+    /**
+     * Returns score value in cell (i, j); cell must be in already calculated row. Returns {@link
+     * BandedMatrix#DEFAULT_VALUE} for cells outside the band.
+     */
+    int get(int i, int j) {
+        if (j - i < lo || j - i > hi)
+            return BandedMatrix.DEFAULT_VALUE;
+        assert i < rows;
+
+        int n = j - firstColumn(i) + 1, off = i * words;
+        int d = base[i];
+        for (; n >= 64; n -= 64, ++off)
+            d += Long.bitCount(pv[off]) - Long.bitCount(mv[off]);
+        if (n > 0) {
+            long mask = (1L << n) - 1;
+            d += Long.bitCount(pv[off] & mask) - Long.bitCount(mv[off] & mask);
+        }
+        return a * (i + j) - c * d;
+    }
+}
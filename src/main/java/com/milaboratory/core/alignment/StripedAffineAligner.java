@@ -0,0 +1,389 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.alignment;
+
+import com.milaboratory.core.Range;
+import com.milaboratory.core.mutations.Mutations;
+import com.milaboratory.core.mutations.MutationsBuilder;
+import com.milaboratory.core.sequence.Alphabet;
+import com.milaboratory.core.sequence.Sequence;
+
+import static com.milaboratory.core.alignment.AlignerCustom.MIN_VALUE;
+
+/**
+ * StripedAffineAligner - striped (Farrar) implementation of {@link AlignerCustom#alignAffineSemiLocalLeft0(AffineGapAlignmentScoring,
+ * Sequence, Sequence, int, int, int, int, boolean, boolean, Alphabet, AlignerCustom.AffineMatrixCache)} and {@link
+ * AlignerCustom#alignAffineSemiLocalRight0(AffineGapAlignmentScoring, Sequence, Sequence, int, int, int, int, boolean,
+ * boolean, Alphabet, AlignerCustom.AffineMatrixCache)}.
+ *
+ * <p>Second sequence is split into {@link #LANES} interleaved segments, so each row of the matrix is calculated by
+ * simple fixed-length loops over {@link #LANES} independent cells, which are compiled into SIMD instructions by JIT.
+ * Horizontal gap dependencies between segments are resolved by "lazy-F" correction loop, which runs until all gap
+ * values are final, so all three matrices contain exactly the same values as in the scalar implementation and
+ * alignments are identical.</p>
+ */
+final class StripedAffineAligner {
+    /**
+     * Number of int lanes (one 256-bit vector)
+     */
+    static final int LANES = 8;
+
+    private StripedAffineAligner() {
+    }
+
+    static <S extends Sequence<S>> Alignment<S> alignAffineSemiLocalLeft0(AffineGapAlignmentScoring<S> scoring,
+                                                                          S seq1, S seq2,
+                                                                          int offset1, int length1,
+                                                                          int offset2, int length2,
+                                                                          boolean boundSeq1, boolean boundSeq2,
+                                                                          Alphabet<S> alphabet,
+                                                                          AlignerCustom.AffineMatrixCache cache) {
+        if (length1 == 0 || length2 == 0)
+            return new Alignment<>(seq1, Mutations.empty(alphabet), new Range(offset1, offset1), new Range(offset2, offset2), 0);
+
+        StripedMatrices m = fill(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                boundSeq1, boundSeq2, false, cache);
+        int maxI = m.maxI, maxJ = m.maxJ, maxScore = m.maxScore;
+        final int gapExtensionPenalty = scoring.getGapExtensionPenalty();
+
+        MutationsBuilder<S> mutations = new MutationsBuilder<>(alphabet);
+
+        int i = maxI;
+        int j = maxJ;
+        int pScore = m.main(i + 1, j + 1);
+
+        byte c1, c2;
+        boolean inGap1 = false, inGap2 = false;
+        while (i >= 0 || j >= 0) {
+            assert !inGap1 || !inGap2;
+            if (!inGap2 && (inGap1 || (i >= 0 &&
+                    pScore == m.gapIn2(i + 1, j + 1)))) {
+                inGap1 = false;
+                if (pScore == m.gapIn2(i, j + 1) + gapExtensionPenalty) {
+                    inGap1 = true;
+                    pScore = m.gapIn2(i, j + 1);
+                } else
+                    pScore = m.main(i, j + 1);
+
+                mutations.appendDeletion(offset1 + i, seq1.codeAt(offset1 + i));
+                --i;
+            } else if (inGap2 || (j >= 0 &&
+                    pScore == m.gapIn1(i + 1, j + 1))) {
+                inGap2 = false;
+                if (pScore == m.gapIn1(i + 1, j) + gapExtensionPenalty) {
+                    inGap2 = true;
+                    pScore = m.gapIn1(i + 1, j);
+                } else
+                    pScore = m.main(i + 1, j);
+
+                mutations.appendInsertion(offset1 + i + 1, seq2.codeAt(offset2 + j));
+                --j;
+            } else if (i >= 0 && j >= 0 &&
+                    pScore == m.main(i, j) + scoring.getScore(c1 = seq1.codeAt(offset1 + i), c2 = seq2.codeAt(offset2 + j))) {
+                pScore = m.main(i, j);
+                if (c1 != c2)
+                    mutations.appendSubstitution(offset1 + i, c1, c2);
+                --i;
+                --j;
+            } else {
+                if (i == -1 && !boundSeq2)
+                    break;
+                if (j == -1 && !boundSeq1)
+                    break;
+                throw new RuntimeException();
+            }
+        }
+
+        mutations.reverseRange(0, mutations.size());
+
+        return new Alignment<>(seq1, mutations.createAndDestroy(),
+                new Range(offset1 + i + 1, offset1 + maxI + 1),
+                new Range(offset2 + j + 1, offset2 + maxJ + 1),
+                maxScore);
+    }
+
+    static <S extends Sequence<S>> Alignment<S> alignAffineSemiLocalRight0(AffineGapAlignmentScoring<S> scoring,
+                                                                           S seq1, S seq2,
+                                                                           int offset1, int length1,
+                                                                           int offset2, int length2,
+                                                                           boolean boundSeq1, boolean boundSeq2,
+                                                                           Alphabet<S> alphabet,
+                                                                           AlignerCustom.AffineMatrixCache cache) {
+        if (length1 == 0 || length2 == 0)
+            return new Alignment<>(seq1, Mutations.empty(alphabet), new Range(offset1, offset1), new Range(offset2, offset2), 0);
+
+        StripedMatrices m = fill(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                boundSeq1, boundSeq2, true, cache);
+        int maxI = m.maxI, maxJ = m.maxJ, maxScore = m.maxScore;
+        final int gapExtensionPenalty = scoring.getGapExtensionPenalty();
+
+        MutationsBuilder<S> mutations = new MutationsBuilder<>(alphabet);
+
+        int i = maxI;
+        int j = maxJ;
+        int pScore = m.main(i + 1, j + 1);
+
+        byte c1, c2;
+        boolean inGap1 = false, inGap2 = false;
+        while (i >= 0 || j >= 0) {
+            assert !inGap1 || !inGap2;
+            if (!inGap2 && (inGap1 || (i >= 0 &&
+                    pScore == m.gapIn2(i + 1, j + 1)))) {
+                inGap1 = false;
+                if (pScore == m.gapIn2(i, j + 1) + gapExtensionPenalty) {
+                    inGap1 = true;
+                    pScore = m.gapIn2(i, j + 1);
+                } else
+                    pScore = m.main(i, j + 1);
+
+                mutations.appendDeletion(offset1 + length1 - 1 - i, seq1.codeAt(offset1 + length1 - 1 - i));
+                --i;
+            } else if (inGap2 || (j >= 0 &&
+                    pScore == m.gapIn1(i + 1, j + 1))) {
+                inGap2 = false;
+                if (pScore == m.gapIn1(i + 1, j) + gapExtensionPenalty) {
+                    inGap2 = true;
+                    pScore = m.gapIn1(i + 1, j);
+                } else
+                    pScore = m.main(i + 1, j);
+
+                mutations.appendInsertion(offset1 + length1 - 1 - i, seq2.codeAt(offset2 + length2 - 1 - j));
+                --j;
+            } else if (i >= 0 && j >= 0 &&
+                    pScore == m.main(i, j) + scoring.getScore(c1 = seq1.codeAt(offset1 + length1 - 1 - i),
+                            c2 = seq2.codeAt(offset2 + length2 - 1 - j))) {
+                pScore = m.main(i, j);
+                if (c1 != c2)
+                    mutations.appendSubstitution(offset1 + length1 - 1 - i, c1, c2);
+                --i;
+                --j;
+            } else {
+                if (i == -1 && !boundSeq2)
+                    break;
+                if (j == -1 && !boundSeq1)
+                    break;
+                throw new RuntimeException();
+            }
+        }
+
+        return new Alignment<>(seq1, mutations.createAndDestroy(),
+                new Range(offset1 + length1 - maxI - 1, offset1 + length1 - i - 1),
+                new Range(offset2 + length2 - maxJ - 1, offset2 + length2 - j - 1),
+                maxScore);
+    }
+
+    /**
+     * Fills all three matrices in striped layout and finds the cell with maximal score (the first one in row-major
+     * order, as in the scalar implementation).
+     */
+    private static <S extends Sequence<S>> StripedMatrices fill(AffineGapAlignmentScoring<S> scoring,
+                                                               S seq1, S seq2,
+                                                               int offset1, int length1,
+                                                               int offset2, int length2,
+                                                               boolean boundSeq1, boolean boundSeq2,
+                                                               boolean reversed,
+                                                               AlignerCustom.AffineMatrixCache cache) {
+        final int segLen = (length2 + LANES - 1) / LANES;
+        final int stride = 1 + segLen * LANES;
+        final int size1 = length1 + 1;
+
+        cache.initMatrices(size1, stride);
+        final int[] main = cache.main.data(),
+                gapIn1 = cache.gapIn1.data(),
+                gapIn2 = cache.gapIn2.data();
+
+        final int gapOpenPenalty = scoring.getGapOpenPenalty(),
+                gapExtensionPenalty = scoring.getGapExtensionPenalty();
+
+        // Striped query profiles, created on demand for letters of seq1
+        final int[][] profiles = new int[scoring.getAlphabet().size()][];
+
+        // First row (padding cells are initialized the same way, they never affect real cells)
+        main[0] = 0;
+        gapIn1[0] = MIN_VALUE;
+        gapIn2[0] = MIN_VALUE;
+        for (int s = 0; s < segLen; ++s)
+            for (int l = 0; l < LANES; ++l) {
+                int v = gapOpenPenalty + gapExtensionPenalty * (l * segLen + s);
+                main[1 + s * LANES + l] = boundSeq2 ? v : 0;
+                gapIn1[1 + s * LANES + l] = v;
+                gapIn2[1 + s * LANES + l] = MIN_VALUE;
+            }
+
+        // Rolling rows; separate arrays let JIT vectorize loops over the whole row
+        final int n = segLen * LANES;
+        int[] hPrev = new int[n], fPrev = new int[n],
+                hCur = new int[n], eCur = new int[n], fCur = new int[n], tmp;
+        System.arraycopy(main, 1, hPrev, 0, n);
+        System.arraycopy(gapIn2, 1, fPrev, 0, n);
+
+        final int[] vE = new int[LANES];
+        int maxI = -1, maxJ = -1, maxScore = 0;
+
+        int i, s, l, b, k, h, e, c;
+        for (i = 0; i < length1; ++i) {
+            final int rowP = i * stride, rowC = rowP + stride;
+
+            // Column 0
+            int v = gapOpenPenalty + gapExtensionPenalty * i;
+            main[rowC] = boundSeq1 ? v : 0;
+            gapIn1[rowC] = MIN_VALUE;
+            gapIn2[rowC] = v;
+
+            byte code = reversed
+                    ? seq1.codeAt(offset1 + length1 - 1 - i)
+                    : seq1.codeAt(offset1 + i);
+            int[] profile = profiles[code];
+            if (profile == null)
+                profile = profiles[code] = createProfile(scoring, code, seq2, offset2, length2, segLen, reversed);
+
+            // Vertical gaps and diagonal scores (independent for all cells); diagonal cell of the first segment
+            // is the last segment of the previous lane
+            for (k = 0; k < n; ++k)
+                fCur[k] = Math.max(hPrev[k] + gapOpenPenalty, fPrev[k] + gapExtensionPenalty);
+            hCur[0] = Math.max(fCur[0], main[rowP] + profile[0]);
+            for (l = 1; l < LANES; ++l)
+                hCur[l] = Math.max(fCur[l], hPrev[n - LANES + l - 1] + profile[l]);
+            for (k = LANES; k < n; ++k)
+                hCur[k] = Math.max(fCur[k], hPrev[k - LANES] + profile[k]);
+
+            // Horizontal gaps inside each lane
+            eCur[0] = Math.max(main[rowC] + gapOpenPenalty, gapIn1[rowC] + gapExtensionPenalty);
+            hCur[0] = Math.max(hCur[0], eCur[0]);
+            for (l = 1; l < LANES; ++l)
+                eCur[l] = MIN_VALUE;
+            for (k = LANES; k < n; ++k) {
+                e = Math.max(hCur[k - LANES] + gapOpenPenalty, eCur[k - LANES] + gapExtensionPenalty);
+                eCur[k] = e;
+                hCur[k] = Math.max(hCur[k], e);
+            }
+
+            // Lazy-F loop: propagating horizontal gaps between lanes until all values are final
+            for (l = 0; l < LANES; ++l)
+                vE[l] = Math.max(hCur[n - LANES + l] + gapOpenPenalty, eCur[n - LANES + l] + gapExtensionPenalty);
+            shift(vE);
+            s = 0;
+            while (true) {
+                b = s * LANES;
+                boolean changed = false;
+                for (l = 0; l < LANES; ++l)
+                    changed |= vE[l] > eCur[b + l];
+                if (!changed)
+                    break;
+                for (l = 0; l < LANES; ++l) {
+                    e = Math.max(eCur[b + l], vE[l]);
+                    h = Math.max(hCur[b + l], e);
+                    eCur[b + l] = e;
+                    hCur[b + l] = h;
+                    vE[l] = Math.max(h + gapOpenPenalty, e + gapExtensionPenalty);
+                }
+                if (++s == segLen) {
+                    s = 0;
+                    shift(vE);
+                }
+            }
+
+            // Padding cells must not be selected as maximum
+            for (c = length2; c < n; ++c)
+                hCur[(c % segLen) * LANES + c / segLen] = MIN_VALUE;
+
+            System.arraycopy(hCur, 0, main, rowC + 1, n);
+            System.arraycopy(eCur, 0, gapIn1, rowC + 1, n);
+            System.arraycopy(fCur, 0, gapIn2, rowC + 1, n);
+
+            // Searching for max
+            h = Integer.MIN_VALUE;
+            for (k = 0; k < n; ++k)
+                h = Math.max(h, hCur[k]);
+            if (h > maxScore) {
+                maxScore = h;
+                maxI = i;
+                // First cell with maximal score in the row
+                find:
+                for (l = 0; l < LANES; ++l)
+                    for (s = 0; s < segLen; ++s)
+                        if (hCur[s * LANES + l] == h) {
+                            maxJ = l * segLen + s;
+                            break find;
+                        }
+            }
+
+            tmp = hPrev;
+            hPrev = hCur;
+            hCur = tmp;
+            tmp = fPrev;
+            fPrev = fCur;
+            fCur = tmp;
+        }
+
+        return new StripedMatrices(main, gapIn1, gapIn2, stride, segLen, maxI, maxJ, maxScore);
+    }
+
+    private static void shift(int[] vector) {
+        System.arraycopy(vector, 0, vector, 1, LANES - 1);
+        vector[0] = MIN_VALUE;
+    }
+
+    private static <S extends Sequence<S>> int[] createProfile(AffineGapAlignmentScoring<S> scoring, byte code,
+                                                               S seq2, int offset2, int length2,
+                                                               int segLen, boolean reversed) {
+        int[] profile = new int[segLen * LANES];
+        for (int c = 0; c < length2; ++c)
+            profile[(c % segLen) * LANES + c / segLen] = scoring.getScore(code,
+                    reversed ? seq2.codeAt(offset2 + length2 - 1 - c) : seq2.codeAt(offset2 + c));
+        return profile;
+    }
+
+    /**
+     * Three alignment matrices in striped layout
+     */
+    private static final class StripedMatrices {
+        final int[] main, gapIn1, gapIn2;
+        final int stride, segLen;
+        final int maxI, maxJ, maxScore;
+
+        StripedMatrices(int[] main, int[] gapIn1, int[] gapIn2, int stride, int segLen,
+                        int maxI, int maxJ, int maxScore) {
+            this.main = main;
+            this.gapIn1 = gapIn1;
+            this.gapIn2 = gapIn2;
+            this.stride = stride;
+            this.segLen = segLen;
+            this.maxI = maxI;
+            this.maxJ = maxJ;
+            this.maxScore = maxScore;
+        }
+
+        private int index(int row, int col) {
+            if (col == 0)
+                return row * stride;
+            --col;
+            return row * stride + 1 + (col % segLen) * LANES + col / segLen;
+        }
+
+        int main(int row, int col) {
+            return main[index(row, col)];
+        }
+
+        int gapIn1(int row, int col) {
+            return gapIn1[index(row, col)];
+        }
+
+        int gapIn2(int row, int col) {
+            return gapIn2[index(row, col)];
+        }
+    }
+}
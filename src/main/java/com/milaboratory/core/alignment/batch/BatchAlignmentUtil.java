@@ -1,5 +1,9 @@
 package com.milaboratory.core.alignment.batch;
 
+import cc.redberry.pipe.OutputPort;
+import com.milaboratory.core.io.sequence.ReadBatch;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.sequence.NucleotideSequence;
 import com.milaboratory.core.sequence.Sequence;
 
 import java.util.Comparator;
@@ -18,4 +22,17 @@ public class BatchAlignmentUtil {
             return ((HasSequence) object).getSequence();
         }
     };
+
+    /**
+     * Aligns reads from batches (reads are passed to aligner as flyweight views, so no per-read objects except query
+     * sequences are created)
+     *
+     * @param aligner aligner
+     * @param batches pipe of read batches
+     * @return pipe of alignment results
+     */
+    public static <H extends AlignmentHit<? extends NucleotideSequence, ?>> OutputPort<? extends PipedAlignmentResult<H, SingleRead>>
+    alignBatches(PipedBatchAligner<NucleotideSequence, H> aligner, OutputPort<ReadBatch> batches) {
+        return aligner.align(ReadBatch.unbatched(batches), ReadBatch.SEQUENCE_EXTRACTOR);
+    }
 }
@@ -15,17 +15,31 @@
  */
 package com.milaboratory.core.alignment.batch;
 
+import com.milaboratory.core.alignment.AffineGapAlignmentScoring;
 import com.milaboratory.core.alignment.Aligner;
 import com.milaboratory.core.alignment.Alignment;
+import com.milaboratory.core.alignment.AlignmentScoring;
+import com.milaboratory.core.alignment.LinearGapAlignmentScoring;
 import com.milaboratory.core.sequence.Sequence;
+import gnu.trove.set.hash.TLongHashSet;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
- * Simplest implementation of {@link BatchAligner}, which aligns target sequence with all subjects using classical (low
- * performance) alignment algorithms.
+ * Simplest implementation of {@link BatchAligner}, which aligns target sequence with all subjects using classical
+ * alignment algorithms.
+ *
+ * <p>Only score of alignment is calculated for each reference (see {@link Aligner#scoreGlobal(AlignmentScoring,
+ * Sequence, Sequence)}), references that can't get into results (according to upper bound of score estimated from
+ * sequence lengths, minimal scores and scores of already found hits) are skipped, and full alignment with traceback is
+ * built only for hits returned in the result. Optionally, references may be prefiltered by the number of k-mers shared
+ * with the query (see {@link SimpleBatchAlignerParameters#setPrefilterKmerSize(int)}) and scored in parallel for long
+ * queries (see {@link #SimpleBatchAligner(SimpleBatchAlignerParameters, ForkJoinPool, int)}).</p>
  *
  * @param <S> type of sequence
  * @param <P> type of record payload, used to store additional information along with sequence to simplify it's
@@ -33,11 +47,36 @@ import java.util.List;
  */
 public class SimpleBatchAligner<S extends Sequence<S>, P> extends AbstractBatchAligner<S, AlignmentHit<S, P>>
         implements BatchAlignerWithBase<S, P, AlignmentHit<S, P>> {
+    /**
+     * Number of references scored by a single fork-join task
+     */
+    private static final int PARALLEL_CHUNK_SIZE = 16;
+    /**
+     * Score of references excluded from the result
+     */
+    private static final int NO_HIT = Integer.MIN_VALUE;
+
     final SimpleBatchAlignerParameters<S> parameters;
     final List<Record<S, P>> references = new ArrayList<>();
+    final ForkJoinPool pool;
+    final int parallelQueryLength;
 
     public SimpleBatchAligner(SimpleBatchAlignerParameters<S> parameters) {
+        this(parameters, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates aligner which scores references in parallel for queries not shorter than {@code parallelQueryLength}.
+     *
+     * @param parameters          parameters
+     * @param pool                fork-join pool used to score references
+     * @param parallelQueryLength minimal length of query to be processed in parallel
+     */
+    public SimpleBatchAligner(SimpleBatchAlignerParameters<S> parameters,
+                              ForkJoinPool pool, int parallelQueryLength) {
         this.parameters = parameters;
+        this.pool = pool;
+        this.parallelQueryLength = parallelQueryLength;
     }
 
     @Override
@@ -52,25 +91,63 @@ public class SimpleBatchAligner<S extends Sequence<S>, P> extends AbstractBatchA
 
     public AlignmentResult<AlignmentHit<S, P>> align(final S sequence) {
         // Special case
-        if (references.isEmpty())
+        if (references.isEmpty() || parameters.getMaxHits() == 0)
             return new AlignmentResultImpl<>();
 
-        // Building all alignments
-        ArrayList<AlignmentHit<S, P>> alignments = new ArrayList<>(references.size());
-        for (Record<S, P> record : references)
-            alignments.add(alignSingle(record, sequence));
+        final Scorer scorer = new Scorer(sequence);
+        int maxHits = parameters.getMaxHits() < 0 ? references.size() : parameters.getMaxHits();
+        float absoluteMinScore = parameters.getAbsoluteMinScore(),
+                relativeMinScore = parameters.getRelativeMinScore();
+
+        // Scores of all references (parallel mode only)
+        int[] scores = null;
+        if (pool != null && sequence.size() >= parallelQueryLength && references.size() > PARALLEL_CHUNK_SIZE) {
+            scores = new int[references.size()];
+            pool.invoke(new ScoringTask(scorer, scores, 0, scores.length));
+        }
 
-        // Sorting alignments by score
-        Collections.sort(alignments, BatchAlignmentUtil.ALIGNMENT_SCORE_HIT_COMPARATOR);
+        // Selecting top hits (the worst one is at the head of the queue); hits with equal scores are ordered by index,
+        // as in stable sort of all alignments
+        PriorityQueue<Hit> top = new PriorityQueue<>(Math.min(maxHits, references.size()) + 1);
+        float bestScore = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < references.size(); i++) {
+            // Hits with score below this value will be dropped anyway (top score is not less than best score)
+            float cutoff = relativeMinScore >= 0 && bestScore != Float.NEGATIVE_INFINITY
+                    ? Math.max(absoluteMinScore, bestScore * relativeMinScore)
+                    : absoluteMinScore;
+            // Subsequent hits with the same score as the worst of top hits will lose to it
+            int worstScore = top.size() == maxHits ? top.peek().score : NO_HIT;
 
-        // Calculating top score and score cutoff
-        float topScore = alignments.get(0).getAlignment().getScore();
-        float scoreThreshold = Math.max(topScore * parameters.getRelativeMinScore(), parameters.getAbsoluteMinScore());
+            int score;
+            if (scores != null)
+                score = scores[i];
+            else {
+                int bound = scorer.upperBound(references.get(i).sequence);
+                if (bound < cutoff || (worstScore != NO_HIT && bound <= worstScore))
+                    continue;
+                score = scorer.score(references.get(i).sequence);
+            }
+
+            if (score == NO_HIT || score < cutoff || (worstScore != NO_HIT && score <= worstScore))
+                continue;
+
+            top.add(new Hit(score, i));
+            if (top.size() > maxHits)
+                top.poll();
+            bestScore = Math.max(bestScore, score);
+        }
+
+        if (top.isEmpty())
+            return new AlignmentResultImpl<>();
 
-        // Slicing results according to cutoff
-        for (int i = 0; i < alignments.size(); i++)
-            if (i == parameters.getMaxHits() || alignments.get(i).getAlignment().getScore() < scoreThreshold)
-                return new AlignmentResultImpl<>(new ArrayList<>(alignments.subList(0, i)));
+        Hit[] hits = top.toArray(new Hit[top.size()]);
+        Arrays.sort(hits);
+
+        // Building full alignments only for hits passing score threshold
+        float scoreThreshold = Math.max(hits[hits.length - 1].score * relativeMinScore, absoluteMinScore);
+        ArrayList<AlignmentHit<S, P>> alignments = new ArrayList<>(hits.length);
+        for (int i = hits.length - 1; i >= 0 && hits[i].score >= scoreThreshold; --i)
+            alignments.add(alignSingle(references.get(hits[i].index), sequence));
 
         return new AlignmentResultImpl<>(alignments);
     }
@@ -82,6 +159,183 @@ public class SimpleBatchAligner<S extends Sequence<S>, P> extends AbstractBatchA
         return new AlignmentHitImpl<>(alignment, record.payload);
     }
 
+    /**
+     * Calculates scores of alignments of references with the query
+     */
+    private final class Scorer {
+        final S query;
+        final AlignmentScoring<S> scoring;
+        final boolean global;
+        final float absoluteMinScore;
+        /**
+         * Maximal score of single substitution
+         */
+        final int maxSubstitutionScore;
+        /**
+         * Whether upper bound of score can be estimated from sequence lengths (i.e. all gap penalties are non-positive)
+         */
+        final boolean boundable;
+        final int kmerSize, minSharedKmers, bitsPerLetter;
+        final TLongHashSet queryKmers;
+
+        Scorer(S query) {
+            this.query = query;
+            this.scoring = parameters.getScoring();
+            this.global = parameters.isGlobal();
+            this.absoluteMinScore = parameters.getAbsoluteMinScore();
+            this.maxSubstitutionScore = Math.max(scoring.getMaximalMatchScore(), scoring.getMaximalMismatchScore());
+            if (scoring instanceof LinearGapAlignmentScoring)
+                this.boundable = ((LinearGapAlignmentScoring) scoring).getGapPenalty() <= 0;
+            else if (scoring instanceof AffineGapAlignmentScoring)
+                this.boundable = ((AffineGapAlignmentScoring) scoring).getGapOpenPenalty() <= 0
+                        && ((AffineGapAlignmentScoring) scoring).getGapExtensionPenalty() <= 0;
+            else
+                this.boundable = false;
+
+            this.kmerSize = parameters.getPrefilterKmerSize();
+            this.minSharedKmers = parameters.getPrefilterMinSharedKmers();
+            this.bitsPerLetter = 32 - Integer.numberOfLeadingZeros(query.getAlphabet().size() - 1);
+            if (kmerSize > 0) {
+                if (kmerSize * bitsPerLetter > 64)
+                    throw new IllegalArgumentException("K-mer size is too big for alphabet: " + kmerSize);
+                this.queryKmers = new TLongHashSet();
+                KmerIterator it = new KmerIterator(query);
+                while (it.hasNext())
+                    queryKmers.add(it.next());
+            } else
+                this.queryKmers = null;
+        }
+
+        /**
+         * Returns upper bound of alignment score of the reference
+         */
+        int upperBound(S reference) {
+            if (!boundable)
+                return Integer.MAX_VALUE;
+            int l1 = reference.size(), l2 = query.size(), min = Math.min(l1, l2);
+            if (!global)
+                return min * Math.max(maxSubstitutionScore, 0);
+            // Maximal score of alignment with m substitutions is linear in m for m < min,
+            // so checking the ends of the range is enough
+            return Math.max(boundWithSubstitutions(0, l1, l2),
+                    Math.max(boundWithSubstitutions(Math.max(min - 1, 0), l1, l2),
+                            boundWithSubstitutions(min, l1, l2)));
+        }
+
+        private int boundWithSubstitutions(int m, int l1, int l2) {
+            long gaps = l1 + l2 - 2 * m, gapScore;
+            if (gaps == 0)
+                gapScore = 0;
+            else if (scoring instanceof LinearGapAlignmentScoring)
+                gapScore = gaps * ((LinearGapAlignmentScoring) scoring).getGapPenalty();
+            else {
+                int open = ((AffineGapAlignmentScoring) scoring).getGapOpenPenalty(),
+                        extension = ((AffineGapAlignmentScoring) scoring).getGapExtensionPenalty();
+                gapScore = open <= extension
+                        ? open + (gaps - 1) * extension // single gap
+                        : gaps * open; // many gaps of length 1
+            }
+            return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE,
+                    (long) m * maxSubstitutionScore + gapScore));
+        }
+
+        /**
+         * Returns alignment score of the reference, or {@link #NO_HIT} if reference is filtered out or has no local
+         * alignment with the query
+         */
+        int score(S reference) {
+            if (queryKmers != null && !passesPrefilter(reference))
+                return NO_HIT;
+            if (global)
+                return Aligner.scoreGlobal(scoring, reference, query);
+            int score = Aligner.scoreLocal(scoring, reference, query);
+            return score <= 0 ? NO_HIT : score;
+        }
+
+        private boolean passesPrefilter(S reference) {
+            int shared = 0;
+            KmerIterator it = new KmerIterator(reference);
+            while (it.hasNext())
+                if (queryKmers.contains(it.next()) && ++shared >= minSharedKmers)
+                    return true;
+            return shared >= minSharedKmers;
+        }
+
+        /**
+         * Iterates over encoded k-mers of the sequence
+         */
+        private final class KmerIterator {
+            final S sequence;
+            final long mask = kmerSize * bitsPerLetter == 64 ? -1L : (1L << (kmerSize * bitsPerLetter)) - 1;
+            long kmer = 0;
+            int position = 0;
+
+            KmerIterator(S sequence) {
+                this.sequence = sequence;
+                for (; position < kmerSize - 1 && position < sequence.size(); ++position)
+                    kmer = (kmer << bitsPerLetter) | sequence.codeAt(position);
+            }
+
+            boolean hasNext() {
+                return position < sequence.size();
+            }
+
+            long next() {
+                kmer = ((kmer << bitsPerLetter) | sequence.codeAt(position++)) & mask;
+                return kmer;
+            }
+        }
+    }
+
+    /**
+     * Scores range of references, skipping references with upper bound of score below absolute minimal score
+     */
+    private final class ScoringTask extends RecursiveAction {
+        final Scorer scorer;
+        final int[] scores;
+        final int from, to;
+
+        ScoringTask(Scorer scorer, int[] scores, int from, int to) {
+            this.scorer = scorer;
+            this.scores = scores;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > PARALLEL_CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new ScoringTask(scorer, scores, from, mid), new ScoringTask(scorer, scores, mid, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                S reference = references.get(i).sequence;
+                scores[i] = scorer.upperBound(reference) < scorer.absoluteMinScore
+                        ? NO_HIT
+                        : scorer.score(reference);
+            }
+        }
+    }
+
+    /**
+     * Score of reference; natural order is from the worst hit to the best one
+     */
+    private static final class Hit implements Comparable<Hit> {
+        final int score, index;
+
+        Hit(int score, int index) {
+            this.score = score;
+            this.index = index;
+        }
+
+        @Override
+        public int compareTo(Hit o) {
+            int c = Integer.compare(score, o.score);
+            return c != 0 ? c : Integer.compare(o.index, index);
+        }
+    }
+
     private static class Record<S extends Sequence<S>, P> {
         final S sequence;
         final P payload;
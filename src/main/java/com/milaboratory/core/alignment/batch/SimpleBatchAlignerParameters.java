@@ -28,6 +28,7 @@ public class SimpleBatchAlignerParameters<S extends Sequence<S>> {
     private float relativeMinScore, absoluteMinScore;
     private boolean global;
     private AlignmentScoring<S> scoring;
+    private int prefilterKmerSize = 0, prefilterMinSharedKmers = 1;
 
     public SimpleBatchAlignerParameters(int maxHits, float relativeMinScore, float absoluteMinScore,
                                         boolean global, AlignmentScoring<S> scoring) {
@@ -38,6 +39,17 @@ public class SimpleBatchAlignerParameters<S extends Sequence<S>> {
         this.scoring = scoring;
     }
 
+    /**
+     * Creates parameters with k-mer prefilter (see {@link #setPrefilterKmerSize(int)}).
+     */
+    public SimpleBatchAlignerParameters(int maxHits, float relativeMinScore, float absoluteMinScore,
+                                        boolean global, AlignmentScoring<S> scoring,
+                                        int prefilterKmerSize, int prefilterMinSharedKmers) {
+        this(maxHits, relativeMinScore, absoluteMinScore, global, scoring);
+        this.prefilterKmerSize = prefilterKmerSize;
+        this.prefilterMinSharedKmers = prefilterMinSharedKmers;
+    }
+
     public boolean isGlobal() {
         return global;
     }
@@ -77,4 +89,27 @@ public class SimpleBatchAlignerParameters<S extends Sequence<S>> {
     public void setAbsoluteMinScore(float absoluteMinScore) {
         this.absoluteMinScore = absoluteMinScore;
     }
+
+    public int getPrefilterKmerSize() {
+        return prefilterKmerSize;
+    }
+
+    /**
+     * Sets size of k-mers used to prefilter references: references sharing less than {@link
+     * #getPrefilterMinSharedKmers()} k-mers with the query are not aligned at all. Prefilter is heuristic (it may drop
+     * references with acceptable alignment score, e.g. highly diverged ones), so it is disabled by default ({@code 0}).
+     *
+     * @param prefilterKmerSize k-mer size, or {@code 0} to disable prefilter
+     */
+    public void setPrefilterKmerSize(int prefilterKmerSize) {
+        this.prefilterKmerSize = prefilterKmerSize;
+    }
+
+    public int getPrefilterMinSharedKmers() {
+        return prefilterMinSharedKmers;
+    }
+
+    public void setPrefilterMinSharedKmers(int prefilterMinSharedKmers) {
+        this.prefilterMinSharedKmers = prefilterMinSharedKmers;
+    }
 }
@@ -24,6 +24,7 @@ import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static java.lang.Math.*;
 import static java.util.Arrays.copyOf;
@@ -34,7 +35,8 @@ import static java.util.Arrays.copyOf;
  *
  * <p>{@link #align(com.milaboratory.core.sequence.NucleotideSequence, int, int)} and {@link
  * #align(com.milaboratory.core.sequence.NucleotideSequence)} methods of this object are thread-safe and can
- * be concurrently used by several threads if no new sequences added after its first invocation.</p>
+ * be concurrently used by several threads, also while new sequences are added with {@link
+ * #addReference(NucleotideSequence, int, int)}.</p>
  *
  * <p><b>Algorithm inspired by:</b> <i>Liao Y et al.</i> The Subread aligner: fast, accurate and scalable read mapping
  * by seed-and-vote. <i>Nucleic Acids Res. 2013 May 1;41(10):e108. doi: 10.1093/nar/gkt214. Epub 2013 Apr 4.</i></p>
@@ -47,6 +49,8 @@ public final class KMapper implements java.io.Serializable {
                                    < --------- 32 bits --------- >
         Base record format:   int  |.... ID ....|.... OFFSET ....|
                                                  < bitsForOffset >
+
+        Id with all bits set is reserved to mark empty slots at the end of kMer record arrays.
      */
 
     /**
@@ -65,13 +69,9 @@ public final class KMapper implements java.io.Serializable {
      */
     private final int kValue;
     /**
-     * Base of records for individual kMers
-     */
-    private final int[][] base;
-    /**
-     * Number of records for each individual kMer (used only for building of base)
+     * Base of records for individual kMers (shared with mappers created by setFloating*Bound methods)
      */
-    private final int[] lengths;
+    private final Base base;
     /**
      * Minimal absolute score value
      */
@@ -110,17 +110,6 @@ public final class KMapper implements java.io.Serializable {
      */
     private final int minDistance, maxDistance;
 
-    /*                  Utility fields                   */
-    private boolean built = false;
-    private int[] refFrom = new int[10], refLength = new int[10];
-    private int maxReferenceLength = 0, minReferenceLength = Integer.MAX_VALUE;
-    private int sequencesInBase = 0;
-
-    /**
-     * Length = sequencesInBase, all bits set
-     */
-    private BitArray allFilter;
-
     /**
      * Creates new KMer mapper.
      *
@@ -150,9 +139,7 @@ public final class KMapper implements java.io.Serializable {
         this.offsetMask = 0xFFFFFFFF >>> (32 - bitsForOffset);
 
         //Initialize base
-        int maxNumberOfKmers = 1 << (kValue * 2);
-        base = new int[maxNumberOfKmers][10];
-        lengths = new int[maxNumberOfKmers];
+        base = new Base(1 << (kValue * 2));
 
         //Parameters
         this.minDistance = minDistance;
@@ -171,6 +158,14 @@ public final class KMapper implements java.io.Serializable {
         //this.random = new RandomDataImpl(new Well19937c(12364785L));
     }
 
+    /**
+     * Creates mapper from the state of another mapper.
+     *
+     * @deprecated base is now stored in a structure allowing concurrent addition of references, so arrays passed to
+     * this constructor are copied; use {@link #KMapper(int, int, int, float, float, int, float, float, float, int,
+     * boolean, boolean)} and {@link #addReference(NucleotideSequence, int, int)} instead
+     */
+    @Deprecated
     public KMapper(int bitsForOffset,
                    int offsetMask,
                    int kValue,
@@ -182,11 +177,26 @@ public final class KMapper implements java.io.Serializable {
                    int minDistance, int maxDistance,
                    boolean built, int[] refFrom, int[] refLength,
                    int maxReferenceLength, int minReferenceLength, int sequencesInBase, BitArray allFilter) {
+        this(bitsForOffset, offsetMask, kValue,
+                new Base(base, lengths, new Snapshot(sequencesInBase, copyOf(refFrom, sequencesInBase),
+                        copyOf(refLength, sequencesInBase), minReferenceLength, maxReferenceLength)),
+                absoluteMinScore, relativeMinScore, matchScore, mismatchPenalty, offsetShiftPenalty,
+                minAlignmentLength, maxIndels, floatingLeftBound, floatingRightBound, minDistance, maxDistance);
+    }
+
+    private KMapper(int bitsForOffset,
+                   int offsetMask,
+                   int kValue,
+                   Base base,
+                   float absoluteMinScore,  float relativeMinScore,
+                   float matchScore, float mismatchPenalty, float offsetShiftPenalty,
+                   int minAlignmentLength, int maxIndels,
+                   boolean floatingLeftBound, boolean floatingRightBound,
+                   int minDistance, int maxDistance) {
         this.bitsForOffset = bitsForOffset;
         this.offsetMask = offsetMask;
         this.kValue = kValue;
         this.base = base;
-        this.lengths = lengths;
         this.absoluteMinScore = absoluteMinScore;
         this.relativeMinScore = relativeMinScore;
         this.matchScore = matchScore;
@@ -198,13 +208,6 @@ public final class KMapper implements java.io.Serializable {
         this.floatingRightBound = floatingRightBound;
         this.minDistance = minDistance;
         this.maxDistance = maxDistance;
-        this.built = built;
-        this.refFrom = refFrom;
-        this.refLength = refLength;
-        this.maxReferenceLength = maxReferenceLength;
-        this.minReferenceLength = minReferenceLength;
-        this.sequencesInBase = sequencesInBase;
-        this.allFilter = allFilter;
     }
 
     /**
@@ -224,17 +227,15 @@ public final class KMapper implements java.io.Serializable {
     }
 
     KMapper setFloatingLeftBound(boolean floatingLeftBound) {
-        ensureBuilt();
-        return new KMapper(bitsForOffset, offsetMask, kValue, base, lengths, absoluteMinScore, relativeMinScore, matchScore,
+        return new KMapper(bitsForOffset, offsetMask, kValue, base, absoluteMinScore, relativeMinScore, matchScore,
                 mismatchPenalty, offsetShiftPenalty, minAlignmentLength, maxIndels, floatingLeftBound, floatingRightBound,
-                minDistance, maxDistance, built, refFrom, refLength, maxReferenceLength, minReferenceLength, sequencesInBase, allFilter);
+                minDistance, maxDistance);
     }
 
     KMapper setFloatingRightBound(boolean floatingRightBound) {
-        ensureBuilt();
-        return new KMapper(bitsForOffset, offsetMask, kValue, base, lengths, absoluteMinScore, relativeMinScore, matchScore,
+        return new KMapper(bitsForOffset, offsetMask, kValue, base, absoluteMinScore, relativeMinScore, matchScore,
                 mismatchPenalty, offsetShiftPenalty, minAlignmentLength, maxIndels, floatingLeftBound, floatingRightBound,
-                minDistance, maxDistance, built, refFrom, refLength, maxReferenceLength, minReferenceLength, sequencesInBase, allFilter);
+                minDistance, maxDistance);
     }
 
     /**
@@ -289,16 +290,19 @@ public final class KMapper implements java.io.Serializable {
     }
 
     /**
-     * Encodes and adds individual kMer to the base.
+     * Encodes and adds individual kMer to the base (invoked under lock on base).
      */
     private void addKmer(int kmer, int id, int offset) {
-        if (base[kmer].length == lengths[kmer])
-            base[kmer] = copyOf(base[kmer], base[kmer].length * 3 / 2 + 1);
-
-        if ((offset & offsetMask) != offset)
-            throw new IllegalArgumentException("Record is too long.");
+        int[] records = base.records.get(kmer);
+        int length = base.lengths[kmer];
+        if (records == null || records.length == length) {
+            records = records == null ? new int[10] : copyOf(records, length * 3 / 2 + 1);
+            Arrays.fill(records, length, records.length, -1);
+            base.records.set(kmer, records);
+        }
 
-        base[kmer][lengths[kmer]++] = (id << bitsForOffset) | (offset);
+        records[length] = (id << bitsForOffset) | (offset);
+        base.lengths[kmer] = length + 1;
     }
 
     /**
@@ -318,28 +322,54 @@ public final class KMapper implements java.io.Serializable {
      * procedure). The offset returned by alignment procedure will be in global sequence coordinates, relative to the
      * beginning of the sequence (not to the specified offset).</p>
      *
+     * <p>This method can be invoked concurrently with {@link #align(NucleotideSequence, int, int, BitArray)}:
+     * alignment is never blocked by addition of references, and sees all references which addition was completed
+     * before alignment started. Concurrent invocations of this method are serialized.</p>
+     *
      * @param sequence sequence
      * @param offset   offset of subsequence to be indexed
      * @param length   length of subsequence to be indexed
      * @return index assigned to the sequence
      */
     public int addReference(NucleotideSequence sequence, int offset, int length) {
-        //Resetting built flag
-        built = false;
+        synchronized (base) {
+            Snapshot snapshot = base.snapshot;
+
+            // All-ones id is reserved for empty slots
+            if (snapshot.sequencesInBase >= (0xFFFFFFFF >>> bitsForOffset))
+                throw new IllegalArgumentException("Maximum number of records reached.");
+
+            // Checked before any record is written, so failed addition leaves base unchanged
+            if (((offset + length) & offsetMask) != offset + length)
+                throw new IllegalArgumentException("Record is too long.");
+
+            //Next id.
+            int id = snapshot.sequencesInBase;
+            int[] refFrom = snapshot.refFrom, refLength = snapshot.refLength;
+            if (refLength.length == id) {
+                refLength = copyOf(refLength, id * 3 / 2 + 1);
+                refFrom = copyOf(refFrom, id * 3 / 2 + 1);
+            }
+            refFrom[id] = offset;
+            refLength[id] = sequence.size();
 
-        //Next id.
-        if (refLength.length == sequencesInBase) {
-            refLength = copyOf(refLength, sequencesInBase * 3 / 2 + 1);
-            refFrom = copyOf(refFrom, sequencesInBase * 3 / 2 + 1);
-        }
-        int id = sequencesInBase++;
-        refFrom[id] = offset;
-        refLength[id] = sequence.size();
+            //Calculating min and max reference sequences lengths
+            int maxReferenceLength = max(snapshot.maxReferenceLength, sequence.size());
+            int minReferenceLength = Math.min(snapshot.minReferenceLength, sequence.size());
+
+            addKmers(sequence, offset, length, id);
 
-        //Calculating min and max reference sequences lengths
-        maxReferenceLength = max(maxReferenceLength, sequence.size());
-        minReferenceLength = Math.min(minReferenceLength, sequence.size());
+            // Publishing new reference to readers
+            base.snapshot = new Snapshot(id + 1, refFrom, refLength, minReferenceLength, maxReferenceLength);
+
+            return id;
+        }
+    }
 
+    /**
+     * Adds all kMers of the reference to the base (invoked under lock on base).
+     */
+    private void addKmers(NucleotideSequence sequence, int offset, int length, int id) {
         int kmer = 0;
         int kmerMask = 0xFFFFFFFF >>> (32 - kValue * 2);
         int tMask = 0xFFFFFFFF >>> (34 - kValue * 2);
@@ -360,27 +390,6 @@ public final class KMapper implements java.io.Serializable {
 
             addKmer(kmer, id, i + offset);
         }
-
-        return id;
-    }
-
-    /**
-     * Builds additional data fields used by this mapper. Invoked automatically if this mapper is not yet built by
-     * {@link #align(com.milaboratory.core.sequence.NucleotideSequence, int, int)} method.
-     */
-    void ensureBuilt() {
-        if (!built)
-            synchronized (this) {
-                if (!built) {
-                    for (int i = 0; i < base.length; ++i)
-                        base[i] = copyOf(base[i], lengths[i]);
-                    refLength = copyOf(refLength, sequencesInBase);
-                    refFrom = copyOf(refFrom, sequencesInBase);
-                    allFilter = new BitArray(sequencesInBase);
-                    allFilter.setAll();
-                    built = true;
-                }
-            }
     }
 
     /**
@@ -406,8 +415,8 @@ public final class KMapper implements java.io.Serializable {
     /**
      * Performs an alignment.
      *
-     * <p>This methods is thread-safe and can be concurrently used by several threads if no new sequences added after
-     * its first invocation.</p>
+     * <p>This methods is thread-safe and can be concurrently used by several threads, including concurrent invocations
+     * of {@link #addReference(NucleotideSequence, int, int)}.</p>
      *
      * @param sequence target sequence
      * @return a list of hits found in the target sequence
@@ -419,8 +428,8 @@ public final class KMapper implements java.io.Serializable {
     /**
      * Performs an alignment for a part of the target sequence.
      *
-     * <p>This methods is thread-safe and can be concurrently used by several threads if no new sequences added after
-     * its first invocation.</p>
+     * <p>This methods is thread-safe and can be concurrently used by several threads, including concurrent invocations
+     * of {@link #addReference(NucleotideSequence, int, int)}.</p>
      *
      * @param sequence target sequence
      * @param from     first nucleotide to align (inclusive)
@@ -434,8 +443,8 @@ public final class KMapper implements java.io.Serializable {
     /**
      * Performs an alignment for a part of the target sequence.
      *
-     * <p>This methods is thread-safe and can be concurrently used by several threads if no new sequences added after
-     * its first invocation.</p>
+     * <p>This methods is thread-safe and can be concurrently used by several threads, including concurrent invocations
+     * of {@link #addReference(NucleotideSequence, int, int)}.</p>
      *
      * @param sequence target sequence
      * @param from     first nucleotide to align (inclusive)
@@ -444,10 +453,11 @@ public final class KMapper implements java.io.Serializable {
      * @return a list of hits found in the target sequence
      */
     public KMappingResult align(NucleotideSequence sequence, int from, int to, BitArray filter) {
-        ensureBuilt();
+        // All records of references added after this point are ignored
+        final Snapshot snapshot = base.snapshot;
 
         if (filter == null)
-            filter = allFilter;
+            filter = snapshot.allFilter;
 
         ArrayList<KMappingHit> result = new ArrayList<>();
 
@@ -469,7 +479,7 @@ public final class KMapper implements java.io.Serializable {
         int[] seeds = new int[seedPositions.size()];
 
         int kmer;
-        IntArrayList[] candidates = new IntArrayList[sequencesInBase];
+        IntArrayList[] candidates = new IntArrayList[snapshot.sequencesInBase];
 
         //Building candidates arrays (seed)
         int id, offset;
@@ -479,14 +489,19 @@ public final class KMapper implements java.io.Serializable {
                 kmer = kmer << 2 | sequence.codeAt(j);
 
             seeds[i] = kmer;
-            if (base[kmer].length == 0)
+            int[] records = base.records.get(kmer);
+            if (records == null)
                 continue;
 
-            for (int record : base[kmer]) {
+            for (int record : records) {
                 id = record >>> bitsForOffset;
 
-                // Apply filter
-                if (!filter.get(id))
+                // Records are sorted by id, the rest are not yet published or empty
+                if (id >= snapshot.sequencesInBase)
+                    break;
+
+                // Apply filter (references added after creation of the filter are not selected)
+                if (id >= filter.size() || !filter.get(id))
                     continue;
 
                 offset = record & offsetMask;
@@ -514,7 +529,7 @@ public final class KMapper implements java.io.Serializable {
 
                 //Theoretical range of target and reference sequence intersection
                 cFrom = max(info.offset, from);
-                cTo = min(info.offset + refLength[i], to) - kValue;
+                cTo = min(info.offset + snapshot.refLength[i], to) - kValue;
 
                 //Calculating number of seeds in this range
                 siTo = siFrom = -1;
@@ -754,8 +769,15 @@ public final class KMapper implements java.io.Serializable {
      */
     public SummaryStatistics getRecordSizeSummaryStatistics() {
         SummaryStatistics ss = new SummaryStatistics();
-        for (int len : lengths)
+        Snapshot snapshot = base.snapshot;
+        for (int kmer = 0; kmer < base.records.length(); ++kmer) {
+            int[] records = base.records.get(kmer);
+            int len = 0;
+            if (records != null)
+                while (len < records.length && (records[len] >>> bitsForOffset) < snapshot.sequencesInBase)
+                    ++len;
             ss.addValue(len);
+        }
         return ss;
     }
 
@@ -765,6 +787,72 @@ public final class KMapper implements java.io.Serializable {
         return "K=" + kValue + "; Avr=" + ss.getMean() + "; SD=" + ss.getStandardDeviation();
     }
 
+    /**
+     * Base of records for individual kMers.
+     *
+     * <p>Records of each kMer are stored in an append-only array: records are written only past the end of the
+     * published part, and array is replaced by its extended copy when it is full, so readers can use published part
+     * without any synchronization. Empty slots are filled with -1 (all-ones reference id), so readers stop at the
+     * first record with id not less than number of references in their {@link Snapshot}.</p>
+     */
+    private static final class Base implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        final AtomicReferenceArray<int[]> records;
+        /**
+         * Number of records for each individual kMer (guarded by this)
+         */
+        final int[] lengths;
+        /**
+         * Last published state of the base
+         */
+        volatile Snapshot snapshot = new Snapshot(0, new int[10], new int[10], Integer.MAX_VALUE, 0);
+
+        Base(int maxNumberOfKmers) {
+            this.records = new AtomicReferenceArray<>(maxNumberOfKmers);
+            this.lengths = new int[maxNumberOfKmers];
+        }
+
+        Base(int[][] records, int[] lengths, Snapshot snapshot) {
+            this.records = new AtomicReferenceArray<>(records.length);
+            this.lengths = lengths.clone();
+            for (int kmer = 0; kmer < records.length; ++kmer)
+                if (lengths[kmer] != 0)
+                    this.records.set(kmer, copyOf(records[kmer], lengths[kmer]));
+            this.snapshot = snapshot;
+        }
+
+        private void writeObject(java.io.ObjectOutputStream out) throws java.io.IOException {
+            // Records and lengths must be consistent with each other and with the snapshot
+            synchronized (this) {
+                out.defaultWriteObject();
+            }
+        }
+    }
+
+    /**
+     * Immutable state of the base, used by readers
+     */
+    private static final class Snapshot implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        final int sequencesInBase;
+        final int[] refFrom, refLength;
+        final int minReferenceLength, maxReferenceLength;
+        /**
+         * Length = sequencesInBase, all bits set
+         */
+        final BitArray allFilter;
+
+        Snapshot(int sequencesInBase, int[] refFrom, int[] refLength, int minReferenceLength, int maxReferenceLength) {
+            this.sequencesInBase = sequencesInBase;
+            this.refFrom = refFrom;
+            this.refLength = refLength;
+            this.minReferenceLength = minReferenceLength;
+            this.maxReferenceLength = maxReferenceLength;
+            this.allFilter = new BitArray(sequencesInBase);
+            this.allFilter.setAll();
+        }
+    }
+
     /**
      * Used to store preliminary information about hit.
      */
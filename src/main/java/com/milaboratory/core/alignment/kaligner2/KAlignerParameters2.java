@@ -99,6 +99,12 @@ public final class KAlignerParameters2 implements AbstractKAlignerParameters, Cl
      */
     private int mapperMinSeedsDistance, mapperMaxSeedsDistance;
 
+    /**
+     * If > 0, only (w, n)-minimizers (nMer with the minimal hash among mapperMinimizerWindow consecutive nMers) are
+     * indexed and used as seeds instead of all positions (0 = disabled, all positions are indexed)
+     */
+    private int mapperMinimizerWindow;
+
     /* MAPPER PARAMETERS END */
 
     /* ALIGNER PARAMETERS BEGIN */
@@ -444,6 +450,23 @@ public final class KAlignerParameters2 implements AbstractKAlignerParameters, Cl
         return this;
     }
 
+    /**
+     * If > 0, only (w, n)-minimizers (nMer with the minimal hash among mapperMinimizerWindow consecutive nMers) are
+     * indexed and used as seeds instead of all positions (0 = disabled, all positions are indexed)
+     */
+    public int getMapperMinimizerWindow() {
+        return mapperMinimizerWindow;
+    }
+
+    /**
+     * If > 0, only (w, n)-minimizers (nMer with the minimal hash among mapperMinimizerWindow consecutive nMers) are
+     * indexed and used as seeds instead of all positions (0 = disabled, all positions are indexed)
+     */
+    public KAlignerParameters2 setMapperMinimizerWindow(int mapperMinimizerWindow) {
+        this.mapperMinimizerWindow = mapperMinimizerWindow;
+        return this;
+    }
+
     /**
      * Max allowed clusters
      */
@@ -659,6 +682,7 @@ public final class KAlignerParameters2 implements AbstractKAlignerParameters, Cl
         if (Float.compare(that.mapperRelativeMinScore, mapperRelativeMinScore) != 0) return false;
         if (mapperMinSeedsDistance != that.mapperMinSeedsDistance) return false;
         if (mapperMaxSeedsDistance != that.mapperMaxSeedsDistance) return false;
+        if (mapperMinimizerWindow != that.mapperMinimizerWindow) return false;
         if (alignmentStopPenalty != that.alignmentStopPenalty) return false;
         if (absoluteMinScore != that.absoluteMinScore) return false;
         if (Float.compare(that.relativeMinScore, relativeMinScore) != 0) return false;
@@ -683,6 +707,7 @@ public final class KAlignerParameters2 implements AbstractKAlignerParameters, Cl
         result = 31 * result + (mapperRelativeMinScore != +0.0f ? Float.floatToIntBits(mapperRelativeMinScore) : 0);
         result = 31 * result + mapperMinSeedsDistance;
         result = 31 * result + mapperMaxSeedsDistance;
+        result = 31 * result + mapperMinimizerWindow;
         result = 31 * result + alignmentStopPenalty;
         result = 31 * result + absoluteMinScore;
         result = 31 * result + (relativeMinScore != +0.0f ? Float.floatToIntBits(relativeMinScore) : 0);
@@ -24,10 +24,14 @@ import com.milaboratory.util.RandomUtil;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 
+import java.io.*;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import static com.milaboratory.core.alignment.kaligner2.KAligner2Statistics.ClusterTrimmingType.*;
 import static com.milaboratory.core.alignment.kaligner2.OffsetPacksAccumulator.*;
@@ -41,7 +45,8 @@ import static java.util.Arrays.copyOf;
  *
  * <p>{@link #align(NucleotideSequence, int, int)} and {@link
  * #align(NucleotideSequence)} methods of this object are thread-safe and can
- * be concurrently used by several threads if no new sequences added after its first invocation.</p>
+ * be concurrently used by several threads, also while new sequences are added with {@link
+ * #addReference(NucleotideSequence)}.</p>
  *
  * <p><b>Algorithm inspired by:</b> <i>Liao Y et al.</i> The Subread aligner: fast, accurate and scalable read mapping
  * by seed-and-vote. <i>Nucleic Acids Res. 2013 May 1;41(10):e108. doi: 10.1093/nar/gkt214. Epub 2013 Apr 4.</i></p>
@@ -54,6 +59,15 @@ public final class KMapper2 implements java.io.Serializable {
                                    < --------- 32 bits --------- >
         Base record format:   int  |.... ID ....|.... OFFSET ....|
                                                  < bitsForOffset >
+
+        Records stored in the base use the same layout, but with bitsForId bits for reference id (see addReference).
+        Id with all bits set is reserved to mark empty slots at the end of kMer record arrays.
+
+        Index file format (big-endian ints):
+            header:   MAGIC, VERSION, nValue, kValue, kMersPerPosition, minimizerWindow, bitsForId, sequencesInBase,
+                      minReferenceLength, maxReferenceLength, holesMaskCount
+            counts:   holesMaskCount ints, number of records for each holesMask (-1 if mask is not used)
+            sections: for each used holesMask: kMerCount + 1 offsets, then records
      */
 
     /**
@@ -68,6 +82,18 @@ public final class KMapper2 implements java.io.Serializable {
      * Mask to extract offset value (= 0xFFFFFFFF >>> bitsForIndex)
      */
     private static final int offsetMask = 0xFFFFFFFF >>> bitsForIndex;
+    /**
+     * Maximal number of bits in base record for reference id
+     */
+    private static final int maxBitsForId = 24;
+    /**
+     * Index file magic ("KMI2")
+     */
+    private static final int INDEX_MAGIC = 0x4B4D4932;
+    /**
+     * Index file format version
+     */
+    private static final int INDEX_VERSION = 2;
 
     /*           Parameters             */
 
@@ -84,15 +110,14 @@ public final class KMapper2 implements java.io.Serializable {
      */
     private final int kMersPerPosition;
     /**
-     * Base of records for individual kMers
+     * Number of consecutive nMers in a window for minimizer-based seeding (only (w, n)-minimizers of references are
+     * indexed, and minimizers of query are used as seeds); 0 - index all nMers and use random seed positions
      */
-    //base[combinationMask][kMer][seeds]
-    private final int[][][] base;
+    private final int minimizerWindow;
     /**
-     * Number of records for each individual kMer (used only for building of base)
+     * Base of records for individual kMers (shared with mappers created by setFloating*Bound methods)
      */
-    //length[combinationMask][kMer]
-    private final int[][] lengths;
+    private final Base base;
     /**
      * Minimal absolute score value
      */
@@ -138,22 +163,14 @@ public final class KMapper2 implements java.io.Serializable {
     private final int minDistance, maxDistance;
 
     /*                  Utility fields                   */
-    private volatile boolean built = false;
-    private int maxReferenceLength = 0, minReferenceLength = Integer.MAX_VALUE;
-    private int sequencesInBase = 0;
-
-    /**
-     * Length = sequencesInBase, all bits set
-     */
-    private BitArray allFilter;
 
     /**
      * Cache to prevent excessive memory allocation
      */
-    final ThreadLocal<ThreadLocalCache> memoryCache = new ThreadLocal<ThreadLocalCache>() {
+    final transient ThreadLocal<ThreadLocalCache> memoryCache = new ThreadLocal<ThreadLocalCache>() {
         @Override
         protected ThreadLocalCache initialValue() {
-            return new ThreadLocalCache(sequencesInBase, slotCount, maxClusterIndels, matchScore, mismatchScore, offsetShiftScore, absoluteMinClusterScore);
+            return new ThreadLocalCache(base.snapshot.sequencesInBase, slotCount, maxClusterIndels, matchScore, mismatchScore, offsetShiftScore, absoluteMinClusterScore);
         }
     };
     /**
@@ -209,29 +226,52 @@ public final class KMapper2 implements java.io.Serializable {
                     int slotCount, int maxClusters, int maxClusterIndels, int kMersPerPosition,
                     boolean floatingLeftBound, boolean floatingRightBound,
                     KAligner2Statistics stat) {
+        this(nValue, kValue, minDistance, maxDistance, absoluteMinClusterScore, extraClusterScore, absoluteMinScore,
+                relativeMinScore, matchScore, mismatchScore, offsetShiftScore, slotCount, maxClusters, maxClusterIndels,
+                kMersPerPosition, 0, floatingLeftBound, floatingRightBound, stat);
+    }
+
+    /**
+     * Creates new KMer mapper.
+     *
+     * @param nValue                  nucleotides in kMer (value of k)
+     * @param minDistance             minimal distance between kMer seed positions in target sequence
+     * @param maxDistance             maximal distance between kMer seed positions in target sequence
+     * @param absoluteMinClusterScore minimal score
+     * @param relativeMinScore        maximal ratio between best hit score and other hits scores in returned result
+     * @param matchScore              reward for match (must be > 0)
+     * @param mismatchScore           penalty for mismatch (must be < 0)
+     * @param minimizerWindow         number of nMers in a window for minimizer-based seeding (0 to index all nMers
+     *                                and use random seed positions)
+     * @param floatingLeftBound       true if left bound of alignment could be floating
+     * @param floatingRightBound      true if right bound of alignment could be floating
+     * @param stat                    stat
+     */
+    public KMapper2(int nValue, int kValue,
+                    int minDistance, int maxDistance,
+                    int absoluteMinClusterScore, int extraClusterScore,
+                    int absoluteMinScore, float relativeMinScore,
+                    int matchScore, int mismatchScore, int offsetShiftScore,
+                    int slotCount, int maxClusters, int maxClusterIndels, int kMersPerPosition,
+                    int minimizerWindow, boolean floatingLeftBound, boolean floatingRightBound,
+                    KAligner2Statistics stat) {
         if (nValue - kValue <= 2)
             throw new IllegalArgumentException("Wrong combination of K and N values. K = " + kValue + " N = " + nValue + ".");
 
         this.nValue = nValue;
         this.kValue = kValue;
 
-        // TODO lazy
-        int maxHolesMask = kValue == 0 ? 1 : (((0xFFFFFFFF >>> (32 - kValue)) << (nValue - kValue)) + 1);
-        base = new int[maxHolesMask][][];
-        lengths = new int[maxHolesMask][];
-
         if ((kValue == 0 && kMersPerPosition != 1)
                 || (kValue != 0 && kMersPerPosition > nValue / kValue))
             throw new IllegalArgumentException("Wrong combination of nValue, kValue and kMersPerPosition.");
 
         this.kMersPerPosition = kMersPerPosition;
 
-        IntCombinations combinations = new IntCombinations(nValue, kValue);
-        for (int[] combination : CUtils.it(combinations)) {
-            int holesMask = getCombinationMask(combination);
-            base[holesMask] = new int[1 << ((nValue - kValue) * 2)][];
-            lengths[holesMask] = new int[1 << ((nValue - kValue) * 2)];
-        }
+        if (minimizerWindow < 0 || (minimizerWindow > 0 && nValue > 16))
+            throw new IllegalArgumentException("Wrong minimizer window or nValue > 16 for minimizer-based seeding.");
+
+        this.minimizerWindow = minimizerWindow;
+        this.base = new Base(nValue, kValue, null);
 
         //Parameters
         this.minDistance = minDistance;
@@ -251,22 +291,20 @@ public final class KMapper2 implements java.io.Serializable {
         this.stat = stat;
     }
 
-    private KMapper2(int nValue, int kValue, int kMersPerPosition,
-                     int[][][] base, int[][] lengths,
+    private KMapper2(int nValue, int kValue, int kMersPerPosition, int minimizerWindow,
+                     Base base,
                      int absoluteMinClusterScore, int extraClusterScore,
                      int matchScore, int mismatchScore, int offsetShiftScore,
                      int slotCount, int maxClusterIndels,
                      int maxClusters, int absoluteMinScore, float relativeMinScore,
                      boolean floatingLeftBound, boolean floatingRightBound,
                      int minDistance, int maxDistance,
-                     boolean built, int maxReferenceLength,
-                     int minReferenceLength, int sequencesInBase,
-                     BitArray allFilter, KAligner2Statistics stat) {
+                     KAligner2Statistics stat) {
         this.nValue = nValue;
         this.kValue = kValue;
         this.kMersPerPosition = kMersPerPosition;
+        this.minimizerWindow = minimizerWindow;
         this.base = base;
-        this.lengths = lengths;
         this.absoluteMinClusterScore = absoluteMinClusterScore;
         this.extraClusterScore = extraClusterScore;
         this.matchScore = matchScore;
@@ -281,11 +319,6 @@ public final class KMapper2 implements java.io.Serializable {
         this.floatingRightBound = floatingRightBound;
         this.minDistance = minDistance;
         this.maxDistance = maxDistance;
-        this.built = built;
-        this.maxReferenceLength = maxReferenceLength;
-        this.minReferenceLength = minReferenceLength;
-        this.sequencesInBase = sequencesInBase;
-        this.allFilter = allFilter;
         this.stat = stat;
     }
 
@@ -301,21 +334,26 @@ public final class KMapper2 implements java.io.Serializable {
     }
 
     KMapper2 setFloatingLeftBound(boolean floatingLeftBound) {
-        ensureBuilt();
-        return new KMapper2(nValue, kValue, kMersPerPosition, base, lengths, absoluteMinClusterScore,
+        return new KMapper2(nValue, kValue, kMersPerPosition, minimizerWindow, base,
+                absoluteMinClusterScore,
                 extraClusterScore, matchScore, mismatchScore,
                 offsetShiftScore, slotCount, maxClusterIndels, maxClusters, absoluteMinScore, relativeMinScore,
-                floatingLeftBound, floatingRightBound, minDistance, maxDistance,
-                built, maxReferenceLength, minReferenceLength, sequencesInBase, allFilter, stat);
+                floatingLeftBound, floatingRightBound, minDistance, maxDistance, stat);
     }
 
     KMapper2 setFloatingRightBound(boolean floatingRightBound) {
-        ensureBuilt();
-        return new KMapper2(nValue, kValue, kMersPerPosition, base, lengths, absoluteMinClusterScore,
+        return new KMapper2(nValue, kValue, kMersPerPosition, minimizerWindow, base,
+                absoluteMinClusterScore,
                 extraClusterScore, matchScore, mismatchScore,
                 offsetShiftScore, slotCount, maxClusterIndels, maxClusters, absoluteMinScore, relativeMinScore,
-                floatingLeftBound, floatingRightBound, minDistance, maxDistance,
-                built, maxReferenceLength, minReferenceLength, sequencesInBase, allFilter, stat);
+                floatingLeftBound, floatingRightBound, minDistance, maxDistance, stat);
+    }
+
+    /**
+     * Recreates transient memory cache after deserialization
+     */
+    private Object readResolve() {
+        return setFloatingRightBound(floatingRightBound);
     }
 
     /**
@@ -336,117 +374,215 @@ public final class KMapper2 implements java.io.Serializable {
                 parameters.getMapperOffsetShiftScore(), parameters.getMapperSlotCount(),
                 parameters.getMapperMaxClusters(),
                 parameters.getMapperMaxClusterIndels(), parameters.getMapperKMersPerPosition(),
+                parameters.getMapperMinimizerWindow(),
                 parameters.isFloatingLeftBound(), parameters.isFloatingRightBound(), stat);
     }
 
     /**
-     * Encodes and adds individual kMer to the base.
+     * Writes base of this mapper to the index file, that can be later opened with {@link #openIndex(File,
+     * KAlignerParameters2)}. References added concurrently with this method are not written.
+     *
+     * @param file index file
+     * @throws IOException if an I/O error occurs
      */
-    private void addKmer(int holesMask, int kmer, int id, int offset) {
-        if (base[holesMask][kmer] == null)
-            base[holesMask][kmer] = new int[10];
-        else if (base[holesMask][kmer].length == lengths[holesMask][kmer])
-            base[holesMask][kmer] = copyOf(base[holesMask][kmer], base[holesMask][kmer].length * 3 / 2 + 1);
-
-        if ((offset & offsetMask) != offset)
-            throw new IllegalArgumentException("Record is too long.");
+    public void writeIndex(File file) throws IOException {
+        if (base.mapped != null)
+            throw new IllegalStateException("Mapper was opened from index file.");
+
+        Snapshot snapshot = base.snapshot;
+        int maxHolesMask = base.combinationIndex.length;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(nValue);
+            out.writeInt(kValue);
+            out.writeInt(kMersPerPosition);
+            out.writeInt(minimizerWindow);
+            out.writeInt(snapshot.bitsForId);
+            out.writeInt(snapshot.sequencesInBase);
+            out.writeInt(snapshot.minReferenceLength);
+            out.writeInt(snapshot.maxReferenceLength);
+            out.writeInt(maxHolesMask);
+
+            for (int holesMask = 0; holesMask < maxHolesMask; ++holesMask) {
+                if (base.combinationIndex[holesMask] == -1) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                long count = 0;
+                for (int kmer = 0; kmer < base.kMerCount; ++kmer)
+                    count += snapshot.size(base.slot(holesMask, kmer));
+                if (count > Integer.MAX_VALUE / 4)
+                    throw new IllegalArgumentException("Base is too large.");
+                out.writeInt((int) count);
+            }
 
-        assert lengths[holesMask][kmer] == 0 || index(base[holesMask][kmer][lengths[holesMask][kmer] - 1]) != id
-                || offset(base[holesMask][kmer][lengths[holesMask][kmer] - 1]) < offset;
+            for (int holesMask = 0; holesMask < maxHolesMask; ++holesMask) {
+                if (base.combinationIndex[holesMask] == -1)
+                    continue;
+                int offset = 0;
+                out.writeInt(offset);
+                for (int kmer = 0; kmer < base.kMerCount; ++kmer)
+                    out.writeInt(offset += snapshot.size(base.slot(holesMask, kmer)));
+                for (int kmer = 0; kmer < base.kMerCount; ++kmer) {
+                    int slot = base.slot(holesMask, kmer), size = snapshot.size(slot);
+                    for (int i = 0; i < size; ++i)
+                        out.writeInt(snapshot.records.get(slot)[i]);
+                }
+            }
+        }
+    }
 
-        base[holesMask][kmer][lengths[holesMask][kmer]++] = record(offset, id);
+    /**
+     * Opens index file written by {@link #writeIndex(File)}. Base of returned mapper is memory-mapped, so it is not
+     * loaded to the heap and can be shared (via page cache) between several processes using the same index file.
+     *
+     * @param file       index file
+     * @param parameters parameters instance (N, K, kMersPerPosition and minimizer window must be the same as used to
+     *                   build the index)
+     * @return new KMapper
+     * @throws IOException if an I/O error occurs
+     */
+    public static KMapper2 openIndex(File file, KAlignerParameters2 parameters) throws IOException {
+        return openIndex(file, parameters, null);
     }
 
+    /**
+     * Opens index file written by {@link #writeIndex(File)}. Base of returned mapper is memory-mapped, so it is not
+     * loaded to the heap and can be shared (via page cache) between several processes using the same index file.
+     *
+     * @param file       index file
+     * @param parameters parameters instance (N, K, kMersPerPosition and minimizer window must be the same as used to
+     *                   build the index)
+     * @param stat       stat
+     * @return new KMapper
+     * @throws IOException if an I/O error occurs
+     */
+    public static KMapper2 openIndex(File file, KAlignerParameters2 parameters, KAligner2Statistics stat)
+            throws IOException {
+        MappedBase mappedBase = new MappedBase(file);
+
+        if (mappedBase.nValue != parameters.getMapperNValue()
+                || mappedBase.kValue != parameters.getMapperKValue()
+                || mappedBase.kMersPerPosition != parameters.getMapperKMersPerPosition()
+                || mappedBase.minimizerWindow != parameters.getMapperMinimizerWindow())
+            throw new IllegalArgumentException("Index was built with different parameters: N = " + mappedBase.nValue +
+                    " K = " + mappedBase.kValue + " kMersPerPosition = " + mappedBase.kMersPerPosition +
+                    " minimizerWindow = " + mappedBase.minimizerWindow + ".");
+
+        return new KMapper2(mappedBase.nValue, mappedBase.kValue, mappedBase.kMersPerPosition,
+                mappedBase.minimizerWindow,
+                new Base(mappedBase.nValue, mappedBase.kValue, mappedBase),
+                parameters.getMapperAbsoluteMinClusterScore(), parameters.getMapperExtraClusterScore(),
+                parameters.getMapperMatchScore(), parameters.getMapperMismatchScore(),
+                parameters.getMapperOffsetShiftScore(), parameters.getMapperSlotCount(),
+                parameters.getMapperMaxClusterIndels(), parameters.getMapperMaxClusters(),
+                parameters.getMapperAbsoluteMinScore(), parameters.getMapperRelativeMinScore(),
+                parameters.isFloatingLeftBound(), parameters.isFloatingRightBound(),
+                parameters.getMapperMinSeedsDistance(), parameters.getMapperMaxSeedsDistance(),
+                stat);
+    }
 
     /**
      * Adds new reference sequence to the base of this mapper and returns index assigned to it.
      *
+     * <p>This method can be invoked concurrently with {@link #align(NucleotideSequence, int, int, BitArray)}:
+     * alignment is never blocked by addition of references, and sees all references which addition was completed
+     * before alignment started. Concurrent invocations of this method are serialized.</p>
+     *
      * @param sequence sequence
      * @return index assigned to the sequence
      */
     public int addReference(NucleotideSequence sequence) {
-        if (built)
-            throw new IllegalStateException("Already in use.");
-
-        // Checking parameters
-        if (sequencesInBase >= (1 << bitsForIndex))
-            throw new IllegalArgumentException("Maximum number of records reached.");
-
-        //Resetting built flag
-        built = false;
-
-        int id = sequencesInBase++;
-
-        //Calculating min and max reference sequences lengths
-        maxReferenceLength = max(maxReferenceLength, sequence.size());
-        minReferenceLength = Math.min(minReferenceLength, sequence.size());
-
-        int kmer;
-        int tMask = 0xFFFFFFFF >>> (34 - nValue * 2);
-
-        int to = sequence.size() - nValue;
-        IntCombinations combinations = new IntCombinations(nValue, kValue);
-        for (int[] combination : CUtils.it(combinations)) {
-            int holesMask = getCombinationMask(combination);
-
-            kmer = 0;
-            for (int j = 0; j < nValue; ++j)
-                if (((holesMask >> j) & 1) == 0)
-                    kmer = (kmer << 2 | sequence.codeAt(j));
-            addKmer(holesMask, kmer, id, 0);
-
-            for (int i = 1; i <= to; ++i) {
-                //Next kMer
-                kmer = 0;
-                for (int j = 0; j < nValue; ++j)
-                    if (((holesMask >> j) & 1) == 0)
-                        kmer = (kmer << 2 | sequence.codeAt(i + j));
+        if (base.mapped != null)
+            throw new IllegalStateException("Mapper was opened from index file.");
+
+        synchronized (base) {
+            Snapshot snapshot = base.snapshot;
+            AtomicReferenceArray<int[]> records = snapshot.records;
+            int bitsForId = snapshot.bitsForId;
+
+            //Calculating min and max reference sequences lengths
+            int maxReferenceLength = max(snapshot.maxReferenceLength, sequence.size());
+            int minReferenceLength = Math.min(snapshot.minReferenceLength, sequence.size());
+
+            // Switching to wider records if needed (all-ones id is reserved for empty slots)
+            if (snapshot.sequencesInBase >= (1 << bitsForId) - 1) {
+                if (bitsForId == maxBitsForId)
+                    throw new IllegalArgumentException("Maximum number of records reached.");
+                ++bitsForId;
+                if ((maxReferenceLength & (0xFFFFFFFF >>> bitsForId)) != maxReferenceLength)
+                    throw new IllegalArgumentException("Maximum number of records reached for references of length " +
+                            maxReferenceLength + ".");
+                records = base.widen(snapshot);
+            }
 
-                //Detecting homopolymeric kMers and dropping them
-                //TODO:::!!!!
+            // Checked before any record is written, so failed addition leaves base unchanged
+            if ((sequence.size() & (0xFFFFFFFF >>> bitsForId)) != sequence.size())
+                throw new IllegalArgumentException("Record is too long.");
+
+            int id = snapshot.sequencesInBase;
+
+            int kmer;
+            int tMask = 0xFFFFFFFF >>> (34 - nValue * 2);
+
+            int to = sequence.size() - nValue;
+            IntCombinations combinations = new IntCombinations(nValue, kValue);
+
+            if (minimizerWindow != 0) {
+                // Only minimizer positions are indexed
+                IntArrayList positions = new IntArrayList();
+                addMinimizerPositions(sequence, 0, sequence.size(), nValue, minimizerWindow, positions);
+                for (int[] combination : CUtils.it(combinations)) {
+                    int holesMask = getCombinationMask(combination);
+                    for (int i = 0; i < positions.size(); ++i) {
+                        int position = positions.get(i);
+                        kmer = 0;
+                        for (int j = 0; j < nValue; ++j)
+                            if (((holesMask >> j) & 1) == 0)
+                                kmer = (kmer << 2 | sequence.codeAt(position + j));
+                        base.add(records, base.slot(holesMask, kmer), (position << bitsForId) | id);
+                    }
+                }
+            } else {
+                for (int[] combination : CUtils.it(combinations)) {
+                    int holesMask = getCombinationMask(combination);
+
+                    kmer = 0;
+                    for (int j = 0; j < nValue; ++j)
+                        if (((holesMask >> j) & 1) == 0)
+                            kmer = (kmer << 2 | sequence.codeAt(j));
+                    base.add(records, base.slot(holesMask, kmer), id);
+
+                    for (int i = 1; i <= to; ++i) {
+                        //Next kMer
+                        kmer = 0;
+                        for (int j = 0; j < nValue; ++j)
+                            if (((holesMask >> j) & 1) == 0)
+                                kmer = (kmer << 2 | sequence.codeAt(i + j));
+
+                        //Detecting homopolymeric kMers and dropping them
+                        //TODO:::!!!!
 //                if (((kmer ^ (kmer >>> 2)) & tMask) == 0 && ((kmer ^ (kmer << 2)) & (tMask << 2)) == 0)
 //                    continue;
 
-                addKmer(holesMask, kmer, id, i);
-            }
-        }
-
-        return id;
-    }
-
-    /**
-     * Builds additional data fields used by this mapper. Invoked automatically if this mapper is not yet built by
-     * {@link #align(NucleotideSequence, int, int)} method.
-     */
-    void ensureBuilt() {
-        if (!built)
-            synchronized (this) {
-                if (!built) {
-                    int[] zero = new int[0];
-                    IntCombinations combinations = new IntCombinations(nValue, kValue);
-                    for (int[] combination : CUtils.it(combinations)) {
-                        int holeMask = getCombinationMask(combination);
-                        for (int kMer = 0; kMer < base[holeMask].length; ++kMer)
-                            if (base[holeMask][kMer] != null) {
-                                base[holeMask][kMer] = copyOf(base[holeMask][kMer], lengths[holeMask][kMer]);
-                                Arrays.sort(base[holeMask][kMer]);
-                            } else
-                                base[holeMask][kMer] = zero;
+                        base.add(records, base.slot(holesMask, kmer), (i << bitsForId) | id);
                     }
-
-                    allFilter = new BitArray(sequencesInBase);
-                    allFilter.setAll();
-
-                    built = true;
                 }
             }
+
+            // Publishing new reference to readers
+            base.snapshot = new Snapshot(records, bitsForId, id + 1, minReferenceLength, maxReferenceLength);
+
+            return id;
+        }
     }
 
     /**
      * Performs an alignment.
      *
-     * <p>This methods is thread-safe and can be concurrently used by several threads if no new sequences added after
-     * its first invocation.</p>
+     * <p>This methods is thread-safe and can be concurrently used by several threads, including concurrent invocations
+     * of {@link #addReference(NucleotideSequence)}.</p>
      *
      * @param sequence target sequence
      * @return a list of hits found in the target sequence
@@ -458,8 +594,8 @@ public final class KMapper2 implements java.io.Serializable {
     /**
      * Performs an alignment for a part of the target sequence.
      *
-     * <p>This methods is thread-safe and can be concurrently used by several threads if no new sequences added after
-     * its first invocation.</p>
+     * <p>This methods is thread-safe and can be concurrently used by several threads, including concurrent invocations
+     * of {@link #addReference(NucleotideSequence)}.</p>
      *
      * @param sequence target sequence
      * @param from     first nucleotide to align (inclusive)
@@ -473,8 +609,8 @@ public final class KMapper2 implements java.io.Serializable {
     /**
      * Performs an alignment for a part of the target sequence.
      *
-     * <p>This methods is thread-safe and can be concurrently used by several threads if no new sequences added after
-     * its first invocation.</p>
+     * <p>This methods is thread-safe and can be concurrently used by several threads, including concurrent invocations
+     * of {@link #addReference(NucleotideSequence)}.</p>
      *
      * @param sequence target sequence
      * @param from     first nucleotide to align (inclusive)
@@ -483,13 +619,14 @@ public final class KMapper2 implements java.io.Serializable {
      * @return a list of hits found in the target sequence
      */
     public KMappingResult2 align(final NucleotideSequence sequence, final int from, final int to, BitArray filter) {
-        ensureBuilt();
+        // All records of references added after this point are ignored
+        final Snapshot snapshot = base.snapshot;
 
         if (filter == null)
-            filter = allFilter;
+            filter = snapshot.allFilter;
 
         ThreadLocalCache cache = memoryCache.get();
-        cache.reset();
+        cache.reset(snapshot.sequencesInBase);
 
         final ArrList<KMappingHit2> result = new ArrList<>();
 
@@ -506,18 +643,24 @@ public final class KMapper2 implements java.io.Serializable {
 
         // Positions of first nucleotides of seed k-mers in query sequence
         final IntArrayList seedPositions = cache.seedPositions;
-        int seedPosition = from;
+        RandomGenerator random = RandomUtil.getThreadLocalRandom();
 
-        // Adding firs possible position
-        seedPositions.add(seedPosition);
+        if (minimizerWindow != 0)
+            // Minimizers of query are the only seeds that can be found in the base
+            addMinimizerPositions(sequence, from, to, nValue, minimizerWindow, seedPositions);
+        else {
+            int seedPosition = from;
 
-        // Generating random positions of seeds
-        RandomGenerator random = RandomUtil.getThreadLocalRandom();
-        while ((seedPosition += random.nextInt(maxDistance + 1 - minDistance) + minDistance) < to - nValue)
+            // Adding firs possible position
             seedPositions.add(seedPosition);
 
-        // Adding last possible position to the lis of seed positions
-        seedPositions.add(to - nValue);
+            // Generating random positions of seeds
+            while ((seedPosition += random.nextInt(maxDistance + 1 - minDistance) + minDistance) < to - nValue)
+                seedPositions.add(seedPosition);
+
+            // Adding last possible position to the lis of seed positions
+            seedPositions.add(to - nValue);
+        }
 
         int kmer;
         final IntArrayList[] candidates = cache.candidates;
@@ -556,7 +699,10 @@ public final class KMapper2 implements java.io.Serializable {
                     if (((holesMask >> j) & 1) == 0)
                         kmer = kmer << 2 | sequence.codeAt(seedPositions.get(i) + j);
 
-                allRecords.addAll(base[holesMask][kmer]);
+                if (base.mapped == null)
+                    snapshot.addRecords(base.slot(holesMask, kmer), allRecords);
+                else
+                    base.mapped.addRecords(holesMask, kmer, allRecords);
             }
 
             // Adding each records for it's corresponding candidate
@@ -568,14 +714,14 @@ public final class KMapper2 implements java.io.Serializable {
                     continue;
 
                 // Id of target sequence, where the kMer was found
-                id = index(record);
+                id = snapshot.id(record);
 
-                // Apply filter
-                if (!filter.get(id))
+                // Apply filter (references added after creation of the filter are not selected)
+                if (id >= filter.size() || !filter.get(id))
                     continue;
 
                 // Position of the kMer in target sequence
-                positionInTarget = offset(record);
+                positionInTarget = snapshot.position(record);
 
                 // Lazy initialization of candidate lists
                 //if (candidates[id] == null)
@@ -1205,6 +1351,61 @@ public final class KMapper2 implements java.io.Serializable {
         return -maxAllowedDelta <= diff && diff <= maxAllowedDelta;
     }
 
+    /**
+     * Adds positions of (w, n)-minimizers of the sequence region to the list: for each window of {@code window}
+     * consecutive nMers, position of nMer with minimal hash (leftmost in case of a tie) is added once.
+     *
+     * @param sequence  sequence
+     * @param from      first nucleotide of the region (inclusive)
+     * @param to        last nucleotide of the region (exclusive)
+     * @param nValue    nMer length (<= 16)
+     * @param window    number of nMers in a window
+     * @param positions list to add positions to (positions are added in ascending order)
+     */
+    static void addMinimizerPositions(NucleotideSequence sequence, int from, int to, int nValue, int window,
+                                      IntArrayList positions) {
+        int count = to - from - nValue + 1;
+        if (count <= 0)
+            return;
+
+        int[] hashes = new int[count];
+        int mask = 0xFFFFFFFF >>> (32 - nValue * 2), nMer = 0;
+        for (int i = from; i < to; ++i) {
+            nMer = (nMer << 2 | sequence.codeAt(i)) & mask;
+            if (i - from >= nValue - 1)
+                hashes[i - from - nValue + 1] = hash(nMer);
+        }
+
+        window = min(window, count);
+        int min = -1;
+        for (int start = 0; start + window <= count; ++start) {
+            int end = start + window - 1;
+            if (min < start) {
+                // Previous minimum left the window
+                min = start;
+                for (int i = start + 1; i <= end; ++i)
+                    if (hashes[i] < hashes[min])
+                        min = i;
+            } else if (hashes[end] < hashes[min])
+                min = end;
+
+            if (positions.isEmpty() || positions.last() != from + min)
+                positions.add(from + min);
+        }
+    }
+
+    /**
+     * Invertible integer hash (MurmurHash3 finalizer), used to order nMers for minimizer selection
+     */
+    static int hash(int value) {
+        value ^= value >>> 16;
+        value *= 0x85ebca6b;
+        value ^= value >>> 13;
+        value *= 0xc2b2ae35;
+        value ^= value >>> 16;
+        return value;
+    }
+
     private static int getCombinationMask(final int[] combination) {
         int c = 0;
         for (int a : combination)
@@ -1217,9 +1418,16 @@ public final class KMapper2 implements java.io.Serializable {
      */
     public SummaryStatistics getRecordSizeSummaryStatistics() {
         SummaryStatistics ss = new SummaryStatistics();
-        for (int[] length : lengths)
-            for (int len : length)
-                ss.addValue(len);
+        if (base.mapped != null) {
+            for (IntBuffer offsets : base.mapped.offsets)
+                if (offsets != null)
+                    for (int kmer = 0; kmer < offsets.limit() - 1; ++kmer)
+                        ss.addValue(offsets.get(kmer + 1) - offsets.get(kmer));
+            return ss;
+        }
+        Snapshot snapshot = base.snapshot;
+        for (int slot = 0; slot < snapshot.records.length(); ++slot)
+            ss.addValue(snapshot.size(slot));
         return ss;
     }
 
@@ -1239,10 +1447,277 @@ public final class KMapper2 implements java.io.Serializable {
         }
     }
 
+    /**
+     * Base of records for individual kMers.
+     *
+     * <p>Records of each kMer are stored in an append-only array: records are written only past the end of the
+     * previously published part, and array is replaced by its extended copy when it is full, so readers can use
+     * published part without any synchronization. Empty slots are filled with -1 (all-ones reference id), so readers
+     * stop at the first record with id not less than number of references in their {@link Snapshot}.</p>
+     */
+    private static final class Base implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Combination index for each holes mask (-1 for masks not used by the mapper)
+         */
+        final int[] combinationIndex;
+        /**
+         * Number of different kMers for each holes mask
+         */
+        final int kMerCount;
+        /**
+         * Number of records for each kMer slot (guarded by this; null for mapped base)
+         */
+        final int[] lengths;
+        /**
+         * Memory-mapped base, if mapper was opened from index file
+         */
+        final MappedBase mapped;
+        /**
+         * Last published state of the base
+         */
+        volatile Snapshot snapshot;
+
+        Base(int nValue, int kValue, MappedBase mapped) {
+            this.kMerCount = 1 << ((nValue - kValue) * 2);
+            this.combinationIndex = new int[kValue == 0 ? 1 : (((0xFFFFFFFF >>> (32 - kValue)) << (nValue - kValue)) + 1)];
+            Arrays.fill(combinationIndex, -1);
+            int combinations = 0;
+            for (int[] combination : CUtils.it(new IntCombinations(nValue, kValue)))
+                combinationIndex[getCombinationMask(combination)] = combinations++;
+
+            this.mapped = mapped;
+            if (mapped == null) {
+                this.lengths = new int[combinations * kMerCount];
+                this.snapshot = new Snapshot(new AtomicReferenceArray<int[]>(combinations * kMerCount),
+                        bitsForIndex, 0, Integer.MAX_VALUE, 0);
+            } else {
+                this.lengths = null;
+                this.snapshot = new Snapshot(null, mapped.bitsForId, mapped.sequencesInBase,
+                        mapped.minReferenceLength, mapped.maxReferenceLength);
+            }
+        }
+
+        int slot(int holesMask, int kmer) {
+            return combinationIndex[holesMask] * kMerCount + kmer;
+        }
+
+        /**
+         * Appends record to the kMer slot (invoked under lock on this)
+         */
+        void add(AtomicReferenceArray<int[]> records, int slot, int record) {
+            int[] r = records.get(slot);
+            int length = lengths[slot];
+            if (r == null || r.length == length) {
+                r = r == null ? new int[10] : copyOf(r, length * 3 / 2 + 1);
+                Arrays.fill(r, length, r.length, -1);
+                records.set(slot, r);
+            }
+            r[length] = record;
+            lengths[slot] = length + 1;
+        }
+
+        /**
+         * Returns copy of records re-encoded using one more bit for reference id (invoked under lock on this)
+         */
+        AtomicReferenceArray<int[]> widen(Snapshot snapshot) {
+            AtomicReferenceArray<int[]> result = new AtomicReferenceArray<>(lengths.length);
+            for (int slot = 0; slot < lengths.length; ++slot) {
+                int[] r = snapshot.records.get(slot);
+                if (r == null)
+                    continue;
+                int[] w = new int[r.length];
+                Arrays.fill(w, -1);
+                for (int i = 0; i < lengths[slot]; ++i)
+                    w[i] = (snapshot.position(r[i]) << (snapshot.bitsForId + 1)) | snapshot.id(r[i]);
+                result.set(slot, w);
+            }
+            return result;
+        }
+
+        private void writeObject(java.io.ObjectOutputStream out) throws IOException {
+            // Lengths must be consistent with the snapshot
+            synchronized (this) {
+                out.defaultWriteObject();
+            }
+        }
+    }
+
+    /**
+     * Immutable state of the base, used by readers
+     */
+    private static final class Snapshot implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Records for each kMer slot (null for mapped base)
+         */
+        final AtomicReferenceArray<int[]> records;
+        /**
+         * Number of bits in base record for reference id
+         */
+        final int bitsForId;
+        final int sequencesInBase, minReferenceLength, maxReferenceLength;
+        /**
+         * Length = sequencesInBase, all bits set
+         */
+        final BitArray allFilter;
+
+        Snapshot(AtomicReferenceArray<int[]> records, int bitsForId,
+                 int sequencesInBase, int minReferenceLength, int maxReferenceLength) {
+            this.records = records;
+            this.bitsForId = bitsForId;
+            this.sequencesInBase = sequencesInBase;
+            this.minReferenceLength = minReferenceLength;
+            this.maxReferenceLength = maxReferenceLength;
+            this.allFilter = new BitArray(sequencesInBase);
+            this.allFilter.setAll();
+        }
+
+        /**
+         * Extracts reference id from base record
+         */
+        int id(final int record) {
+            return record & (0xFFFFFFFF >>> (32 - bitsForId));
+        }
+
+        /**
+         * Extracts position in reference from base record
+         */
+        int position(final int record) {
+            return record >> bitsForId;
+        }
+
+        /**
+         * Returns number of records in the kMer slot visible in this snapshot
+         */
+        int size(int slot) {
+            int[] r = records.get(slot);
+            if (r == null)
+                return 0;
+            int size = 0;
+            while (size < r.length && id(r[size]) < sequencesInBase)
+                ++size;
+            return size;
+        }
+
+        /**
+         * Adds all records of the kMer slot visible in this snapshot to the list
+         */
+        void addRecords(int slot, IntArrayList target) {
+            int[] r = records.get(slot);
+            if (r == null)
+                return;
+            for (int record : r) {
+                if (id(record) >= sequencesInBase)
+                    break;
+                target.add(record);
+            }
+        }
+    }
+
+    /**
+     * Read-only base mapped from index file
+     */
+    private static final class MappedBase implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        /**
+         * Number of ints in index file header
+         */
+        static final int headerSize = 11;
+
+        final int nValue, kValue, kMersPerPosition, minimizerWindow, bitsForId,
+                sequencesInBase, minReferenceLength, maxReferenceLength;
+        /**
+         * offsets[holesMask].get(kMer) - position of first record for kMer in records[holesMask]
+         */
+        final IntBuffer[] offsets, records;
+        /**
+         * Index file (mapped base is serialized as a reference to the file)
+         */
+        final File file;
+
+        MappedBase(File file) throws IOException {
+            this.file = file;
+            try (FileChannel channel = new FileInputStream(file).getChannel()) {
+                IntBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, 4 * headerSize).asIntBuffer();
+                if (header.get(0) != INDEX_MAGIC)
+                    throw new IOException("Not a KMapper2 index file: " + file);
+                if (header.get(1) != INDEX_VERSION)
+                    throw new IOException("Unsupported index file version: " + header.get(1));
+
+                this.nValue = header.get(2);
+                this.kValue = header.get(3);
+                this.kMersPerPosition = header.get(4);
+                this.minimizerWindow = header.get(5);
+                this.bitsForId = header.get(6);
+                this.sequencesInBase = header.get(7);
+                this.minReferenceLength = header.get(8);
+                this.maxReferenceLength = header.get(9);
+                int holesMaskCount = header.get(10);
+
+                IntBuffer counts = channel.map(FileChannel.MapMode.READ_ONLY, 4 * headerSize,
+                        4L * holesMaskCount).asIntBuffer();
+
+                int kMerCount = 1 << ((nValue - kValue) * 2);
+                this.offsets = new IntBuffer[holesMaskCount];
+                this.records = new IntBuffer[holesMaskCount];
+                long position = 4 * headerSize + 4L * holesMaskCount;
+                for (int holesMask = 0; holesMask < holesMaskCount; ++holesMask) {
+                    int count = counts.get(holesMask);
+                    if (count == -1)
+                        continue;
+                    offsets[holesMask] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            position, 4L * (kMerCount + 1)).asIntBuffer();
+                    position += 4L * (kMerCount + 1);
+                    records[holesMask] = channel.map(FileChannel.MapMode.READ_ONLY,
+                            position, 4L * count).asIntBuffer();
+                    position += 4L * count;
+                }
+            }
+        }
+
+        /**
+         * Adds all records for kMer to the list. Uses only absolute reads, so can be concurrently used by several
+         * threads.
+         */
+        void addRecords(int holesMask, int kMer, IntArrayList target) {
+            IntBuffer r = records[holesMask];
+            for (int i = offsets[holesMask].get(kMer), to = offsets[holesMask].get(kMer + 1); i < to; ++i)
+                target.add(r.get(i));
+        }
+
+        private Object writeReplace() {
+            return new SerializedMappedBase(file);
+        }
+    }
+
+    /**
+     * Serialized form of {@link MappedBase}: index file is mapped again on deserialization
+     */
+    private static final class SerializedMappedBase implements java.io.Serializable {
+        private static final long serialVersionUID = 1L;
+        final File file;
+
+        SerializedMappedBase(File file) {
+            this.file = file;
+        }
+
+        private Object readResolve() throws java.io.ObjectStreamException {
+            try {
+                return new MappedBase(file);
+            } catch (IOException e) {
+                java.io.InvalidObjectException ex = new java.io.InvalidObjectException(
+                        "Can't open index file: " + file);
+                ex.initCause(e);
+                throw ex;
+            }
+        }
+    }
+
     private static final class ThreadLocalCache {
         final IntArrayList seedPositions;
         final IntArrayList cachedIntArray1, cachedIntArray2, cachedIntArray3;
-        final IntArrayList[] candidates;
+        IntArrayList[] candidates;
         final OffsetPacksAccumulator offsetPacksAccumulator;
 
         public ThreadLocalCache(int sequencesInBase, int slotCount, int maxClusterIndels, int matchScore,
@@ -1262,7 +1737,13 @@ public final class KMapper2 implements java.io.Serializable {
                     mismatchScore, offsetShiftScore, absoluteMinClusterScore);
         }
 
-        public void reset() {
+        public void reset(int sequencesInBase) {
+            if (candidates.length < sequencesInBase) {
+                int oldLength = candidates.length;
+                candidates = copyOf(candidates, sequencesInBase);
+                for (int i = oldLength; i < sequencesInBase; i++)
+                    candidates[i] = new IntArrayList();
+            }
             seedPositions.clear();
             cachedIntArray1.clear();
             cachedIntArray2.clear();
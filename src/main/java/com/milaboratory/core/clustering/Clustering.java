@@ -24,6 +24,7 @@ import com.milaboratory.util.CanReportProgress;
 import com.milaboratory.util.Factory;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import static com.milaboratory.core.tree.SequenceTreeMap.Node;
 
@@ -48,17 +49,33 @@ import static com.milaboratory.core.tree.SequenceTreeMap.Node;
  * @param <S> sequence type
  */
 public final class Clustering<T, S extends Sequence<S>> implements CanReportProgress {
+    /**
+     * Number of clusters built concurrently per thread in parallel mode
+     */
+    private static final int BATCH_SIZE_PER_THREAD = 4;
     final Collection<T> inputObjects;
     final SequenceExtractor<T, S> sequenceExtractor;
     final ClusteringStrategy<T, S> strategy;
+    final boolean compactTree;
     final List<Cluster<T>> clusters = new ArrayList<>();
     volatile int progress;
 
     public Clustering(Collection<T> inputObjects, SequenceExtractor<T, S> sequenceExtractor,
                       ClusteringStrategy<T, S> strategy) {
+        this(inputObjects, sequenceExtractor, strategy, false);
+    }
+
+    /**
+     * @param compactTree if true, compact {@link SequenceTreeMap} will be used to index sequences (slower, but takes
+     *                    much less memory for large number of objects, see {@link SequenceTreeMap#SequenceTreeMap(Alphabet,
+     *                    boolean)})
+     */
+    public Clustering(Collection<T> inputObjects, SequenceExtractor<T, S> sequenceExtractor,
+                      ClusteringStrategy<T, S> strategy, boolean compactTree) {
         this.inputObjects = inputObjects;
         this.sequenceExtractor = sequenceExtractor;
         this.strategy = strategy;
+        this.compactTree = compactTree;
     }
 
     @Override
@@ -72,14 +89,29 @@ public final class Clustering<T, S extends Sequence<S>> implements CanReportProg
     }
 
     public List<Cluster<T>> performClustering() {
+        return performClustering(1);
+    }
+
+    /**
+     * Performs clustering using several threads.
+     *
+     * <p>Clusters for a batch of next (not yet clustered) objects are built concurrently, without modification of
+     * the tree. Then results are applied in the original order; if a cluster built for some object involved objects
+     * added to clusters of preceding objects from the same batch, it is rebuilt. So the result is exactly the same as
+     * for single-threaded clustering.</p>
+     *
+     * <p>Strategy must be thread-safe and its decisions must depend only on the arguments.</p>
+     *
+     * @param threads number of threads
+     * @return list of clusters
+     */
+    public List<Cluster<T>> performClustering(int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive.");
         try {
             if (inputObjects.isEmpty())
                 return clusters;
 
-            final Comparator<Cluster<T>> clusterComparator = getComparatorOfClusters(strategy, sequenceExtractor);
-            // For performance
-            final int maxDepth = strategy.getMaxClusterDepth();
-
             final List<T> objects = new ArrayList<>(inputObjects);
             // Reverse object sorting
             // Bigger objects will be in the beginning of the list
@@ -97,7 +129,7 @@ public final class Clustering<T, S extends Sequence<S>> implements CanReportProg
 
             // Putting all objects into tree map
             // Objects with the same sequence placed into arrays (buckets)
-            final SequenceTreeMap<S, T[]> tree = new SequenceTreeMap<>(alphabet);
+            final SequenceTreeMap<S, T[]> tree = new SequenceTreeMap<>(alphabet, compactTree);
             for (T object : objects) {
                 T[] array = tree.createIfAbsent(sequenceExtractor.getSequence(object), arrayFactory);
                 if (array[0] == null)
@@ -109,113 +141,257 @@ public final class Clustering<T, S extends Sequence<S>> implements CanReportProg
                 }
             }
 
-            Node<T[]> current;
+            if (threads == 1) {
+                // Iterating through objects from biggest to smallest
+                for (int i = 0; i < objects.size(); ++i) {
+                    this.progress = i;
+                    T object = objects.get(i);
 
-            // Used on each iteration to prevent double processing of the same trie node (NeighborhoodIterator may
-            // return the same node several times)
-            // Used as IdentityHashMap ...
-            final HashSet<Node<T[]>> processedNodes = new HashSet<>();
+                    // checking whether object is already clustered
+                    if (!inTree(tree, object))
+                        continue;
+                    // <- object is not yet clustered
 
-            ArrayList<Cluster<T>> previousLayer = new ArrayList<>(), nextLayer = new ArrayList<>(), tmp;
+                    clusters.add(buildCluster(tree, object, null));
+                }
+            } else
+                performParallelClustering(tree, objects, threads);
 
-            T[] temp;
-            boolean inTree;
-            // Iterating through objects from biggest to smallest
-            for (int i = 0; i < objects.size(); ++i) {
+            // Returning collected clusters
+            return clusters;
+        } finally {
+            // Set finished state on method leave
+            progress = inputObjects.size();
+        }
+    }
+
+    private void performParallelClustering(final SequenceTreeMap<S, T[]> tree, List<T> objects, int threads) {
+        ExecutorService executor = new ForkJoinPool(threads);
+        try {
+            final int batchSize = threads * BATCH_SIZE_PER_THREAD;
+            List<T> seeds = new ArrayList<>(batchSize);
+            List<Callable<Claims<T>>> tasks = new ArrayList<>(batchSize);
+            Set<T> claimedInBatch = newIdentitySet();
+            int i = 0;
+            while (i < objects.size()) {
                 this.progress = i;
-                T object = objects.get(i);
-
-                // checking whether object is already clustered
-                if ((temp = tree.get(sequenceExtractor.getSequence(object))) == null)
-                    continue;
-                inTree = false;
-                for (T t : temp)
-                    if (t == object) {
-                        inTree = true;
-                        break;
-                    }
-                if (!inTree)
-                    continue;
-                // <- object is not yet clustered
-
-                // Creating single-object root cluster (no parent)
-                Cluster<T> tempCluster = new Cluster<>(object);
-                // Adding root cluster to the output cluster list
-                clusters.add(tempCluster);
-                previousLayer.clear();
-                previousLayer.add(tempCluster);
-
-                // Trying to add more objects to the cluster
-                // Clustering more objects to objects clustered on the previous layer
-                // First layer is cluster head
-                for (int depth = 0; depth < maxDepth; ++depth) {
-
-                    nextLayer.clear();
-                    for (Cluster<T> previousCluster : previousLayer) {
-
-                        NeighborhoodIterator<S, T[]> iterator = tree
-                                .getNeighborhoodIterator(
-                                        sequenceExtractor.getSequence(previousCluster.head),
-                                        strategy.getSearchParameters(previousCluster),
-                                        strategy.getMutationGuide(previousCluster));
-                        processedNodes.clear();
-
-                        while ((current = iterator.nextNode()) != null) {
-                            if (!processedNodes.add(current))
-                                continue;
-
-                            T[] currentObjects = current.getObject();
-                            T matchedObject = null;
-                            // Will remain true by the end of iteration if this bucket contains no object
-                            boolean allNulls = true;
-                            for (int j = 0; j < currentObjects.length; j++) {
-                                if (currentObjects[j] == null)
-                                    continue;
-                                matchedObject = currentObjects[j];
-
-                                // Checking clusterization criteria:
-                                //   1. previousCluster.head > matchedObject
-                                //   2. strategy.canAddToCluster(previousCluster, matchedObject, iterator)
-                                if (strategy.compare(previousCluster.head, matchedObject) <= 0
-                                        || !strategy.canAddToCluster(previousCluster, matchedObject, iterator)) {
-                                    // Can't cluster this object, it remains in the bucket in the trie
-                                    // So, after iteration this bucket will contain at least one non-null object
-                                    allNulls = false;
-                                    continue;
-                                }
-
-                                // Creating child cluster
-                                nextLayer.add(tempCluster = new Cluster<>(matchedObject, previousCluster));
-                                // Adding new cluster as child to previousCluster
-                                previousCluster.add(tempCluster);
-                                // Removing the object from bucket
-                                currentObjects[j] = null;
-                            }
-                            assert matchedObject != null;
-                            if (allNulls)
-                                // Removing bucket from trie if it contains no objects
-                                tree.remove(sequenceExtractor.getSequence(matchedObject));
+
+                // Collecting next objects that are not yet clustered
+                seeds.clear();
+                for (; i < objects.size() && seeds.size() < batchSize; ++i)
+                    if (inTree(tree, objects.get(i)))
+                        seeds.add(objects.get(i));
+
+                // Building clusters concurrently (tree is not modified)
+                tasks.clear();
+                for (final T seed : seeds)
+                    tasks.add(new Callable<Claims<T>>() {
+                        @Override
+                        public Claims<T> call() throws Exception {
+                            Claims<T> claims = new Claims<>(true);
+                            claims.cluster = buildCluster(tree, seed, claims);
+                            return claims;
                         }
+                    });
+                List<Future<Claims<T>>> results = executor.invokeAll(tasks);
+
+                // Applying results in the original order
+                claimedInBatch.clear();
+                for (int k = 0; k < seeds.size(); ++k) {
+                    T seed = seeds.get(k);
+                    // Seed was added to one of the preceding clusters
+                    if (!inTree(tree, seed))
+                        continue;
+
+                    Claims<T> claims = getResult(results.get(k));
+                    if (intersects(claims.seen, claimedInBatch)) {
+                        // Cluster depends on objects already added to preceding clusters, rebuilding
+                        claims = new Claims<>(false);
+                        claims.cluster = buildCluster(tree, seed, claims);
+                    } else
+                        for (T object : claims.claimed)
+                            removeFromTree(tree, object);
+
+                    claimedInBatch.addAll(claims.claimed);
+                    clusters.add(claims.cluster);
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
-                        if (previousCluster.children != null)
-                            // Reverse sorting cluster children
-                            Collections.sort(previousCluster.children, clusterComparator);
-                    }
+    private static <T> T getResult(Future<T> future) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-                    // Reverse sorting newly collected layer
-                    Collections.sort(nextLayer, clusterComparator);
-                    // Swapping nextLayer <-and-> previousLayer
-                    tmp = nextLayer;
-                    nextLayer = previousLayer;
-                    previousLayer = tmp;
+    /**
+     * Checks whether object is still in the tree (i.e. is not yet clustered)
+     */
+    private boolean inTree(SequenceTreeMap<S, T[]> tree, T object) {
+        T[] bucket = tree.get(sequenceExtractor.getSequence(object));
+        if (bucket == null)
+            return false;
+        for (T t : bucket)
+            if (t == object)
+                return true;
+        return false;
+    }
+
+    /**
+     * Removes object from its bucket, and bucket from the tree if it contains no more objects
+     */
+    private void removeFromTree(SequenceTreeMap<S, T[]> tree, T object) {
+        S sequence = sequenceExtractor.getSequence(object);
+        T[] bucket = tree.get(sequence);
+        boolean allNulls = true;
+        for (int j = 0; j < bucket.length; j++)
+            if (bucket[j] == object)
+                bucket[j] = null;
+            else if (bucket[j] != null)
+                allNulls = false;
+        if (allNulls)
+            tree.remove(sequence);
+    }
+
+    /**
+     * Builds cluster with specified head.
+     *
+     * @param claims if null or not speculative, added objects are removed from the tree; otherwise tree is not
+     *               modified, and added and considered objects are recorded in claims
+     */
+    private Cluster<T> buildCluster(SequenceTreeMap<S, T[]> tree, T object, Claims<T> claims) {
+        final boolean speculative = claims != null && claims.speculative;
+        final Comparator<Cluster<T>> clusterComparator = getComparatorOfClusters(strategy, sequenceExtractor);
+        // For performance
+        final int maxDepth = strategy.getMaxClusterDepth();
+
+        Node<T[]> current;
+
+        // Used on each iteration to prevent double processing of the same trie node (NeighborhoodIterator may
+        // return the same node several times)
+        // Used as IdentityHashMap ...
+        final HashSet<Node<T[]>> processedNodes = new HashSet<>();
+
+        ArrayList<Cluster<T>> previousLayer = new ArrayList<>(), nextLayer = new ArrayList<>(), tmp;
+
+        // Creating single-object root cluster (no parent)
+        Cluster<T> tempCluster = new Cluster<>(object);
+        Cluster<T> root = tempCluster;
+        previousLayer.add(tempCluster);
+
+        // Trying to add more objects to the cluster
+        // Clustering more objects to objects clustered on the previous layer
+        // First layer is cluster head
+        for (int depth = 0; depth < maxDepth; ++depth) {
+
+            nextLayer.clear();
+            for (Cluster<T> previousCluster : previousLayer) {
+
+                NeighborhoodIterator<S, T[]> iterator = tree
+                        .getNeighborhoodIterator(
+                                sequenceExtractor.getSequence(previousCluster.head),
+                                strategy.getSearchParameters(previousCluster),
+                                strategy.getMutationGuide(previousCluster));
+                processedNodes.clear();
+
+                while ((current = iterator.nextNode()) != null) {
+                    if (!processedNodes.add(current))
+                        continue;
+
+                    T[] currentObjects = current.getObject();
+                    T matchedObject = null;
+                    // Will remain true by the end of iteration if this bucket contains no object
+                    boolean allNulls = true;
+                    for (int j = 0; j < currentObjects.length; j++) {
+                        if (currentObjects[j] == null
+                                || (speculative && claims.claimed.contains(currentObjects[j])))
+                            continue;
+                        matchedObject = currentObjects[j];
+                        if (speculative)
+                            claims.seen.add(matchedObject);
+
+                        // Checking clusterization criteria:
+                        //   1. previousCluster.head > matchedObject
+                        //   2. strategy.canAddToCluster(previousCluster, matchedObject, iterator)
+                        if (strategy.compare(previousCluster.head, matchedObject) <= 0
+                                || !strategy.canAddToCluster(previousCluster, matchedObject, iterator)) {
+                            // Can't cluster this object, it remains in the bucket in the trie
+                            // So, after iteration this bucket will contain at least one non-null object
+                            allNulls = false;
+                            continue;
+                        }
+
+                        // Creating child cluster
+                        nextLayer.add(tempCluster = new Cluster<>(matchedObject, previousCluster));
+                        // Adding new cluster as child to previousCluster
+                        previousCluster.add(tempCluster);
+                        if (claims != null)
+                            claims.claimed.add(matchedObject);
+                        // Removing the object from bucket
+                        if (!speculative)
+                            currentObjects[j] = null;
+                    }
+                    assert speculative || matchedObject != null;
+                    if (allNulls && !speculative)
+                        // Removing bucket from trie if it contains no objects
+                        tree.remove(sequenceExtractor.getSequence(matchedObject));
                 }
+
+                if (previousCluster.children != null)
+                    // Reverse sorting cluster children
+                    Collections.sort(previousCluster.children, clusterComparator);
             }
 
-            // Returning collected clusters
-            return clusters;
-        } finally {
-            // Set finished state on method leave
-            progress = inputObjects.size();
+            // Reverse sorting newly collected layer
+            Collections.sort(nextLayer, clusterComparator);
+            // Swapping nextLayer <-and-> previousLayer
+            tmp = nextLayer;
+            nextLayer = previousLayer;
+            previousLayer = tmp;
+        }
+
+        return root;
+    }
+
+    private static <T> Set<T> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<T, Boolean>());
+    }
+
+    private static <T> boolean intersects(Set<T> set1, Set<T> set2) {
+        if (set1.size() > set2.size()) {
+            Set<T> tmp = set1;
+            set1 = set2;
+            set2 = tmp;
+        }
+        for (T t : set1)
+            if (set2.contains(t))
+                return true;
+        return false;
+    }
+
+    /**
+     * Objects added to the cluster (and considered while building the cluster, for speculatively built clusters)
+     */
+    private static final class Claims<T> {
+        final boolean speculative;
+        final Set<T> claimed = newIdentitySet();
+        final Set<T> seen;
+        Cluster<T> cluster;
+
+        Claims(boolean speculative) {
+            this.speculative = speculative;
+            this.seen = speculative ? Clustering.<T>newIdentitySet() : null;
         }
     }
 
@@ -265,4 +441,14 @@ public final class Clustering<T, S extends Sequence<S>> implements CanReportProg
                                                                                 ClusteringStrategy<T, S> strategy) {
         return new Clustering<>(inputObjects, sequenceExtractor, strategy).performClustering();
     }
+
+    /**
+     * Helper method. See class description and {@link #performClustering(int)}.
+     */
+    public static <T, S extends Sequence<S>> List<Cluster<T>> performClustering(Collection<T> inputObjects,
+                                                                                SequenceExtractor<T, S> sequenceExtractor,
+                                                                                ClusteringStrategy<T, S> strategy,
+                                                                                int threads) {
+        return new Clustering<>(inputObjects, sequenceExtractor, strategy).performClustering(threads);
+    }
 }
@@ -15,6 +15,8 @@
  */
 package com.milaboratory.core.io;
 
+import com.milaboratory.core.io.util.ParallelGZIPInputStream;
+import com.milaboratory.core.io.util.ParallelGZIPOutputStream;
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
 
@@ -23,7 +25,13 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 public enum CompressionType {
-    None, GZIP, BZIP2;
+    None, GZIP, BZIP2,
+    /**
+     * Block gzip (BGZF): output is written as a sequence of independent gzip members compressed in parallel, BGZF
+     * input is decompressed in parallel (other gzip streams are decompressed as {@link #GZIP}). Output is readable by
+     * any gzip decompressor.
+     */
+    BGZF;
 
     public static CompressionType detectCompressionType(File file) {
         return detectCompressionType(file.getName());
@@ -61,6 +69,8 @@ public enum CompressionType {
                 return is;
             case GZIP:
                 return new GZIPInputStream(is, buffer);
+            case BGZF:
+                return ParallelGZIPInputStream.create(is, Runtime.getRuntime().availableProcessors(), buffer);
             case BZIP2:
                 CompressorStreamFactory factory = new CompressorStreamFactory();
                 try {
@@ -78,6 +88,8 @@ public enum CompressionType {
                 return os;
             case GZIP:
                 return new GZIPOutputStream(os, buffer);
+            case BGZF:
+                return new ParallelGZIPOutputStream(os, Runtime.getRuntime().availableProcessors());
             case BZIP2:
                 CompressorStreamFactory factory = new CompressorStreamFactory();
                 try {
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence;
+
+import cc.redberry.pipe.OutputPort;
+import cc.redberry.pipe.OutputPortCloseable;
+import com.milaboratory.core.alignment.batch.SequenceExtractor;
+import com.milaboratory.core.sequence.NSequenceWithQuality;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceQuality;
+import com.milaboratory.core.sequence.UnsafeFactory;
+import com.milaboratory.util.SingleIterator;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Batch of single reads stored in several contiguous arrays (nucleotide codes, quality values, description bytes and
+ * offsets) instead of a separate set of objects for each read.
+ *
+ * Reads are accessed through flyweight {@link SingleRead} views ({@link #get(int)}), which create sequence, quality
+ * and description objects only on access. Use {@link #codeAt(int, int)}, {@link #qualityAt(int, int)} and
+ * {@link #length(int)} to scan reads without creating any objects.
+ *
+ * Batches are immutable; use {@link Builder} to create them.
+ */
+public final class ReadBatch implements Iterable<SingleRead> {
+    /**
+     * Extracts sequences from reads, e.g. to pass reads from batches to {@link com.milaboratory.core.alignment.batch.PipedBatchAligner}
+     */
+    public static final SequenceExtractor<SingleRead, NucleotideSequence> SEQUENCE_EXTRACTOR =
+            new SequenceExtractor<SingleRead, NucleotideSequence>() {
+                @Override
+                public NucleotideSequence extract(SingleRead read) {
+                    if (read instanceof ReadView)
+                        return ((ReadView) read).getSequence();
+                    return read.getData().getSequence();
+                }
+            };
+    final int size;
+    final long[] ids;
+    /**
+     * Nucleotide codes and quality values of all reads, read i occupies [sequenceOffsets[i], sequenceOffsets[i + 1])
+     */
+    final byte[] sequences, qualities;
+    final int[] sequenceOffsets;
+    /**
+     * Descriptions of all reads, read i occupies [descriptionOffsets[i], descriptionOffsets[i + 1])
+     */
+    final byte[] descriptions;
+    final int[] descriptionOffsets;
+    /**
+     * Indices of reads with {@literal null} description (null if there are no such reads)
+     */
+    final BitSet nullDescriptions;
+
+    ReadBatch(int size, long[] ids, byte[] sequences, byte[] qualities, int[] sequenceOffsets,
+              byte[] descriptions, int[] descriptionOffsets, BitSet nullDescriptions) {
+        this.size = size;
+        this.ids = ids;
+        this.sequences = sequences;
+        this.qualities = qualities;
+        this.sequenceOffsets = sequenceOffsets;
+        this.descriptions = descriptions;
+        this.descriptionOffsets = descriptionOffsets;
+        this.nullDescriptions = nullDescriptions;
+    }
+
+    /**
+     * Returns number of reads in this batch
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if there are no reads in this batch
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException();
+    }
+
+    /**
+     * Returns id of i-th read
+     */
+    public long getId(int i) {
+        checkIndex(i);
+        return ids[i];
+    }
+
+    /**
+     * Returns length of i-th read
+     */
+    public int length(int i) {
+        checkIndex(i);
+        return sequenceOffsets[i + 1] - sequenceOffsets[i];
+    }
+
+    /**
+     * Returns nucleotide code at specified position of i-th read
+     */
+    public byte codeAt(int i, int position) {
+        if (position < 0 || position >= length(i))
+            throw new IndexOutOfBoundsException();
+        return sequences[sequenceOffsets[i] + position];
+    }
+
+    /**
+     * Returns quality value at specified position of i-th read
+     */
+    public byte qualityAt(int i, int position) {
+        if (position < 0 || position >= length(i))
+            throw new IndexOutOfBoundsException();
+        return qualities[sequenceOffsets[i] + position];
+    }
+
+    /**
+     * Creates sequence of i-th read
+     */
+    public NucleotideSequence getSequence(int i) {
+        checkIndex(i);
+        int from = sequenceOffsets[i];
+        return UnsafeFactory.nucleotideSequence(sequences, from, sequenceOffsets[i + 1] - from);
+    }
+
+    /**
+     * Creates quality of i-th read
+     */
+    public SequenceQuality getQuality(int i) {
+        checkIndex(i);
+        int from = sequenceOffsets[i];
+        return UnsafeFactory.sequenceQuality(qualities, from, sequenceOffsets[i + 1] - from);
+    }
+
+    /**
+     * Creates sequence with quality of i-th read
+     */
+    public NSequenceWithQuality getData(int i) {
+        checkIndex(i);
+        int from = sequenceOffsets[i];
+        return UnsafeFactory.nSequenceWithQuality(sequences, qualities, from, sequenceOffsets[i + 1] - from);
+    }
+
+    /**
+     * Creates description of i-th read
+     */
+    public String getDescription(int i) {
+        checkIndex(i);
+        if (nullDescriptions != null && nullDescriptions.get(i))
+            return null;
+        int from = descriptionOffsets[i];
+        return new String(descriptions, from, descriptionOffsets[i + 1] - from);
+    }
+
+    /**
+     * Returns flyweight view of i-th read
+     */
+    public SingleRead get(int i) {
+        checkIndex(i);
+        return new ReadView(this, i);
+    }
+
+    @Override
+    public Iterator<SingleRead> iterator() {
+        return new Iterator<SingleRead>() {
+            int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size;
+            }
+
+            @Override
+            public SingleRead next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return new ReadView(ReadBatch.this, i++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Reads up to {@code maxReads} reads from port into a batch
+     *
+     * @param port     source of reads
+     * @param maxReads maximal number of reads in the batch
+     * @return batch or {@literal null} if there are no more reads in the port
+     */
+    public static ReadBatch read(OutputPort<? extends SingleRead> port, int maxReads) {
+        if (maxReads <= 0)
+            throw new IllegalArgumentException("Number of reads must be positive.");
+        Builder builder = null;
+        SingleRead read;
+        for (int i = 0; i < maxReads && (read = port.take()) != null; i++) {
+            if (builder == null)
+                builder = new Builder(Math.min(maxReads, 1024), 0);
+            builder.append(read);
+        }
+        return builder == null ? null : builder.build();
+    }
+
+    /**
+     * Groups reads from port into batches
+     *
+     * @param port      source of reads
+     * @param batchSize maximal number of reads in each batch
+     * @return port of batches
+     */
+    public static OutputPortCloseable<ReadBatch> batched(final OutputPort<? extends SingleRead> port,
+                                                         final int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Batch size must be positive.");
+        return new OutputPortCloseable<ReadBatch>() {
+            @Override
+            public ReadBatch take() {
+                synchronized (this) {
+                    return read(port, batchSize);
+                }
+            }
+
+            @Override
+            public void close() {
+                if (port instanceof OutputPortCloseable)
+                    ((OutputPortCloseable) port).close();
+            }
+        };
+    }
+
+    /**
+     * Flattens port of batches into port of reads (flyweight views); may be used to align reads from batches with
+     * {@link com.milaboratory.core.alignment.batch.PipedBatchAligner} together with {@link #SEQUENCE_EXTRACTOR}.
+     *
+     * @param batches port of batches
+     * @return port of reads
+     */
+    public static OutputPortCloseable<SingleRead> unbatched(final OutputPort<ReadBatch> batches) {
+        return new OutputPortCloseable<SingleRead>() {
+            ReadBatch current;
+            int pointer;
+
+            @Override
+            public synchronized SingleRead take() {
+                while (current == null || pointer == current.size) {
+                    current = batches.take();
+                    pointer = 0;
+                    if (current == null)
+                        return null;
+                }
+                return new ReadView(current, pointer++);
+            }
+
+            @Override
+            public void close() {
+                if (batches instanceof OutputPortCloseable)
+                    ((OutputPortCloseable) batches).close();
+            }
+        };
+    }
+
+    /**
+     * Flyweight read referencing data in batch
+     */
+    static final class ReadView implements SingleRead {
+        final ReadBatch batch;
+        final int index;
+
+        ReadView(ReadBatch batch, int index) {
+            this.batch = batch;
+            this.index = index;
+        }
+
+        NucleotideSequence getSequence() {
+            return batch.getSequence(index);
+        }
+
+        @Override
+        public int numberOfReads() {
+            return 1;
+        }
+
+        @Override
+        public SingleRead getRead(int i) {
+            if (i != 0)
+                throw new IndexOutOfBoundsException();
+            return this;
+        }
+
+        @Override
+        public long getId() {
+            return batch.ids[index];
+        }
+
+        @Override
+        public String getDescription() {
+            return batch.getDescription(index);
+        }
+
+        @Override
+        public NSequenceWithQuality getData() {
+            return batch.getData(index);
+        }
+
+        @Override
+        public Iterator<SingleRead> iterator() {
+            return new SingleIterator<>((SingleRead) this);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null) return false;
+
+            if (!(o instanceof SingleRead))
+                return false;
+            SingleRead oth = (SingleRead) o;
+            String description = getDescription();
+            return getId() == oth.getId()
+                    && getData().equals(oth.getData())
+                    && (description == null ? oth.getDescription() == null : description.equals(oth.getDescription()));
+        }
+
+        @Override
+        public int hashCode() {
+            long id = getId();
+            String description = getDescription();
+            int result = (int) (id ^ (id >>> 32));
+            result = 31 * result + getData().hashCode();
+            result = 31 * result + (description != null ? description.hashCode() : 0);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            NSequenceWithQuality data = getData();
+            return "@" + getDescription() + "\n" + data.getSequence() + "\n+\n" + data.getQuality();
+        }
+    }
+
+    /**
+     * Builder of read batches
+     */
+    public static final class Builder {
+        int size;
+        long[] ids;
+        byte[] sequences, qualities;
+        int[] sequenceOffsets;
+        byte[] descriptions;
+        int[] descriptionOffsets;
+        BitSet nullDescriptions;
+
+        /**
+         * Creates builder with default initial capacity
+         */
+        public Builder() {
+            this(16, 0);
+        }
+
+        /**
+         * Creates builder
+         *
+         * @param reads       expected number of reads
+         * @param nucleotides expected total length of reads
+         */
+        public Builder(int reads, int nucleotides) {
+            reads = Math.max(reads, 1);
+            nucleotides = Math.max(nucleotides, 16);
+            this.ids = new long[reads];
+            this.sequences = new byte[nucleotides];
+            this.qualities = new byte[nucleotides];
+            this.sequenceOffsets = new int[reads + 1];
+            this.descriptions = new byte[nucleotides];
+            this.descriptionOffsets = new int[reads + 1];
+        }
+
+        /**
+         * Returns number of reads added so far
+         */
+        public int size() {
+            return size;
+        }
+
+        private void ensureReadsCapacity() {
+            if (size < ids.length)
+                return;
+            int newCapacity = ids.length * 3 / 2 + 1;
+            ids = Arrays.copyOf(ids, newCapacity);
+            sequenceOffsets = Arrays.copyOf(sequenceOffsets, newCapacity + 1);
+            descriptionOffsets = Arrays.copyOf(descriptionOffsets, newCapacity + 1);
+        }
+
+        private void ensureSequenceCapacity(int length) {
+            int required = sequenceOffsets[size] + length;
+            if (required <= sequences.length)
+                return;
+            int newCapacity = Math.max(required, sequences.length * 3 / 2 + 1);
+            sequences = Arrays.copyOf(sequences, newCapacity);
+            qualities = Arrays.copyOf(qualities, newCapacity);
+        }
+
+        private void appendDescription(byte[] buffer, int from, int length) {
+            int offset = descriptionOffsets[size];
+            if (offset + length > descriptions.length)
+                descriptions = Arrays.copyOf(descriptions, Math.max(offset + length, descriptions.length * 3 / 2 + 1));
+            System.arraycopy(buffer, from, descriptions, offset, length);
+            descriptionOffsets[size + 1] = offset + length;
+        }
+
+        /**
+         * Appends read to the batch (read data is copied)
+         *
+         * @param read read
+         * @return this
+         */
+        public Builder append(SingleRead read) {
+            ensureReadsCapacity();
+            NSequenceWithQuality data = read.getData();
+            NucleotideSequence sequence = data.getSequence();
+            SequenceQuality quality = data.getQuality();
+            int length = sequence.size();
+            ensureSequenceCapacity(length);
+
+            int offset = sequenceOffsets[size];
+            for (int i = 0; i < length; ++i) {
+                sequences[offset + i] = sequence.codeAt(i);
+                qualities[offset + i] = quality.value(i);
+            }
+            sequenceOffsets[size + 1] = offset + length;
+
+            String description = read.getDescription();
+            if (description == null) {
+                if (nullDescriptions == null)
+                    nullDescriptions = new BitSet();
+                nullDescriptions.set(size);
+                appendDescription(descriptions, 0, 0);
+            } else {
+                byte[] bytes = description.getBytes();
+                appendDescription(bytes, 0, bytes.length);
+            }
+
+            ids[size++] = read.getId();
+            return this;
+        }
+
+        /**
+         * Appends raw FASTQ record to the batch (sequence letters are converted to nucleotide codes and quality
+         * letters to quality values)
+         *
+         * @param id                 read id
+         * @param buffer             buffer with record
+         * @param descriptionFrom    position of the first description byte (just after '@')
+         * @param descriptionLength  length of description
+         * @param sequenceFrom       position of the first sequence letter
+         * @param qualityFrom        position of the first quality letter
+         * @param length             length of the read
+         * @param qualityValueOffset quality format offset (e.g. 33)
+         * @param replaceWildcards   if {@literal true}, wildcards will be converted to random basic letters (see
+         *                           {@link UnsafeFactory#fastqParse(byte[], int, int, int, byte, long, boolean)})
+         * @return this
+         */
+        public Builder appendFastq(long id, byte[] buffer, int descriptionFrom, int descriptionLength,
+                                   int sequenceFrom, int qualityFrom, int length, byte qualityValueOffset,
+                                   boolean replaceWildcards) {
+            ensureReadsCapacity();
+            ensureSequenceCapacity(length);
+            int offset = sequenceOffsets[size];
+            UnsafeFactory.fastqParse(buffer, sequenceFrom, qualityFrom, length, qualityValueOffset, id,
+                    replaceWildcards, sequences, qualities, offset);
+            sequenceOffsets[size + 1] = offset + length;
+            appendDescription(buffer, descriptionFrom, descriptionLength);
+            ids[size++] = id;
+            return this;
+        }
+
+        /**
+         * Creates batch with all added reads; builder can't be used after this call
+         *
+         * @return batch
+         */
+        public ReadBatch build() {
+            if (ids == null)
+                throw new IllegalStateException("Batch already built.");
+            ReadBatch batch = new ReadBatch(size, ids, sequences, qualities, sequenceOffsets,
+                    descriptions, descriptionOffsets, nullDescriptions);
+            ids = null;
+            sequences = qualities = descriptions = null;
+            sequenceOffsets = descriptionOffsets = null;
+            nullDescriptions = null;
+            return batch;
+        }
+    }
+}
@@ -20,6 +20,7 @@ import com.milaboratory.core.sequence.NSequenceWithQuality;
 import com.milaboratory.core.sequence.UnsafeFactory;
 import com.milaboratory.util.SingleIterator;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 
@@ -30,6 +31,10 @@ import java.util.Iterator;
 public final class SingleReadLazy implements SingleRead {
     final long id;
     final byte[] buffer;
+    /**
+     * Used instead of buffer for reads referencing memory-mapped file regions
+     */
+    final ByteBuffer mappedBuffer;
     final int descriptionFrom;
     final short sequenceOffset, qualityOffset, dataLength, descriptionLength;
     final boolean replaceWildcards;
@@ -39,6 +44,7 @@ public final class SingleReadLazy implements SingleRead {
 
     private SingleReadLazy(long id,
                            byte[] buffer,
+                           ByteBuffer mappedBuffer,
                            int descriptionFrom,
                            short sequenceOffset,
                            short qualityOffset,
@@ -48,6 +54,7 @@ public final class SingleReadLazy implements SingleRead {
                            byte phredQualityOffset) {
         this.id = id;
         this.buffer = buffer;
+        this.mappedBuffer = mappedBuffer;
         this.descriptionFrom = descriptionFrom;
         this.sequenceOffset = sequenceOffset;
         this.qualityOffset = qualityOffset;
@@ -57,12 +64,13 @@ public final class SingleReadLazy implements SingleRead {
         this.phredQualityOffset = phredQualityOffset;
     }
 
-    private SingleReadLazy(long id, byte[] buffer, int descriptionFrom,
+    private SingleReadLazy(long id, byte[] buffer, ByteBuffer mappedBuffer, int descriptionFrom,
                            short sequenceOffset, short qualityOffset, short dataLength, short descriptionLength,
                            boolean replaceWildcards, byte phredQualityOffset, NSequenceWithQuality sequenceWithQuality,
                            String description) {
         this.id = id;
         this.buffer = buffer;
+        this.mappedBuffer = mappedBuffer;
         this.descriptionFrom = descriptionFrom;
         this.sequenceOffset = sequenceOffset;
         this.qualityOffset = qualityOffset;
@@ -79,7 +87,7 @@ public final class SingleReadLazy implements SingleRead {
     }
 
     SingleReadLazy setReadId(long readId) {
-        return new SingleReadLazy(readId, buffer, descriptionFrom, sequenceOffset, qualityOffset,
+        return new SingleReadLazy(readId, buffer, mappedBuffer, descriptionFrom, sequenceOffset, qualityOffset,
                 dataLength, descriptionLength, replaceWildcards, phredQualityOffset, sequenceWithQuality, description);
     }
 
@@ -98,19 +106,34 @@ public final class SingleReadLazy implements SingleRead {
     }
 
     private String createDescription() {
+        if (mappedBuffer != null)
+            return new String(mappedBytes(descriptionFrom, descriptionLength), Charset.defaultCharset());
         return new String(buffer, descriptionFrom, descriptionLength, Charset.defaultCharset());
     }
 
     private NSequenceWithQuality createNSequenceWithQuality() {
         try {
+            if (mappedBuffer != null)
+                return UnsafeFactory.fastqParse(mappedBuffer, descriptionFrom + sequenceOffset,
+                        descriptionFrom + qualityOffset, dataLength, getQualityOffset(), id, replaceWildcards);
             return UnsafeFactory.fastqParse(buffer, descriptionFrom + sequenceOffset,
                     descriptionFrom + qualityOffset, dataLength, getQualityOffset(), id, replaceWildcards);
         } catch (Exception e) {
-            throw new RuntimeException("Error while parsing read:\n" +
-                    new String(buffer, descriptionFrom - 1, qualityOffset + dataLength), e);
+            throw new RuntimeException("Error while parsing read:\n" + (mappedBuffer != null
+                    ? new String(mappedBytes(descriptionFrom - 1, qualityOffset + dataLength))
+                    : new String(buffer, descriptionFrom - 1, qualityOffset + dataLength)), e);
         }
     }
 
+    private byte[] mappedBytes(int from, int length) {
+        byte[] bytes = new byte[length];
+        // Duplicate is used to keep shared buffer position untouched
+        ByteBuffer buffer = mappedBuffer.duplicate();
+        buffer.position(from);
+        buffer.get(bytes);
+        return bytes;
+    }
+
     @Override
     public int numberOfReads() {
         return 1;
@@ -142,12 +165,32 @@ public final class SingleReadLazy implements SingleRead {
                                         short dataLength,
                                         short descriptionLength,
                                         boolean replaceWildcards) {
+        return new SingleReadLazy(id, buffer, null, descriptionFrom, dataOffset, qualityOffset, dataLength,
+                descriptionLength, replaceWildcards, phredQualityOffset(format));
+    }
+
+    /**
+     * Creates read referencing data in (e.g. memory-mapped) byte buffer; sequence, quality and description are
+     * decoded only when accessed. Positions are absolute positions in buffer, buffer position is not used.
+     */
+    public static SingleReadLazy create(final QualityFormat format,
+                                        long id,
+                                        ByteBuffer buffer,
+                                        int descriptionFrom,
+                                        short dataOffset,
+                                        short qualityOffset,
+                                        short dataLength,
+                                        short descriptionLength,
+                                        boolean replaceWildcards) {
+        return new SingleReadLazy(id, null, buffer, descriptionFrom, dataOffset, qualityOffset, dataLength,
+                descriptionLength, replaceWildcards, phredQualityOffset(format));
+    }
+
+    private static byte phredQualityOffset(QualityFormat format) {
         if (format == QualityFormat.Phred33)
-            return new SingleReadLazy(id, buffer, descriptionFrom, dataOffset, qualityOffset, dataLength,
-                    descriptionLength, replaceWildcards, (byte) 33);
+            return (byte) 33;
         else if (format == QualityFormat.Phred64)
-            return new SingleReadLazy(id, buffer, descriptionFrom, dataOffset, qualityOffset, dataLength,
-                    descriptionLength, replaceWildcards, (byte) 64);
+            return (byte) 64;
         throw new IllegalArgumentException("Unknown quality format.");
     }
 
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+import com.milaboratory.core.io.sequence.SequenceRead;
+import com.milaboratory.core.io.sequence.SequenceReaderCloseable;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.util.FileIndex;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.Deflater;
+
+/**
+ * Reader of binary columnar files with reads written by {@link BinaryReadsWriter}.
+ *
+ * <p>Reads are decoded block by block. Besides sequential reading ({@link #take()}), reader provides random access to
+ * records by their number in file ({@link #take(long)}), using index stored in the file.</p>
+ *
+ * @param <R> type of records
+ * @see BinaryReadsWriter
+ */
+public abstract class BinaryReadsReader<R extends SequenceRead> implements SequenceReaderCloseable<R> {
+    private static final SingleRead[][] EMPTY_BLOCK = new SingleRead[0][];
+
+    final RandomAccessFile file;
+    final FileIndex index;
+    final int blockSize;
+    final long numberOfRecords, numberOfBlocks;
+    final BlockCodec codec;
+    byte[] payload = new byte[0];
+    SingleRead[][] block = EMPTY_BLOCK;
+    long blockNumber = -1;
+    int pointer = 0;
+    boolean closed = false;
+
+    /**
+     * Opens file.
+     *
+     * @param file          file
+     * @param numberOfReads expected number of reads in each record
+     * @throws IOException                if file is not a file with reads or I/O error occurs
+     * @throws IllegalFileFormatException if file contains records with different number of reads
+     */
+    protected BinaryReadsReader(File file, int numberOfReads) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        try {
+            if (this.file.length() < BinaryReadsWriter.HEADER_SIZE + 8 || this.file.readInt() != BinaryReadsWriter.MAGIC)
+                throw new IOException("Wrong magic number.");
+            byte version = this.file.readByte();
+            if (version != BinaryReadsWriter.VERSION)
+                throw new IOException("Unsupported version: " + version);
+            byte actualNumberOfReads = this.file.readByte();
+            if (actualNumberOfReads != numberOfReads)
+                throw new IllegalFileFormatException("File contains " + actualNumberOfReads + " reads per record, " +
+                        "expected " + numberOfReads + ".");
+            this.blockSize = this.file.readInt();
+
+            this.file.seek(this.file.length() - 8);
+            long indexPosition = this.file.readLong();
+            byte[] indexData = new byte[(int) (this.file.length() - 8 - indexPosition)];
+            this.file.seek(indexPosition);
+            this.file.readFully(indexData);
+            this.index = FileIndex.read(new ByteArrayInputStream(indexData));
+        } catch (IOException | RuntimeException e) {
+            this.file.close();
+            throw e;
+        }
+
+        this.numberOfRecords = Long.parseLong(index.getMetadata(BinaryReadsWriter.NUMBER_OF_READS_KEY));
+        this.numberOfBlocks = (numberOfRecords + blockSize - 1) / blockSize;
+        // Compression level is not used for decoding
+        this.codec = new BlockCodec(numberOfReads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates record from reads
+     */
+    protected abstract R create(SingleRead[] reads);
+
+    /**
+     * Returns index of the file.
+     *
+     * @return index of the file
+     */
+    public FileIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns total number of records in file.
+     *
+     * @return total number of records in file
+     */
+    @Override
+    public long getNumberOfReads() {
+        return numberOfRecords;
+    }
+
+    @Override
+    public synchronized R take() {
+        if (closed)
+            return null;
+        if (pointer == block.length) {
+            if (blockNumber + 1 >= numberOfBlocks)
+                return null;
+            loadBlock(blockNumber + 1);
+        }
+        return create(block[pointer++]);
+    }
+
+    /**
+     * Returns record with specified number (subsequent calls of {@link #take()} will return records following it) or
+     * null if {@code recordNumber} is greater than the number of records in file.
+     *
+     * @param recordNumber record number
+     * @return record with specified number
+     */
+    public synchronized R take(long recordNumber) {
+        if (recordNumber < 0)
+            throw new IndexOutOfBoundsException();
+        if (closed || recordNumber >= numberOfRecords)
+            return null;
+        long blockNumber = recordNumber / blockSize;
+        if (blockNumber != this.blockNumber)
+            loadBlock(blockNumber);
+        pointer = (int) (recordNumber % blockSize);
+        return create(block[pointer++]);
+    }
+
+    private void loadBlock(long blockNumber) {
+        int size;
+        try {
+            file.seek(index.getNearestPosition(blockNumber * blockSize));
+            size = file.readInt();
+            if (payload.length < size)
+                payload = new byte[size];
+            file.readFully(payload, 0, size);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        block = codec.decode(payload, size);
+        this.blockNumber = blockNumber;
+        pointer = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        codec.close();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
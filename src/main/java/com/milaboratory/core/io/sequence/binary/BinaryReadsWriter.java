@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import com.milaboratory.core.io.sequence.SequenceRead;
+import com.milaboratory.core.io.sequence.SequenceWriter;
+import com.milaboratory.core.io.util.FileIndex;
+import com.milaboratory.core.io.util.FileIndexBuilder;
+import com.milaboratory.primitivio.PrimitivO;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writer of binary columnar files with reads.
+ *
+ * <p>Reads are grouped into blocks of fixed number of records (the last block may be smaller), each block is encoded
+ * column-wise and compressed (see {@link BlockCodec}). File layout:</p>
+ *
+ * <pre>
+ * header:  int MAGIC, byte VERSION, byte number of reads per record, int block size
+ * blocks:  int payload size, payload (repeated)
+ * end:     int 0
+ * index:   {@link FileIndex} with step equal to block size (positions of blocks)
+ * footer:  long position of index
+ * </pre>
+ *
+ * <p>Blocks are written as they are filled, so {@link #flush()} doesn't write reads of incomplete block. Index is
+ * written on {@link #close()}, files of not closed writers can't be read.</p>
+ *
+ * @param <R> type of records
+ * @see BinaryReadsReader
+ */
+public abstract class BinaryReadsWriter<R extends SequenceRead> implements SequenceWriter<R> {
+    /**
+     * Number of records per block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    static final int MAGIC = 0x4D52424C;
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = 4 + 1 + 1 + 4;
+    static final String NUMBER_OF_READS_KEY = "reads";
+
+    final CountingOutputStream countingStream;
+    final PrimitivO output;
+    final BlockCodec codec;
+    final int blockSize;
+    final FileIndexBuilder indexBuilder;
+    final List<R> block;
+    long numberOfReads = 0;
+    FileIndex index;
+    boolean closed = false;
+
+    /**
+     * Creates writer.
+     *
+     * @param stream           output stream
+     * @param numberOfReads    number of reads in each record (1 for single reads, 2 for paired reads)
+     * @param blockSize        number of records per block
+     * @param compressionLevel deflate compression level (0-9)
+     */
+    protected BinaryReadsWriter(OutputStream stream, int numberOfReads, int blockSize, int compressionLevel) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Block size must be positive.");
+        this.countingStream = new CountingOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        this.output = new PrimitivO(countingStream);
+        this.codec = new BlockCodec(numberOfReads, compressionLevel);
+        this.blockSize = blockSize;
+        this.indexBuilder = new FileIndexBuilder(blockSize)
+                .setStartingRecordPosition(HEADER_SIZE);
+        this.block = new ArrayList<>(blockSize);
+
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeByte(numberOfReads);
+        output.writeInt(blockSize);
+    }
+
+    @Override
+    public synchronized void write(R read) {
+        if (closed)
+            throw new IllegalStateException("Writer is closed.");
+        block.add(read);
+        if (block.size() == blockSize)
+            writeBlock();
+    }
+
+    private void writeBlock() {
+        int size = codec.encode(block, output);
+        indexBuilder.appendNextRecord(size);
+        for (int i = 1; i < block.size(); ++i)
+            indexBuilder.appendNextRecord(0);
+        numberOfReads += block.size();
+        block.clear();
+    }
+
+    /**
+     * Writes all complete blocks to the underlying stream.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            countingStream.flush();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Returns index of written file (available after writer is closed).
+     *
+     * @return index of written file
+     */
+    public synchronized FileIndex getIndex() {
+        if (!closed)
+            throw new IllegalStateException("Writer is not closed.");
+        return index;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            if (!block.isEmpty())
+                writeBlock();
+            output.writeInt(0);
+
+            long indexPosition = countingStream.getByteCount();
+            index = indexBuilder
+                    .putMetadata(NUMBER_OF_READS_KEY, Long.toString(numberOfReads))
+                    .createAndDestroy();
+            index.write(countingStream);
+            output.writeLong(indexPosition);
+            countingStream.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            codec.close();
+        }
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+import com.milaboratory.core.io.sequence.SequenceRead;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.SingleReadImpl;
+import com.milaboratory.core.sequence.NSequenceWithQuality;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceQuality;
+import com.milaboratory.core.sequence.UnsafeFactory;
+import com.milaboratory.primitivio.PrimitivI;
+import com.milaboratory.primitivio.PrimitivO;
+import com.milaboratory.primitivio.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static com.milaboratory.core.sequence.NucleotideSequence.ALPHABET;
+
+/**
+ * Encoder and decoder of blocks of reads (see {@link BinaryReadsWriter} for the file layout).
+ *
+ * <p>Block payload is a number of records followed by columns: read ids (zigzag-encoded deltas) and, for each read of
+ * a record, lengths of sequences, nucleotides (four per byte), wildcards (position deltas and codes), quality values
+ * and descriptions (UTF-8, each stored as a suffix following the common prefix with the previous description). Each
+ * column is deflated separately, so homogeneous data (e.g. qualities) is compressed better than interleaved FASTQ
+ * lines; columns that deflate can't shrink are stored as is. Nucleotide codes and quality values of all reads are
+ * unpacked to the same offsets, so sequences are created directly from decoded columns.</p>
+ *
+ * <p>Not thread-safe, buffers are reused between blocks.</p>
+ */
+final class BlockCodec {
+    /**
+     * UNPACK[4 * b + i] is the i-th nucleotide code packed in byte b
+     */
+    private static final byte[] UNPACK = new byte[256 * 4];
+
+    static {
+        for (int b = 0; b < 256; ++b)
+            for (int i = 0; i < 4; ++i)
+                UNPACK[4 * b + i] = (byte) ((b >>> (2 * i)) & 3);
+    }
+
+    final int numberOfReads;
+    final Deflater deflater;
+    final Inflater inflater = new Inflater();
+
+    // Encoder state
+    final Column ids, lengths, sequences, wildcards, qualities, descriptions;
+    final Buffer compressed = new Buffer(), payload = new Buffer();
+    final PrimitivO payloadOutput = new PrimitivO(payload);
+    final byte[] chunk = new byte[8192];
+
+    // Decoder state
+    byte[] compressedIn = new byte[0], idsIn = new byte[0], lengthsIn = new byte[0], sequencesIn = new byte[0],
+            wildcardsIn = new byte[0], descriptionsIn = new byte[0];
+    final byte[][] codesIn, qualitiesIn;
+    int[] sizes = new int[0];
+
+    // Shared
+    byte[] scratch = new byte[256], description = new byte[256];
+
+    BlockCodec(int numberOfReads, int compressionLevel) {
+        this.numberOfReads = numberOfReads;
+        this.deflater = new Deflater(compressionLevel);
+        this.ids = new Column();
+        this.lengths = new Column();
+        this.sequences = new Column();
+        this.wildcards = new Column();
+        this.qualities = new Column();
+        this.descriptions = new Column();
+        this.codesIn = new byte[numberOfReads][0];
+        this.qualitiesIn = new byte[numberOfReads][0];
+    }
+
+    /**
+     * Encodes records and writes payload length and payload to the output.
+     *
+     * @return number of written bytes
+     */
+    int encode(List<? extends SequenceRead> records, PrimitivO output) {
+        payload.reset();
+        payloadOutput.writeVarInt(records.size());
+
+        ids.reset();
+        long previousId = 0;
+        for (SequenceRead record : records) {
+            if (record.numberOfReads() != numberOfReads)
+                throw new IllegalArgumentException("Expected " + numberOfReads + " reads in record, got " +
+                        record.numberOfReads() + ".");
+            ids.output.writeVarLongZigZag(record.getId() - previousId);
+            previousId = record.getId();
+        }
+        writeColumn(ids);
+
+        for (int r = 0; r < numberOfReads; ++r) {
+            lengths.reset();
+            sequences.reset();
+            wildcards.reset();
+            qualities.reset();
+            descriptions.reset();
+
+            // Position of the next nucleotide in the block and of the last wildcard
+            int position = 0, lastWildcard = 0;
+            int packed = 0;
+            int previousDescriptionLength = 0;
+            for (SequenceRead record : records) {
+                SingleRead read = record.getRead(r);
+                NSequenceWithQuality data = read.getData();
+                NucleotideSequence sequence = data.getSequence();
+                SequenceQuality quality = data.getQuality();
+                int size = sequence.size();
+                lengths.output.writeVarInt(size);
+
+                for (int i = 0; i < size; ++i, ++position) {
+                    byte code = sequence.codeAt(i);
+                    if (ALPHABET.isWildcard(code)) {
+                        wildcards.output.writeVarInt(position - lastWildcard);
+                        wildcards.output.writeByte(code);
+                        lastWildcard = position;
+                        code = 0;
+                    }
+                    packed |= code << (2 * (position & 3));
+                    if ((position & 3) == 3) {
+                        sequences.output.writeByte(packed);
+                        packed = 0;
+                    }
+                }
+
+                if (scratch.length < size)
+                    scratch = new byte[Math.max(size, scratch.length * 2)];
+                for (int i = 0; i < size; ++i)
+                    scratch[i] = quality.value(i);
+                qualities.output.write(scratch, 0, size);
+
+                // Suffix length + 1 (or zero for null description), common prefix length, suffix
+                String string = read.getDescription();
+                if (string == null)
+                    descriptions.output.writeVarInt(0);
+                else {
+                    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                    int prefix = 0, max = Math.min(bytes.length, previousDescriptionLength);
+                    while (prefix < max && bytes[prefix] == description[prefix])
+                        ++prefix;
+                    descriptions.output.writeVarInt(bytes.length - prefix + 1);
+                    descriptions.output.writeVarInt(prefix);
+                    descriptions.output.write(bytes, prefix, bytes.length - prefix);
+
+                    if (description.length < bytes.length)
+                        description = Arrays.copyOf(description, Math.max(bytes.length, description.length * 2));
+                    System.arraycopy(bytes, prefix, description, prefix, bytes.length - prefix);
+                    previousDescriptionLength = bytes.length;
+                }
+            }
+            if ((position & 3) != 0)
+                sequences.output.writeByte(packed);
+
+            writeColumn(lengths);
+            writeColumn(sequences);
+            writeColumn(wildcards);
+            writeColumn(qualities);
+            writeColumn(descriptions);
+        }
+
+        output.writeInt(payload.size());
+        output.write(payload.data(), 0, payload.size());
+        return 4 + payload.size();
+    }
+
+    private void writeColumn(Column column) {
+        int rawSize = column.buffer.size();
+        deflater.reset();
+        deflater.setInput(column.buffer.data(), 0, rawSize);
+        deflater.finish();
+        compressed.reset();
+        while (!deflater.finished()) {
+            int n = deflater.deflate(chunk, 0, chunk.length);
+            compressed.write(chunk, 0, n);
+        }
+        payloadOutput.writeVarInt(rawSize);
+        // Equal sizes mean column is stored as is
+        if (compressed.size() >= rawSize) {
+            payloadOutput.writeVarInt(rawSize);
+            payloadOutput.write(column.buffer.data(), 0, rawSize);
+        } else {
+            payloadOutput.writeVarInt(compressed.size());
+            payloadOutput.write(compressed.data(), 0, compressed.size());
+        }
+    }
+
+    /**
+     * Decodes block payload.
+     *
+     * @return reads, {@code result[i][r]} is the {@code r}-th read of the {@code i}-th record
+     */
+    SingleRead[][] decode(byte[] data, int length) {
+        try {
+            return decode0(data, length);
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalFileFormatException("Corrupted block.");
+        }
+    }
+
+    private SingleRead[][] decode0(byte[] data, int length) {
+        PrimitivI input = new PrimitivI(new ByteArrayInputStream(data, 0, length));
+        int count = input.readVarInt();
+        SingleRead[][] result = new SingleRead[count][numberOfReads];
+        if (sizes.length < count)
+            sizes = new int[count];
+
+        ColumnReader column = new ColumnReader(idsIn = readColumn(input, idsIn));
+        long[] readIds = new long[count];
+        long id = 0;
+        for (int i = 0; i < count; ++i)
+            readIds[i] = id += Util.zigZagDecodeLong(column.readVarLong());
+
+        for (int r = 0; r < numberOfReads; ++r) {
+            column = new ColumnReader(lengthsIn = readColumn(input, lengthsIn));
+            int total = 0;
+            for (int i = 0; i < count; ++i)
+                total += sizes[i] = column.readVarInt();
+
+            // Nucleotides
+            byte[] packed = sequencesIn = readColumn(input, sequencesIn);
+            byte[] codes = codesIn[r];
+            if (codes.length < total + 3)
+                codes = codesIn[r] = new byte[total + 3];
+            for (int i = 0, n = (total + 3) / 4; i < n; ++i)
+                System.arraycopy(UNPACK, 4 * (packed[i] & 0xFF), codes, 4 * i, 4);
+            int wildcardsSize = input.readVarInt();
+            column = new ColumnReader(wildcardsIn = readColumn(input, wildcardsIn, wildcardsSize), wildcardsSize);
+            int position = 0;
+            while (column.hasMore()) {
+                position += column.readVarInt();
+                if (position >= total)
+                    throw new IllegalFileFormatException("Corrupted block.");
+                codes[position] = column.readByte();
+            }
+
+            byte[] values = qualitiesIn[r] = readColumn(input, qualitiesIn[r]);
+            column = new ColumnReader(descriptionsIn = readColumn(input, descriptionsIn));
+
+            int offset = 0;
+            for (int i = 0; i < count; ++i) {
+                int size = sizes[i];
+                NSequenceWithQuality sequence = UnsafeFactory.nSequenceWithQuality(codes, values, offset, size);
+                offset += size;
+
+                String string = null;
+                int suffixLength = column.readVarInt() - 1;
+                if (suffixLength >= 0) {
+                    int prefix = column.readVarInt(), descriptionLength = prefix + suffixLength;
+                    if (description.length < descriptionLength) {
+                        byte[] tmp = new byte[Math.max(descriptionLength, description.length * 2)];
+                        System.arraycopy(description, 0, tmp, 0, prefix);
+                        description = tmp;
+                    }
+                    column.readFully(description, prefix, suffixLength);
+                    string = new String(description, 0, descriptionLength, StandardCharsets.UTF_8);
+                }
+
+                result[i][r] = new SingleReadImpl(readIds[i], sequence, string);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads and decompresses column, reusing buffer if its size is enough
+     */
+    private byte[] readColumn(PrimitivI input, byte[] buffer) {
+        return readColumn(input, buffer, input.readVarInt());
+    }
+
+    private byte[] readColumn(PrimitivI input, byte[] buffer, int rawSize) {
+        int compressedSize = input.readVarInt();
+        if (buffer.length < rawSize)
+            buffer = new byte[rawSize];
+        if (compressedSize == rawSize) {
+            input.readFully(buffer, 0, rawSize);
+            return buffer;
+        }
+
+        if (compressedIn.length < compressedSize)
+            compressedIn = new byte[compressedSize];
+        input.readFully(compressedIn, 0, compressedSize);
+        inflater.reset();
+        inflater.setInput(compressedIn, 0, compressedSize);
+        try {
+            int n = 0;
+            while (n < rawSize) {
+                int read = inflater.inflate(buffer, n, rawSize - n);
+                if (read == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new IllegalFileFormatException("Corrupted block.");
+                n += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalFileFormatException("Corrupted block: " + e.getMessage());
+        }
+        return buffer;
+    }
+
+    void close() {
+        deflater.end();
+        inflater.end();
+    }
+
+    /**
+     * Byte array output stream with access to its internal array
+     */
+    static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(1024);
+        }
+
+        byte[] data() {
+            return buf;
+        }
+    }
+
+    static final class Column {
+        final Buffer buffer = new Buffer();
+        final PrimitivO output = new PrimitivO(buffer);
+
+        void reset() {
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Reads values written by {@link PrimitivO} directly from decoded column (avoids stream overhead per value)
+     */
+    static final class ColumnReader {
+        final byte[] data;
+        final int size;
+        int position = 0;
+
+        ColumnReader(byte[] data) {
+            this(data, data.length);
+        }
+
+        ColumnReader(byte[] data, int size) {
+            this.data = data;
+            this.size = size;
+        }
+
+        boolean hasMore() {
+            return position < size;
+        }
+
+        byte readByte() {
+            return data[position++];
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long value = 0, b;
+            int shift = 0;
+            do {
+                b = data[position++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        void readFully(byte[] buffer, int offset, int length) {
+            System.arraycopy(data, position, buffer, offset, length);
+            position += length;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import com.milaboratory.core.io.sequence.PairedRead;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.SequenceReaderCloseable;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Reader of binary columnar files with paired-end reads written by {@link PairedBinaryReadsWriter}.
+ *
+ * @see BinaryReadsReader
+ */
+public final class PairedBinaryReadsReader extends BinaryReadsReader<PairedRead> implements SequenceReaderCloseable<PairedRead> {
+    public PairedBinaryReadsReader(String fileName) throws IOException {
+        this(new File(fileName));
+    }
+
+    public PairedBinaryReadsReader(File file) throws IOException {
+        super(file, 2);
+    }
+
+    @Override
+    protected PairedRead create(SingleRead[] reads) {
+        return new PairedRead(reads);
+    }
+}
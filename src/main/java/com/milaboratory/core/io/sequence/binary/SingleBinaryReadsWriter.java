@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.SingleSequenceWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writer of binary columnar files with single reads.
+ *
+ * @see BinaryReadsWriter
+ * @see SingleBinaryReadsReader
+ */
+public final class SingleBinaryReadsWriter extends BinaryReadsWriter<SingleRead> implements SingleSequenceWriter {
+    public SingleBinaryReadsWriter(String fileName) throws IOException {
+        this(new File(fileName));
+    }
+
+    public SingleBinaryReadsWriter(File file) throws IOException {
+        this(new FileOutputStream(file), DEFAULT_BLOCK_SIZE, DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    public SingleBinaryReadsWriter(OutputStream stream) {
+        this(stream, DEFAULT_BLOCK_SIZE, DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Creates writer.
+     *
+     * @param stream           output stream
+     * @param blockSize        number of records per block
+     * @param compressionLevel deflate compression level (0-9)
+     */
+    public SingleBinaryReadsWriter(OutputStream stream, int blockSize, int compressionLevel) {
+        super(stream, 1, blockSize, compressionLevel);
+    }
+}
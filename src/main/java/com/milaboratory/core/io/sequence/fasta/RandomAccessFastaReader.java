@@ -19,11 +19,14 @@ import com.milaboratory.core.Range;
 import com.milaboratory.core.sequence.Alphabet;
 import com.milaboratory.core.sequence.Sequence;
 import com.milaboratory.core.sequence.SequenceBuilder;
+import com.milaboratory.core.sequence.provider.CachedSequenceProvider;
 import com.milaboratory.core.sequence.provider.SequenceProvider;
 import com.milaboratory.core.sequence.provider.SequenceProviderIndexOutOfBoundsException;
+import com.milaboratory.core.sequence.provider.SequenceRegionCache;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
@@ -34,10 +37,29 @@ import static com.milaboratory.core.io.sequence.fasta.RandomAccessFastaIndex.ext
 import static com.milaboratory.core.io.sequence.fasta.RandomAccessFastaIndex.extractSkipLetters;
 import static com.milaboratory.core.io.sequence.fasta.RandomAccessFastaIndex.index;
 
+/**
+ * Reader of regions of sequences from indexed fasta files.
+ *
+ * <p>By default regions are read via single {@link SeekableByteChannel}, so concurrent reads are serialized. In
+ * memory-mapped mode (see {@link #RandomAccessFastaReader(Path, RandomAccessFastaIndex, Alphabet, boolean)}) the whole
+ * file is mapped into memory (by segments of {@code 2^30} bytes, so files larger than 2 GB are supported) and regions
+ * are read without any locking.</p>
+ *
+ * @param <S> type of sequences
+ */
 public final class RandomAccessFastaReader<S extends Sequence<S>> implements AutoCloseable {
     public static final int DEFAULT_BUFFER_SIZE = 4096;
+    /**
+     * Log2 of the size of mapped segments
+     */
+    static final int DEFAULT_SEGMENT_BITS = 30;
     private final ByteBuffer buffer;
     private final SeekableByteChannel channel;
+    /**
+     * File segments (memory-mapped mode only), segment {@code i} starts at {@code i << segmentBits} file position
+     */
+    private final MappedByteBuffer[] segments;
+    private final int segmentBits;
     final RandomAccessFastaIndex index;
     final Alphabet<S> alphabet;
 
@@ -67,6 +89,51 @@ public final class RandomAccessFastaReader<S extends Sequence<S>> implements Aut
         this.index = index;
         this.alphabet = alphabet;
         this.buffer = ByteBuffer.allocate(bufferSize);
+        this.segments = null;
+        this.segmentBits = 0;
+    }
+
+    public RandomAccessFastaReader(Path file, Alphabet<S> alphabet, boolean saveIndexFile, boolean memoryMapped) {
+        this(file, index(file, saveIndexFile), alphabet, memoryMapped);
+    }
+
+    /**
+     * Creates reader.
+     *
+     * @param file         fasta file
+     * @param index        index of the file
+     * @param alphabet     alphabet
+     * @param memoryMapped if true, file will be mapped into memory and regions will be read without locking (see
+     *                     class description)
+     */
+    public RandomAccessFastaReader(Path file, RandomAccessFastaIndex index, Alphabet<S> alphabet,
+                                   boolean memoryMapped) {
+        this(file, index, alphabet, memoryMapped ? DEFAULT_SEGMENT_BITS : -1);
+    }
+
+    RandomAccessFastaReader(Path file, RandomAccessFastaIndex index, Alphabet<S> alphabet, int segmentBits) {
+        this.index = index;
+        this.alphabet = alphabet;
+        if (segmentBits < 0) {
+            this.channel = openChannel(file);
+            this.buffer = ByteBuffer.allocate(DEFAULT_BUFFER_SIZE);
+            this.segments = null;
+            this.segmentBits = 0;
+        } else {
+            this.channel = null;
+            this.buffer = null;
+            this.segments = map(file, segmentBits);
+            this.segmentBits = segmentBits;
+        }
+    }
+
+    /**
+     * Returns true if file is mapped into memory
+     *
+     * @return true if file is mapped into memory
+     */
+    public boolean isMemoryMapped() {
+        return segments != null;
     }
 
     public Alphabet<S> getAlphabet() {
@@ -85,6 +152,30 @@ public final class RandomAccessFastaReader<S extends Sequence<S>> implements Aut
         return getSequenceProvider(index.getRecordByIdCheck(id));
     }
 
+    /**
+     * Returns thread-safe provider caching regions of the sequence in specified cache (which may be shared between
+     * providers of several sequences).
+     *
+     * @param id    sequence id
+     * @param cache cache
+     * @return provider caching regions of the sequence
+     */
+    public SequenceProvider<S> getSequenceProvider(int id, SequenceRegionCache cache) {
+        return new CachedSequenceProvider<>(alphabet, getSequenceProvider(id), cache);
+    }
+
+    /**
+     * Returns thread-safe provider caching regions of the sequence in specified cache (which may be shared between
+     * providers of several sequences).
+     *
+     * @param id    sequence id
+     * @param cache cache
+     * @return provider caching regions of the sequence
+     */
+    public SequenceProvider<S> getSequenceProvider(String id, SequenceRegionCache cache) {
+        return new CachedSequenceProvider<>(alphabet, getSequenceProvider(id), cache);
+    }
+
     public S getSequence(int id, Range range) {
         return read(index.getRecordByIndex(id), range);
     }
@@ -111,9 +202,54 @@ public final class RandomAccessFastaReader<S extends Sequence<S>> implements Aut
         };
     }
 
-    private synchronized S read(RandomAccessFastaIndex.IndexRecord record, Range range) {
+    private S read(RandomAccessFastaIndex.IndexRecord record, Range range) {
         if (range.getUpper() > record.getLength())
             throw new SequenceProviderIndexOutOfBoundsException(range.intersection(new Range(0, (int) record.getLength())));
+        return segments == null ? readChannel(record, range) : readMapped(record, range);
+    }
+
+    private S readMapped(RandomAccessFastaIndex.IndexRecord record, Range range) {
+        long qResult = record.queryPosition(range.getLower());
+        long position = extractFilePosition(qResult);
+        SequenceBuilder<S> builder = alphabet.createBuilder().ensureCapacity(range.length());
+        int toSkip = extractSkipLetters(qResult);
+        int toRead = range.length();
+        byte b;
+
+        while (toSkip > 0 || toRead > 0) {
+            int segmentIndex = (int) (position >>> segmentBits);
+            if (segmentIndex >= segments.length)
+                throw new RuntimeException("Unexpected end of file.");
+            // Absolute reads don't change buffer state, so segments can be shared between threads
+            MappedByteBuffer segment = segments[segmentIndex];
+            int i = (int) (position - ((long) segmentIndex << segmentBits)), limit = segment.limit();
+            while (i < limit && (toSkip > 0 || toRead > 0)) {
+                b = segment.get(i++);
+
+                // Skipping delimiters
+                if (b == '\n' || b == '\r')
+                    continue;
+
+                // Processing letters
+                if (toSkip > 0)
+                    --toSkip;
+                else {
+                    builder.append(alphabet.symbolToCode((char) b));
+                    --toRead;
+                }
+            }
+            position = ((long) segmentIndex << segmentBits) + i;
+        }
+
+        assert builder.size() == range.length();
+
+        S seq = builder.createAndDestroy();
+
+        // Returning result, invert if required
+        return seq.getRange(range.move(-range.getLower()));
+    }
+
+    private synchronized S readChannel(RandomAccessFastaIndex.IndexRecord record, Range range) {
         try {
             long qResult = record.queryPosition(range.getLower());
             channel.position(extractFilePosition(qResult));
@@ -157,7 +293,24 @@ public final class RandomAccessFastaReader<S extends Sequence<S>> implements Aut
 
     @Override
     public void close() throws Exception {
-        this.channel.close();
+        // Mapped segments are released by garbage collector
+        if (this.channel != null)
+            this.channel.close();
+    }
+
+    private static MappedByteBuffer[] map(Path file, int segmentBits) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size(), segmentSize = 1L << segmentBits;
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size + segmentSize - 1) >>> segmentBits)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(segmentSize, size - position));
+            }
+            return segments;
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
     private static SeekableByteChannel openChannel(Path file) {
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import cc.redberry.pipe.OutputPortCloseable;
+import cc.redberry.pipe.util.Chunk;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.util.CanReportProgress;
+import com.milaboratory.util.CountingInputStream;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Base class for multi-threaded FASTQ readers.
+ *
+ * Single reading thread splits input stream(s) into blocks of whole records ({@link FastqBlockSplitter}), worker
+ * threads decode blocks into chunks of reads, and chunks are returned by {@link #take()} in the original order, so
+ * read ids are the same as assigned by single-threaded readers.
+ *
+ * @param <R> type of read
+ */
+abstract class AbstractParallelFastqReader<R> implements OutputPortCloseable<Chunk<R>>, CanReportProgress {
+    public static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+    private static final CompletableFuture END = CompletableFuture.completedFuture(null);
+    /**
+     * Used to estimate progress
+     */
+    private final long totalSize;
+    private final CountingInputStream countingInputStream;
+    final FastqBlockSplitter[] splitters;
+    final boolean replaceWildcards, lazyReads;
+    private final ExecutorService executor;
+    private final BlockingQueue<CompletableFuture<Chunk<R>>> queue;
+    private final Thread readerThread;
+    private volatile FastqBlockSplitter.Block[] firstBlocks;
+    private volatile boolean closed = false, finished = false;
+
+    AbstractParallelFastqReader(InputStream[] streams, CompressionType ct, int blockSize,
+                                boolean replaceWildcards, boolean lazyReads, int threads) throws IOException {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive.");
+
+        for (InputStream stream : streams)
+            //Check for null
+            if (stream == null)
+                throw new NullPointerException();
+
+        if (streams[0] instanceof FileInputStream)
+            totalSize = ((FileInputStream) streams[0]).getChannel().size();
+        else
+            totalSize = -1L;
+
+        this.replaceWildcards = replaceWildcards;
+        this.lazyReads = lazyReads;
+        this.splitters = new FastqBlockSplitter[streams.length];
+        this.countingInputStream = new CountingInputStream(streams[0]);
+        for (int i = 0; i < streams.length; i++)
+            splitters[i] = new FastqBlockSplitter(ct.createInputStream(
+                    i == 0 ? countingInputStream : streams[i], Math.max(blockSize / 2, 2048)), blockSize);
+
+        // Reading first blocks in the constructor to guess quality formats
+        this.firstBlocks = readBlocks();
+
+        this.queue = new ArrayBlockingQueue<>(2 * threads);
+        final AtomicInteger workerCounter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "FastqDecoder-" + workerCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.readerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readAll();
+            }
+        }, "FastqBlockReader");
+        this.readerThread.setDaemon(true);
+    }
+
+    /**
+     * Starts reading; must be invoked at the end of constructor of inheritor
+     */
+    final void start() {
+        readerThread.start();
+    }
+
+    /**
+     * Returns first blocks of all streams (available after construction, before {@link #start()})
+     */
+    final FastqBlockSplitter.Block[] getFirstBlocks() {
+        return firstBlocks;
+    }
+
+    /**
+     * Decodes block(s) into chunk of reads
+     *
+     * @param blocks  blocks from all streams, containing the same number of records
+     * @param firstId id of the first read in blocks
+     */
+    abstract Chunk<R> decode(FastqBlockSplitter.Block[] blocks, long firstId) throws IOException;
+
+    private FastqBlockSplitter.Block[] readBlocks() throws IOException {
+        FastqBlockSplitter.Block[] blocks = new FastqBlockSplitter.Block[splitters.length];
+        blocks[0] = splitters[0].take();
+        // Reading the same number of records from all other streams keeps them synchronized
+        for (int i = 1; i < splitters.length; i++)
+            if ((blocks[i] = blocks[0] == null ? splitters[i].take(1) : splitters[i].take(blocks[0].records))
+                    == null ^ blocks[0] == null)
+                throw new IOException("Different number of reads in input files.");
+        return blocks[0] == null ? null : blocks;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readAll() {
+        long id = 0;
+        try {
+            try {
+                FastqBlockSplitter.Block[] blocks = firstBlocks;
+                firstBlocks = null;
+                while (!closed && blocks != null) {
+                    queue.put(CompletableFuture.supplyAsync(new DecodeTask(blocks, id), executor));
+                    id += blocks[0].records;
+                    blocks = readBlocks();
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                CompletableFuture<Chunk<R>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new RuntimeException("While reading fastq record with id=" + id, e));
+                queue.put(failed);
+            }
+            queue.put((CompletableFuture<Chunk<R>>) END);
+        } catch (InterruptedException e) {
+            // Closed
+        }
+    }
+
+    private final class DecodeTask implements java.util.function.Supplier<Chunk<R>> {
+        final FastqBlockSplitter.Block[] blocks;
+        final long firstId;
+
+        DecodeTask(FastqBlockSplitter.Block[] blocks, long firstId) {
+            this.blocks = blocks;
+            this.firstId = firstId;
+        }
+
+        @Override
+        public Chunk<R> get() {
+            try {
+                return decode(blocks, firstId);
+            } catch (IOException e) {
+                throw new RuntimeException("While reading fastq record with id=" + firstId, e);
+            }
+        }
+    }
+
+    @Override
+    public double getProgress() {
+        return totalSize == -1 ? Double.NaN : (1.0 * countingInputStream.getBytesRead() / totalSize);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public synchronized Chunk<R> take() {
+        if (finished || closed)
+            return null;
+
+        try {
+            CompletableFuture<Chunk<R>> future = queue.take();
+            if (future == END) {
+                finished = true;
+                close();
+                return null;
+            }
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (CancellationException e) {
+            // Closed concurrently
+            finished = true;
+            return null;
+        } catch (ExecutionException e) {
+            finished = true;
+            if (closed)
+                return null;
+            close();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Closes the output port
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        readerThread.interrupt();
+        executor.shutdownNow();
+        // Tasks dropped by executor will never be completed, so waiting consumers must be released
+        for (CompletableFuture<Chunk<R>> future : queue)
+            future.cancel(false);
+        queue.offer((CompletableFuture<Chunk<R>>) END);
+        try {
+            for (FastqBlockSplitter splitter : splitters)
+                splitter.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Splits FASTQ stream into blocks of raw bytes, each containing a whole number of records.
+ *
+ * Record boundaries are found by counting line delimiters (each FASTQ record occupies exactly four lines), so no
+ * parsing is performed here and blocks can be decoded in parallel with {@link FastqRecordsReader}.
+ *
+ * Not thread-safe; used internally by parallel FASTQ readers from a single reading thread.
+ */
+final class FastqBlockSplitter implements AutoCloseable {
+    private static final byte DELIMITER = '\n';
+    final InputStream stream;
+    final int blockSize;
+    byte[] buffer;
+    /**
+     * Number of bytes in buffer
+     */
+    int size;
+    /**
+     * Position in buffer up to which delimiters were counted
+     */
+    int scanned;
+    /**
+     * Number of delimiters found in buffer before scanned position
+     */
+    int lines;
+    /**
+     * Number of whole records found in buffer and position right after the last of them
+     */
+    int records, recordsEnd;
+    boolean eof;
+
+    FastqBlockSplitter(InputStream stream, int blockSize) {
+        this.stream = stream;
+        this.blockSize = blockSize;
+        this.buffer = new byte[blockSize];
+    }
+
+    /**
+     * Reads next block of approximately {@code blockSize} bytes (or bigger if single record doesn't fit into block)
+     *
+     * @return next block or {@literal null} if end of stream reached
+     */
+    Block take() throws IOException {
+        return take(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads next block containing exactly {@code count} records
+     *
+     * @param count number of records
+     * @return next block or {@literal null} if end of stream reached
+     * @throws IllegalFileFormatException if stream contains fewer (but not zero) records than requested
+     */
+    Block take(int count) throws IOException {
+        boolean exact = count != Integer.MAX_VALUE;
+        while (true) {
+            for (; scanned < size && records < count; ++scanned)
+                if (buffer[scanned] == DELIMITER && (++lines & 3) == 0) {
+                    ++records;
+                    recordsEnd = scanned + 1;
+                }
+
+            if (records == count || (!exact && records > 0 && size >= blockSize))
+                return cut();
+
+            if (eof) {
+                if (size > 0 && buffer[size - 1] != DELIMITER) {
+                    // Last line without line delimiter
+                    ensureCapacity(size + 1);
+                    buffer[size++] = DELIMITER;
+                    continue;
+                }
+                if (recordsEnd != size)
+                    throw new IllegalFileFormatException("Unexpected end of file.");
+                if (size == 0)
+                    return null;
+                if (exact && records != count)
+                    throw new IllegalFileFormatException("Unexpected end of file (expected " + count +
+                            " more records, found " + records + ").");
+                return cut();
+            }
+
+            // Reading more data
+            if (size == buffer.length)
+                ensureCapacity(buffer.length * 2);
+            int read = stream.read(buffer, size, buffer.length - size);
+            if (read == -1)
+                eof = true;
+            else
+                size += read;
+        }
+    }
+
+    private Block cut() {
+        Block block = new Block(buffer, recordsEnd, records);
+        // Block buffer is passed to lazy reads, so it must not be reused
+        byte[] newBuffer = new byte[Math.max(blockSize, size - recordsEnd)];
+        System.arraycopy(buffer, recordsEnd, newBuffer, 0, size - recordsEnd);
+        buffer = newBuffer;
+        size -= recordsEnd;
+        scanned = lines = records = recordsEnd = 0;
+        return block;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (buffer.length < capacity) {
+            byte[] newBuffer = new byte[Math.max(capacity, buffer.length * 2)];
+            System.arraycopy(buffer, 0, newBuffer, 0, size);
+            buffer = newBuffer;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+
+    /**
+     * Raw bytes of several whole FASTQ records
+     */
+    static final class Block {
+        final byte[] data;
+        final int size, records;
+
+        Block(byte[] data, int size, int records) {
+            this.data = data;
+            this.size = size;
+            this.records = records;
+        }
+
+        FastqRecordsReader createRecordsReader(boolean lazyReads, boolean replaceWildcards) {
+            return new FastqRecordsReader(lazyReads, data, size, replaceWildcards);
+        }
+    }
+}
@@ -86,6 +86,23 @@ public final class FastqRecordsReader implements AutoCloseable {
         this.autoClose = autoClose;
     }
 
+    /**
+     * Creates reader of records from already loaded data (used to decode blocks of records in parallel)
+     *
+     * @param lazyReads        use lazy implementation of reads
+     * @param buffer           data containing whole FASTQ records
+     * @param size             number of bytes in buffer
+     * @param replaceWildcards if {@literal true}, all wildcards (like N) will be converted to a random basic letters
+     *                         matching corresponding wildcards, and their corresponding quality scores will be set to
+     *                         a minimum possible values
+     */
+    FastqRecordsReader(boolean lazyReads, byte[] buffer, int size, boolean replaceWildcards) {
+        this(lazyReads, (InputDataWrapper) null, size, replaceWildcards, false);
+        this.buffer = buffer;
+        this.currentBufferSize = size;
+        this.closed.set(true);
+    }
+
     public SingleRead createRead(long id, QualityFormat format) {
         if (lazyReads)
             return SingleReadLazy.create(format,
@@ -223,6 +240,9 @@ public final class FastqRecordsReader implements AutoCloseable {
         if (!closed.compareAndSet(false, true))
             return;
 
+        if (inputStream == null)
+            return;
+
         //is synchronized with itself and _next calls,
         //so no synchronization on inner reader is needed
         try {
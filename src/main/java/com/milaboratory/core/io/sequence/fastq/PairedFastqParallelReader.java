@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import cc.redberry.pipe.util.Chunk;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.PairedRead;
+import com.milaboratory.core.io.sequence.SingleRead;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Multi-threaded reader of pair of FASTQ files with paired-end reads.
+ *
+ * Reading thread takes a block of whole records from the first file and exactly the same number of records from the
+ * second one, so the files are kept synchronized; worker threads decode pairs of blocks into chunks of {@link
+ * PairedRead}s. Chunks are returned in the original order and read ids are the same as assigned by {@link
+ * PairedFastqReader}.
+ */
+public final class PairedFastqParallelReader extends AbstractParallelFastqReader<PairedRead> {
+    private final QualityFormat format1, format2;
+
+    /**
+     * Creates a parallel reader of paired-end FASTQ files
+     *
+     * @param file1   file with first reads of pairs
+     * @param file2   file with second reads of pairs
+     * @param threads number of decoding threads
+     * @throws IOException in case there is problem with reading from files
+     */
+    public PairedFastqParallelReader(File file1, File file2, int threads) throws IOException {
+        this(new FileInputStream(file1), new FileInputStream(file2), SingleFastqReader.DEFAULT_QUALITY_FORMAT,
+                CompressionType.detectCompressionType(file1), true, DEFAULT_BLOCK_SIZE, false, true, threads);
+    }
+
+    /**
+     * Creates a parallel reader of paired-end FASTQ streams
+     *
+     * @param stream1            stream with first reads of pairs
+     * @param stream2            stream with second reads of pairs
+     * @param format             read quality encoding format, if {@code guessQualityFormat} is true this value is used
+     *                           as a default format
+     * @param ct                 type of compression (NONE, GZIP, etc)
+     * @param guessQualityFormat if true reader will try to guess quality string format (separately for each stream),
+     *                           if guess fails {@code format} will be used as a default quality string format, if
+     *                           {@code format==null} exception will be thrown
+     * @param blockSize          approximate size of block of records (in the first stream) decoded by a single thread
+     * @param replaceWildcards   if {@literal true}, all wildcards (like N) will be converted to a random basic letters
+     *                           matching corresponding wildcards, and their corresponding quality scores will be set
+     *                           to a minimum possible values
+     * @param lazyReads          specifies whether created reads should be lazy initialized
+     * @param threads            number of decoding threads
+     * @throws IOException in case there is problem with reading from files
+     */
+    public PairedFastqParallelReader(InputStream stream1, InputStream stream2, QualityFormat format,
+                                     CompressionType ct, boolean guessQualityFormat, int blockSize,
+                                     boolean replaceWildcards, boolean lazyReads, int threads) throws IOException {
+        super(new InputStream[]{stream1, stream2}, ct, blockSize, replaceWildcards, lazyReads, threads);
+        FastqBlockSplitter.Block[] blocks = getFirstBlocks();
+        this.format1 = SingleFastqParallelReader.guessFormat(blocks, 0, format, guessQualityFormat, lazyReads);
+        this.format2 = SingleFastqParallelReader.guessFormat(blocks, 1, format, guessQualityFormat, lazyReads);
+        start();
+    }
+
+    public QualityFormat getQualityFormat1() {
+        return format1;
+    }
+
+    public QualityFormat getQualityFormat2() {
+        return format2;
+    }
+
+    @Override
+    Chunk<PairedRead> decode(FastqBlockSplitter.Block[] blocks, long firstId) throws IOException {
+        SingleRead[] reads1 = SingleFastqParallelReader.decode(blocks[0], firstId, format1, replaceWildcards, lazyReads),
+                reads2 = SingleFastqParallelReader.decode(blocks[1], firstId, format2, replaceWildcards, lazyReads);
+        PairedRead[] reads = new PairedRead[reads1.length];
+        for (int i = 0; i < reads.length; i++)
+            reads[i] = new PairedRead(reads1[i], reads2[i]);
+        return new Chunk<>(reads);
+    }
+}
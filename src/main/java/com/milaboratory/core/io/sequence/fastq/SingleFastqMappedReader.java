@@ -0,0 +1,234 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+import com.milaboratory.core.io.sequence.SequenceReaderCloseable;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.SingleReadLazy;
+import com.milaboratory.core.io.sequence.SingleReader;
+import com.milaboratory.util.CanReportProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reader of uncompressed FASTQ files with single-end reads, scanning records in place over memory-mapped windows of
+ * the file.
+ *
+ * Unlike {@link SingleFastqReader}, file content is not copied into intermediate buffers: created reads are lazy
+ * ({@link SingleReadLazy}) and reference mapped regions directly, so sequence, quality and description are decoded
+ * only when accessed.
+ */
+public final class SingleFastqMappedReader implements SingleReader, CanReportProgress,
+        SequenceReaderCloseable<SingleRead> {
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 28;
+    private static final byte DELIMITER = '\n';
+    private final FileChannel channel;
+    private final long fileSize;
+    private final int windowSize;
+    private final QualityFormat format;
+    private final boolean replaceWildcards;
+    /**
+     * Current mapped window and its position in file
+     */
+    private MappedByteBuffer window;
+    private long windowStart;
+    /**
+     * Position of the next record in current window
+     */
+    private int pointer;
+    private long idCounter;
+    private volatile boolean closed;
+
+    /**
+     * Creates a {@link SingleRead} stream from an uncompressed FASTQ file with single-end read data
+     *
+     * @param file file with reads
+     * @throws IOException in case there is problem with reading from files
+     */
+    public SingleFastqMappedReader(File file) throws IOException {
+        this(file, SingleFastqReader.DEFAULT_QUALITY_FORMAT, true, false, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Creates a {@link SingleRead} stream from an uncompressed FASTQ file with single-end read data
+     *
+     * @param file               file with reads
+     * @param format             read quality encoding format, if {@code guessQualityFormat} is true this value is used
+     *                           as a default format
+     * @param guessQualityFormat if true reader will try to guess quality string format, if guess fails {@code format}
+     *                           will be used as a default quality string format, if {@code format==null} exception
+     *                           will be thrown
+     * @param replaceWildcards   if {@literal true}, all wildcards (like N) will be converted to a random basic letters
+     *                           matching corresponding wildcards, and their corresponding quality scores will be set
+     *                           to a minimum possible values
+     * @param windowSize         size of mapped window (must be greater than size of any single record)
+     * @throws IOException in case there is problem with reading from files
+     */
+    public SingleFastqMappedReader(File file, QualityFormat format, boolean guessQualityFormat,
+                                   boolean replaceWildcards, int windowSize) throws IOException {
+        if (windowSize <= 0)
+            throw new IllegalArgumentException("Window size must be positive.");
+        this.channel = new RandomAccessFile(file, "r").getChannel();
+        this.fileSize = channel.size();
+        this.windowSize = windowSize;
+        this.replaceWildcards = replaceWildcards;
+        map(0);
+
+        //Guessing quality format
+        if (guessQualityFormat) {
+            byte[] head = new byte[Math.min(SingleFastqReader.DEFAULT_BUFFER_SIZE, window.limit())];
+            window.duplicate().get(head);
+            QualityFormat f = SingleFastqReader.guessFormat(new FastqRecordsReader(false, head, head.length, false));
+            if (f != null)
+                format = f;
+        }
+
+        if (format == null)
+            if (guessQualityFormat)
+                throw new RuntimeException("Format guess failed.");
+            else
+                throw new NullPointerException();
+
+        this.format = format;
+    }
+
+    private void map(long position) throws IOException {
+        windowStart = position;
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, fileSize - position));
+        pointer = 0;
+    }
+
+    public QualityFormat getQualityFormat() {
+        return format;
+    }
+
+    @Override
+    public double getProgress() {
+        return fileSize == 0 ? 1.0 : (1.0 * (windowStart + pointer) / fileSize);
+    }
+
+    @Override
+    public boolean isFinished() {
+        return closed;
+    }
+
+    @Override
+    public synchronized SingleRead take() {
+        if (closed)
+            return null;
+
+        try {
+            SingleRead read = nextRecord();
+            if (read == null)
+                close();
+            return read;
+        } catch (IOException e) {
+            throw new RuntimeException("While reading fastq record with id=" + idCounter, e);
+        }
+    }
+
+    private SingleRead nextRecord() throws IOException {
+        while (true) {
+            int limit = window.limit();
+            boolean lastWindow = windowStart + limit == fileSize;
+
+            if (pointer == limit) {
+                if (lastWindow)
+                    return null;
+                map(windowStart + pointer);
+                continue;
+            }
+
+            if (window.get(pointer) != '@') // fastq specification
+                throw new IllegalFileFormatException("No '@' character found in the beginning of fastq description line.");
+
+            int descriptionBegin = pointer + 1,
+                    sequenceBegin = nextLine(descriptionBegin, limit),
+                    qualityLineBegin = nextLine(sequenceBegin, limit),
+                    qualityBegin = nextLine(qualityLineBegin, limit),
+                    next = nextLine(qualityBegin, limit);
+
+            if (next == -1 && qualityBegin != -1 && lastWindow)
+                // Last line of the file without line delimiter
+                next = limit + 1;
+
+            if (next == -1) {
+                if (lastWindow)
+                    throw new IllegalFileFormatException("Unexpected end of file.");
+                if (pointer == 0)
+                    throw new IllegalFileFormatException("Too small window.");
+                // Record crosses window boundary
+                map(windowStart + pointer);
+                continue;
+            }
+
+            if (window.get(qualityLineBegin) != '+') // fastq specification
+                throw new IllegalFileFormatException("No '+' character found in the beginning of the third line of the fastq record.");
+
+            int sequenceEnd = qualityLineBegin - 1, qualityEnd = next - 1;
+            if (qualityEnd - qualityBegin != sequenceEnd - sequenceBegin)
+                throw new IllegalFileFormatException("Quality and sequence have different sizes.");
+
+            pointer = Math.min(next, limit);
+            return SingleReadLazy.create(format,
+                    idCounter++,
+                    window,
+                    descriptionBegin,
+                    (short) (sequenceBegin - descriptionBegin),
+                    (short) (qualityBegin - descriptionBegin),
+                    (short) (sequenceEnd - sequenceBegin),
+                    (short) (sequenceBegin - descriptionBegin - 1),
+                    replaceWildcards);
+        }
+    }
+
+    /**
+     * Returns position after the next line delimiter, or -1 if there is no line delimiter before limit
+     */
+    private int nextLine(int from, int limit) {
+        if (from < 0)
+            return -1;
+        for (int i = from; i < limit; ++i)
+            if (window.get(i) == DELIMITER)
+                return i + 1;
+        return -1;
+    }
+
+    @Override
+    public synchronized long getNumberOfReads() {
+        return idCounter;
+    }
+
+    /**
+     * Closes the output port
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
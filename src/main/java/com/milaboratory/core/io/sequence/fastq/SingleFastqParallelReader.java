@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import cc.redberry.pipe.util.Chunk;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.SingleRead;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Multi-threaded reader of FASTQ files with single-end reads.
+ *
+ * One thread reads the (decompressed) input in large blocks of whole records, and {@code threads} worker threads
+ * decode blocks into chunks of {@link SingleRead}s. Chunks are returned in the original order and read ids are the
+ * same as assigned by {@link SingleFastqReader}.
+ */
+public final class SingleFastqParallelReader extends AbstractParallelFastqReader<SingleRead> {
+    private final QualityFormat format;
+
+    /**
+     * Creates a parallel reader of FASTQ file with single-end read data
+     *
+     * @param file    file with reads
+     * @param threads number of decoding threads
+     * @throws IOException in case there is problem with reading from files
+     */
+    public SingleFastqParallelReader(File file, int threads) throws IOException {
+        this(new FileInputStream(file), SingleFastqReader.DEFAULT_QUALITY_FORMAT,
+                CompressionType.detectCompressionType(file), true, DEFAULT_BLOCK_SIZE, false, true, threads);
+    }
+
+    /**
+     * Creates a parallel reader of FASTQ stream with single-end read data
+     *
+     * @param stream             stream with reads
+     * @param format             read quality encoding format, if {@code guessQualityFormat} is true this value is used
+     *                           as a default format
+     * @param ct                 type of compression (NONE, GZIP, etc)
+     * @param guessQualityFormat if true reader will try to guess quality string format, if guess fails {@code format}
+     *                           will be used as a default quality string format, if {@code format==null} exception
+     *                           will be thrown
+     * @param blockSize          approximate size of block of records decoded by a single thread
+     * @param replaceWildcards   if {@literal true}, all wildcards (like N) will be converted to a random basic letters
+     *                           matching corresponding wildcards, and their corresponding quality scores will be set
+     *                           to a minimum possible values
+     * @param lazyReads          specifies whether created reads should be lazy initialized
+     * @param threads            number of decoding threads
+     * @throws IOException in case there is problem with reading from files
+     */
+    public SingleFastqParallelReader(InputStream stream, QualityFormat format, CompressionType ct,
+                                     boolean guessQualityFormat, int blockSize, boolean replaceWildcards,
+                                     boolean lazyReads, int threads) throws IOException {
+        super(new InputStream[]{stream}, ct, blockSize, replaceWildcards, lazyReads, threads);
+        this.format = guessFormat(getFirstBlocks(), 0, format, guessQualityFormat, lazyReads);
+        start();
+    }
+
+    static QualityFormat guessFormat(FastqBlockSplitter.Block[] blocks, int i, QualityFormat format,
+                                     boolean guessQualityFormat, boolean lazyReads) throws IOException {
+        if (guessQualityFormat && blocks != null) {
+            QualityFormat f = SingleFastqReader.guessFormat(blocks[i].createRecordsReader(lazyReads, false));
+            if (f != null)
+                format = f;
+        }
+
+        if (format == null)
+            if (guessQualityFormat)
+                throw new RuntimeException("Format guess failed.");
+            else
+                throw new NullPointerException();
+        return format;
+    }
+
+    public QualityFormat getQualityFormat() {
+        return format;
+    }
+
+    @Override
+    Chunk<SingleRead> decode(FastqBlockSplitter.Block[] blocks, long firstId) throws IOException {
+        return new Chunk<>(decode(blocks[0], firstId, format, replaceWildcards, lazyReads));
+    }
+
+    static SingleRead[] decode(FastqBlockSplitter.Block block, long firstId, QualityFormat format,
+                               boolean replaceWildcards, boolean lazyReads) throws IOException {
+        FastqRecordsReader reader = block.createRecordsReader(lazyReads, replaceWildcards);
+        SingleRead[] reads = new SingleRead[block.records];
+        for (int i = 0; i < reads.length; i++) {
+            if (!reader.nextRecord(false))
+                throw new IllegalStateException();
+            reads[i] = reader.createRead(firstId + i, format);
+        }
+        return reads;
+    }
+}
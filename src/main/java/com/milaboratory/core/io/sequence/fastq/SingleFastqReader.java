@@ -16,6 +16,7 @@
 package com.milaboratory.core.io.sequence.fastq;
 
 import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.ReadBatch;
 import com.milaboratory.core.io.sequence.SequenceReaderCloseable;
 import com.milaboratory.core.io.sequence.SingleRead;
 import com.milaboratory.core.io.sequence.SingleReader;
@@ -254,7 +255,7 @@ public final class SingleFastqReader implements SingleReader, CanReportProgress,
         //Guessing quality format
         if (guessQualityFormat) {
             recordsReader.fillBuffer(DEFAULT_BUFFER_SIZE);
-            QualityFormat f = guessFormat(); //Buffer minus ~ one read.
+            QualityFormat f = guessFormat(recordsReader); //Buffer minus ~ one read.
             this.recordsReader.pointer = 0;
 
             if (f != null)
@@ -306,6 +307,41 @@ public final class SingleFastqReader implements SingleReader, CanReportProgress,
         return recordsReader.createRead(idCounter++, format);
     }
 
+    /**
+     * Reads up to {@code maxReads} next records directly into a {@link ReadBatch}, without creating separate objects
+     * for each read.
+     *
+     * @param maxReads maximal number of reads in the batch
+     * @return batch or {@literal null} if there are no more reads
+     */
+    public synchronized ReadBatch takeBatch(int maxReads) {
+        if (maxReads <= 0)
+            throw new IllegalArgumentException("Number of reads must be positive.");
+        if (recordsReader.closed.get())
+            return null;
+
+        ReadBatch.Builder builder = null;
+        FastqRecordsReader r = recordsReader;
+        for (int i = 0; i < maxReads; ++i) {
+            try {
+                if (!r.nextRecord(true))
+                    break;
+            } catch (IOException e) {
+                throw new RuntimeException("While reading fastq record with id=" + idCounter +
+                        " (line number = " + (idCounter * 4) + ")",
+                        e);
+            }
+            if (builder == null)
+                builder = new ReadBatch.Builder(Math.min(maxReads, 1024),
+                        Math.min(maxReads, 1024) * (r.sequenceEnd - r.sequenceBegin));
+            builder.appendFastq(idCounter++, r.buffer,
+                    r.descriptionBegin, r.sequenceBegin - r.descriptionBegin - 1,
+                    r.sequenceBegin, r.qualityBegin, r.sequenceEnd - r.sequenceBegin,
+                    format.getOffset(), r.replaceWildcards);
+        }
+        return builder == null ? null : builder.build();
+    }
+
     @Override
     public synchronized long getNumberOfReads() {
         return idCounter;
@@ -320,7 +356,12 @@ public final class SingleFastqReader implements SingleReader, CanReportProgress,
         recordsReader.close();
     }
 
-    private QualityFormat guessFormat() throws IOException {
+    /**
+     * Guesses quality format by the records available in the buffer of the reader (reader buffer is not refilled)
+     *
+     * @return guessed format or {@literal null} if guess failed
+     */
+    static QualityFormat guessFormat(FastqRecordsReader recordsReader) throws IOException {
         boolean signal33 = false, signal64 = false;
         int k, chr;
 
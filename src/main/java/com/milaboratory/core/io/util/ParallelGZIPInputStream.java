@@ -0,0 +1,244 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.util;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Input stream decompressing BGZF files (gzip files consisting of independent members, each having its compressed
+ * size written in the "BC" extra field of the header, e.g. produced by {@link ParallelGZIPOutputStream} or bgzip)
+ * using several threads.
+ *
+ * Compressed blocks are read by the calling thread and inflated by a thread pool; decompressed data is returned in
+ * the original order. Use {@link #create(InputStream, int, int)} to fall back to {@link GZIPInputStream} for ordinary
+ * gzip streams.
+ */
+public final class ParallelGZIPInputStream extends InputStream {
+    /**
+     * Size of gzip member header with BGZF extra field
+     */
+    static final int BGZF_HEADER_SIZE = 18;
+    /**
+     * Maximal size of BGZF block (both compressed and uncompressed)
+     */
+    static final int MAX_BLOCK_SIZE = 65536;
+    final DataInputStream in;
+    final ExecutorService executor;
+    /**
+     * Maximal number of blocks being inflated simultaneously
+     */
+    final int prefetch;
+    final ArrayDeque<Future<byte[]>> queue = new ArrayDeque<>();
+    byte[] current = new byte[0];
+    int pointer;
+    boolean eof, closed;
+
+    /**
+     * Creates decompressing stream
+     *
+     * @param in      BGZF stream
+     * @param threads number of inflating threads
+     */
+    public ParallelGZIPInputStream(InputStream in, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive.");
+        this.in = new DataInputStream(in);
+        this.prefetch = 2 * threads;
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "GZIPInflater-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Creates parallel decompressing stream if input is BGZF, or {@link GZIPInputStream} otherwise (for ordinary
+     * single- or multi-member gzip streams, where member boundaries are unknown until the data is inflated).
+     *
+     * @param in      gzip stream
+     * @param threads number of inflating threads
+     * @param buffer  buffer size for {@link GZIPInputStream}
+     */
+    public static InputStream create(InputStream in, int threads, int buffer) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(in, Math.max(buffer, BGZF_HEADER_SIZE));
+        bis.mark(BGZF_HEADER_SIZE);
+        byte[] header = new byte[BGZF_HEADER_SIZE];
+        int read = readFully(bis, header);
+        bis.reset();
+        if (read == BGZF_HEADER_SIZE && isBGZFHeader(header))
+            return new ParallelGZIPInputStream(bis, threads);
+        return new GZIPInputStream(bis, buffer);
+    }
+
+    /**
+     * Reads bytes until buffer is full or end of stream is reached
+     *
+     * @return number of bytes read
+     */
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int total = 0, read;
+        while (total < buffer.length && (read = in.read(buffer, total, buffer.length - total)) != -1)
+            total += read;
+        return total;
+    }
+
+    /**
+     * Returns true if header is a gzip member header with BGZF extra field
+     */
+    static boolean isBGZFHeader(byte[] header) {
+        return (header[0] & 0xFF) == 0x1f && (header[1] & 0xFF) == 0x8b && header[2] == 8
+                && (header[3] & 4) != 0 // FEXTRA
+                && header[10] == 6 && header[11] == 0 // XLEN
+                && header[12] == 'B' && header[13] == 'C'
+                && header[14] == 2 && header[15] == 0; // SLEN
+    }
+
+    /**
+     * Reads next compressed block and submits it for decompression
+     *
+     * @return false if end of stream reached
+     */
+    private boolean submitNext() throws IOException {
+        byte[] header = new byte[BGZF_HEADER_SIZE];
+        int read = readFully(in, header);
+        if (read == 0)
+            return false;
+        if (read != BGZF_HEADER_SIZE)
+            throw new EOFException("Unexpected end of BGZF stream.");
+        if (!isBGZFHeader(header))
+            throw new IOException("Not a BGZF block.");
+        // Total block size minus 1
+        int blockSize = ((header[16] & 0xFF) | (header[17] & 0xFF) << 8) + 1;
+        if (blockSize < BGZF_HEADER_SIZE + 8)
+            throw new IOException("Corrupt BGZF block: wrong block size.");
+        final byte[] block = new byte[blockSize - BGZF_HEADER_SIZE];
+        in.readFully(block);
+        queue.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return inflate(block);
+            }
+        }));
+        return true;
+    }
+
+    /**
+     * Inflates block (compressed data followed by CRC32 and ISIZE fields)
+     */
+    static byte[] inflate(byte[] block) throws IOException {
+        int n = block.length;
+        int crc = (block[n - 8] & 0xFF) | (block[n - 7] & 0xFF) << 8 | (block[n - 6] & 0xFF) << 16 | (block[n - 5] & 0xFF) << 24,
+                size = (block[n - 4] & 0xFF) | (block[n - 3] & 0xFF) << 8 | (block[n - 2] & 0xFF) << 16 | (block[n - 1] & 0xFF) << 24;
+        if (size < 0 || size > MAX_BLOCK_SIZE)
+            throw new IOException("Corrupt BGZF block: wrong size.");
+        byte[] result = new byte[size];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(block, 0, n - 8);
+            int inflated = 0;
+            while (inflated < size) {
+                int r = inflater.inflate(result, inflated, size - inflated);
+                if (r == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+                inflated += r;
+            }
+            if (inflated != size)
+                throw new IOException("Corrupt BGZF block: wrong size.");
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(result);
+        if ((int) crc32.getValue() != crc)
+            throw new IOException("Corrupt BGZF block: CRC mismatch.");
+        return result;
+    }
+
+    /**
+     * Makes current block non-empty
+     *
+     * @return false if end of stream reached
+     */
+    private boolean ensureData() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed.");
+        while (pointer == current.length) {
+            while (!eof && queue.size() < prefetch)
+                if (!submitNext())
+                    eof = true;
+            if (queue.isEmpty())
+                return false;
+            try {
+                current = queue.poll().get();
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                throw new IOException(e.getCause());
+            }
+            pointer = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureData())
+            return -1;
+        return current[pointer++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!ensureData())
+            return -1;
+        len = Math.min(len, current.length - pointer);
+        System.arraycopy(current, pointer, b, off, len);
+        pointer += len;
+        return len;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return closed ? 0 : current.length - pointer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        executor.shutdownNow();
+        queue.clear();
+        in.close();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static com.milaboratory.core.io.util.ParallelGZIPInputStream.BGZF_HEADER_SIZE;
+import static com.milaboratory.core.io.util.ParallelGZIPInputStream.MAX_BLOCK_SIZE;
+
+/**
+ * Output stream writing BGZF files (sequence of independent gzip members with compressed size in the "BC" extra
+ * field, see SAM/BAM specification) using several threads to compress blocks.
+ *
+ * Output is a valid multi-member gzip stream, so it can be read by any gzip decompressor, and in parallel by {@link
+ * ParallelGZIPInputStream}.
+ */
+public final class ParallelGZIPOutputStream extends OutputStream {
+    /**
+     * Maximal amount of uncompressed data in a single block (guarantees that compressed block fits into {@link
+     * ParallelGZIPInputStream#MAX_BLOCK_SIZE})
+     */
+    static final int BLOCK_DATA_SIZE = 0xff00;
+    /**
+     * Empty block written at the end of BGZF stream
+     */
+    static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0, 0x1b, 0,
+            3, 0, 0, 0, 0, 0, 0, 0, 0, 0};
+    final OutputStream out;
+    final ExecutorService executor;
+    final int level;
+    /**
+     * Maximal number of blocks being compressed simultaneously
+     */
+    final int queueSize;
+    final ArrayDeque<Future<byte[]>> queue = new ArrayDeque<>();
+    byte[] buffer = new byte[BLOCK_DATA_SIZE];
+    int size;
+    boolean closed;
+
+    /**
+     * Creates compressing stream with default compression level
+     *
+     * @param out     output stream
+     * @param threads number of compressing threads
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int threads) {
+        this(out, threads, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Creates compressing stream
+     *
+     * @param out     output stream
+     * @param threads number of compressing threads
+     * @param level   compression level (see {@link Deflater})
+     */
+    public ParallelGZIPOutputStream(OutputStream out, int threads, int level) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive.");
+        this.out = out;
+        this.level = level;
+        this.queueSize = 2 * threads;
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "GZIPDeflater-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        buffer[size++] = (byte) b;
+        if (size == buffer.length)
+            submit();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int l = Math.min(len, buffer.length - size);
+            System.arraycopy(b, off, buffer, size, l);
+            size += l;
+            off += l;
+            len -= l;
+            if (size == buffer.length)
+                submit();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed.");
+    }
+
+    /**
+     * Submits buffered data for compression, writing already compressed blocks if too many blocks are pending
+     */
+    private void submit() throws IOException {
+        if (size == 0)
+            return;
+        final byte[] data = buffer;
+        final int length = size;
+        queue.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return compress(data, length, level);
+            }
+        }));
+        buffer = new byte[BLOCK_DATA_SIZE];
+        size = 0;
+        while (queue.size() > queueSize)
+            writeHead();
+    }
+
+    private void writeHead() throws IOException {
+        try {
+            out.write(queue.poll().get());
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Creates BGZF block from data
+     */
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = new Deflater(level, true);
+        byte[] block = new byte[MAX_BLOCK_SIZE];
+        int compressed;
+        try {
+            deflater.setInput(data, 0, length);
+            deflater.finish();
+            compressed = deflater.deflate(block, BGZF_HEADER_SIZE, MAX_BLOCK_SIZE - BGZF_HEADER_SIZE - 8);
+            if (!deflater.finished())
+                throw new IllegalStateException("Compressed block doesn't fit into BGZF block.");
+        } finally {
+            deflater.end();
+        }
+
+        int blockSize = BGZF_HEADER_SIZE + compressed + 8;
+        System.arraycopy(EOF_BLOCK, 0, block, 0, 16);
+        writeShort(block, 16, blockSize - 1);
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 0, length);
+        writeInt(block, blockSize - 8, (int) crc32.getValue());
+        writeInt(block, blockSize - 4, length);
+        return Arrays.copyOf(block, blockSize);
+    }
+
+    private static void writeShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >>> 8);
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        writeShort(buffer, offset, value);
+        writeShort(buffer, offset + 2, value >>> 16);
+    }
+
+    /**
+     * Compresses and writes all buffered data, and flushes underlying stream (this terminates current block, so
+     * frequent flushes decrease compression ratio)
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        submit();
+        while (!queue.isEmpty())
+            writeHead();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            flush();
+            out.write(EOF_BLOCK);
+        } finally {
+            closed = true;
+            executor.shutdownNow();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.motif;
+
+import com.milaboratory.core.sequence.Sequence;
+
+/**
+ * Bitap pattern for motifs of arbitrary length, state of the search is stored in several 64-bit words (blocks).
+ *
+ * <p>Matchers return exactly the same results as corresponding matchers of {@link BitapPattern}. Only blocks that may
+ * contain active states (i.e. blocks up to the last block with matched prefix of the motif, plus blocks reachable
+ * from it in one step) are updated on each step, so for the most of the positions in a sequence the cost of the step
+ * depends on the number of allowed errors, not on the length of the motif.</p>
+ *
+ * <p>Use {@link Motif#getLongBitapPattern()} to create pattern.</p>
+ */
+public final class LongBitapPattern implements java.io.Serializable {
+    final int size, blocks;
+    /**
+     * [letter][block]
+     */
+    final long[][] patternMask, reversePatternMask;
+
+    /**
+     * Use {@link Motif#getLongBitapPattern()} to create pattern.
+     */
+    LongBitapPattern(int size, long[][] patternMask, long[][] reversePatternMask) {
+        this.size = size;
+        this.blocks = patternMask[0].length;
+        this.patternMask = patternMask;
+        this.reversePatternMask = reversePatternMask;
+    }
+
+    /**
+     * Returns size of the motif
+     *
+     * @return size of the motif
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a BitapMatcher preforming exact search in a subsequence of {@code sequence}. Matcher will return
+     * positions of first matched letter in the motif in ascending order.
+     *
+     * @param sequence target sequence
+     * @param from     left boundary of search range (inclusive)
+     * @param to       right boundary of search range (exclusive)
+     * @return matcher which will return positions of first matched letter in the motif in ascending order
+     */
+    public BitapMatcher exactMatcher(final Sequence sequence, final int from, final int to) {
+        return substitutionOnlyMatcherFirst(0, sequence, from, to);
+    }
+
+    /**
+     * Returns a BitapMatcher preforming a fuzzy search in a whole {@code sequence}. Search allows no more than {@code
+     * substitutions} number of substitutions. Matcher will return positions of first matched letter in the motif in
+     * ascending order.
+     *
+     * @param substitutions maximal number of allowed substitutions
+     * @param sequence      target sequence
+     * @return matcher which will return positions of first matched letter in the motif in ascending order
+     */
+    public BitapMatcher substitutionOnlyMatcherFirst(int substitutions, final Sequence sequence) {
+        return substitutionOnlyMatcherFirst(substitutions, sequence, 0, sequence.size());
+    }
+
+    /**
+     * Returns a BitapMatcher preforming a fuzzy search in a subsequence of {@code sequence}. Search range starts from
+     * {@code from} (inclusive) and ends at {@code to} (exclusive). Search allows no more than {@code substitutions}
+     * number of substitutions. Matcher will return positions of first matched letter in the motif in ascending order.
+     *
+     * @param substitutions maximal number of allowed substitutions
+     * @param sequence      target sequence
+     * @param from          left boundary of search range (inclusive)
+     * @param to            right boundary of search range (exclusive)
+     * @return matcher which will return positions of first matched letter in the motif in ascending order
+     */
+    public BitapMatcher substitutionOnlyMatcherFirst(int substitutions, final Sequence sequence, int from, int to) {
+        if (sequence.getAlphabet().size() != patternMask.length)
+            throw new IllegalArgumentException();
+
+        return new LongBitapMatcherImpl(substitutions + 1, from, to) {
+            @Override
+            public int findNext() {
+                for (int i = current; i < to; ++i) {
+                    stepSubstitution(patternMask[sequence.codeAt(i)]);
+                    // Same as "i >= size - 1" check in BitapPattern
+                    int e = matchErrors(i >= size - 1);
+                    if (e >= 0) {
+                        errors = e;
+                        current = i + 1;
+                        return i - size + 1;
+                    }
+                }
+                current = to;
+                return -1;
+            }
+        };
+    }
+
+    /**
+     * Returns a BitapMatcher preforming a fuzzy search in a whole {@code sequence}.  Search allows no more than {@code
+     * maxNumberOfErrors} number of substitutions/insertions/deletions. Matcher will return positions of last matched
+     * letter in the motif in ascending order.
+     *
+     * @param maxNumberOfErrors maximal number of allowed substitutions/insertions/deletions
+     * @param sequence          target sequence
+     * @return matcher which will return positions of last matched letter in the motif
+     */
+    public BitapMatcher substitutionAndIndelMatcherLast(int maxNumberOfErrors, final Sequence sequence) {
+        return substitutionAndIndelMatcherLast(maxNumberOfErrors, sequence, 0, sequence.size());
+    }
+
+    /**
+     * Returns a BitapMatcher preforming a fuzzy search in a subsequence of {@code sequence}. Search range starts from
+     * {@code from} (inclusive) and ends at {@code to} (exclusive). Search allows no more than {@code
+     * maxNumberOfErrors} number of substitutions/insertions/deletions. Matcher will return positions of last matched
+     * letter in the motif in ascending order.
+     *
+     * @param maxNumberOfErrors maximal number of allowed substitutions/insertions/deletions
+     * @param sequence          target sequence
+     * @param from              left boundary of search range (inclusive)
+     * @param to                right boundary of search range (exclusive)
+     * @return matcher which will return positions of last matched letter in the motif in ascending order
+     */
+    public BitapMatcher substitutionAndIndelMatcherLast(int maxNumberOfErrors, final Sequence sequence,
+                                                        int from, int to) {
+        if (sequence.getAlphabet().size() != patternMask.length)
+            throw new IllegalArgumentException();
+
+        return new LongBitapMatcherImpl(maxNumberOfErrors + 1, from, to) {
+            @Override
+            public int findNext() {
+                for (int i = current; i < to; ++i) {
+                    stepIndel(patternMask[sequence.codeAt(i)]);
+                    int e = matchErrors(true);
+                    if (e >= 0) {
+                        errors = e;
+                        current = i + 1;
+                        return i;
+                    }
+                }
+                current = to;
+                return -1;
+            }
+        };
+    }
+
+    /**
+     * Returns a BitapMatcher preforming a fuzzy search in a whole {@code sequence}. Search allows no more than {@code
+     * maxNumberOfErrors} number of substitutions/insertions/deletions. Matcher will return positions of first matched
+     * letter in the motif in descending order.
+     *
+     * @param maxNumberOfErrors maximal number of allowed substitutions/insertions/deletions
+     * @param sequence          target sequence
+     * @return matcher which will return positions of first matched letter in the motif in descending order
+     */
+    public BitapMatcher substitutionAndIndelMatcherFirst(int maxNumberOfErrors, final Sequence sequence) {
+        return substitutionAndIndelMatcherFirst(maxNumberOfErrors, sequence, 0, sequence.size());
+    }
+
+    /**
+     * Returns a BitapMatcher preforming a fuzzy search in a subsequence of {@code sequence}. Search range starts from
+     * {@code from} (inclusive) and ends at {@code to} (exclusive). Search allows no more than {@code
+     * maxNumberOfErrors} number of substitutions/insertions/deletions. Matcher will return positions of first matched
+     * letter in the motif in descending order.
+     *
+     * @param maxNumberOfErrors maximal number of allowed substitutions/insertions/deletions
+     * @param sequence          target sequence
+     * @param from              left boundary of search range (inclusive)
+     * @param to                right boundary of search range (exclusive)
+     * @return matcher which will return positions of first matched letter in the motif in descending order
+     */
+    public BitapMatcher substitutionAndIndelMatcherFirst(int maxNumberOfErrors, final Sequence sequence,
+                                                         int from, int to) {
+        if (sequence.getAlphabet().size() != patternMask.length)
+            throw new IllegalArgumentException();
+
+        return new LongBitapMatcherImpl(maxNumberOfErrors + 1, to - 1, from) {
+            @Override
+            public int findNext() {
+                for (int i = current; i >= to; --i) {
+                    stepIndel(reversePatternMask[sequence.codeAt(i)]);
+                    int e = matchErrors(true);
+                    if (e >= 0) {
+                        errors = e;
+                        current = i - 1;
+                        return i;
+                    }
+                }
+                current = to - 1;
+                return -1;
+            }
+        };
+    }
+
+    abstract class LongBitapMatcherImpl implements BitapMatcher {
+        /**
+         * [number of errors * blocks + block]
+         */
+        final long[] R;
+        final int levels;
+        /**
+         * Top bits of the previous block (before and after update) for each level
+         */
+        final long[] oldCarry, newCarry;
+        /**
+         * Block and bit of the last letter of the motif
+         */
+        final int matchBlock;
+        final long matchingMask;
+        final int to;
+        int current, errors;
+        /**
+         * Last block containing active (zero) states at any level, all blocks after it contain only ones
+         */
+        int lastActive = -1;
+
+        LongBitapMatcherImpl(int levels, int from, int to) {
+            this.levels = levels;
+            this.R = new long[levels * blocks];
+            // Same as (~0) << d in BitapMatcherImpl
+            for (int d = 0; d < levels; ++d)
+                for (int b = 0; b < blocks; ++b) {
+                    int zeros = Math.min(Math.max(d - b * 64, 0), 64);
+                    R[d * blocks + b] = zeros == 64 ? 0 : ~0L << zeros;
+                    if (zeros > 0)
+                        lastActive = Math.max(lastActive, b);
+                }
+            this.oldCarry = new long[levels];
+            this.newCarry = new long[levels];
+            this.matchBlock = (size - 1) >>> 6;
+            this.matchingMask = 1L << ((size - 1) & 63);
+            this.current = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the last block that may contain active states after the step (active states move at most one
+         * position forward, plus one more position per error level due to deletions)
+         */
+        private int limit() {
+            return Math.min(blocks - 1, (64 * (lastActive + 1) + levels - 1) >>> 6);
+        }
+
+        /**
+         * Single step of substitution only search
+         */
+        final void stepSubstitution(long[] masks) {
+            int limit = limit(), newLastActive = -1, d, idx;
+            long mask, old, shifted, mismatchTmp, r;
+            boolean active;
+            for (d = 0; d < levels; ++d)
+                oldCarry[d] = 0;
+
+            for (int b = 0; b <= limit; ++b) {
+                mask = masks[b];
+
+                old = R[b];
+                mismatchTmp = (old << 1) | oldCarry[0];
+                oldCarry[0] = old >>> 63;
+                r = mismatchTmp | mask;
+                R[b] = r;
+                active = r != ~0L;
+
+                for (d = 1, idx = blocks + b; d < levels; ++d, idx += blocks) {
+                    old = R[idx];
+                    shifted = (old << 1) | oldCarry[d];
+                    oldCarry[d] = old >>> 63;
+                    r = (shifted | mask) & mismatchTmp;
+                    R[idx] = r;
+                    active |= r != ~0L;
+                    mismatchTmp = shifted;
+                }
+
+                if (active)
+                    newLastActive = b;
+            }
+            lastActive = newLastActive;
+        }
+
+        /**
+         * Single step of substitution and indel search
+         */
+        final void stepIndel(long[] masks) {
+            int limit = limit(), newLastActive = -1, d, idx;
+            long mask, old, shifted, insertionTmp, mismatchTmp, deletionTmp, r;
+            boolean active;
+            for (d = 0; d < levels; ++d)
+                oldCarry[d] = newCarry[d] = 0;
+
+            for (int b = 0; b <= limit; ++b) {
+                mask = masks[b];
+
+                // Exact match on the previous step == match with insertion on current step
+                old = R[b];
+                insertionTmp = old;
+                mismatchTmp = (old << 1) | oldCarry[0];
+                oldCarry[0] = old >>> 63;
+                r = mismatchTmp | mask;
+                R[b] = r;
+                deletionTmp = (r << 1) | newCarry[0];
+                newCarry[0] = r >>> 63;
+                active = r != ~0L;
+
+                for (d = 1, idx = blocks + b; d < levels; ++d, idx += blocks) {
+                    old = R[idx];
+                    shifted = (old << 1) | oldCarry[d];
+                    oldCarry[d] = old >>> 63;
+                    r = (shifted | mask) & insertionTmp & mismatchTmp & deletionTmp;
+                    R[idx] = r;
+                    active |= r != ~0L;
+                    insertionTmp = old;
+                    mismatchTmp = shifted;
+                    deletionTmp = (r << 1) | newCarry[d];
+                    newCarry[d] = r >>> 63;
+                }
+
+                if (active)
+                    newLastActive = b;
+            }
+            lastActive = newLastActive;
+        }
+
+        /**
+         * Returns minimal number of errors of the match ending at current position, or -1 if there is no match
+         */
+        final int matchErrors(boolean allowErrors) {
+            if (matchBlock > lastActive)
+                return -1;
+            if (0 == (R[matchBlock] & matchingMask))
+                return 0;
+            if (allowErrors)
+                for (int d = 1, idx = blocks + matchBlock; d < levels; ++d, idx += blocks)
+                    if (0 == (R[idx] & matchingMask))
+                        return d;
+            return -1;
+        }
+
+        @Override
+        public int getNumberOfErrors() {
+            return errors;
+        }
+    }
+}
@@ -87,6 +87,33 @@ public final class Motif<S extends Sequence<S>> implements java.io.Serializable
         return bitapPattern;
     }
 
+    /**
+     * Creates bitap pattern for motif of any length (see {@link LongBitapPattern}). For motifs shorter than 64 letters
+     * {@link #getBitapPattern()} is faster.
+     *
+     * @return bitap pattern for motif of any length
+     */
+    public LongBitapPattern getLongBitapPattern() {
+        if (size == 0)
+            throw new IllegalStateException("Empty motif.");
+        int aSize = alphabet.size(), blocks = (size + 63) >>> 6;
+        long[][] patternMask = new long[aSize][blocks],
+                reversePatternMask = new long[aSize][blocks];
+        for (int i = 0; i < aSize; ++i) {
+            Arrays.fill(patternMask[i], ~0L);
+            Arrays.fill(reversePatternMask[i], ~0L);
+        }
+        int p = 0;
+        for (int i = 0; i < aSize; ++i)
+            for (int j = 0; j < size; ++j)
+                if (data.get(p++)) {
+                    patternMask[i][j >>> 6] &= ~(1L << (j & 63));
+                    int r = size - j - 1;
+                    reversePatternMask[i][r >>> 6] &= ~(1L << (r & 63));
+                }
+        return new LongBitapPattern(size, patternMask, reversePatternMask);
+    }
+
     private BitapPattern toBitapPattern() {
         if (size >= 64)
             return null;
@@ -109,6 +136,10 @@ public final class Motif<S extends Sequence<S>> implements java.io.Serializable
         return size;
     }
 
+    public Alphabet<S> getAlphabet() {
+        return alphabet;
+    }
+
     public boolean allows(byte code, int position) {
         return data.get(code * size + position);
     }
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.motif;
+
+/**
+ * Matcher of several patterns (see {@link MultiBitapPattern}). {@link #getPatternIndex()} and {@link
+ * #getNumberOfErrors()} describe the last match returned by {@link #findNext()}.
+ */
+public interface MultiBitapMatcher extends BitapMatcher {
+    /**
+     * Returns index of matched pattern (in the list of motifs used to create {@link MultiBitapPattern})
+     *
+     * @return index of matched pattern
+     */
+    int getPatternIndex();
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.motif;
+
+import com.milaboratory.core.sequence.Alphabet;
+import com.milaboratory.core.sequence.Sequence;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bitap pattern matching several motifs in a single pass over the sequence.
+ *
+ * <p>Motifs are packed into 64-bit words (several short motifs per word), each motif occupying its own range of bits
+ * (slot), and all words are updated on each letter of the sequence with the same bit operations as in {@link
+ * BitapPattern}. So the cost of the search is proportional to the number of words, not to the number of motifs.</p>
+ *
+ * <p>Matchers return the same matches as corresponding matchers of {@link BitapPattern} of individual motifs: for each
+ * pattern, positions and numbers of errors reported by multi-pattern matcher are exactly the same as for {@link
+ * BitapPattern}. Matches are reported in the order of scanning, matches found at the same step are ordered by pattern
+ * index.</p>
+ */
+public final class MultiBitapPattern implements java.io.Serializable {
+    final int alphabetSize;
+    /**
+     * Motif sizes
+     */
+    final int[] sizes;
+    /**
+     * [letter][word]
+     */
+    final long[][] patternMask, reversePatternMask;
+    /**
+     * First and last bits of slots in each word
+     */
+    final long[] startMask, matchingMask;
+    /**
+     * Maximal size of motif in each word
+     */
+    final int[] maxSize;
+    /**
+     * Index of the first pattern and offsets of slots in each word
+     */
+    final int[] firstPattern;
+    final int[][] offsets;
+    /**
+     * Index of pattern by word and last bit of its slot ({@code word * 64 + bit})
+     */
+    final int[] patternByLastBit;
+
+    /**
+     * Creates pattern.
+     *
+     * @param motifs motifs with the same alphabet, each shorter than 64 letters
+     */
+    public MultiBitapPattern(List<? extends Motif<?>> motifs) {
+        if (motifs.isEmpty())
+            throw new IllegalArgumentException("No motifs.");
+        Alphabet<?> alphabet = motifs.get(0).getAlphabet();
+        this.alphabetSize = alphabet.size();
+        this.sizes = new int[motifs.size()];
+
+        // Packing motifs into words in their order
+        int[] wordOf = new int[motifs.size()], offsetOf = new int[motifs.size()];
+        int words = 0, offset = 64;
+        for (int i = 0; i < motifs.size(); ++i) {
+            Motif<?> motif = motifs.get(i);
+            if (motif.getAlphabet() != alphabet)
+                throw new IllegalArgumentException("Motifs with different alphabets.");
+            if (motif.size() == 0 || motif.size() >= 64)
+                throw new IllegalArgumentException("Supports motifs with length from 1 to 63.");
+            sizes[i] = motif.size();
+            if (offset + motif.size() > 64) {
+                ++words;
+                offset = 0;
+            }
+            wordOf[i] = words - 1;
+            offsetOf[i] = offset;
+            offset += motif.size();
+        }
+
+        this.patternMask = new long[alphabetSize][words];
+        this.reversePatternMask = new long[alphabetSize][words];
+        for (int code = 0; code < alphabetSize; ++code) {
+            Arrays.fill(patternMask[code], ~0L);
+            Arrays.fill(reversePatternMask[code], ~0L);
+        }
+        this.startMask = new long[words];
+        this.matchingMask = new long[words];
+        this.maxSize = new int[words];
+        this.firstPattern = new int[words];
+        Arrays.fill(firstPattern, -1);
+        int[] count = new int[words];
+        for (int i = 0; i < motifs.size(); ++i)
+            ++count[wordOf[i]];
+        this.patternByLastBit = new int[words * 64];
+        this.offsets = new int[words][];
+        for (int w = 0; w < words; ++w)
+            offsets[w] = new int[count[w]];
+
+        for (int i = 0; i < motifs.size(); ++i) {
+            Motif<?> motif = motifs.get(i);
+            int w = wordOf[i], o = offsetOf[i], size = motif.size();
+            if (firstPattern[w] == -1)
+                firstPattern[w] = i;
+            offsets[w][i - firstPattern[w]] = o;
+            startMask[w] |= 1L << o;
+            matchingMask[w] |= 1L << (o + size - 1);
+            patternByLastBit[w * 64 + o + size - 1] = i;
+            maxSize[w] = Math.max(maxSize[w], size);
+            for (byte code = 0; code < alphabetSize; ++code)
+                for (int j = 0; j < size; ++j)
+                    if (motif.allows(code, j)) {
+                        patternMask[code][w] &= ~(1L << (o + j));
+                        reversePatternMask[code][w] &= ~(1L << (o + size - j - 1));
+                    }
+        }
+    }
+
+    /**
+     * Returns number of patterns
+     *
+     * @return number of patterns
+     */
+    public int size() {
+        return sizes.length;
+    }
+
+    /**
+     * Returns number of 64-bit words patterns are packed into
+     *
+     * @return number of 64-bit words patterns are packed into
+     */
+    public int getNumberOfWords() {
+        return startMask.length;
+    }
+
+    /**
+     * Returns a matcher preforming exact search in a subsequence of {@code sequence}. Matcher will return positions of
+     * first matched letter in the motif.
+     *
+     * @param sequence target sequence
+     * @param from     left boundary of search range (inclusive)
+     * @param to       right boundary of search range (exclusive)
+     * @return matcher which will return positions of first matched letter in the motif
+     */
+    public MultiBitapMatcher exactMatcher(Sequence sequence, int from, int to) {
+        return substitutionOnlyMatcherFirst(0, sequence, from, to);
+    }
+
+    /**
+     * Returns a matcher preforming a fuzzy search in a subsequence of {@code sequence}. Search allows no more than
+     * {@code substitutions} number of substitutions. Matcher will return positions of first matched letter in the
+     * motif.
+     *
+     * @param substitutions maximal number of allowed substitutions
+     * @param sequence      target sequence
+     * @param from          left boundary of search range (inclusive)
+     * @param to            right boundary of search range (exclusive)
+     * @return matcher which will return positions of first matched letter in the motif
+     * @see BitapPattern#substitutionOnlyMatcherFirst(int, Sequence, int, int)
+     */
+    public MultiBitapMatcher substitutionOnlyMatcherFirst(int substitutions, final Sequence sequence, int from, int to) {
+        checkAlphabet(sequence);
+
+        return new MultiBitapMatcherImpl(substitutions + 1, from, to) {
+            @Override
+            boolean scan() {
+                long currentPatternMask, notStart, preMismatchTmp, mismatchTmp, r, found, valid, newFound;
+                final long[] startMask = MultiBitapPattern.this.startMask, matchingMask = MultiBitapPattern.this.matchingMask,
+                        R = this.R;
+                long[] masks;
+                int d, w, base;
+
+                for (int i = current; i < to; ++i) {
+                    masks = patternMask[sequence.codeAt(i)];
+                    for (w = 0, base = 0; w < startMask.length; ++w, base += levels) {
+                        currentPatternMask = masks[w];
+                        notStart = ~startMask[w];
+
+                        mismatchTmp = (R[base] << 1) & notStart;
+                        r = mismatchTmp | currentPatternMask;
+                        R[base] = r;
+                        found = ~r & matchingMask[w];
+                        if (found != 0)
+                            setErrors(w, found, 0);
+
+                        // Same as "i >= size - 1" check in BitapPattern
+                        valid = i >= maxSize[w] - 1 ? matchingMask[w] : validEnds(w, i);
+                        for (d = 1; d < levels; ++d) {
+                            preMismatchTmp = (R[base + d] << 1) & notStart;
+                            r = (preMismatchTmp | currentPatternMask) & mismatchTmp;
+                            R[base + d] = r;
+                            newFound = ~r & valid & ~found;
+                            if (newFound != 0) {
+                                setErrors(w, newFound, d);
+                                found |= newFound;
+                            }
+                            mismatchTmp = preMismatchTmp;
+                        }
+
+                        if (found != 0)
+                            addMatches(w, found, i, true);
+                    }
+
+                    if (count > 0) {
+                        current = i + 1;
+                        return true;
+                    }
+                }
+                current = to;
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a matcher preforming a fuzzy search in a subsequence of {@code sequence}. Search allows no more than
+     * {@code maxNumberOfErrors} number of substitutions/insertions/deletions. Matcher will return positions of last
+     * matched letter in the motif in ascending order.
+     *
+     * @param maxNumberOfErrors maximal number of allowed substitutions/insertions/deletions
+     * @param sequence          target sequence
+     * @param from              left boundary of search range (inclusive)
+     * @param to                right boundary of search range (exclusive)
+     * @return matcher which will return positions of last matched letter in the motif in ascending order
+     * @see BitapPattern#substitutionAndIndelMatcherLast(int, Sequence, int, int)
+     */
+    public MultiBitapMatcher substitutionAndIndelMatcherLast(int maxNumberOfErrors, final Sequence sequence,
+                                                             int from, int to) {
+        checkAlphabet(sequence);
+
+        return new MultiBitapMatcherImpl(maxNumberOfErrors + 1, from, to) {
+            @Override
+            boolean scan() {
+                for (int i = current; i < to; ++i) {
+                    step(patternMask[sequence.codeAt(i)], i);
+                    if (count > 0) {
+                        current = i + 1;
+                        return true;
+                    }
+                }
+                current = to;
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a matcher preforming a fuzzy search in a subsequence of {@code sequence}. Search allows no more than
+     * {@code maxNumberOfErrors} number of substitutions/insertions/deletions. Matcher will return positions of first
+     * matched letter in the motif in descending order.
+     *
+     * @param maxNumberOfErrors maximal number of allowed substitutions/insertions/deletions
+     * @param sequence          target sequence
+     * @param from              left boundary of search range (inclusive)
+     * @param to                right boundary of search range (exclusive)
+     * @return matcher which will return positions of first matched letter in the motif in descending order
+     * @see BitapPattern#substitutionAndIndelMatcherFirst(int, Sequence, int, int)
+     */
+    public MultiBitapMatcher substitutionAndIndelMatcherFirst(int maxNumberOfErrors, final Sequence sequence,
+                                                              int from, int to) {
+        checkAlphabet(sequence);
+
+        return new MultiBitapMatcherImpl(maxNumberOfErrors + 1, to - 1, from) {
+            @Override
+            boolean scan() {
+                for (int i = current; i >= to; --i) {
+                    step(reversePatternMask[sequence.codeAt(i)], i);
+                    if (count > 0) {
+                        current = i - 1;
+                        return true;
+                    }
+                }
+                current = to - 1;
+                return false;
+            }
+        };
+    }
+
+    private void checkAlphabet(Sequence sequence) {
+        if (sequence.getAlphabet().size() != alphabetSize)
+            throw new IllegalArgumentException();
+    }
+
+    abstract class MultiBitapMatcherImpl implements MultiBitapMatcher {
+        /**
+         * [word * levels + number of errors]
+         */
+        final long[] R;
+        final int levels;
+        final int to;
+        int current;
+        /**
+         * Matches found at the last scanned position
+         */
+        final int[] matchedPatterns, matchedPositions, matchedErrors;
+        /**
+         * Minimal number of errors for each pattern at current position
+         */
+        final int[] errors;
+        int count = 0, pointer = 0;
+        int patternIndex = -1, numberOfErrors = -1;
+
+        MultiBitapMatcherImpl(int levels, int from, int to) {
+            this.levels = levels;
+            this.R = new long[startMask.length * levels];
+            for (int w = 0; w < startMask.length; ++w)
+                for (int d = 0; d < levels; ++d) {
+                    // Same as (~0) << d for each slot
+                    long r = ~0L;
+                    for (int j = 0; j < offsets[w].length; ++j)
+                        r &= ~(((1L << Math.min(d, sizes[firstPattern[w] + j])) - 1) << offsets[w][j]);
+                    R[w * levels + d] = r;
+                }
+            this.current = from;
+            this.to = to;
+            this.matchedPatterns = new int[sizes.length];
+            this.matchedPositions = new int[sizes.length];
+            this.matchedErrors = new int[sizes.length];
+            this.errors = new int[sizes.length];
+        }
+
+        /**
+         * Scans sequence until position with at least one match, returns false if there are no more matches
+         */
+        abstract boolean scan();
+
+        @Override
+        public int findNext() {
+            if (pointer == count) {
+                pointer = count = 0;
+                if (!scan())
+                    return -1;
+            }
+            patternIndex = matchedPatterns[pointer];
+            numberOfErrors = matchedErrors[pointer];
+            return matchedPositions[pointer++];
+        }
+
+        @Override
+        public int getPatternIndex() {
+            return patternIndex;
+        }
+
+        @Override
+        public int getNumberOfErrors() {
+            return numberOfErrors;
+        }
+
+        /**
+         * Single step of substitution and indel search
+         */
+        final void step(long[] masks, int position) {
+            long currentPatternMask, notStart, matching, preInsertionTmp, preMismatchTmp,
+                    insertionTmp, deletionTmp, mismatchTmp, r, found, newFound;
+            final long[] startMask = MultiBitapPattern.this.startMask, matchingMask = MultiBitapPattern.this.matchingMask,
+                    R = this.R;
+            int d, w, base;
+
+            for (w = 0, base = 0; w < startMask.length; ++w, base += levels) {
+                currentPatternMask = masks[w];
+                notStart = ~startMask[w];
+                matching = matchingMask[w];
+
+                // Exact match on the previous step == match with insertion on current step
+                insertionTmp = R[base];
+                mismatchTmp = (insertionTmp << 1) & notStart;
+                deletionTmp = mismatchTmp | currentPatternMask;
+                R[base] = deletionTmp;
+
+                found = ~deletionTmp & matching;
+                if (found != 0)
+                    setErrors(w, found, 0);
+
+                for (d = 1; d < levels; ++d) {
+                    preInsertionTmp = R[base + d];
+                    preMismatchTmp = (preInsertionTmp << 1) & notStart;
+                    r = (preMismatchTmp | currentPatternMask)
+                            & insertionTmp & mismatchTmp & ((deletionTmp << 1) & notStart);
+                    R[base + d] = r;
+                    newFound = ~r & matching & ~found;
+                    if (newFound != 0) {
+                        setErrors(w, newFound, d);
+                        found |= newFound;
+                    }
+                    deletionTmp = r;
+                    insertionTmp = preInsertionTmp;
+                    mismatchTmp = preMismatchTmp;
+                }
+
+                if (found != 0)
+                    addMatches(w, found, position, false);
+            }
+        }
+
+        /**
+         * Returns last bits of slots of patterns not longer than {@code position + 1}
+         */
+        final long validEnds(int word, int position) {
+            long valid = 0;
+            for (int j = 0; j < offsets[word].length; ++j) {
+                int size = sizes[firstPattern[word] + j];
+                if (position >= size - 1)
+                    valid |= 1L << (offsets[word][j] + size - 1);
+            }
+            return valid;
+        }
+
+        final void setErrors(int word, long bits, int numberOfErrors) {
+            while (bits != 0) {
+                errors[patternByLastBit[word * 64 + Long.numberOfTrailingZeros(bits)]] = numberOfErrors;
+                bits &= bits - 1;
+            }
+        }
+
+        final void addMatches(int word, long bits, int position, boolean fromStart) {
+            while (bits != 0) {
+                int pattern = patternByLastBit[word * 64 + Long.numberOfTrailingZeros(bits)];
+                bits &= bits - 1;
+                matchedPatterns[count] = pattern;
+                matchedErrors[count] = errors[pattern];
+                matchedPositions[count] = fromStart ? position - sizes[pattern] + 1 : position;
+                ++count;
+            }
+        }
+    }
+}
@@ -20,7 +20,9 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.milaboratory.core.Range;
 import com.milaboratory.core.sequence.*;
 import com.milaboratory.primitivio.annotations.Serializable;
+import com.milaboratory.util.Factory;
 import com.milaboratory.util.IntArrayList;
+import com.milaboratory.util.ThreadLocalCache;
 
 import java.util.Arrays;
 
@@ -35,6 +37,16 @@ import static com.milaboratory.core.mutations.Mutation.*;
 @Serializable(by = IO.MutationsSerializer.class)
 public final class Mutations<S extends Sequence<S>>
         implements java.io.Serializable {
+    /**
+     * Scratch buffers for intermediate results
+     */
+    static final ThreadLocalCache<IntArrayList> BUFFERS = new ThreadLocalCache<>(new Factory<IntArrayList>() {
+        @Override
+        public IntArrayList create() {
+            return new IntArrayList();
+        }
+    }, 8);
+
     final Alphabet<S> alphabet;
     final int[] mutations;
 
@@ -279,7 +291,38 @@ public final class Mutations<S extends Sequence<S>>
      * @return combined mutations
      */
     public Mutations<S> combineWith(final Mutations<S> other) {
-        IntArrayList result = new IntArrayList(mutations.length + other.mutations.length);
+        IntArrayList result = BUFFERS.get();
+        try {
+            combine(other, result);
+            return new Mutations<S>(alphabet, result.toArray(), true);
+        } finally {
+            BUFFERS.release();
+        }
+    }
+
+    /**
+     * Appends combined mutations ({@code this} applied before {@code other}) to the builder. Unlike {@link
+     * #combineWith(Mutations)}, creates no objects if builder has enough capacity.
+     *
+     * @param other       second mutations object
+     * @param destination builder to append combined mutations to (must not be reversed)
+     * @return destination
+     */
+    public MutationsBuilder<S> combineWith(final Mutations<S> other, final MutationsBuilder<S> destination) {
+        if (destination.isReversed())
+            throw new IllegalArgumentException("Reversed builder.");
+        IntArrayList result = BUFFERS.get();
+        try {
+            combine(other, result);
+            return destination.append(IntArrayList.getArrayReference(result), 0, result.size());
+        } finally {
+            BUFFERS.release();
+        }
+    }
+
+    private void combine(final Mutations<S> other, final IntArrayList result) {
+        result.clear();
+        result.ensureCapacity(mutations.length + other.mutations.length);
 
         //mut2 pointer
         int p2 = 0, position0 = 0, delta = 0;
@@ -338,8 +381,6 @@ public final class Mutations<S extends Sequence<S>>
 
         while (p2 < other.mutations.length)
             appendInCombine(result, Mutation.move(other.mutations[p2++], -delta));
-
-        return new Mutations<S>(alphabet, result.toArray(), true);
     }
 
     /**
@@ -421,6 +462,43 @@ public final class Mutations<S extends Sequence<S>>
         return new Mutations<>(alphabet, result, true);
     }
 
+    /**
+     * Extracts mutations for a range of positions in the original sequence, performs shift of corresponding positions
+     * (moves them to {@code -from}) and appends them to the builder. Unlike {@link
+     * #extractRelativeMutationsForRange(int, int)}, creates no objects if builder has enough capacity.
+     *
+     * <p>Insertions before {@code from} excluded. Insertions after {@code (to - 1)} included.</p>
+     *
+     * @param from        left bound of range, inclusive. Use -1 to extract leftmost insertions.
+     * @param to          right bound of range, exclusive
+     * @param destination builder to append mutations to (must not be reversed)
+     * @return destination
+     */
+    public MutationsBuilder<S> extractRelativeMutationsForRange(int from, int to, MutationsBuilder<S> destination) {
+        if (to < from)
+            throw new IllegalArgumentException("Reversed ranges are not supported.");
+        if (destination.isReversed())
+            throw new IllegalArgumentException("Reversed builder.");
+
+        long indexRange = getIndexRange(from, to);
+
+        // If range size is 0 nothing to append
+        if (indexRange == 0)
+            return destination;
+
+        // Unpacking
+        int fromIndex = (int) (indexRange >>> 32),
+                toIndex = (int) (indexRange & 0xFFFFFFFF);
+
+        // Constant to move positions in the output array
+        int offset = from == -1 ? 0 : ((-from) << POSITION_OFFSET);
+
+        destination.ensureInternalCapacity(destination.size() + toIndex - fromIndex);
+        for (int j = fromIndex; j < toIndex; ++j)
+            destination.append(mutations[j] + offset);
+        return destination;
+    }
+
     /**
      * Extracts mutations for a range of positions in the original sequence.
      *
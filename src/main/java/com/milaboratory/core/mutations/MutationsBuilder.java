@@ -45,6 +45,17 @@ public final class MutationsBuilder<S extends Sequence<S>> {
         this.reversed = reversed;
     }
 
+    public boolean isReversed() {
+        return reversed;
+    }
+
+    /**
+     * Returns internal array with mutations (first {@link #size()} elements), or null if no storage allocated
+     */
+    int[] getArrayReference() {
+        return mutations;
+    }
+
     public int get(int index) {
         return mutations[index];
     }
@@ -65,7 +76,7 @@ public final class MutationsBuilder<S extends Sequence<S>> {
         --size;
     }
 
-    private void ensureInternalCapacity(int newSize) {
+    void ensureInternalCapacity(int newSize) {
         if (size == -1)
             throw new IllegalStateException("Destroyed.");
         if (mutations != null && mutations.length >= newSize)
@@ -92,6 +103,29 @@ public final class MutationsBuilder<S extends Sequence<S>> {
         return this;
     }
 
+    /**
+     * Removes all mutations, keeping allocated storage, so the builder can be reused.
+     *
+     * @return this
+     */
+    public MutationsBuilder<S> clear() {
+        if (size == -1)
+            throw new IllegalStateException("Destroyed.");
+        size = 0;
+        return this;
+    }
+
+    /**
+     * Creates mutations object from the current content, keeping the builder (and its storage) for further use.
+     *
+     * @return mutations
+     */
+    public Mutations<S> create() {
+        if (size == -1)
+            throw new IllegalStateException("Destroyed.");
+        return create(mutations == null ? new int[0] : Arrays.copyOf(mutations, size));
+    }
+
     public Mutations<S> createAndDestroy() {
         final int[] m;
 
@@ -105,6 +139,10 @@ public final class MutationsBuilder<S extends Sequence<S>> {
         mutations = null;
         size = -1;
 
+        return create(m);
+    }
+
+    private Mutations<S> create(int[] m) {
         if (reversed)
             ArraysUtils.reverse(m);
 
@@ -140,6 +178,14 @@ public final class MutationsBuilder<S extends Sequence<S>> {
         return this;
     }
 
+    public MutationsBuilder<S> append(int[] other, int otherFrom, int length) {
+        ensureInternalCapacity(size + length);
+        if (length != 0)
+            System.arraycopy(other, otherFrom, mutations, size, length);
+        size += length;
+        return this;
+    }
+
     public MutationsBuilder<S> append(int[] other) {
         ensureInternalCapacity(size + other.length);
         for (int mutation : other)
@@ -109,9 +109,25 @@ public final class MutationsUtil {
      * @param mutations array of mutations
      */
     public static <S extends Sequence<S>> Mutations<S> shiftIndelsAtHomopolymers(S seq1, int seq1From, Mutations<S> mutations) {
-        int[] muts = mutations.mutations.clone();
-        shiftIndelsAtHomopolymers(seq1, seq1From, muts);
-        return new Mutations<>(mutations.alphabet, muts);
+        int[] muts = shiftIndelsAtHomopolymers(seq1, seq1From, mutations.mutations, mutations.mutations.length, true);
+        // Returning the same object if there is nothing to shift
+        return muts == mutations.mutations ? mutations : new Mutations<>(mutations.alphabet, muts, true);
+    }
+
+    /**
+     * This one shifts indels to the left at homopolymer regions Applicable to KAligner data, which normally put indels
+     * randomly along such regions Required for filterMutations algorithm to work correctly Works inplace
+     *
+     * @param seq1      reference sequence for the mutations
+     * @param seq1From  seq1 from
+     * @param mutations builder with mutations (must not be reversed)
+     */
+    public static <S extends Sequence<S>> void shiftIndelsAtHomopolymers(S seq1, int seq1From,
+                                                                         MutationsBuilder<S> mutations) {
+        if (mutations.isReversed())
+            throw new IllegalArgumentException("Reversed builder.");
+        if (mutations.size() != 0)
+            shiftIndelsAtHomopolymers(seq1, seq1From, mutations.getArrayReference(), mutations.size(), false);
     }
 
     /**
@@ -134,10 +150,22 @@ public final class MutationsUtil {
      * @param mutations array of mutations
      */
     public static void shiftIndelsAtHomopolymers(Sequence seq1, int seq1From, int[] mutations) {
+        shiftIndelsAtHomopolymers(seq1, seq1From, mutations, mutations.length, false);
+    }
+
+    /**
+     * Shifts indels in the first {@code size} elements of the array. If {@code copyOnWrite} is true, source array is
+     * not modified and a copy is created if some indel is shifted.
+     *
+     * @return array with shifted mutations ({@code mutations} if it is modified in place or there is nothing to shift)
+     */
+    private static int[] shiftIndelsAtHomopolymers(Sequence seq1, int seq1From, int[] mutations, int size,
+                                                   boolean copyOnWrite) {
         int prevPos = seq1From;
+        int[] result = mutations;
 
-        for (int i = 0; i < mutations.length; i++) {
-            int code = mutations[i];
+        for (int i = 0; i < size; i++) {
+            int code = result[i];
             if (!isSubstitution(code)) {
                 int pos = getPosition(code), offset = 0;
                 if (pos < seq1From)
@@ -147,14 +175,19 @@ public final class MutationsUtil {
                     pos--;
                     offset--;
                 }
-                mutations[i] = move(code, offset);
-                prevPos = getPosition(mutations[i]);
-                if (isDeletion(mutations[i]))
+                if (offset != 0) {
+                    if (copyOnWrite && result == mutations)
+                        result = mutations.clone();
+                    result[i] = move(code, offset);
+                }
+                prevPos = getPosition(result[i]);
+                if (isDeletion(result[i]))
                     prevPos++;
             } else {
-                prevPos = getPosition(mutations[i]) + 1;
+                prevPos = getPosition(result[i]) + 1;
             }
         }
+        return result;
     }
 
     public static boolean check(Mutations mutations) {
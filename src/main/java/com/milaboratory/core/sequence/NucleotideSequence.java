@@ -169,7 +169,7 @@ public final class NucleotideSequence extends AbstractArraySequence<NucleotideSe
 
         if (range.length() == 1)
             return range.isReverse()
-                    ? getOneLetterSequence(NucleotideAlphabet.complementCode(data[range.getFrom()]))
+                    ? getOneLetterSequence(NucleotideAlphabet.complementCode(data[range.getLower()]))
                     : getOneLetterSequence(data[range.getFrom()]);
 
         if (range.isReverse())
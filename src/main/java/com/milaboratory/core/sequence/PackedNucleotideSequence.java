@@ -0,0 +1,359 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.sequence;
+
+import com.milaboratory.core.Range;
+import com.milaboratory.util.Bit2Array;
+import com.milaboratory.util.IntArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Compact representation of nucleotide sequence, storing four nucleotides per byte (see {@link Bit2Array}).
+ *
+ * <p>Wildcards (which can't be encoded with two bits) are kept in a separate sorted list of positions and codes, so
+ * memory footprint is close to two bits per nucleotide only for sequences without (or with few) wildcards. Equality
+ * checks, hashing, reverse complement, ranges and concatenation process four nucleotides at a time.</p>
+ *
+ * <p>Use {@link #toNucleotideSequence()} to pass sequence to methods accepting {@link NucleotideSequence}.</p>
+ *
+ * @see NucleotideSequence
+ */
+public final class PackedNucleotideSequence implements NSeq<PackedNucleotideSequence>, java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final byte[] NO_CODES = new byte[0];
+
+    /**
+     * Empty instance
+     */
+    public static final PackedNucleotideSequence EMPTY = new PackedNucleotideSequence(new Bit2Array(0),
+            NO_POSITIONS, NO_CODES);
+
+    /**
+     * Reverse complement of four packed nucleotides
+     */
+    private static final byte[] RC_QUAD = new byte[256];
+
+    static {
+        for (int i = 0; i < 256; ++i) {
+            int rc = 0;
+            for (int j = 0; j < 4; ++j)
+                rc |= (3 - ((i >>> (j << 1)) & 3)) << ((3 - j) << 1);
+            RC_QUAD[i] = (byte) rc;
+        }
+    }
+
+    /**
+     * Basic nucleotides (zeros at wildcard positions)
+     */
+    final Bit2Array data;
+    /**
+     * Sorted positions of wildcards and their codes
+     */
+    final int[] wildcardPositions;
+    final byte[] wildcardCodes;
+
+    PackedNucleotideSequence(Bit2Array data, int[] wildcardPositions, byte[] wildcardCodes) {
+        this.data = data;
+        this.wildcardPositions = wildcardPositions;
+        this.wildcardCodes = wildcardCodes;
+    }
+
+    /**
+     * Creates packed representation of nucleotide sequence
+     *
+     * @param sequence nucleotide sequence
+     */
+    public PackedNucleotideSequence(NucleotideSequence sequence) {
+        int size = sequence.size();
+        byte[] raw = new byte[(size + 3) >> 2];
+        IntArrayList positions = null, codes = null;
+        byte code;
+        for (int i = 0; i < size; ++i) {
+            code = sequence.codeAt(i);
+            if (NucleotideSequence.ALPHABET.isWildcard(code)) {
+                if (positions == null) {
+                    positions = new IntArrayList();
+                    codes = new IntArrayList();
+                }
+                positions.add(i);
+                codes.add(code);
+            } else
+                raw[i >> 2] |= code << ((i & 3) << 1);
+        }
+        this.data = Bit2Array.construct(size, raw);
+        if (positions == null) {
+            this.wildcardPositions = NO_POSITIONS;
+            this.wildcardCodes = NO_CODES;
+        } else {
+            this.wildcardPositions = positions.toArray();
+            this.wildcardCodes = toByteArray(codes);
+        }
+    }
+
+    /**
+     * Creates packed representation of nucleotide sequence from its string representation (e.g. "ATCGG" or "atcgg").
+     *
+     * @param sequence string representation of sequence (case insensitive)
+     * @throws java.lang.IllegalArgumentException if sequence contains unknown nucleotide symbol
+     */
+    public PackedNucleotideSequence(String sequence) {
+        this(new NucleotideSequence(sequence));
+    }
+
+    private static byte[] toByteArray(IntArrayList list) {
+        byte[] result = new byte[list.size()];
+        for (int i = 0; i < result.length; ++i)
+            result[i] = (byte) list.get(i);
+        return result;
+    }
+
+    /**
+     * Returns nucleotide sequence with the same content.
+     *
+     * @return nucleotide sequence
+     */
+    public NucleotideSequence toNucleotideSequence() {
+        int size = size();
+        byte[] raw = Bit2Array.extractRawDataArray(data);
+        byte[] codes = new byte[size];
+        int i = 0;
+        for (int q = 0; i + 4 <= size; ++q) {
+            int quad = raw[q];
+            codes[i++] = (byte) (quad & 3);
+            codes[i++] = (byte) ((quad >>> 2) & 3);
+            codes[i++] = (byte) ((quad >>> 4) & 3);
+            codes[i++] = (byte) ((quad >>> 6) & 3);
+        }
+        for (; i < size; ++i)
+            codes[i] = (byte) data.get(i);
+        for (int j = 0; j < wildcardPositions.length; ++j)
+            codes[wildcardPositions[j]] = wildcardCodes[j];
+        return new NucleotideSequence(codes, true);
+    }
+
+    /**
+     * Returns code of nucleotide at specified position.
+     *
+     * @param position position in sequence
+     * @return code of nucleotide
+     */
+    public byte codeAt(int position) {
+        if (position < 0 || position >= size())
+            throw new IndexOutOfBoundsException();
+        if (wildcardPositions.length != 0) {
+            int i = Arrays.binarySearch(wildcardPositions, position);
+            if (i >= 0)
+                return wildcardCodes[i];
+        }
+        return (byte) data.get(position);
+    }
+
+    @Override
+    public int size() {
+        return data.size();
+    }
+
+    /**
+     * Returns {@literal true} if sequence contains wildcards.
+     *
+     * @return {@literal true} if sequence contains wildcards
+     */
+    public boolean containsWildcards() {
+        return wildcardPositions.length != 0;
+    }
+
+    @Override
+    public PackedNucleotideSequence getRange(Range range) {
+        if (range.isReverse())
+            return getRange(range.getLower(), range.getUpper()).getReverseComplement();
+        return getRange(range.getFrom(), range.getTo());
+    }
+
+    @Override
+    public PackedNucleotideSequence getRange(int from, int to) {
+        if (from < 0 || to > size() || to < from)
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to);
+        if (from == to)
+            return EMPTY;
+        if (from == 0 && to == size())
+            return this;
+
+        int wFrom = wildcardIndex(from), wTo = wildcardIndex(to);
+        int[] positions = NO_POSITIONS;
+        byte[] codes = NO_CODES;
+        if (wFrom != wTo) {
+            positions = new int[wTo - wFrom];
+            for (int i = 0; i < positions.length; ++i)
+                positions[i] = wildcardPositions[wFrom + i] - from;
+            codes = Arrays.copyOfRange(wildcardCodes, wFrom, wTo);
+        }
+        return new PackedNucleotideSequence(data.getRange(from, to), positions, codes);
+    }
+
+    /**
+     * Returns index of the first wildcard with position greater or equal to specified position
+     */
+    private int wildcardIndex(int position) {
+        int i = Arrays.binarySearch(wildcardPositions, position);
+        return i >= 0 ? i : -i - 1;
+    }
+
+    @Override
+    public PackedNucleotideSequence getReverseComplement() {
+        int size = size();
+        if (size == 0)
+            return this;
+
+        // Reverse complement of the whole array (including padding), processing four nucleotides at a time
+        byte[] raw = Bit2Array.extractRawDataArray(data);
+        byte[] rcRaw = new byte[raw.length];
+        for (int i = 0; i < raw.length; ++i)
+            rcRaw[raw.length - 1 - i] = RC_QUAD[raw[i] & 0xFF];
+        Bit2Array rc = Bit2Array.construct(raw.length << 2, rcRaw);
+
+        // Skipping padding, which is now in the beginning of array
+        int padding = (raw.length << 2) - size;
+        if (padding != 0)
+            rc = rc.getRange(padding, padding + size);
+
+        int[] positions = NO_POSITIONS;
+        byte[] codes = NO_CODES;
+        if (wildcardPositions.length != 0) {
+            int n = wildcardPositions.length;
+            positions = new int[n];
+            codes = new byte[n];
+            for (int i = 0; i < n; ++i) {
+                positions[n - 1 - i] = size - 1 - wildcardPositions[i];
+                codes[n - 1 - i] = NucleotideAlphabet.complementCode(wildcardCodes[i]);
+                // Keeping zeros at wildcard positions
+                rc.set(positions[n - 1 - i], 0);
+            }
+        }
+        return new PackedNucleotideSequence(rc, positions, codes);
+    }
+
+    @Override
+    public PackedNucleotideSequence concatenate(PackedNucleotideSequence other) {
+        if (other.size() == 0)
+            return this;
+        if (size() == 0)
+            return other;
+        return getBuilder().ensureCapacity(size() + other.size())
+                .append(this).append(other).createAndDestroy();
+    }
+
+    @Override
+    public Builder getBuilder() {
+        return new Builder();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PackedNucleotideSequence that = (PackedNucleotideSequence) o;
+        return data.equals(that.data)
+                && Arrays.equals(wildcardPositions, that.wildcardPositions)
+                && Arrays.equals(wildcardCodes, that.wildcardCodes);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = data.hashCode();
+        result = 31 * result + Arrays.hashCode(wildcardPositions);
+        result = 31 * result + Arrays.hashCode(wildcardCodes);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return toNucleotideSequence().toString();
+    }
+
+    /**
+     * Builder of packed nucleotide sequences
+     */
+    public static final class Builder implements SeqBuilder<PackedNucleotideSequence> {
+        Bit2Array storage;
+        int size;
+        IntArrayList positions, codes;
+
+        public Builder() {
+            this(new Bit2Array(0), 0, new IntArrayList(0), new IntArrayList(0));
+        }
+
+        private Builder(Bit2Array storage, int size, IntArrayList positions, IntArrayList codes) {
+            this.storage = storage;
+            this.size = size;
+            this.positions = positions;
+            this.codes = codes;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Builder ensureCapacity(int capacity) {
+            if (storage == null)
+                throw new IllegalStateException("Destroyed.");
+            if (capacity > storage.size())
+                storage = storage.extend(capacity);
+            return this;
+        }
+
+        @Override
+        public PackedNucleotideSequence createAndDestroy() {
+            if (storage == null)
+                throw new IllegalStateException("Destroyed.");
+            PackedNucleotideSequence result;
+            if (size == 0)
+                result = EMPTY;
+            else
+                result = new PackedNucleotideSequence(
+                        size == storage.size() ? storage : storage.getRange(0, size),
+                        positions.isEmpty() ? NO_POSITIONS : positions.toArray(),
+                        codes.isEmpty() ? NO_CODES : toByteArray(codes));
+            storage = null;
+            positions = codes = null;
+            return result;
+        }
+
+        @Override
+        public Builder append(PackedNucleotideSequence seq) {
+            int seqSize = seq.size();
+            if (size + seqSize > storage.size())
+                ensureCapacity(Math.max(size + seqSize, storage.size() * 3 / 2 + 1));
+            storage.copyFrom(seq.data, 0, size, seqSize);
+            for (int i = 0; i < seq.wildcardPositions.length; ++i) {
+                positions.add(size + seq.wildcardPositions[i]);
+                codes.add(seq.wildcardCodes[i]);
+            }
+            size += seqSize;
+            return this;
+        }
+
+        @Override
+        public Builder clone() {
+            if (storage == null)
+                throw new IllegalStateException("Destroyed.");
+            return new Builder(storage.clone(), size, positions.clone(), codes.clone());
+        }
+    }
+}
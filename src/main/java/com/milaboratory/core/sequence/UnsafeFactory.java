@@ -17,6 +17,9 @@ package com.milaboratory.core.sequence;
 
 import com.milaboratory.util.HashFunctions;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * Don't use this class.
  *
@@ -49,17 +52,51 @@ public final class UnsafeFactory {
         for (int i = 0; i < length; ++i) {
             qual = (byte) (buffer[pointerQua++] - qualityValueOffset);
 
-            code = NucleotideAlphabet.byteSymbolToCode(buffer[pointerSeq++]);
+            code = parseLetter(buffer[pointerSeq++]);
 
-            if (code == -1) {
-                if (buffer[pointerSeq - 1] == '.')
-                    code = NucleotideAlphabet.N;
-                else
-                    throw new IllegalArgumentException("Unknown letter \"" + buffer[pointerSeq - 1] + "\"" +
-                            (buffer[pointerSeq - 1] == 13 ? ". FASTQ reader does not support Windows-style line breaks " +
-                                    "(CR+LF), please convert file to standard FASTQ (with Unix-like LF line breaks)." : ""));
+            if (replaceWildcards && NucleotideSequence.ALPHABET.isWildcard(code)) {
+                seed = HashFunctions.JenkinWang64shift(seed + i);
+                code = NucleotideSequence.ALPHABET.codeToWildcard(code).getUniformlyDistributedBasicCode(seed);
+                qual = 0;
             }
 
+            sequence.append(code);
+            quality.append(qual);
+        }
+
+        // Returning result
+        return new NSequenceWithQuality(sequence.createAndDestroy(),
+                quality.createAndDestroy());
+    }
+
+    /**
+     * Same as {@link #fastqParse(byte[], int, int, int, byte, long, boolean)}, but reads data directly from (e.g.
+     * memory-mapped) byte buffer; buffer position is not changed.
+     */
+    public static NSequenceWithQuality fastqParse(
+            ByteBuffer buffer,
+            int fromSequence,
+            int fromQuality,
+            int length,
+            byte qualityValueOffset,
+            long id,
+            boolean replaceWildcards) {
+        // Seed for random generator of letters substituting wildcards
+        long seed = id;
+
+        // Creating builders for sequence and quality
+        SequenceBuilder<NucleotideSequence> sequence = NucleotideSequence.ALPHABET.createBuilder().ensureCapacity(length);
+        SequenceQualityBuilder quality = new SequenceQualityBuilder().ensureCapacity(length);
+
+        byte qual, code;
+        int pointerSeq = fromSequence, pointerQua = fromQuality;
+
+        // Parsing quality and sequence
+        for (int i = 0; i < length; ++i) {
+            qual = (byte) (buffer.get(pointerQua++) - qualityValueOffset);
+
+            code = parseLetter(buffer.get(pointerSeq++));
+
             if (replaceWildcards && NucleotideSequence.ALPHABET.isWildcard(code)) {
                 seed = HashFunctions.JenkinWang64shift(seed + i);
                 code = NucleotideSequence.ALPHABET.codeToWildcard(code).getUniformlyDistributedBasicCode(seed);
@@ -74,4 +111,80 @@ public final class UnsafeFactory {
         return new NSequenceWithQuality(sequence.createAndDestroy(),
                 quality.createAndDestroy());
     }
+
+    /**
+     * Same as {@link #fastqParse(byte[], int, int, int, byte, long, boolean)}, but writes nucleotide codes and quality
+     * values into the provided arrays instead of creating sequence objects.
+     */
+    public static void fastqParse(
+            byte[] buffer,
+            int fromSequence,
+            int fromQuality,
+            int length,
+            byte qualityValueOffset,
+            long id,
+            boolean replaceWildcards,
+            byte[] codes,
+            byte[] qualities,
+            int offset) {
+        // Seed for random generator of letters substituting wildcards
+        long seed = id;
+
+        byte qual, code;
+        int pointerSeq = fromSequence, pointerQua = fromQuality;
+
+        // Parsing quality and sequence
+        for (int i = 0; i < length; ++i) {
+            qual = (byte) (buffer[pointerQua++] - qualityValueOffset);
+
+            code = parseLetter(buffer[pointerSeq++]);
+
+            if (replaceWildcards && NucleotideSequence.ALPHABET.isWildcard(code)) {
+                seed = HashFunctions.JenkinWang64shift(seed + i);
+                code = NucleotideSequence.ALPHABET.codeToWildcard(code).getUniformlyDistributedBasicCode(seed);
+                qual = 0;
+            }
+
+            codes[offset + i] = code;
+            qualities[offset + i] = qual;
+        }
+    }
+
+    /**
+     * Creates sequence with quality from a range of nucleotide codes and quality values (data is copied once, without
+     * validation).
+     */
+    public static NSequenceWithQuality nSequenceWithQuality(byte[] codes, byte[] qualities, int from, int length) {
+        return new NSequenceWithQuality(
+                nucleotideSequence(codes, from, length),
+                sequenceQuality(qualities, from, length));
+    }
+
+    /**
+     * Creates nucleotide sequence from a range of nucleotide codes (data is copied once, without validation).
+     */
+    public static NucleotideSequence nucleotideSequence(byte[] codes, int from, int length) {
+        return new NucleotideSequence(Arrays.copyOfRange(codes, from, from + length), true);
+    }
+
+    /**
+     * Creates quality from a range of quality values (data is copied once, without validation).
+     */
+    public static SequenceQuality sequenceQuality(byte[] qualities, int from, int length) {
+        return new SequenceQuality(Arrays.copyOfRange(qualities, from, from + length), true);
+    }
+
+    private static byte parseLetter(byte symbol) {
+        byte code = NucleotideAlphabet.byteSymbolToCode(symbol);
+
+        if (code == -1) {
+            if (symbol == '.')
+                code = NucleotideAlphabet.N;
+            else
+                throw new IllegalArgumentException("Unknown letter \"" + symbol + "\"" +
+                        (symbol == 13 ? ". FASTQ reader does not support Windows-style line breaks " +
+                                "(CR+LF), please convert file to standard FASTQ (with Unix-like LF line breaks)." : ""));
+        }
+        return code;
+    }
 }
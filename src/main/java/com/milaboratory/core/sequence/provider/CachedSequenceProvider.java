@@ -22,14 +22,29 @@ import com.milaboratory.core.sequence.SequenceBuilder;
 import com.milaboratory.util.RangeMap;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 public final class CachedSequenceProvider<S extends Sequence<S>> implements SequenceProvider<S> {
     final Alphabet<S> alphabet;
     final RangeMap<S> sequences = new RangeMap<>();
     final SequenceProvider<S> provider;
+    /**
+     * Bounded cache (null for unbounded not thread-safe provider)
+     */
+    final SequenceRegionCache cache;
+    /**
+     * Regions being loaded from underlying provider (bounded mode only)
+     */
+    final ConcurrentHashMap<Range, FutureTask<S>> loading;
 
     /**
      * Cached sequence provider wrapping specified sequence provider.
@@ -38,8 +53,24 @@ public final class CachedSequenceProvider<S extends Sequence<S>> implements Sequ
      * @param provider provider to cache sequences from
      */
     public CachedSequenceProvider(Alphabet<S> alphabet, SequenceProvider<S> provider) {
+        this(alphabet, provider, null);
+    }
+
+    /**
+     * Thread-safe cached sequence provider wrapping specified sequence provider, with cached regions bounded by
+     * specified cache. Cached regions may be evicted and reloaded from the underlying provider, only requested regions
+     * are loaded from the underlying provider (concurrent requests of the same region are served by a single load) and
+     * then merged with adjacent cached regions.
+     *
+     * @param alphabet alphabet
+     * @param provider provider to cache sequences from
+     * @param cache    cache (may be shared between several providers); null for unbounded not thread-safe provider
+     */
+    public CachedSequenceProvider(Alphabet<S> alphabet, SequenceProvider<S> provider, SequenceRegionCache cache) {
         this.alphabet = alphabet;
         this.provider = provider;
+        this.cache = cache;
+        this.loading = cache == null ? null : new ConcurrentHashMap<Range, FutureTask<S>>();
     }
 
     /**
@@ -86,6 +117,9 @@ public final class CachedSequenceProvider<S extends Sequence<S>> implements Sequ
         if (range.isReverse())
             throw new IllegalArgumentException("Don't support inverse ranges");
 
+        if (cache != null)
+            return ensureEntryBounded(range);
+
         Range direct = range.isReverse() ? range.inverse() : range;
 
         Map.Entry<Range, S> entry = sequences.findContaining(direct);
@@ -132,8 +166,20 @@ public final class CachedSequenceProvider<S extends Sequence<S>> implements Sequ
         return new AbstractMap.SimpleEntry<>(rr, seq);
     }
 
+    /**
+     * Returns cached regions. In bounded mode returns a snapshot of cached regions, otherwise a live view.
+     *
+     * @return cached regions
+     */
     public Set<Map.Entry<Range, S>> entrySet() {
-        return sequences.entrySet();
+        if (cache == null)
+            return sequences.entrySet();
+        synchronized (sequences) {
+            Set<Map.Entry<Range, S>> result = new LinkedHashSet<>();
+            for (Map.Entry<Range, S> e : sequences.entrySet())
+                result.add(new AbstractMap.SimpleImmutableEntry<>(e));
+            return Collections.unmodifiableSet(result);
+        }
     }
 
     @Override
@@ -147,20 +193,33 @@ public final class CachedSequenceProvider<S extends Sequence<S>> implements Sequ
             int s = provider.size();
             if (s >= 0)
                 return s;
-            else // s == -1 => automatically infer size from rangeMap
-                if (sequences.isEmpty())
+            else { // s == -1 => automatically infer size from rangeMap
+                int upper = lastCachedPosition();
+                if (upper == -1)
                     throw new IllegalArgumentException(((NoProvider) provider).errorMessage);
                 else
-                    return sequences.enclosingRange().getUpper(); // last cached position
-        } else if (provider instanceof SequenceProviderUtils.LazySequenceProvider)
-            if (((SequenceProviderUtils.LazySequenceProvider<S>) provider).isInitialized() || sequences.isEmpty())
+                    return upper;
+            }
+        } else if (provider instanceof SequenceProviderUtils.LazySequenceProvider) {
+            if (((SequenceProviderUtils.LazySequenceProvider<S>) provider).isInitialized())
                 return provider.size();
-            else
-                return sequences.enclosingRange().getUpper(); // last cached position
-        else
+            int upper = lastCachedPosition();
+            return upper == -1 ? provider.size() : upper;
+        } else
             return provider.size();
     }
 
+    /**
+     * Returns upper bound of the last cached region or -1 if there are no cached regions
+     */
+    private int lastCachedPosition() {
+        if (cache == null)
+            return sequences.isEmpty() ? -1 : sequences.enclosingRange().getUpper();
+        synchronized (sequences) {
+            return sequences.isEmpty() ? -1 : sequences.enclosingRange().getUpper();
+        }
+    }
+
     public S getRegion(Range range) {
         if (range.isEmpty())
             return alphabet.getEmptySequence();
@@ -177,12 +236,94 @@ public final class CachedSequenceProvider<S extends Sequence<S>> implements Sequ
                 throw new IllegalArgumentException("Trying to set sequence outside available range.");
         }
 
+        if (cache == null)
+            merge(range, seq, null);
+        else
+            store(range, seq);
+    }
+
+    private Map.Entry<Range, S> ensureEntryBounded(final Range range) {
+        synchronized (sequences) {
+            Map.Entry<Range, S> entry = sequences.findContaining(range);
+            if (entry != null) {
+                cache.hit(this, entry.getKey());
+                return entry;
+            }
+        }
+        cache.miss();
+
+        // Loading region (single load for concurrent requests of the same region)
+        FutureTask<S> task = new FutureTask<>(new Callable<S>() {
+            @Override
+            public S call() throws Exception {
+                return provider.getRegion(range);
+            }
+        });
+        FutureTask<S> existing = loading.putIfAbsent(range, task);
+        if (existing == null)
+            try {
+                task.run();
+            } finally {
+                loading.remove(range, task);
+            }
+        else
+            task = existing;
+
+        S seq;
+        try {
+            seq = task.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+
+        return store(range, seq);
+    }
+
+    /**
+     * Puts region to the map and registers it in the cache (bounded mode only)
+     */
+    private Map.Entry<Range, S> store(Range range, S seq) {
+        List<Range> removed = new ArrayList<>();
+        Map.Entry<Range, S> entry;
+        List<SequenceRegionCache.Key> evicted;
+        synchronized (sequences) {
+            entry = merge(range, seq, removed);
+            evicted = cache.replace(this, removed, entry.getKey(), entry.getKey().length());
+        }
+        SequenceRegionCache.evict(evicted);
+        return entry;
+    }
+
+    /**
+     * Removes evicted region (if it was not merged with other regions since eviction)
+     */
+    void evict(Range range) {
+        synchronized (sequences) {
+            Map.Entry<Range, S> entry = sequences.findContaining(range);
+            if (entry != null && entry.getKey().equals(range))
+                sequences.remove(range);
+        }
+    }
+
+    /**
+     * Puts region to the map merging it with intersecting and adjacent regions
+     *
+     * @param removed if not null, ranges of regions merged into the new one will be added to this list
+     * @return resulting entry
+     */
+    private Map.Entry<Range, S> merge(Range range, S seq, List<Range> removed) {
         Map.Entry<Range, S> containing = sequences.findContaining(range);
         if (containing != null) {
             for (int i = 0, j = range.getFrom() - containing.getKey().getFrom(); i < seq.size(); ++i, ++j)
                 if (seq.codeAt(i) != containing.getValue().codeAt(j))
                     throw new IllegalStateException("Inconsistent sequence returned by provider.");
-            return;
+            return containing;
         }
 
         if (range.isReverse())
@@ -231,9 +372,12 @@ public final class CachedSequenceProvider<S extends Sequence<S>> implements Sequ
                 if (seq.codeAt(j) != s.codeAt(i))
                     throw new IllegalStateException("Inconsistent sequence returned by provider.");
             sequences.remove(e.getKey());
+            if (removed != null)
+                removed.add(e.getKey());
         }
 
         sequences.put(range, seq);
+        return new AbstractMap.SimpleEntry<>(range, seq);
     }
 
     /**
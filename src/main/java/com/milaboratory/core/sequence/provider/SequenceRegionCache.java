@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.sequence.provider;
+
+import com.milaboratory.core.Range;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded cache of sequence regions, shared between several {@link CachedSequenceProvider}s (e.g. providers of all
+ * chromosomes of a genome).
+ *
+ * <p>Weight of cached region is its length in letters (that is approximately the number of bytes it occupies for
+ * array-backed sequences). When total weight exceeds the budget, regions are evicted according to segmented LRU
+ * policy: new regions are placed into probationary segment, regions accessed again are promoted to protected segment
+ * (limited to {@link #DEFAULT_PROTECTED_FRACTION} of the budget), and regions are evicted from the least recently used
+ * end of probationary segment first. So one-time scans over large regions don't wash out frequently used ones.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ *
+ * @see CachedSequenceProvider#CachedSequenceProvider(com.milaboratory.core.sequence.Alphabet, SequenceProvider,
+ * SequenceRegionCache)
+ */
+public final class SequenceRegionCache {
+    /**
+     * Part of the budget available for protected segment
+     */
+    public static final double DEFAULT_PROTECTED_FRACTION = 0.8;
+    final long maxWeight, maxProtectedWeight;
+    // Both maps are ordered from the least to the most recently used entry
+    final LinkedHashMap<Key, Long> probation = new LinkedHashMap<>(), protectedSegment = new LinkedHashMap<>();
+    long probationWeight = 0, protectedWeight = 0;
+    long hits = 0, misses = 0, evictions = 0;
+
+    /**
+     * Creates cache.
+     *
+     * @param maxWeight maximal total length of cached regions
+     */
+    public SequenceRegionCache(long maxWeight) {
+        this(maxWeight, DEFAULT_PROTECTED_FRACTION);
+    }
+
+    /**
+     * Creates cache.
+     *
+     * @param maxWeight         maximal total length of cached regions
+     * @param protectedFraction part of the budget available for regions accessed more than once
+     */
+    public SequenceRegionCache(long maxWeight, double protectedFraction) {
+        if (maxWeight < 0)
+            throw new IllegalArgumentException("Negative max weight.");
+        if (protectedFraction < 0 || protectedFraction > 1)
+            throw new IllegalArgumentException("Protected fraction must be in [0, 1].");
+        this.maxWeight = maxWeight;
+        this.maxProtectedWeight = (long) (maxWeight * protectedFraction);
+    }
+
+    /**
+     * Registers access to cached region.
+     */
+    synchronized void hit(CachedSequenceProvider<?> owner, Range range) {
+        ++hits;
+        Key key = new Key(owner, range);
+        Long weight = protectedSegment.remove(key);
+        if (weight != null) {
+            // Moving to the most recently used end
+            protectedSegment.put(key, weight);
+            return;
+        }
+
+        weight = probation.remove(key);
+        if (weight == null)
+            // Entry was concurrently evicted or merged
+            return;
+
+        // Promoting to protected segment
+        probationWeight -= weight;
+        protectedSegment.put(key, weight);
+        protectedWeight += weight;
+
+        // Demoting least recently used protected entries
+        Iterator<Map.Entry<Key, Long>> it = protectedSegment.entrySet().iterator();
+        while (protectedWeight > maxProtectedWeight && it.hasNext()) {
+            Map.Entry<Key, Long> e = it.next();
+            it.remove();
+            protectedWeight -= e.getValue();
+            probation.put(e.getKey(), e.getValue());
+            probationWeight += e.getValue();
+        }
+    }
+
+    /**
+     * Registers cache miss.
+     */
+    synchronized void miss() {
+        ++misses;
+    }
+
+    /**
+     * Replaces regions of the owner merged into new region with the new one, and returns regions to be evicted (the
+     * caller must remove them from their owners via {@link #evict(List)}, without holding any locks).
+     */
+    synchronized List<Key> replace(CachedSequenceProvider<?> owner, List<Range> removed, Range range, long weight) {
+        for (Range r : removed)
+            remove(new Key(owner, r));
+
+        Key key = new Key(owner, range);
+        if (probation.containsKey(key) || protectedSegment.containsKey(key))
+            return Collections.emptyList();
+
+        probation.put(key, weight);
+        probationWeight += weight;
+
+        List<Key> evicted = null;
+        while (probationWeight + protectedWeight > maxWeight) {
+            Map<Key, Long> segment = probation.isEmpty() ? protectedSegment : probation;
+            Map.Entry<Key, Long> e = segment.entrySet().iterator().next();
+            remove(e.getKey());
+            if (evicted == null)
+                evicted = new ArrayList<>();
+            evicted.add(e.getKey());
+            ++evictions;
+        }
+        return evicted == null ? Collections.<Key>emptyList() : evicted;
+    }
+
+    private void remove(Key key) {
+        Long weight = probation.remove(key);
+        if (weight != null)
+            probationWeight -= weight;
+        else if ((weight = protectedSegment.remove(key)) != null)
+            protectedWeight -= weight;
+    }
+
+    static void evict(List<Key> evicted) {
+        for (Key key : evicted)
+            key.owner.evict(key.range);
+    }
+
+    /**
+     * Returns maximal total length of cached regions
+     *
+     * @return maximal total length of cached regions
+     */
+    public long getMaxWeight() {
+        return maxWeight;
+    }
+
+    /**
+     * Returns current total length of cached regions
+     *
+     * @return current total length of cached regions
+     */
+    public synchronized long getWeight() {
+        return probationWeight + protectedWeight;
+    }
+
+    /**
+     * Returns number of cached regions
+     *
+     * @return number of cached regions
+     */
+    public synchronized int getSize() {
+        return probation.size() + protectedSegment.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SequenceRegionCache{" +
+                "weight=" + (probationWeight + protectedWeight) +
+                ", maxWeight=" + maxWeight +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    static final class Key {
+        final CachedSequenceProvider<?> owner;
+        final Range range;
+
+        Key(CachedSequenceProvider<?> owner, Range range) {
+            this.owner = owner;
+            this.range = range;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return owner == key.owner && range.equals(key.range);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + range.hashCode();
+        }
+    }
+}
@@ -73,7 +73,7 @@ final class BranchingEnumerator<S extends Sequence<S>, O> {
             return;
         }
 
-        node = node.links[reference.codeAt(position++)];
+        node = node.getLink(reference.codeAt(position++));
     }
 
     public void checkIterationEnd() {
@@ -99,6 +99,7 @@ final class BranchingEnumerator<S extends Sequence<S>, O> {
         if (node == null)
             return null;
 
+        SequenceTreeMap.Node<O> link;
         switch (mode) {
             case 0:
                 while (true) {
@@ -109,7 +110,7 @@ final class BranchingEnumerator<S extends Sequence<S>, O> {
                             return node = null;
 
                         code = 0;
-                        node = node.links[reference.codeAt(position++)];
+                        node = node.getLink(reference.codeAt(position++));
 
                         if (node == null)
                             return null;
@@ -118,9 +119,9 @@ final class BranchingEnumerator<S extends Sequence<S>, O> {
                     if (code == reference.codeAt(position))
                         continue;
 
-                    if (node.links[code] != null &&
+                    if ((link = node.getLink(code)) != null &&
                             (guide == null || guide.allowMutation(reference, position, (byte) 0, code)))
-                        return node.links[code];
+                        return link;
                 }
             case 1:
                 do {
@@ -129,7 +130,7 @@ final class BranchingEnumerator<S extends Sequence<S>, O> {
                         return node = null;
 
                     if (code != -1) {
-                        node = node.links[reference.codeAt(position++)];
+                        node = node.getLink(reference.codeAt(position++));
                     } else
                         code = 0;
 
@@ -145,15 +146,15 @@ final class BranchingEnumerator<S extends Sequence<S>, O> {
                             return node = null;
 
                         code = 0;
-                        node = node.links[reference.codeAt(position++)];
+                        node = node.getLink(reference.codeAt(position++));
                     }
 
                     if (node == null)
                         return null;
 
-                    if (node.links[code] != null &&
+                    if ((link = node.getLink(code)) != null &&
                             (guide == null || guide.allowMutation(reference, position, (byte) 2, code)))
-                        return node.links[code];
+                        return link;
                 }
         }
 
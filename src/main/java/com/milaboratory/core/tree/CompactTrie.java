@@ -0,0 +1,224 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.tree;
+
+import java.util.Arrays;
+
+/**
+ * Storage for compact {@link SequenceTreeMap}.
+ *
+ * <p>Nodes are stored in flat arrays: each node has an index of its first child, an index of its next sibling
+ * (children of a node are sorted by the first letter of their edges) and an edge label (a range in the shared array
+ * of letters). Chains of nodes having a single child are stored as a single node with a multi-letter edge, so a
+ * position in the tree is a pair of node index and depth inside the edge leading to the node ({@link CompactNode}).
+ * Edges are split on insertion of keys diverging in the middle of an edge.</p>
+ *
+ * <p>Removed nodes are just unlinked from their parents (their data is not reused), so nodes held by running
+ * iterators remain readable.</p>
+ */
+final class CompactTrie<O> implements java.io.Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int NO_NODE = -1;
+    int[] firstChild, nextSibling, labelStart, labelLength;
+    Object[] objects;
+    byte[] labels;
+    int size, labelsSize;
+    final CompactNode root;
+
+    CompactTrie() {
+        int capacity = 16;
+        this.firstChild = new int[capacity];
+        this.nextSibling = new int[capacity];
+        this.labelStart = new int[capacity];
+        this.labelLength = new int[capacity];
+        this.objects = new Object[capacity];
+        this.labels = new byte[capacity];
+        // Root node with empty edge
+        this.size = 1;
+        this.firstChild[0] = NO_NODE;
+        this.nextSibling[0] = NO_NODE;
+        this.root = new CompactNode(0, 0);
+    }
+
+    private void appendLabel(byte code) {
+        if (labelsSize == labels.length)
+            labels = Arrays.copyOf(labels, labels.length * 3 / 2 + 1);
+        labels[labelsSize++] = code;
+    }
+
+    private int newNode() {
+        if (size == firstChild.length) {
+            int capacity = size * 3 / 2 + 1;
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            labelStart = Arrays.copyOf(labelStart, capacity);
+            labelLength = Arrays.copyOf(labelLength, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        firstChild[size] = NO_NODE;
+        nextSibling[size] = NO_NODE;
+        return size++;
+    }
+
+    /**
+     * Creates new child of the node with single-letter edge
+     */
+    private int addChild(int node, byte code) {
+        int child = newNode();
+        labelStart[child] = labelsSize;
+        labelLength[child] = 1;
+        appendLabel(code);
+
+        // Keeping children sorted by letter
+        int previous = NO_NODE, current = firstChild[node];
+        while (current != NO_NODE && labels[labelStart[current]] < code) {
+            previous = current;
+            current = nextSibling[current];
+        }
+        nextSibling[child] = current;
+        if (previous == NO_NODE)
+            firstChild[node] = child;
+        else
+            nextSibling[previous] = child;
+        return child;
+    }
+
+    /**
+     * Splits edge leading to the node, so node will end at specified depth (node keeps its index, the rest of the
+     * edge, children and object are moved to a new node)
+     */
+    private void split(int node, int depth) {
+        int tail = newNode();
+        labelStart[tail] = labelStart[node] + depth;
+        labelLength[tail] = labelLength[node] - depth;
+        firstChild[tail] = firstChild[node];
+        objects[tail] = objects[node];
+
+        labelLength[node] = depth;
+        firstChild[node] = tail;
+        objects[node] = null;
+    }
+
+    /**
+     * Position in the compact tree: {@code depth} letters of the edge leading to {@code node} are passed
+     */
+    final class CompactNode extends SequenceTreeMap.Node<O> {
+        private static final long serialVersionUID = 1L;
+        final int node, depth;
+
+        CompactNode(int node, int depth) {
+            this.node = node;
+            this.depth = depth;
+        }
+
+        @Override
+        public SequenceTreeMap.Node<O> getLink(byte code) {
+            if (depth < labelLength[node])
+                return labels[labelStart[node] + depth] == code ? new CompactNode(node, depth + 1) : null;
+
+            byte first;
+            for (int child = firstChild[node]; child != NO_NODE; child = nextSibling[child]) {
+                first = labels[labelStart[child]];
+                if (first == code)
+                    return new CompactNode(child, 1);
+                if (first > code)
+                    break;
+            }
+            return null;
+        }
+
+        @Override
+        public SequenceTreeMap.Node<O> getOrCreate(byte code) {
+            SequenceTreeMap.Node<O> link = getLink(code);
+            if (link != null)
+                return link;
+
+            if (depth < labelLength[node])
+                split(node, depth);
+
+            // Extending edge of a leaf if its letters are the last ones in the array (path compression of the
+            // newly added keys)
+            if (node != 0 && firstChild[node] == NO_NODE && objects[node] == null
+                    && labelStart[node] + labelLength[node] == labelsSize) {
+                appendLabel(code);
+                ++labelLength[node];
+                return new CompactNode(node, depth + 1);
+            }
+
+            return new CompactNode(addChild(node, code), 1);
+        }
+
+        @Override
+        boolean hasLinks() {
+            return depth < labelLength[node] || firstChild[node] != NO_NODE;
+        }
+
+        @Override
+        void removeLink(byte code) {
+            if (depth < labelLength[node]) {
+                // Node has no other links
+                if (labels[labelStart[node] + depth] == code)
+                    labelLength[node] = depth;
+                return;
+            }
+
+            int previous = NO_NODE, current = firstChild[node];
+            while (current != NO_NODE && labels[labelStart[current]] != code) {
+                previous = current;
+                current = nextSibling[current];
+            }
+            if (current == NO_NODE)
+                return;
+            if (previous == NO_NODE)
+                firstChild[node] = nextSibling[current];
+            else
+                nextSibling[previous] = nextSibling[current];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public O getObject() {
+            return depth == labelLength[node] ? (O) objects[node] : null;
+        }
+
+        @Override
+        public void setObject(O object) {
+            if (depth < labelLength[node]) {
+                if (object == null)
+                    return;
+                split(node, depth);
+            }
+            objects[node] = object;
+        }
+
+        private CompactTrie<O> trie() {
+            return CompactTrie.this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CompactTrie.CompactNode)) return false;
+            CompactTrie<?>.CompactNode that = (CompactTrie<?>.CompactNode) o;
+            return node == that.node && depth == that.depth && trie() == that.trie();
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * node + depth;
+        }
+    }
+}
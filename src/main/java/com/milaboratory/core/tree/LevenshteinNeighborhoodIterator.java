@@ -0,0 +1,332 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.tree;
+
+import com.milaboratory.core.sequence.Sequence;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Iterator over the nodes of {@link SequenceTreeMap} with keys within specified edit (Levenshtein) distance from the
+ * reference sequence.
+ *
+ * <p>Unlike {@link NeighborhoodIterator}, which enumerates all combinations of mutations, this iterator traverses the
+ * tree once, computing column of the dynamic programming matrix for each node with bit-parallel algorithm by Myers
+ * (64 letters of reference per machine word). Whole subtree is skipped as soon as all cells of the column (which are
+ * lower bounds for distances of all keys in the subtree) exceed the maximal distance. Each node is visited at most
+ * once, so search is faster for long references and large number of allowed errors, when the number of mutation
+ * combinations enumerated by {@link NeighborhoodIterator} is large.</p>
+ *
+ * <p>Only parameters with equal penalties for all mutation types and no additional limits on the number of mutations
+ * of each type are supported (see {@link #isSupported(TreeSearchParameters)}). For such parameters, iterator returns
+ * the same nodes as {@link NeighborhoodIterator} (without mutation guide), each node exactly once, in the order of
+ * increasing distance, and {@link #getPenalty()} equals to the penalty of the best variant returned by
+ * {@link NeighborhoodIterator}.</p>
+ */
+public final class LevenshteinNeighborhoodIterator<S extends Sequence<S>, O> {
+    private static final int WORD_SIZE = 64;
+
+    //Reference sequence
+    final S reference;
+    final TreeSearchParameters parameters;
+    final int maxDistance;
+    //Penalty for each distance
+    final double[] penalties;
+    final SequenceTreeMap.Node<O> root;
+
+    //Found nodes grouped by distance
+    List<SequenceTreeMap.Node<O>>[] found;
+    int currentDistance = 0, currentIndex = -1;
+
+    /**
+     * Creates iterator.
+     *
+     * @param reference  reference sequence
+     * @param parameters search parameters
+     * @param root       root node of the tree
+     * @throws IllegalArgumentException if parameters are not supported (see {@link #isSupported(TreeSearchParameters)})
+     */
+    public LevenshteinNeighborhoodIterator(S reference, TreeSearchParameters parameters, SequenceTreeMap.Node<O> root) {
+        if (!isSupported(parameters))
+            throw new IllegalArgumentException("Only equal penalties for all mutation types without limits for " +
+                    "each type are supported.");
+        this.reference = reference;
+        this.parameters = parameters;
+        this.root = root;
+        this.maxDistance = getMaxDistance(parameters);
+        this.penalties = new double[maxDistance + 1];
+        // Same summation as in PenaltyUtils to get exactly the same values
+        for (int i = 1; i <= maxDistance; ++i)
+            penalties[i] = penalties[i - 1] + parameters.getPenalty(0);
+    }
+
+    /**
+     * Returns maximal number of mutations allowed by penalties (ignoring limits for each mutation type)
+     */
+    private static int getMaxDistance(TreeSearchParameters parameters) {
+        double penalty = parameters.getPenalty(0), sum = 0.0;
+        int distance = 0;
+        while (sum + penalty <= parameters.getMaxPenalty()) {
+            sum += penalty;
+            ++distance;
+        }
+        return distance;
+    }
+
+    /**
+     * Returns {@literal true} if search with specified parameters can be performed by this iterator, i.e. penalties
+     * for all mutation types are equal and positive, and number of mutations of each type is limited only by maximal
+     * penalty.
+     *
+     * @param parameters search parameters
+     * @return {@literal true} if search with specified parameters can be performed by this iterator
+     */
+    public static boolean isSupported(TreeSearchParameters parameters) {
+        double penalty = parameters.getPenalty(0);
+        if (!(penalty > 0.0) || penalty != parameters.getPenalty(1) || penalty != parameters.getPenalty(2))
+            return false;
+        int maxDistance = getMaxDistance(parameters);
+        for (int i = 0; i < 3; ++i)
+            if (parameters.getMaxErrors(i) < maxDistance)
+                return false;
+        return true;
+    }
+
+    public O next() {
+        SequenceTreeMap.Node<O> n = nextNode();
+        return n == null ? null : n.getObject();
+    }
+
+    public SequenceTreeMap.Node<O> nextNode() {
+        if (found == null)
+            search();
+
+        while (currentDistance <= maxDistance) {
+            if (++currentIndex < found[currentDistance].size())
+                return found[currentDistance].get(currentIndex);
+            ++currentDistance;
+            currentIndex = -1;
+        }
+        return null;
+    }
+
+    /**
+     * Returns edit distance between reference and the key of the last returned node.
+     *
+     * @return edit distance between reference and the key of the last returned node
+     */
+    public int getDistance() {
+        return currentDistance;
+    }
+
+    /**
+     * Returns penalty of the last returned node.
+     *
+     * @return penalty of the last returned node
+     */
+    public double getPenalty() {
+        return penalties[currentDistance];
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void search() {
+        found = new List[maxDistance + 1];
+        for (int i = 0; i <= maxDistance; ++i)
+            found[i] = new ArrayList<>();
+
+        final int size = reference.size(), letters = reference.getAlphabet().size(),
+                maxDepth = size + maxDistance;
+
+        if (size == 0) {
+            // Distance equals to the length of the key
+            searchEmpty(root, 0);
+            return;
+        }
+
+        // Number of words per column
+        final int words = (size + WORD_SIZE - 1) / WORD_SIZE;
+        // Bit of the last letter of reference in the last word
+        final long lastBit = 1L << ((size - 1) % WORD_SIZE);
+
+        // Positions of each letter in reference
+        final long[] peq = new long[letters * words];
+        for (int i = 0; i < size; ++i)
+            peq[reference.codeAt(i) * words + i / WORD_SIZE] |= 1L << (i % WORD_SIZE);
+
+        // Vertical deltas for columns of DP matrix of current path in the tree (D[i][j] - D[i - 1][j] is +1 if bit
+        // i - 1 of pv is set, -1 if bit of mv is set and 0 otherwise)
+        final long[] pv = new long[(maxDepth + 1) * words], mv = new long[(maxDepth + 1) * words];
+        // Distances between reference and prefixes of the key (D[size][j])
+        final int[] score = new int[maxDepth + 1];
+        // Current path
+        final SequenceTreeMap.Node<O>[] nodes = new SequenceTreeMap.Node[maxDepth + 1];
+        final byte[] nextCode = new byte[maxDepth + 1];
+
+        // First column: D[i][0] = i
+        for (int w = 0; w < words; ++w)
+            pv[w] = -1L;
+        score[0] = size;
+        nodes[0] = root;
+        if (size <= maxDistance && root.getObject() != null)
+            found[size].add(root);
+
+        int depth = 0;
+        SequenceTreeMap.Node<O> child;
+        while (depth >= 0) {
+            if (depth == maxDepth || nextCode[depth] == letters) {
+                --depth;
+                continue;
+            }
+
+            byte code = nextCode[depth]++;
+            if ((child = nodes[depth].getLink(code)) == null)
+                continue;
+
+            // Calculating next column of the DP matrix (block-based algorithm, hin / hout are horizontal deltas
+            // entering word from the previous word and leaving it at the last row of the word)
+            int from = depth * words, to = from + words, eqFrom = code * words;
+            // Horizontal delta in the first row is always +1 (D[0][j] = j)
+            int hin = 1;
+            long pvIn, mvIn, eq, xv, xh, ph, mh, hinNeg, highBit;
+            for (int w = 0; w < words; ++w) {
+                pvIn = pv[from + w];
+                mvIn = mv[from + w];
+                eq = peq[eqFrom + w];
+                hinNeg = hin < 0 ? 1L : 0L;
+
+                xv = eq | mvIn;
+                eq |= hinNeg;
+                xh = (((eq & pvIn) + pvIn) ^ pvIn) | eq;
+                ph = mvIn | ~(xh | pvIn);
+                mh = pvIn & xh;
+
+                highBit = w == words - 1 ? lastBit : Long.MIN_VALUE;
+                int hout = ((ph & highBit) != 0 ? 1 : 0) - ((mh & highBit) != 0 ? 1 : 0);
+
+                ph = (ph << 1) | (hin > 0 ? 1L : 0L);
+                mh = (mh << 1) | hinNeg;
+
+                pv[to + w] = mh | ~(xv | ph);
+                mv[to + w] = ph & xv;
+                hin = hout;
+            }
+            score[depth + 1] = score[depth] + hin;
+
+            if (score[depth + 1] <= maxDistance && child.getObject() != null)
+                found[score[depth + 1]].add(child);
+
+            // Pruning subtree
+            if (!withinDistance(pv, mv, to, depth + 1, size))
+                continue;
+
+            nodes[depth + 1] = child;
+            nextCode[depth + 1] = 0;
+            ++depth;
+        }
+    }
+
+    /**
+     * Returns {@literal true} if minimal value in the column of DP matrix is not greater than maximal distance
+     *
+     * @param offset offset of the column in pv and mv arrays
+     * @param column column index (length of the key prefix)
+     */
+    private boolean withinDistance(long[] pv, long[] mv, int offset, int column, int size) {
+        // D[0][j] = j
+        if (column <= maxDistance)
+            return true;
+
+        // D[i][j] >= |i - j|, so only rows of the band around diagonal should be checked
+        int lo = column - maxDistance, hi = Math.min(size, column + maxDistance);
+        if (lo > size)
+            return false;
+
+        // D[lo][j] = j + sum of vertical deltas in rows 1..lo
+        int value = column, i;
+        for (i = 0; i + WORD_SIZE <= lo; i += WORD_SIZE)
+            value += Long.bitCount(pv[offset + i / WORD_SIZE]) - Long.bitCount(mv[offset + i / WORD_SIZE]);
+        if (i < lo) {
+            long mask = (1L << (lo - i)) - 1;
+            value += Long.bitCount(pv[offset + i / WORD_SIZE] & mask) - Long.bitCount(mv[offset + i / WORD_SIZE] & mask);
+        }
+
+        for (i = lo; ; ++i) {
+            if (value <= maxDistance)
+                return true;
+            if (i == hi)
+                return false;
+            value += (int) ((pv[offset + i / WORD_SIZE] >>> (i % WORD_SIZE)) & 1)
+                    - (int) ((mv[offset + i / WORD_SIZE] >>> (i % WORD_SIZE)) & 1);
+        }
+    }
+
+    private void searchEmpty(SequenceTreeMap.Node<O> node, int depth) {
+        if (node.getObject() != null)
+            found[depth].add(node);
+        if (depth == maxDistance)
+            return;
+        SequenceTreeMap.Node<O> child;
+        for (byte code = 0; code < reference.getAlphabet().size(); ++code)
+            if ((child = node.getLink(code)) != null)
+                searchEmpty(child, depth + 1);
+    }
+
+    public Iterable<O> it() {
+        return new Iterable<O>() {
+            @Override
+            public Iterator<O> iterator() {
+                return new LevenshteinIteratorWrapper<>(LevenshteinNeighborhoodIterator.this);
+            }
+        };
+    }
+
+    public List<O> toList() {
+        ArrayList<O> list = new ArrayList<>();
+        for (O o : it())
+            list.add(o);
+        return list;
+    }
+
+    private static final class LevenshteinIteratorWrapper<O, S extends Sequence<S>> implements java.util.Iterator<O> {
+        final LevenshteinNeighborhoodIterator<S, O> iterator;
+        O next;
+
+        private LevenshteinIteratorWrapper(LevenshteinNeighborhoodIterator<S, O> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (next = iterator.next()) != null;
+        }
+
+        @Override
+        public O next() {
+            return next;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -112,7 +112,7 @@ public final class NeighborhoodIterator<S extends Sequence<S>, O> {
 
     public O next() {
         SequenceTreeMap.Node<O> n = nextNode();
-        return n == null ? null : n.object;
+        return n == null ? null : n.getObject();
     }
 
     public SequenceTreeMap.Node<O> nextNode() {
@@ -125,7 +125,7 @@ public final class NeighborhoodIterator<S extends Sequence<S>, O> {
 
             if (lastEnumerator == -1) {
                 --lastEnumerator;
-                if ((n = traverseToTheEnd(root, 0)) != null && n.object != null)
+                if ((n = traverseToTheEnd(root, 0)) != null && n.getObject() != null)
                     return n;
             }
 
@@ -144,7 +144,7 @@ public final class NeighborhoodIterator<S extends Sequence<S>, O> {
                 assert i == lastEnumerator;
 
                 if ((n = branchingEnumerators[i].next()) != null)
-                    if ((n = traverseToTheEnd(n, branchingEnumerators[i].getNextPositionAfterBranching())) != null && n.object != null)
+                    if ((n = traverseToTheEnd(n, branchingEnumerators[i].getNextPositionAfterBranching())) != null && n.getObject() != null)
                         return n;
                     else
                         continue;
@@ -163,7 +163,7 @@ public final class NeighborhoodIterator<S extends Sequence<S>, O> {
 
     public SequenceTreeMap.Node<O> traverseToTheEnd(SequenceTreeMap.Node<O> node, int position) {
         while (position < reference.size())
-            if ((node = node.links[reference.codeAt(position++)]) == null)
+            if ((node = node.getLink(reference.codeAt(position++))) == null)
                 break;
 
         return node;
@@ -45,8 +45,24 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
      * @param alphabet alphabet
      */
     public SequenceTreeMap(Alphabet<S> alphabet) {
+        this(alphabet, false);
+    }
+
+    /**
+     * Creates a tree map for specified {@link com.milaboratory.core.sequence.Alphabet}.
+     *
+     * <p>Compact tree keeps nodes in flat arrays and stores chains of nodes having a single child as a single edge,
+     * so it takes much less memory than ordinary tree (where each node holds an array of links for all letters of the
+     * alphabet), but is a bit slower. Nodes of compact tree are lightweight views created on traversal, so they are
+     * compared by position in the tree, not by identity. Structure of the tree may change on insertion of new keys, so
+     * nodes obtained before insertion should not be used after it.</p>
+     *
+     * @param alphabet alphabet
+     * @param compact  if true, compact tree will be created
+     */
+    public SequenceTreeMap(Alphabet<S> alphabet, boolean compact) {
         this.alphabet = alphabet;
-        this.root = new Node<>(alphabet.size());
+        this.root = compact ? new CompactTrie<O>().root : new Node<O>(alphabet.size());
     }
 
     public O createIfAbsent(S sequence, Factory<O> factory) {
@@ -54,9 +70,10 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         Node<O> node = root;
         for (int i = 0; i < size; ++i)
             node = node.getOrCreate(sequence.codeAt(i));
-        if (node.object == null)
-            node.object = factory.create();
-        return node.object;
+        O object = node.getObject();
+        if (object == null)
+            node.setObject(object = factory.create());
+        return object;
     }
 
     public O put(S sequence, O object) {
@@ -64,8 +81,8 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         Node<O> node = root;
         for (int i = 0; i < size; ++i)
             node = node.getOrCreate(sequence.codeAt(i));
-        O prev = node.object;
-        node.object = object;
+        O prev = node.getObject();
+        node.setObject(object);
         return prev;
     }
 
@@ -73,7 +90,7 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         final int size = sequence.size();
         Node<O> node = root;
         for (int i = 0; i < size; ++i)
-            if ((node = node.links[sequence.codeAt(i)]) == null)
+            if ((node = node.getLink(sequence.codeAt(i))) == null)
                 break;
         return node;
     }
@@ -82,7 +99,7 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         Node<O> node = getNode(sequence);
         if (node == null)
             return null;
-        return node.object;
+        return node.getObject();
     }
 
     public O remove(S sequence) {
@@ -90,9 +107,9 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         Node<O> node = root;
         Node<O>[] nodes = new Node[size + 1];
         nodes[0] = root;
-        int i, j;
+        int i;
         for (i = 0; i < size; ++i) {
-            if ((node = node.links[sequence.codeAt(i)]) == null)
+            if ((node = node.getLink(sequence.codeAt(i))) == null)
                 break;
             nodes[i + 1] = node;
         }
@@ -100,25 +117,23 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         if (node == null)
             return null;
 
-        final O ret = node.object;
-        node.object = null;
+        final O ret = node.getObject();
+        node.setObject(null);
 
-        OUTER:
         for (i = size; i > 0; --i) {
             // Checking that current node not holding any object
-            if (node.object != null)
+            if (node.getObject() != null)
                 break;
 
             // Checking that this node is not involved in any branch of the trees
-            for (j = alphabet.size() - 1; j >= 0; --j)
-                if (node.links[j] != null)
-                    break OUTER;
+            if (node.hasLinks())
+                break;
 
             // Next node (backtracking)
             node = nodes[i - 1];
 
             // Removing i-th node from the tree
-            node.links[sequence.codeAt(i - 1)] = null;
+            node.removeLink(sequence.codeAt(i - 1));
         }
 
         return ret;
@@ -195,7 +210,37 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         return new NeighborhoodIterator<>(reference, parameters, guide, root);
     }
 
-    public static final class Node<O> implements java.io.Serializable {
+    /**
+     * Returns iterator over the nodes with keys within edit distance defined by parameters from the reference. Faster
+     * alternative to {@link #getNeighborhoodIterator(Sequence, TreeSearchParameters)} supporting only equal penalties
+     * for all mutation types (see {@link LevenshteinNeighborhoodIterator}).
+     *
+     * @param reference  reference sequence
+     * @param parameters search parameters
+     * @return iterator
+     * @throws IllegalArgumentException if parameters are not supported by {@link LevenshteinNeighborhoodIterator}
+     */
+    public LevenshteinNeighborhoodIterator<S, O> getLevenshteinIterator(S reference, TreeSearchParameters parameters) {
+        return new LevenshteinNeighborhoodIterator<>(reference, parameters, root);
+    }
+
+    /**
+     * Returns iterator over the nodes with keys within specified edit distance from the reference.
+     *
+     * @param reference   reference sequence
+     * @param maxDistance maximal edit distance
+     * @return iterator
+     */
+    public LevenshteinNeighborhoodIterator<S, O> getLevenshteinIterator(S reference, int maxDistance) {
+        return getLevenshteinIterator(reference,
+                new TreeSearchParameters(maxDistance, maxDistance, maxDistance, maxDistance));
+    }
+
+    /**
+     * Node of the tree. Ordinary tree uses instances of this class, while compact tree uses lightweight subclasses
+     * referencing data stored in flat arrays.
+     */
+    public static class Node<O> implements java.io.Serializable {
         final Node<O>[] links;
         O object;
 
@@ -203,6 +248,14 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
             this.links = new Node[letters];
         }
 
+        Node() {
+            this.links = null;
+        }
+
+        public Node<O> getLink(byte code) {
+            return links[code];
+        }
+
         public Node<O> getOrCreate(byte code) {
             Node node;
             if ((node = links[code]) == null)
@@ -210,6 +263,17 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
             return node;
         }
 
+        boolean hasLinks() {
+            for (int i = links.length - 1; i >= 0; --i)
+                if (links[i] != null)
+                    return true;
+            return false;
+        }
+
+        void removeLink(byte code) {
+            links[code] = null;
+        }
+
         public O getObject() {
             return object;
         }
@@ -237,7 +301,7 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         NodeWrapper<O>[] wrappers = new NodeWrapper[10];
 
         public NodeOp(Node<O> root) {
-            wrappers[0] = new NodeWrapper<O>(root);
+            wrappers[0] = new NodeWrapper<O>(root, alphabet.size());
         }
 
         private void ensureNext() {
@@ -246,7 +310,7 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
                         (wrappers.length * 3) / 2 + 1);
 
             if (wrappers[pointer + 1] == null)
-                wrappers[pointer + 1] = new NodeWrapper<O>();
+                wrappers[pointer + 1] = new NodeWrapper<O>(null, alphabet.size());
         }
 
         @Override
@@ -262,7 +326,7 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
                 if (node != null) {
                     ensureNext();
                     wrappers[++pointer].reset(node);
-                    if (node.object != null)
+                    if (node.getObject() != null)
                         return node;
                 } else
                     --pointer;
@@ -305,7 +369,7 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         @Override
         public O take() {
             final Node<O> n = nodeOp.take();
-            return n == null ? null : n.object;
+            return n == null ? null : n.getObject();
         }
 
         public S getSequence() {
@@ -314,14 +378,13 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
     }
 
     private static final class NodeWrapper<O> implements java.io.Serializable {
+        private final int letters;
         private byte position = -1;
         private Node<O> node;
 
-        NodeWrapper() {
-        }
-
-        NodeWrapper(Node<O> node) {
+        NodeWrapper(Node<O> node, int letters) {
             this.node = node;
+            this.letters = letters;
         }
 
         void reset(Node<O> node) {
@@ -330,9 +393,10 @@ public class SequenceTreeMap<S extends Sequence<S>, O>
         }
 
         Node<O> getNext() {
-            while (++position < node.links.length)
-                if (node.links[position] != null)
-                    return node.links[position];
+            Node<O> next;
+            while (++position < letters)
+                if ((next = node.getLink(position)) != null)
+                    return next;
             return null;
         }
     }
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.primitivio;
+
+import cc.redberry.pipe.OutputPortCloseable;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reader of streams written by {@link ParallelPipeWriter}. Blocks are read sequentially and deserialized concurrently
+ * by worker threads, each with its own {@link PrimitivI} created from the same {@link PrimitivIState}; objects are
+ * returned in the order they were written.
+ *
+ * @param <O> type of objects
+ * @see ParallelPipeWriter
+ */
+public final class ParallelPipeReader<O> implements OutputPortCloseable<O> {
+    private static final Object[] EMPTY_BLOCK = new Object[0];
+    final DataInputStream in;
+    final Class<? super O> type;
+    final PrimitivIState state;
+    final ExecutorService executor;
+    /**
+     * Maximal number of blocks being deserialized simultaneously
+     */
+    final int queueSize;
+    final ArrayDeque<Future<Object[]>> queue = new ArrayDeque<>();
+    Object[] block = EMPTY_BLOCK;
+    int pointer = 0;
+    boolean eof = false, closed = false;
+
+    public ParallelPipeReader(Class<? super O> type, String fileName, int threads) throws FileNotFoundException {
+        this(type, new FileInputStream(fileName), threads);
+    }
+
+    public ParallelPipeReader(Class<? super O> type, File file, int threads) throws FileNotFoundException {
+        this(type, new FileInputStream(file), threads);
+    }
+
+    public ParallelPipeReader(Class<? super O> type, InputStream stream, int threads) {
+        this(type, stream, new PrimitivIState(new SerializersManager(), new ArrayList<>(), new ArrayList<>()),
+                threads);
+    }
+
+    /**
+     * Creates reader
+     *
+     * @param type    type of objects
+     * @param stream  input stream
+     * @param state   state used to deserialize each block, must be equivalent to the state used by the writer (see
+     *                {@link PrimitivI#getState()})
+     * @param threads number of deserializing threads
+     */
+    public ParallelPipeReader(Class<? super O> type, InputStream stream, PrimitivIState state, int threads) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive.");
+        this.in = new DataInputStream(new BufferedInputStream(stream, 32768));
+        this.type = type;
+        this.state = state;
+        this.queueSize = 2 * threads;
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PrimitivIWorker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized O take() {
+        if (closed)
+            return null;
+
+        while (pointer == block.length) {
+            fill();
+            if (queue.isEmpty())
+                return null;
+            block = getHead();
+            pointer = 0;
+        }
+        return (O) block[pointer++];
+    }
+
+    /**
+     * Reads blocks and submits them for deserialization until queue is full or end of stream is reached
+     */
+    private void fill() {
+        try {
+            while (!eof && queue.size() < queueSize) {
+                int length = in.readInt();
+                if (length == 0) {
+                    eof = true;
+                    break;
+                }
+                final byte[] data = new byte[length];
+                in.readFully(data);
+                queue.add(executor.submit(new Callable<Object[]>() {
+                    @Override
+                    public Object[] call() throws Exception {
+                        return deserialize(data);
+                    }
+                }));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private Object[] deserialize(byte[] data) {
+        PrimitivI input = state.createPrimitivI(new ByteArrayInputStream(data));
+        Object[] objects = new Object[input.readVarInt()];
+        for (int i = 0; i < objects.length; ++i)
+            objects[i] = input.readObject(type);
+        return objects;
+    }
+
+    private Object[] getHead() {
+        try {
+            return queue.poll().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        executor.shutdownNow();
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
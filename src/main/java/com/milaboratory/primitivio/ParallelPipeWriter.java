@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.primitivio;
+
+import cc.redberry.pipe.InputPort;
+
+import java.io.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writer serializing objects in parallel. Objects are grouped into blocks, each block is serialized by a worker thread
+ * with its own {@link PrimitivO} created from the same {@link PrimitivOState} (so known objects and references
+ * registered in the state are available in all blocks, but references registered during serialization are not shared
+ * between blocks). Serialized blocks are written in the order of {@link #put(Object)} calls.
+ *
+ * <p>Stream layout: {@code int length, varint number of objects, objects} for each block, {@code int 0} at the end.
+ * Such streams can be read only by {@link ParallelPipeReader} created with the equivalent {@link PrimitivIState}.</p>
+ *
+ * @param <O> type of objects
+ * @see ParallelPipeReader
+ */
+public final class ParallelPipeWriter<O> implements InputPort<O>, AutoCloseable {
+    /**
+     * Number of objects per block
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 1024;
+    final DataOutputStream out;
+    final PrimitivOState state;
+    final ExecutorService executor;
+    final int blockSize;
+    /**
+     * Maximal number of blocks being serialized simultaneously
+     */
+    final int queueSize;
+    final ArrayDeque<Future<byte[]>> queue = new ArrayDeque<>();
+    List<O> block;
+    boolean closed = false;
+
+    public ParallelPipeWriter(String fileName, int threads) throws FileNotFoundException {
+        this(new FileOutputStream(fileName), threads);
+    }
+
+    public ParallelPipeWriter(File file, int threads) throws FileNotFoundException {
+        this(new FileOutputStream(file), threads);
+    }
+
+    public ParallelPipeWriter(OutputStream stream, int threads) {
+        this(stream, new PrimitivOState(new SerializersManager(), PrimitivOState.newKnownReferenceHashMap(),
+                PrimitivOState.newKnownObjectHashMap()), threads, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Creates writer
+     *
+     * @param stream    output stream
+     * @param state     state used to serialize each block (see {@link PrimitivO#getState()})
+     * @param threads   number of serializing threads
+     * @param blockSize number of objects per block
+     */
+    public ParallelPipeWriter(OutputStream stream, PrimitivOState state, int threads, int blockSize) {
+        if (threads <= 0)
+            throw new IllegalArgumentException("Number of threads must be positive.");
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Block size must be positive.");
+        this.out = new DataOutputStream(stream);
+        this.state = state;
+        this.blockSize = blockSize;
+        this.queueSize = 2 * threads;
+        this.block = new ArrayList<>(blockSize);
+        final AtomicInteger counter = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "PrimitivOWorker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public synchronized void put(O o) {
+        if (o == null) {
+            close();
+            return;
+        }
+
+        if (closed)
+            throw new IllegalStateException("Already closed.");
+
+        block.add(o);
+        if (block.size() == blockSize)
+            submit();
+    }
+
+    /**
+     * Submits current block for serialization, writing already serialized blocks if too many blocks are pending
+     */
+    private void submit() {
+        if (block.isEmpty())
+            return;
+        final List<O> objects = block;
+        queue.add(executor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return serialize(objects);
+            }
+        }));
+        block = new ArrayList<>(blockSize);
+        while (queue.size() > queueSize)
+            writeHead();
+    }
+
+    private byte[] serialize(List<O> objects) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrimitivO output = state.createPrimitivO(bos);
+        output.writeVarInt(objects.size());
+        for (O o : objects)
+            output.writeObject(o);
+        return bos.toByteArray();
+    }
+
+    private void writeHead() {
+        try {
+            byte[] data = queue.poll().get();
+            out.writeInt(data.length);
+            out.write(data);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            submit();
+            while (!queue.isEmpty())
+                writeHead();
+            out.writeInt(0);
+            out.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
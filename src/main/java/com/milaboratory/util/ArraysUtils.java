@@ -80,6 +80,52 @@ public final class ArraysUtils {
         return Arrays.copyOf(values, i + 1);
     }
 
+    /**
+     * Sorts keys in ascending order (signed comparison) using LSD radix sort and applies the same permutation to
+     * values. Sort is stable.
+     *
+     * @param keys   keys
+     * @param values values (e.g. indices of objects with corresponding keys)
+     */
+    public static void radixSort(long[] keys, int[] values) {
+        if (keys.length != values.length)
+            throw new IllegalArgumentException("Different lengths of keys and values.");
+        int n = keys.length;
+        long[] srcKeys = keys, dstKeys = new long[n];
+        int[] srcValues = values, dstValues = new int[n];
+        int[] counts = new int[256];
+        for (int shift = 0; shift < 64; shift += 8) {
+            // Flipping sign bit makes signed order of keys equal to unsigned order of their highest bytes
+            int flip = shift == 56 ? 0x80 : 0;
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; ++i)
+                ++counts[(int) (srcKeys[i] >>> shift) & 0xFF ^ flip];
+            // Skipping pass if all keys have the same byte
+            if (n == 0 || counts[(int) (srcKeys[0] >>> shift) & 0xFF ^ flip] == n)
+                continue;
+            for (int b = 0, position = 0; b < 256; ++b) {
+                int count = counts[b];
+                counts[b] = position;
+                position += count;
+            }
+            for (int i = 0; i < n; ++i) {
+                int position = counts[(int) (srcKeys[i] >>> shift) & 0xFF ^ flip]++;
+                dstKeys[position] = srcKeys[i];
+                dstValues[position] = srcValues[i];
+            }
+            long[] tmpKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = tmpKeys;
+            int[] tmpValues = srcValues;
+            srcValues = dstValues;
+            dstValues = tmpValues;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcValues, 0, values, 0, n);
+        }
+    }
+
     public static int[] concatenate(int[] array1, int... array2) {
         int[] r = new int[array1.length + array2.length];
         System.arraycopy(array1, 0, r, 0, array1.length);
@@ -68,14 +68,34 @@ public final class Bit2Array implements java.io.Serializable {
         return data;
     }
 
+    /**
+     * Returns four consecutive values starting from specified (not necessarily multiple of four) index packed into a
+     * single byte (values beyond the end of array are zeros)
+     */
+    int getQuad(int index) {
+        int b = index >> 2, shift = (index & 3) << 1;
+        int value = (data[b] & 0xFF) >>> shift;
+        if (shift != 0 && b + 1 < data.length)
+            value |= (data[b + 1] & 0xFF) << (8 - shift);
+        return value & 0xFF;
+    }
+
     public void copyFrom(Bit2Array other, int otherOffset, int thisOffset, int length) {
         if (thisOffset < 0 || thisOffset + length > size ||
                 otherOffset < 0 || otherOffset + length > other.size)
             throw new IndexOutOfBoundsException();
 
-        //TODO optimize
-        for (int i = 0; i < length; ++i)
-            set(thisOffset + i, other.get(otherOffset + i));
+        // Unaligned head
+        for (; length > 0 && (thisOffset & 3) != 0; --length)
+            set(thisOffset++, other.get(otherOffset++));
+
+        // Four values at a time
+        for (; length >= 4; length -= 4, thisOffset += 4, otherOffset += 4)
+            data[thisOffset >> 2] = (byte) other.getQuad(otherOffset);
+
+        // Tail
+        for (; length > 0; --length)
+            set(thisOffset++, other.get(otherOffset++));
     }
 
     @Override
@@ -100,16 +120,13 @@ public final class Bit2Array implements java.io.Serializable {
         return true;
     }
 
-    //TODO optimize
     public Bit2Array getRange(int from, int to) {
         if (from < 0 || (from >= size && size != 0)
                 || to < from || to > size)
             throw new IndexOutOfBoundsException("from=" + from + ", to=" + to);
 
         Bit2Array ret = new Bit2Array(to - from);
-        int i = 0;
-        for (int j = from; j < to; ++j, ++i)
-            ret.set(i, get(j));
+        ret.copyFrom(this, from, 0, to - from);
         return ret;
     }
 
@@ -9,41 +9,116 @@ import org.apache.commons.io.output.CloseShieldOutputStream;
 import org.apache.commons.io.output.CountingOutputStream;
 
 import java.io.*;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.PriorityQueue;
-import java.util.concurrent.CountDownLatch;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.ToLongFunction;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
+ * External merge sort.
+ *
+ * <p>Input is split into chunks, chunks are sorted and serialized into runs concurrently (up to {@code concurrency}
+ * chunks at a time) and written to the temp file in the order they were read. Runs are then merged with a loser tree,
+ * each run being read through its own read-ahead buffer. If number of runs exceeds merge fan-in, runs are merged in
+ * several passes (each pass merges groups of at most {@code mergeFanIn} runs into new runs, merging only as many
+ * runs as required to make the last pass merge exactly {@code mergeFanIn} runs). Runs can optionally be compressed.</p>
+ *
+ * <p>If key extractor is specified, objects are sorted by {@code long} keys (normalized key prefixes) using radix sort,
+ * comparator is used only for objects with equal keys. Keys are stored in a separate file along with runs, so merge
+ * also compares keys first. Keys must be consistent with comparator: {@code key(a) < key(b)} (signed comparison) must
+ * imply {@code comparator.compare(a, b) < 0}.</p>
+ *
  * Created by poslavsky on 28/02/2017.
  */
 public final class Sorter<T> {
+    /**
+     * Maximal number of runs merged simultaneously
+     */
+    public static final int DEFAULT_MERGE_FAN_IN = 512;
     private final ExecutorService executor;
     private final OutputPort<T> initialSource;
+    private final ToLongFunction<T> keyExtractor;
     private final Comparator<T> comparator;
     private final int chunkSize;
     private final ObjectSerializer<T> serializer;
+    private final int concurrency;
+    private final int mergeFanIn;
+    private final boolean compressRuns;
+    /**
+     * Temp file provided by user
+     */
     private final File tempFile;
-    private final TLongArrayList chunkOffsets = new TLongArrayList();
+    /**
+     * File with runs, initially temp file provided by user, replaced by a new file after each merge pass
+     */
+    private File runsFile;
+    /**
+     * File with keys of all runs (8 bytes per object, in the same order as objects in runs file), null if key extractor
+     * is not specified
+     */
+    private File keysFile;
+    private final TLongArrayList runOffsets = new TLongArrayList();
+    private final TLongArrayList runSizes = new TLongArrayList();
     private boolean built = false;
-    private int lastChunkSize = -1;
     /**
-     * Amount of memory that can be used during read stage. Determined automatically as maximal block size during block
-     * sort procedure.
+     * Amount of memory that can be used during read stage. Determined automatically as maximal run size in bytes.
      */
     private long memoryBudget = -1;
 
     public Sorter(OutputPort<T> initialSource, Comparator<T> comparator, int chunkSize,
                   ObjectSerializer<T> serializer, File tempFile, ExecutorService executor) {
+        this(initialSource, comparator, chunkSize, serializer, tempFile, executor,
+                executor instanceof ForkJoinPool
+                        ? ((ForkJoinPool) executor).getParallelism()
+                        : Runtime.getRuntime().availableProcessors(),
+                DEFAULT_MERGE_FAN_IN, false);
+    }
+
+    public Sorter(OutputPort<T> initialSource, Comparator<T> comparator, int chunkSize,
+                  ObjectSerializer<T> serializer, File tempFile, ExecutorService executor,
+                  int concurrency, int mergeFanIn, boolean compressRuns) {
+        this(initialSource, null, comparator, chunkSize, serializer, tempFile, executor, concurrency, mergeFanIn,
+                compressRuns);
+    }
+
+    /**
+     * Creates sorter.
+     *
+     * @param initialSource objects to sort
+     * @param keyExtractor  extractor of keys consistent with comparator (see class description) or null
+     * @param comparator    comparator
+     * @param chunkSize     number of objects sorted in memory at once (size of runs)
+     * @param serializer    serializer of runs
+     * @param tempFile      temp file (deleted after sorted port is closed)
+     * @param executor      executor used to sort and serialize chunks
+     * @param concurrency   maximal number of chunks being sorted and serialized simultaneously
+     * @param mergeFanIn    maximal number of runs merged at once
+     * @param compressRuns  whether to compress runs
+     */
+    public Sorter(OutputPort<T> initialSource, ToLongFunction<T> keyExtractor, Comparator<T> comparator,
+                  int chunkSize, ObjectSerializer<T> serializer, File tempFile, ExecutorService executor,
+                  int concurrency, int mergeFanIn, boolean compressRuns) {
+        if (concurrency <= 0)
+            throw new IllegalArgumentException("Concurrency must be positive.");
+        if (mergeFanIn < 2)
+            throw new IllegalArgumentException("Merge fan-in must be at least 2.");
         this.initialSource = initialSource;
+        this.keyExtractor = keyExtractor;
         this.comparator = comparator;
         this.chunkSize = chunkSize;
         this.serializer = serializer;
         this.tempFile = tempFile;
+        this.runsFile = tempFile;
         this.executor = executor;
+        this.concurrency = concurrency;
+        this.mergeFanIn = mergeFanIn;
+        this.compressRuns = compressRuns;
     }
 
     /**
@@ -71,59 +146,267 @@ public final class Sorter<T> {
         return sorter.getSorted();
     }
 
+    /**
+     * Sort objects by keys, using comparator for objects with equal keys (see class description).
+     */
+    public static <T> OutputPortCloseable<T> sort(
+            OutputPort<T> initialSource,
+            ToLongFunction<T> keyExtractor,
+            Comparator<T> comparator,
+            int chunkSize,
+            ObjectSerializer<T> serializer,
+            File tempFile) throws IOException {
+        ForkJoinPool executor = ForkJoinPool.commonPool();
+        Sorter<T> sorter = new Sorter<>(initialSource, keyExtractor, comparator, chunkSize, serializer, tempFile,
+                executor, executor.getParallelism(), DEFAULT_MERGE_FAN_IN, false);
+        sorter.build();
+        return sorter.getSorted();
+    }
+
     public void build() throws IOException {
-        try (CountingOutputStream output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1024 * 1024))) {
-            OutputPort<Chunk<T>> chunked = CUtils.buffered(CUtils.chunked(initialSource, chunkSize), 1);
-            Chunk<T> chunk;
-            // Maximal block size
-            long maxBlockSize = 0;
-            long previousPosition = 0;
-            CountDownLatch currentBlockWriteLatch = new CountDownLatch(0);
-            while ((chunk = chunked.take()) != null) {
-                final Object[] data = chunk.toArray();
-
-                if (data.length > 3000) // Empirical value learned from https://stackoverflow.com/a/17328147/769192
-                    Arrays.parallelSort(data, (Comparator) comparator);
-                else
-                    Arrays.sort(data, (Comparator) comparator);
-
-                maxBlockSize = Math.max(maxBlockSize, output.getByteCount() - previousPosition);
-                previousPosition = output.getByteCount();
-
-                // Waiting previous block to be fully flushed to the stream
-                currentBlockWriteLatch.await();
-                final CountDownLatch finalLatch = currentBlockWriteLatch = new CountDownLatch(1);
-
-                // Initiating block serialization in a separate thread
-                executor.submit(() -> {
-                    chunkOffsets.add(output.getByteCount());
-                    serializer.write((Collection) Arrays.asList(data), new CloseShieldOutputStream(output));
-                    finalLatch.countDown();
-                });
-
-                // Tracking last chunk size
-                lastChunkSize = data.length;
+        if (keyExtractor != null)
+            keysFile = TempFileManager.getTempFile();
+        try {
+            try (CountingOutputStream output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(runsFile), 1024 * 1024));
+                 DataOutputStream keysOutput = keysFile == null ? null : new DataOutputStream(new BufferedOutputStream(new FileOutputStream(keysFile), 1 << 16))) {
+                OutputPort<Chunk<T>> chunked = CUtils.chunked(initialSource, chunkSize);
+                // Runs being sorted and serialized, in the order of chunks
+                ArrayDeque<Future<SerializedRun>> queue = new ArrayDeque<>();
+                Chunk<T> chunk;
+                while ((chunk = chunked.take()) != null) {
+                    final Object[] data = chunk.toArray();
+                    runSizes.add(data.length);
+                    queue.add(executor.submit(() -> sortAndSerialize(data)));
+                    while (queue.size() > concurrency)
+                        writeRun(queue.poll(), output, keysOutput);
+                }
+                while (!queue.isEmpty())
+                    writeRun(queue.poll(), output, keysOutput);
+            }
+
+            while (runSizes.size() > mergeFanIn)
+                mergePass();
+            built = true;
+        } finally {
+            // Keys file and runs files created by merge passes are not accessible to the user, so they must be
+            // removed if sorting failed
+            if (!built) {
+                if (keysFile != null) {
+                    keysFile.delete();
+                    keysFile = null;
+                }
+                if (runsFile != tempFile) {
+                    runsFile.delete();
+                    runsFile = tempFile;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private SerializedRun sortAndSerialize(Object[] data) {
+        long[] keys = null;
+        if (keyExtractor != null) {
+            keys = new long[data.length];
+            int[] order = new int[data.length];
+            for (int i = 0; i < data.length; ++i) {
+                keys[i] = keyExtractor.applyAsLong((T) data[i]);
+                order[i] = i;
             }
+            ArraysUtils.radixSort(keys, order);
+            Object[] sorted = new Object[data.length];
+            for (int i = 0; i < data.length; ++i)
+                sorted[i] = data[order[i]];
+            data = sorted;
+
+            // Resolving ties with comparator
+            for (int i = 0, j; i < data.length; i = j) {
+                j = i + 1;
+                while (j < data.length && keys[j] == keys[i])
+                    ++j;
+                if (j - i > 1)
+                    Arrays.sort(data, i, j, (Comparator) comparator);
+            }
+        } else if (data.length > 3000) // Empirical value learned from https://stackoverflow.com/a/17328147/769192
+            Arrays.parallelSort(data, (Comparator) comparator);
+        else
+            Arrays.sort(data, (Comparator) comparator);
 
-            // Waiting last block to be written
-            currentBlockWriteLatch.await();
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        writeRun((Collection) Arrays.asList(data), bos);
+        return new SerializedRun(bos.toByteArray(), keys);
+    }
+
+    private static final class SerializedRun {
+        final byte[] data;
+        final long[] keys;
 
-            memoryBudget = maxBlockSize;
+        SerializedRun(byte[] data, long[] keys) {
+            this.data = data;
+            this.keys = keys;
+        }
+    }
+
+    private void writeRun(Future<SerializedRun> run, CountingOutputStream output,
+                          DataOutputStream keysOutput) throws IOException {
+        SerializedRun data;
+        try {
+            data = run.get();
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+        runOffsets.add(output.getByteCount());
+        memoryBudget = Math.max(memoryBudget, data.data.length);
+        output.write(data.data);
+        if (keysOutput != null)
+            for (long key : data.keys)
+                keysOutput.writeLong(key);
+    }
+
+    /**
+     * Serializes run (optionally compressed) to the stream
+     */
+    private void writeRun(Collection<T> data, OutputStream stream) {
+        if (compressRuns) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream compressed = new DeflaterOutputStream(new CloseShieldOutputStream(stream),
+                        deflater, 1 << 16);
+                serializer.write(data, new CloseShieldOutputStream(compressed));
+                compressed.finish();
+                compressed.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                deflater.end();
+            }
+        } else
+            serializer.write(data, new CloseShieldOutputStream(stream));
+    }
+
+    /**
+     * Merges groups of runs into new runs written to a new file, runs that are not merged during this pass are copied
+     * as is
+     */
+    private void mergePass() throws IOException {
+        File newRunsFile = TempFileManager.getTempFile(),
+                newKeysFile = keysFile == null ? null : TempFileManager.getTempFile();
+        TLongArrayList newRunOffsets = new TLongArrayList(), newRunSizes = new TLongArrayList();
+        long newMemoryBudget = 0;
+        // Number of runs to eliminate (merging of k runs eliminates k - 1 runs)
+        int excess = runSizes.size() - mergeFanIn;
+        boolean merged = false;
+        try {
+            try (CountingOutputStream output = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(newRunsFile), 1024 * 1024));
+                 DataOutputStream keysOutput = newKeysFile == null ? null : new DataOutputStream(new BufferedOutputStream(new FileOutputStream(newKeysFile), 1 << 16))) {
+                for (int from = 0; from < runSizes.size(); ) {
+                    int to = from + Math.min(Math.min(mergeFanIn, excess + 1), runSizes.size() - from);
+                    long offset = output.getByteCount(), size = 0;
+                    if (to - from == 1) {
+                        long end = from + 1 < runOffsets.size() ? runOffsets.get(from + 1) : runsFile.length();
+                        copy(runsFile, runOffsets.get(from), end, output);
+                        if (keysOutput != null) {
+                            long firstObject = firstObject(from);
+                            copy(keysFile, 8 * firstObject, 8 * (firstObject + runSizes.get(from)), keysOutput);
+                        }
+                    } else
+                        try (Merger merger = new Merger(openRuns(from, to))) {
+                            for (int i = from; i < to; ++i)
+                                size += runSizes.get(i);
+                            writeRun(new MergedRun(merger, size, keysOutput), output);
+                        }
+                    newRunOffsets.add(offset);
+                    newRunSizes.add(to - from == 1 ? runSizes.get(from) : size);
+                    newMemoryBudget = Math.max(newMemoryBudget, output.getByteCount() - offset);
+                    excess -= to - from - 1;
+                    from = to;
+                }
+            }
+            merged = true;
+        } finally {
+            if (!merged) {
+                newRunsFile.delete();
+                if (newKeysFile != null)
+                    newKeysFile.delete();
+            }
+        }
+
+        runsFile.delete();
+        runsFile = newRunsFile;
+        if (keysFile != null) {
+            keysFile.delete();
+            keysFile = newKeysFile;
+        }
+        runOffsets.resetQuick();
+        runOffsets.addAll(newRunOffsets);
+        runSizes.resetQuick();
+        runSizes.addAll(newRunSizes);
+        memoryBudget = newMemoryBudget;
+    }
+
+    /**
+     * Returns number of objects preceding the run (position of its first key in keys file)
+     */
+    private long firstObject(int run) {
+        long result = 0;
+        for (int i = 0; i < run; ++i)
+            result += runSizes.get(i);
+        return result;
+    }
+
+    private static void copy(File source, long from, long to, OutputStream output) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(source, "r")) {
+            file.seek(from);
+            byte[] buffer = new byte[(int) Math.min(1 << 16, to - from)];
+            for (long remaining = to - from; remaining > 0; ) {
+                int n = (int) Math.min(buffer.length, remaining);
+                file.readFully(buffer, 0, n);
+                output.write(buffer, 0, n);
+                remaining -= n;
+            }
         }
-        built = true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private RunReader[] openRuns(int from, int to) throws IOException {
+        // There will be (to - from) separate readers =>
+        // (to - from) separate buffered streams =>
+        // consuming memoryBudget / (to - from) bytes each, will give
+        // ~ memoryBudget bytes consumed in total
+        int bufferSize = (int) Math.min(
+                Math.max(1024,
+                        memoryBudget / (to - from)),
+                Integer.MAX_VALUE);
+        RunReader[] runs = (RunReader[]) new Sorter.RunReader[to - from];
+        try {
+            long firstObject = firstObject(from);
+            for (int i = from; i < to; i++) {
+                runs[i - from] = new RunReader(runOffsets.get(i), firstObject, runSizes.get(i), bufferSize);
+                runs[i - from].advance();
+                firstObject += runSizes.get(i);
+            }
+        } catch (IOException | RuntimeException e) {
+            for (RunReader run : runs)
+                if (run != null)
+                    run.close();
+            throw e;
+        }
+        return runs;
     }
 
     public OutputPortCloseable<T> getSorted() throws IOException {
         if (!built)
             throw new IllegalStateException("Invoke build before requesting results.");
-        if (lastChunkSize == -1)
+        if (runSizes.isEmpty())
             // Empty output port removing temp file on close.
             return new OutputPortCloseable<T>() {
                 @Override
                 public void close() {
-                    tempFile.delete();
+                    deleteFiles();
                 }
 
                 @Override
@@ -132,114 +415,227 @@ public final class Sorter<T> {
                 }
             };
         else
-            return new MergeSortingPort();
-    }
-
-    private final class MergeSortingPort implements OutputPortCloseable<T> {
-        final PriorityQueue<SortedBlockReader> queue = new PriorityQueue<>();
-
-        public MergeSortingPort() throws IOException {
-            // There will be chunkOffsets.size() separate readers =>
-            // chunkOffsets.size() separate buffered streams =>
-            // consuming memoryBudget / chunkOffsets.size() bytes each, will give
-            // ~ memoryBudget bytes consumed in total
-            int bufferSize = (int) Math.min(
-                    Math.max(1024,
-                            memoryBudget / chunkOffsets.size()),
-                    Integer.MAX_VALUE);
-            for (int i = 0; i < chunkOffsets.size(); i++) {
-                SortedBlockReader block = new SortedBlockReader(tempFile,
-                        chunkOffsets.get(i),
-                        i == chunkOffsets.size() - 1 ? lastChunkSize : chunkSize,
-                        bufferSize);
-                block.advance();
-                queue.add(block);
+            return new MergeSortingPort(openRuns(0, runSizes.size()));
+    }
+
+    private void deleteFiles() {
+        runsFile.delete();
+        if (keysFile != null)
+            keysFile.delete();
+    }
+
+    /**
+     * Merges runs using loser tree: internal node {@code tree[n]} ({@code n > 0}) holds the run that lost comparison at
+     * this node, {@code tree[0]} holds the overall winner. Leaf of the {@code i}-th run is the node {@code i + k}, so
+     * replacing the winner requires {@code log(k)} comparisons.
+     */
+    private class Merger implements AutoCloseable {
+        final RunReader[] runs;
+        final int[] tree;
+        /**
+         * Key of the last taken object
+         */
+        long lastKey;
+
+        Merger(RunReader[] runs) {
+            this.runs = runs;
+            int k = runs.length;
+            this.tree = new int[k];
+            int[] winners = new int[2 * k];
+            for (int i = 0; i < k; ++i)
+                winners[k + i] = i;
+            for (int n = k - 1; n > 0; --n) {
+                int l = winners[2 * n], r = winners[2 * n + 1];
+                if (less(r, l)) {
+                    winners[n] = r;
+                    tree[n] = l;
+                } else {
+                    winners[n] = l;
+                    tree[n] = r;
+                }
             }
+            tree[0] = winners[1];
         }
 
-        @Override
-        public synchronized T take() {
-            if (queue.isEmpty())
-                return null;
+        /**
+         * Drained runs are greater than any object, equal objects are ordered by run index (keeps sort stable)
+         */
+        private boolean less(int a, int b) {
+            RunReader ra = runs[a], rb = runs[b];
+            if (ra.current == null)
+                return false;
+            if (rb.current == null)
+                return true;
+            int c;
+            if (keyExtractor != null && (c = Long.compare(ra.currentKey, rb.currentKey)) != 0)
+                return c < 0;
+            c = comparator.compare(ra.current, rb.current);
+            return c < 0 || (c == 0 && a < b);
+        }
 
-            SortedBlockReader head = queue.poll();
-            T current = head.current();
+        T take() {
+            int winner = tree[0];
+            T current = runs[winner].current;
+            if (current == null)
+                return null;
+            lastKey = runs[winner].currentKey;
 
             try {
-                // Advance the reader
-                head.advance();
-                if (head.current() != null)  // If reader has more records put it back to queue
-                    queue.add(head);
-                else  // If reader was completely drained close it and don't put it back to queue
-                    head.close();
-
+                runs[winner].advance();
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
 
+            for (int n = (winner + runs.length) >>> 1; n > 0; n >>>= 1)
+                if (less(tree[n], winner)) {
+                    int tmp = tree[n];
+                    tree[n] = winner;
+                    winner = tmp;
+                }
+            tree[0] = winner;
             return current;
         }
 
+        @Override
+        public void close() {
+            for (RunReader run : runs)
+                run.close();
+        }
+    }
+
+    /**
+     * Lazy view of merged runs passed to serializer during intermediate merge pass
+     */
+    private final class MergedRun extends AbstractCollection<T> {
+        final Merger merger;
+        final long size;
+        /**
+         * Stream to write keys of merged objects to, null if keys are not used
+         */
+        final DataOutputStream keysOutput;
+
+        MergedRun(Merger merger, long size, DataOutputStream keysOutput) {
+            this.merger = merger;
+            this.size = size;
+            this.keysOutput = keysOutput;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return new Iterator<T>() {
+                long taken = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return taken < size;
+                }
+
+                @Override
+                public T next() {
+                    if (taken == size)
+                        throw new NoSuchElementException();
+                    ++taken;
+                    T next = merger.take();
+                    if (keysOutput != null)
+                        try {
+                            keysOutput.writeLong(merger.lastKey);
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    return next;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(size, Integer.MAX_VALUE);
+        }
+    }
+
+    private final class MergeSortingPort extends Merger implements OutputPortCloseable<T> {
         private boolean closed = false;
 
+        MergeSortingPort(RunReader[] runs) {
+            super(runs);
+        }
+
+        @Override
+        public synchronized T take() {
+            if (closed)
+                return null;
+            return super.take();
+        }
+
         @Override
         public synchronized void close() {
             if (closed)
                 return;
-            for (SortedBlockReader block : queue)
-                try {
-                    block.close();
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-
-            tempFile.delete();
+            super.close();
+            deleteFiles();
             closed = true;
         }
     }
 
-    private final class SortedBlockReader implements Comparable<SortedBlockReader>, AutoCloseable, Closeable {
-        final DataInputStream input;
-        final int chunkSize;
-        private int position = 0;
+    private final class RunReader implements Closeable {
+        final InputStream input;
+        final DataInputStream keysInput;
+        final Inflater inflater;
+        final long size;
+        private long position = 0;
         private final OutputPort<T> port;
         private T current = null;
-
-        public SortedBlockReader(File file,
-                                 long chunkOffset,
-                                 int chunkSize,
-                                 int bufferSize) throws IOException {
-            this.chunkSize = chunkSize;
-
-            final FileInputStream fo = new FileInputStream(file);
-            // Setting file position to the beginning of the chunkId-th chunk
-            fo.getChannel().position(chunkOffset);
-            this.input = new DataInputStream(new BufferedInputStream(fo, bufferSize));
-            this.port = serializer.read(this.input);
+        private long currentKey;
+
+        RunReader(long offset,
+                  long firstObject,
+                  long size,
+                  int bufferSize) throws IOException {
+            this.size = size;
+
+            if (keysFile != null) {
+                FileInputStream keys = new FileInputStream(keysFile);
+                keys.getChannel().position(8 * firstObject);
+                this.keysInput = new DataInputStream(new BufferedInputStream(keys, Math.max(1024, bufferSize / 4)));
+            } else
+                this.keysInput = null;
+
+            final FileInputStream fo = new FileInputStream(runsFile);
+            // Setting file position to the beginning of the run
+            fo.getChannel().position(offset);
+            InputStream input = new BufferedInputStream(fo, bufferSize);
+            if (compressRuns) {
+                this.inflater = new Inflater();
+                input = new InflaterInputStream(input, inflater, 1 << 14);
+            } else
+                this.inflater = null;
+            this.input = input;
+            this.port = serializer.read(new DataInputStream(input));
         }
 
-        public void advance() throws IOException {
-            if (position == chunkSize)
+        void advance() throws IOException {
+            if (position == size)
                 current = null;
             else {
                 ++position;
                 current = port.take();
+                if (keysInput != null)
+                    currentKey = keysInput.readLong();
             }
         }
 
-        public T current() {
-            return current;
-        }
-
         @Override
-        public void close() throws IOException {
-            this.input.close();
-        }
-
-        @Override
-        public int compareTo(SortedBlockReader o) {
-            return comparator.compare(current, o.current);
+        public void close() {
+            try {
+                input.close();
+                if (keysInput != null)
+                    keysInput.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                if (inflater != null)
+                    inflater.end();
+            }
         }
     }
-
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.util;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread stack of reusable objects (e.g. scratch buffers), used to avoid creation of temporary objects in
+ * frequently called methods.
+ *
+ * <p>Each call of {@link #get()} must be followed by the call of {@link #release()} in the same thread (in reverse
+ * order for nested calls), normally in {@code finally} block:</p>
+ *
+ * <pre>
+ * IntArrayList buffer = cache.get();
+ * try {
+ *     ...
+ * } finally {
+ *     cache.release();
+ * }
+ * </pre>
+ *
+ * <p>Objects are reused as is, so method taking an object is responsible for resetting its state.</p>
+ *
+ * @param <T> type of cached objects
+ */
+public final class ThreadLocalCache<T> {
+    final Factory<? extends T> factory;
+    final int limit;
+    final ThreadLocal<Provider<T>> local = new ThreadLocal<Provider<T>>() {
+        @Override
+        protected Provider<T> initialValue() {
+            return new Provider<>();
+        }
+    };
+
+    /**
+     * Creates cache.
+     *
+     * @param factory factory of cached objects
+     * @param limit   maximal number of objects simultaneously taken by a single thread
+     */
+    public ThreadLocalCache(Factory<? extends T> factory, int limit) {
+        this.factory = factory;
+        this.limit = limit;
+    }
+
+    /**
+     * Takes object from the cache of current thread (creating new one if needed).
+     *
+     * @return cached object
+     * @throws IllegalStateException if there are too many taken and not released objects
+     */
+    public T get() {
+        Provider<T> provider = local.get();
+        if (provider.pointer == provider.objects.length) {
+            if (limit <= provider.pointer)
+                throw new IllegalStateException("Too many caches.");
+            provider.objects = Arrays.copyOf(provider.objects, Math.min(limit, provider.pointer + 2));
+        }
+
+        Object object;
+        if ((object = provider.objects[provider.pointer]) == null)
+            object = provider.objects[provider.pointer] = factory.create();
+
+        ++provider.pointer;
+
+        @SuppressWarnings("unchecked")
+        T result = (T) object;
+        return result;
+    }
+
+    /**
+     * Returns the last taken object to the cache of current thread.
+     */
+    public void release() {
+        Provider<T> provider = local.get();
+        if (provider.pointer == 0)
+            throw new IllegalStateException("All caches already released.");
+        --provider.pointer;
+    }
+
+    private static final class Provider<T> {
+        int pointer = 0;
+        Object[] objects = new Object[3];
+    }
+}
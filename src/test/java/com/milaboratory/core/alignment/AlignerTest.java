@@ -600,4 +600,37 @@ public class AlignerTest {
 //
 //        //Assert.assertEquals("No real mutations lost", m5.length, m6.length);
 //    }
-}
\ No newline at end of file
+
+    @Test
+    public void testScoreOnly() throws Exception {
+        Well19937c random = new Well19937c(123);
+        NucleotideMutationModel model = MutationModels.getEmpiricalNucleotideMutationModel().multiplyProbabilities(20);
+        model.reseed(random.nextLong());
+        AlignmentScoring[] scorings = {
+                LinearGapAlignmentScoring.getNucleotideBLASTScoring(),
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring()};
+        for (int i = 0; i < its(300, 3000); ++i) {
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 0, 60),
+                    seq2 = random.nextBoolean()
+                            ? randomSequence(NucleotideSequence.ALPHABET, random, 0, 60)
+                            : MutationsGenerator.generateMutations(seq1, model).mutate(seq1);
+            for (AlignmentScoring<NucleotideSequence> scoring : scorings) {
+                assertEquals(alignGlobal(scoring, seq1, seq2).getScore(),
+                        Aligner.scoreGlobal(scoring, seq1, seq2), 0.0f);
+                Alignment<NucleotideSequence> local = Aligner.alignLocal(scoring, seq1, seq2);
+                assertEquals(local == null ? 0 : local.getScore(),
+                        Aligner.scoreLocal(scoring, seq1, seq2), 0.0f);
+            }
+        }
+
+        for (int i = 0; i < its(30, 300); ++i) {
+            AminoAcidSequence seq1 = randomSequence(AminoAcidSequence.ALPHABET, random, 0, 40),
+                    seq2 = randomSequence(AminoAcidSequence.ALPHABET, random, 0, 40);
+            AffineGapAlignmentScoring<AminoAcidSequence> scoring =
+                    AffineGapAlignmentScoring.getAminoAcidBLASTScoring(BLASTMatrix.BLOSUM62);
+            assertEquals(alignGlobal(scoring, seq1, seq2).getScore(), Aligner.scoreGlobal(scoring, seq1, seq2), 0.0f);
+            Alignment<AminoAcidSequence> local = Aligner.alignLocal(scoring, seq1, seq2);
+            assertEquals(local == null ? 0 : local.getScore(), Aligner.scoreLocal(scoring, seq1, seq2), 0.0f);
+        }
+    }
+}
@@ -396,4 +396,71 @@ public class BandedAffineAlignerTest {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testScoreOnlyRandom() throws Exception {
+        AffineGapAlignmentScoring<NucleotideSequence>[] scorings = new AffineGapAlignmentScoring[]{
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring(),
+                new AffineGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 3, -1, -3, -1),
+                new AffineGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 1, -10, -3, -1)
+        };
+        int its = its(3000, 30000);
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(12345));
+        BandedAffineAligner.MatrixCache cache = new BandedAffineAligner.MatrixCache();
+        for (int i = 0; i < its; ++i) {
+            AffineGapAlignmentScoring<NucleotideSequence> scoring = scorings[i % scorings.length];
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 1, 100);
+            NucleotideSequence seq2;
+            if (i % 3 == 0)
+                seq2 = randomSequence(NucleotideSequence.ALPHABET, random, 1, 100);
+            else {
+                NucleotideMutationModel model = MutationModels.getEmpiricalNucleotideMutationModel()
+                        .multiplyProbabilities(random.nextUniform(1, 20));
+                model.reseed(random.nextLong(0, Long.MAX_VALUE));
+                seq2 = MutationsGenerator.generateMutations(seq1, model).mutate(seq1);
+                if (seq2.size() == 0)
+                    continue;
+            }
+            int offset1 = random.nextInt(0, seq1.size() - 1),
+                    offset2 = random.nextInt(0, seq2.size() - 1),
+                    length1 = random.nextInt(0, seq1.size() - offset1),
+                    length2 = random.nextInt(0, seq2.size() - offset2),
+                    added1 = random.nextInt(0, length1 + 3),
+                    added2 = random.nextInt(0, length2 + 3),
+                    width = random.nextInt(0, 20);
+
+            MutationsBuilder<NucleotideSequence> mutations = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+            assertEquals(BandedAffineAligner.align0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                            width, mutations, cache),
+                    BandedAffineAligner.alignScore0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                            width, cache));
+
+            assertSameResult(BandedAffineAligner.semiLocalRight0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                    width, mutations, cache),
+                    BandedAffineAligner.semiLocalRightScore0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                            width, cache));
+            assertSameResult(BandedAffineAligner.semiLocalLeft0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                    width, mutations, cache),
+                    BandedAffineAligner.semiLocalLeftScore0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                            width, cache));
+
+            if (length1 == 0 || length2 == 0)
+                continue;
+
+            assertSameResult(BandedAffineAligner.semiGlobalRight0(scoring, seq1, seq2, offset1, length1, added1,
+                    offset2, length2, added2, width, mutations, cache),
+                    BandedAffineAligner.semiGlobalRightScore0(scoring, seq1, seq2, offset1, length1, added1,
+                            offset2, length2, added2, width, cache));
+            assertSameResult(BandedAffineAligner.semiGlobalLeft0(scoring, seq1, seq2, offset1, length1, added1,
+                    offset2, length2, added2, width, mutations, cache),
+                    BandedAffineAligner.semiGlobalLeftScore0(scoring, seq1, seq2, offset1, length1, added1,
+                            offset2, length2, added2, width, cache));
+        }
+    }
+
+    private static void assertSameResult(BandedSemiLocalResult expected, BandedSemiLocalResult actual) {
+        assertEquals(expected.score, actual.score);
+        assertEquals(expected.sequence1Stop, actual.sequence1Stop);
+        assertEquals(expected.sequence2Stop, actual.sequence2Stop);
+    }
+}
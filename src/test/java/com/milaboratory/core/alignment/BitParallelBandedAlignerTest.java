@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.alignment;
+
+import com.milaboratory.core.mutations.Mutations;
+import com.milaboratory.core.mutations.generator.MutationModels;
+import com.milaboratory.core.mutations.generator.MutationsGenerator;
+import com.milaboratory.core.mutations.generator.NucleotideMutationModel;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.apache.commons.math3.random.RandomDataGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import static com.milaboratory.test.TestUtil.its;
+import static com.milaboratory.test.TestUtil.randomSequence;
+import static org.junit.Assert.assertEquals;
+
+public class BitParallelBandedAlignerTest {
+    static final LinearGapAlignmentScoring<NucleotideSequence>[] COMPATIBLE = new LinearGapAlignmentScoring[]{
+            new LinearGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 0, -1, -1),
+            new LinearGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 2, -1, -2),
+            new LinearGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 4, -3, -5)
+    };
+
+    @Test
+    public void testCompatibility() throws Exception {
+        for (LinearGapAlignmentScoring<NucleotideSequence> scoring : COMPATIBLE)
+            Assert.assertTrue(BitParallelBandedAligner.isCompatible(scoring));
+        Assert.assertFalse(BitParallelBandedAligner.isCompatible(LinearGapAlignmentScoring.getNucleotideBLASTScoring()));
+        Assert.assertFalse(BitParallelBandedAligner.isCompatible(
+                new LinearGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 1, -1, -1)));
+    }
+
+    @Test
+    public void testSimple() throws Exception {
+        NucleotideSequence seq1 = new NucleotideSequence("ATTGACAATTGACA");
+        NucleotideSequence seq2 = new NucleotideSequence("ATGAAATTGCACA");
+        for (LinearGapAlignmentScoring<NucleotideSequence> scoring : COMPATIBLE)
+            for (int width = 0; width < 5; ++width)
+                assertEquals(BandedLinearAligner.align(scoring, seq1, seq2, width),
+                        BitParallelBandedAligner.align(scoring, seq1, seq2, width));
+    }
+
+    @Test
+    public void testRandomGlobal() throws Exception {
+        int its = its(1000, 30000);
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(1234));
+        for (int i = 0; i < its; ++i) {
+            LinearGapAlignmentScoring<NucleotideSequence> scoring = COMPATIBLE[i % COMPATIBLE.length];
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 0, 200);
+            NucleotideSequence seq2 = i % 2 == 0
+                    ? randomSequence(NucleotideSequence.ALPHABET, random, 0, 200)
+                    : mutate(seq1, random);
+            int width = random.nextInt(0, 100);
+            Alignment<NucleotideSequence> expected = BandedLinearAligner.align(scoring, seq1, seq2, width);
+            assertEquals(expected, BitParallelBandedAligner.align(scoring, seq1, seq2, width));
+            assertEquals(Aligner.alignGlobalLinear(scoring, seq1, seq2),
+                    BitParallelBandedAligner.alignGlobal(scoring, seq1, seq2));
+        }
+    }
+
+    @Test
+    public void testWordBoundaries() throws Exception {
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(2345));
+        for (int i = 0; i < 300; ++i) {
+            LinearGapAlignmentScoring<NucleotideSequence> scoring = COMPATIBLE[i % COMPATIBLE.length];
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 200, 250);
+            NucleotideSequence seq2 = mutate(seq1, random);
+            // Band width (rowFactor + 1) around 64 and 128
+            for (int width : new int[]{30, 31, 32, 33, 62, 63, 64})
+                assertEquals(BandedLinearAligner.align(scoring, seq1, seq2, width),
+                        BitParallelBandedAligner.align(scoring, seq1, seq2, width));
+        }
+    }
+
+    @Test
+    public void testRandomSemiLocal() throws Exception {
+        int its = its(1000, 30000);
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(4321));
+        for (int i = 0; i < its; ++i) {
+            LinearGapAlignmentScoring<NucleotideSequence> scoring = COMPATIBLE[i % COMPATIBLE.length];
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 1, 200);
+            NucleotideSequence seq2 = i % 3 == 0
+                    ? randomSequence(NucleotideSequence.ALPHABET, random, 1, 200)
+                    : mutate(seq1, random);
+            int width = random.nextInt(0, 80);
+            int stopPenalty = -random.nextInt(1, 30);
+            assertEquals(BandedLinearAligner.alignSemiLocalLeft(scoring, seq1, seq2, width, stopPenalty),
+                    BitParallelBandedAligner.alignSemiLocalLeft(scoring, seq1, seq2, width, stopPenalty));
+            assertEquals(BandedLinearAligner.alignSemiLocalRight(scoring, seq1, seq2, width, stopPenalty),
+                    BitParallelBandedAligner.alignSemiLocalRight(scoring, seq1, seq2, width, stopPenalty));
+        }
+    }
+
+    @Test
+    public void testFallback() throws Exception {
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(111));
+        LinearGapAlignmentScoring<NucleotideSequence> blast = LinearGapAlignmentScoring.getNucleotideBLASTScoring();
+        for (int i = 0; i < 100; ++i) {
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 10, 100);
+            NucleotideSequence seq2 = mutate(seq1, random);
+            assertEquals(BandedLinearAligner.align(blast, seq1, seq2, 5),
+                    BitParallelBandedAligner.align(blast, seq1, seq2, 5));
+            assertEquals(BandedLinearAligner.alignSemiLocalLeft(blast, seq1, seq2, 5, -20),
+                    BitParallelBandedAligner.alignSemiLocalLeft(blast, seq1, seq2, 5, -20));
+        }
+
+        NucleotideSequence seq1 = new NucleotideSequence("ATTGACANTTGACA");
+        NucleotideSequence seq2 = new NucleotideSequence("ATGAAATTGCACA");
+        assertEquals(BandedLinearAligner.align(COMPATIBLE[0], seq1, seq2, 2),
+                BitParallelBandedAligner.align(COMPATIBLE[0], seq1, seq2, 2));
+    }
+
+    static NucleotideSequence mutate(NucleotideSequence seq, RandomDataGenerator random) {
+        NucleotideMutationModel model = MutationModels.getEmpiricalNucleotideMutationModel()
+                .multiplyProbabilities(random.nextUniform(1, 30));
+        model.reseed(random.nextLong(0, Long.MAX_VALUE));
+        Mutations<NucleotideSequence> mutations = MutationsGenerator.generateMutations(seq, model);
+        return mutations.mutate(seq);
+    }
+}
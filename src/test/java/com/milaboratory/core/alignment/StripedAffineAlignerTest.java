@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.alignment;
+
+import com.milaboratory.core.sequence.AminoAcidSequence;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.Sequence;
+import org.apache.commons.math3.random.RandomDataGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import static com.milaboratory.core.alignment.BitParallelBandedAlignerTest.mutate;
+import static com.milaboratory.test.TestUtil.its;
+import static com.milaboratory.test.TestUtil.randomSequence;
+import static org.junit.Assert.assertEquals;
+
+public class StripedAffineAlignerTest {
+    @Test
+    public void testSimple() throws Exception {
+        AffineGapAlignmentScoring<NucleotideSequence> scoring = AffineGapAlignmentScoring.getNucleotideBLASTScoring();
+        NucleotideSequence seq1 = new NucleotideSequence("ATTGACAATTGACATTGACGATCG");
+        NucleotideSequence seq2 = new NucleotideSequence("ATGAAATTGCACATTGACTCG");
+        for (int b = 0; b < 4; ++b)
+            assertSame(scoring, seq1, seq2, 0, seq1.size(), 0, seq2.size(), (b & 1) != 0, (b & 2) != 0);
+    }
+
+    @Test
+    public void testRandomNucleotide() throws Exception {
+        int its = its(1000, 30000);
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(1234));
+        AffineGapAlignmentScoring<NucleotideSequence>[] scorings = new AffineGapAlignmentScoring[]{
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring(),
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring(-3, -1),
+                new AffineGapAlignmentScoring<>(NucleotideSequence.ALPHABET, 1, -2, -2, -2)
+        };
+        for (int i = 0; i < its; ++i) {
+            AffineGapAlignmentScoring<NucleotideSequence> scoring = scorings[i % scorings.length];
+            NucleotideSequence seq1 = randomSequence(NucleotideSequence.ALPHABET, random, 1, 150);
+            NucleotideSequence seq2 = i % 3 == 0
+                    ? randomSequence(NucleotideSequence.ALPHABET, random, 1, 150)
+                    : mutate(seq1, random);
+            if (seq2.size() == 0)
+                continue;
+            int offset1 = random.nextInt(0, seq1.size() - 1),
+                    offset2 = random.nextInt(0, seq2.size() - 1);
+            assertSame(scoring, seq1, seq2,
+                    offset1, random.nextInt(0, seq1.size() - offset1),
+                    offset2, random.nextInt(0, seq2.size() - offset2),
+                    random.nextInt(0, 1) == 1, random.nextInt(0, 1) == 1);
+        }
+    }
+
+    @Test
+    public void testRandomAminoAcid() throws Exception {
+        int its = its(300, 10000);
+        RandomDataGenerator random = new RandomDataGenerator(new Well19937c(4321));
+        AffineGapAlignmentScoring<AminoAcidSequence> scoring =
+                AffineGapAlignmentScoring.getAminoAcidBLASTScoring(BLASTMatrix.BLOSUM62);
+        for (int i = 0; i < its; ++i) {
+            AminoAcidSequence seq1 = randomSequence(AminoAcidSequence.ALPHABET, random, 1, 100),
+                    seq2 = randomSequence(AminoAcidSequence.ALPHABET, random, 1, 100);
+            assertSame(scoring, seq1, seq2, 0, seq1.size(), 0, seq2.size(),
+                    random.nextInt(0, 1) == 1, random.nextInt(0, 1) == 1);
+        }
+    }
+
+    static <S extends Sequence<S>> void assertSame(AffineGapAlignmentScoring<S> scoring,
+                                                                                  S seq1, S seq2,
+                                                                                  int offset1, int length1,
+                                                                                  int offset2, int length2,
+                                                                                  boolean boundSeq1, boolean boundSeq2) {
+        AlignerCustom.AffineMatrixCache cache = new AlignerCustom.AffineMatrixCache();
+        assertEquals(AlignerCustom.alignAffineSemiLocalLeft0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        boundSeq1, boundSeq2, scoring.getAlphabet(), cache),
+                StripedAffineAligner.alignAffineSemiLocalLeft0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        boundSeq1, boundSeq2, scoring.getAlphabet(), cache));
+        assertEquals(AlignerCustom.alignAffineSemiLocalRight0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        boundSeq1, boundSeq2, scoring.getAlphabet(), cache),
+                StripedAffineAligner.alignAffineSemiLocalRight0(scoring, seq1, seq2, offset1, length1, offset2, length2,
+                        boundSeq1, boundSeq2, scoring.getAlphabet(), cache));
+    }
+}
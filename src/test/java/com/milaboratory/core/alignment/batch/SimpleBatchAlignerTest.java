@@ -15,11 +15,23 @@
  */
 package com.milaboratory.core.alignment.batch;
 
-import com.milaboratory.core.alignment.AffineGapAlignmentScoring;
+import com.milaboratory.core.alignment.*;
+import com.milaboratory.core.mutations.generator.MutationModels;
+import com.milaboratory.core.mutations.generator.MutationsGenerator;
+import com.milaboratory.core.mutations.generator.NucleotideMutationModel;
 import com.milaboratory.core.sequence.NucleotideSequence;
+import org.apache.commons.math3.random.Well19937c;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static com.milaboratory.test.TestUtil.its;
+import static com.milaboratory.test.TestUtil.randomSequence;
+
 public class SimpleBatchAlignerTest {
     @Test
     public void test1() {
@@ -49,4 +61,95 @@ public class SimpleBatchAlignerTest {
         Assert.assertEquals((Integer) 0, result.getHits().get(0).getRecordPayload());
         Assert.assertEquals(4, result.getHits().size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSameAsExhaustive() {
+        Well19937c random = new Well19937c(123);
+        NucleotideMutationModel model = MutationModels.getEmpiricalNucleotideMutationModel().multiplyProbabilities(10);
+        model.reseed(random.nextLong());
+        ForkJoinPool pool = new ForkJoinPool(2);
+        AlignmentScoring[] scorings = {
+                LinearGapAlignmentScoring.getNucleotideBLASTScoring(),
+                AffineGapAlignmentScoring.getNucleotideBLASTScoring()};
+        try {
+            for (int i = 0; i < its(100, 1000); ++i) {
+                NucleotideSequence query = randomSequence(NucleotideSequence.ALPHABET, random, 10, 60);
+                List<NucleotideSequence> references = new ArrayList<>();
+                for (int j = random.nextInt(50); j >= 0; --j)
+                    references.add(random.nextInt(3) == 0
+                            ? randomSequence(NucleotideSequence.ALPHABET, random, 5, 70)
+                            : MutationsGenerator.generateMutations(query, model).mutate(query));
+
+                @SuppressWarnings("unchecked")
+                SimpleBatchAlignerParameters<NucleotideSequence> parameters = new SimpleBatchAlignerParameters<>(
+                        random.nextInt(12) - 1, random.nextInt(3) == 0 ? -1f : random.nextFloat(),
+                        random.nextInt(100) - 50, random.nextBoolean(), scorings[random.nextInt(2)]);
+
+                List<AlignmentHit<NucleotideSequence, Integer>> expected = alignExhaustive(parameters, references, query);
+                assertSameHits(expected, align(new SimpleBatchAligner<NucleotideSequence, Integer>(parameters),
+                        references, query));
+                assertSameHits(expected, align(new SimpleBatchAligner<NucleotideSequence, Integer>(parameters,
+                        pool, 0), references, query));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testPrefilter() {
+        NucleotideSequence query = new NucleotideSequence("ATCAGAGACACATAGGTCTGGC");
+        SimpleBatchAlignerParameters<NucleotideSequence> parameters = new SimpleBatchAlignerParameters<>(5,
+                0f, 0f, false, AffineGapAlignmentScoring.getNucleotideBLASTScoring(), 8, 2);
+        SimpleBatchAligner<NucleotideSequence, Integer> aligner = new SimpleBatchAligner<>(parameters);
+        aligner.addReference(new NucleotideSequence("TTTTTTAGAGACACTTTTTTT"), 0);
+        aligner.addReference(new NucleotideSequence("TTTTTTAGAGACACATAGTTT"), 1);
+        aligner.addReference(new NucleotideSequence("CCCCCCCCCCCCCCCCCCCCC"), 2);
+
+        AlignmentResult<AlignmentHit<NucleotideSequence, Integer>> result = aligner.align(query);
+        Assert.assertEquals(1, result.getHits().size());
+        Assert.assertEquals((Integer) 1, result.getHits().get(0).getRecordPayload());
+
+        parameters.setPrefilterKmerSize(0);
+        Assert.assertEquals(3, aligner.align(query).getHits().size());
+    }
+
+    static List<AlignmentHit<NucleotideSequence, Integer>> align(
+            SimpleBatchAligner<NucleotideSequence, Integer> aligner,
+            List<NucleotideSequence> references, NucleotideSequence query) {
+        for (int i = 0; i < references.size(); i++)
+            aligner.addReference(references.get(i), i);
+        return aligner.align(query).getHits();
+    }
+
+    static List<AlignmentHit<NucleotideSequence, Integer>> alignExhaustive(
+            SimpleBatchAlignerParameters<NucleotideSequence> parameters,
+            List<NucleotideSequence> references, NucleotideSequence query) {
+        List<AlignmentHit<NucleotideSequence, Integer>> alignments = new ArrayList<>();
+        for (int i = 0; i < references.size(); i++) {
+            Alignment<NucleotideSequence> alignment = parameters.isGlobal()
+                    ? Aligner.alignGlobal(parameters.getScoring(), references.get(i), query)
+                    : Aligner.alignLocal(parameters.getScoring(), references.get(i), query);
+            if (alignment != null)
+                alignments.add(new AlignmentHitImpl<>(alignment, i));
+        }
+        Collections.sort(alignments, BatchAlignmentUtil.ALIGNMENT_SCORE_HIT_COMPARATOR);
+        if (alignments.isEmpty())
+            return alignments;
+        float scoreThreshold = Math.max(alignments.get(0).getAlignment().getScore() * parameters.getRelativeMinScore(),
+                parameters.getAbsoluteMinScore());
+        for (int i = 0; i < alignments.size(); i++)
+            if (i == parameters.getMaxHits() || alignments.get(i).getAlignment().getScore() < scoreThreshold)
+                return alignments.subList(0, i);
+        return alignments;
+    }
+
+    static void assertSameHits(List<AlignmentHit<NucleotideSequence, Integer>> expected,
+                               List<AlignmentHit<NucleotideSequence, Integer>> actual) {
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getRecordPayload(), actual.get(i).getRecordPayload());
+            Assert.assertEquals(expected.get(i).getAlignment(), actual.get(i).getAlignment());
+        }
+    }
+}
@@ -26,8 +26,14 @@ import org.apache.commons.math3.random.RandomDataGenerator;
 import org.apache.commons.math3.random.Well19937c;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static com.milaboratory.core.alignment.kaligner1.KMapper.SEED_NOT_FOUND_OFFSET;
 import static com.milaboratory.core.alignment.kaligner1.KMapper.getBestOffset;
@@ -98,6 +104,77 @@ public class KMapperTest extends AlignmentTest {
         Assert.assertEquals(2, result.hits.get(0).id);
     }
 
+    @Test
+    public void testConcurrentAddReference() throws Exception {
+        RandomDataGenerator rdi = new RandomDataGenerator(new Well19937c(1234567L));
+        final KMapper aligner = KMapper.createFromParameters(gParams);
+        final int initialSize = 50;
+        final NucleotideSequence[] base = new NucleotideSequence[initialSize + its(300, 3000)];
+        for (int i = 0; i < base.length; i++)
+            base[i] = randomSequence(NucleotideSequence.ALPHABET, rdi, 100, 200);
+        for (int i = 0; i < initialSize; i++)
+            aligner.addReference(base[i]);
+
+        final AtomicInteger added = new AtomicInteger(initialSize);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = initialSize; i < base.length; i++) {
+                        assertEquals(i, aligner.addReference(base[i]));
+                        added.set(i + 1);
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+        writer.start();
+
+        while (added.get() < base.length && error.get() == null) {
+            int id = rdi.nextInt(0, added.get() - 1);
+            KMappingResult result = aligner.align(base[id]);
+            assertTrue(result.hits.size() > 0);
+            assertEquals(id, result.hits.get(0).id);
+        }
+        writer.join();
+
+        if (error.get() != null)
+            throw new AssertionError(error.get());
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        RandomDataGenerator rdi = new RandomDataGenerator(new Well19937c(7654321L));
+        KMapper aligner = KMapper.createFromParameters(gParams);
+        NucleotideSequence[] base = new NucleotideSequence[101];
+        for (int i = 0; i < base.length; i++)
+            base[i] = randomSequence(NucleotideSequence.ALPHABET, rdi, 100, 200);
+        for (int i = 0; i < base.length - 1; i++)
+            aligner.addReference(base[i]);
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(aligner);
+        }
+        KMapper deserialized;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            deserialized = (KMapper) in.readObject();
+        }
+
+        for (int i = 0; i < base.length - 1; i++) {
+            KMappingResult result = deserialized.align(base[i]);
+            assertTrue(result.hits.size() > 0);
+            assertEquals(i, result.hits.get(0).id);
+        }
+
+        // Deserialized base is independent from the original one and can be extended
+        assertEquals(base.length - 1, deserialized.addReference(base[base.length - 1]));
+        assertEquals(base.length - 1, deserialized.align(base[base.length - 1]).hits.get(0).id);
+        assertEquals(base.length - 1, aligner.addReference(base[base.length - 1]));
+    }
+
     @Test
     public void testRandom1() throws Exception {
         RandomDataGenerator rdi = new RandomDataGenerator(new Well19937c(127368647891L));
@@ -113,6 +113,56 @@ public class KAligner2Test {
                 result.getScoreErrorFraction() < 0.015);
     }
 
+    @Test
+    public void testMinimizerRandomTest() throws Exception {
+        RandomUtil.reseedThreadLocal(12342345L);
+        AffineGapAlignmentScoring<NucleotideSequence> scoring = IGBLAST_NUCLEOTIDE_SCORING;
+        int absoluteMinScore = IGBLAST_NUCLEOTIDE_SCORING_THRESHOLD;
+        Challenge challenge = new ChallengeProvider(getParamsOneCluster(scoring, absoluteMinScore, Integer.MAX_VALUE, 20.0).setQueryCount(its(5000, 100000)), 123).take();
+        Benchmark bm = new Benchmark(its(10_000_000_000L, 150_000_000_000L));
+        KAlignerParameters2 alParams = new KAlignerParameters2(9, 3,
+                true, true,
+                75, -50, 115, 0.87f, 45, -10, -15,
+                2, 5, 5, 3, 3, 3,
+                0, absoluteMinScore, 0.87f, 5,
+                scoring);
+        alParams.setMapperNValue(9);
+        alParams.setMapperKValue(1);
+        alParams.setMapperKMersPerPosition(9);
+        alParams.setMapperOffsetShiftScore(-22);
+        alParams.setMapperMaxSeedsDistance(4);
+        alParams.setMapperAbsoluteMinScore(100);
+        alParams.setFloatingLeftBound(true);
+        alParams.setAbsoluteMinScore(150);
+        alParams.setMaxHits(3);
+        alParams.setMapperMismatchScore(-36);
+        alParams.setMapperAbsoluteMinClusterScore(128);
+        alParams.setFloatingRightBound(true);
+        alParams.setMapperSlotCount(1);
+        alParams.setMapperMaxClusters(1);
+        alParams.setAlignmentStopPenalty(0);
+        alParams.setRelativeMinScore(0.8f);
+        alParams.setMapperExtraClusterScore(-78);
+        alParams.setMapperMatchScore(90);
+        alParams.setMapperRelativeMinScore(0.8f);
+        alParams.setMapperMaxClusterIndels(3);
+        alParams.setMapperMinSeedsDistance(4);
+        alParams.setMapperMinimizerWindow(4);
+        BenchmarkInput bi = new BenchmarkInput(alParams, challenge);
+        BenchmarkResults result = bm.process(bi);
+        System.out.println("Time per query: " + TestUtil.time(result.getAverageTiming()));
+        System.out.println("Processed queries: " + result.getProcessedGoodQueries());
+        System.out.println("Bad percent: " + result.getBadFraction() * 100);
+        System.out.println("False positive percent: " + result.getFalsePositiveFraction() * 100);
+        System.out.println("Scoring error percent: " + result.getScoreErrorFraction() * 100);
+        Assert.assertTrue("Bad fraction = " + result.getBadFraction(),
+                result.getBadFraction() < 0.05);
+        Assert.assertTrue("False positive fraction = " + result.getFalsePositiveFraction(),
+                result.getFalsePositiveFraction() < 0.01);
+        Assert.assertTrue("Score error fraction = " + result.getScoreErrorFraction(),
+                result.getScoreErrorFraction() < 0.015);
+    }
+
     @Test
     public void testBoundaries() throws Exception {
         AffineGapAlignmentScoring<NucleotideSequence> scoring = IGBLAST_NUCLEOTIDE_SCORING;
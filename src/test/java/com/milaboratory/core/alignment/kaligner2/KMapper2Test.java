@@ -8,15 +8,26 @@ import com.milaboratory.core.mutations.generator.NucleotideMutationModel;
 import com.milaboratory.core.sequence.NucleotideSequence;
 import com.milaboratory.core.sequence.SequenceBuilder;
 import com.milaboratory.test.TestUtil;
+import com.milaboratory.util.IntArrayList;
 import com.milaboratory.util.RandomUtil;
+import com.milaboratory.util.TempFileManager;
 import org.apache.commons.math3.random.RandomDataGenerator;
 import org.apache.commons.math3.random.Well1024a;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.lang.Math.min;
 
 /**
  * Created by poslavsky on 15/09/15.
@@ -276,6 +287,221 @@ public class KMapper2Test {
         }
     }
 
+    @Test
+    public void testIndexFile() throws Exception {
+        RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(12345));
+        NucleotideSequence[] db = generateDB(generator, DEFAULT);
+
+        KMapper2 kMapper = KMapper2.createFromParameters(gParams);
+        for (NucleotideSequence seq : db)
+            kMapper.addReference(seq);
+
+        File indexFile = TempFileManager.getTempFile();
+        kMapper.writeIndex(indexFile);
+        KMapper2 mapped = KMapper2.openIndex(indexFile, gParams);
+
+        Assert.assertEquals(kMapper.getRecordSizeSummaryStatistics().getSum(),
+                mapped.getRecordSizeSummaryStatistics().getSum(), 0.0);
+
+        for (int i = 0; i < TestUtil.its(300, 3000); ++i) {
+            Challenge challenge = createChallenge(DEFAULT, generator, db);
+            RandomUtil.reseedThreadLocal(i);
+            KMappingResult2 expected = kMapper.align(challenge.query);
+            RandomUtil.reseedThreadLocal(i);
+            KMappingResult2 actual = mapped.align(challenge.query);
+
+            Assert.assertEquals(expected.hits.size(), actual.hits.size());
+            for (int j = 0; j < expected.hits.size(); j++) {
+                Assert.assertEquals(expected.hits.get(j).id, actual.hits.get(j).id);
+                Assert.assertEquals(expected.hits.get(j).score, actual.hits.get(j).score);
+                Assert.assertArrayEquals(expected.hits.get(j).seedRecords, actual.hits.get(j).seedRecords);
+            }
+        }
+    }
+
+    @Test
+    public void testManyReferences() throws Exception {
+        RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(54321));
+        KMapper2 kMapper = KMapper2.createFromParameters(gParams);
+        NucleotideSequence[] db = new NucleotideSequence[(1 << 13) + 100];
+        for (int i = 0; i < db.length; i++)
+            Assert.assertEquals(i, kMapper.addReference(
+                    db[i] = TestUtil.randomSequence(NucleotideSequence.ALPHABET, generator, 60, 60)));
+
+        File indexFile = TempFileManager.getTempFile();
+        kMapper.writeIndex(indexFile);
+        KMapper2 mapped = KMapper2.openIndex(indexFile, gParams);
+
+        for (KMapper2 mapper : new KMapper2[]{kMapper, mapped})
+            for (int id : new int[]{0, 5000, (1 << 13) + 50, db.length - 1}) {
+                KMappingResult2 result = mapper.align(db[id]);
+                Assert.assertFalse(result.hits.isEmpty());
+                Assert.assertEquals(id, result.hits.get(0).id);
+            }
+    }
+
+    @Test
+    public void testConcurrentAddReference() throws Exception {
+        final RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(2468));
+        final KMapper2 kMapper = KMapper2.createFromParameters(gParams);
+        final int initialSize = 100, toAdd = TestUtil.its(300, 3000);
+        final NucleotideSequence[] db = new NucleotideSequence[initialSize + toAdd];
+        for (int i = 0; i < db.length; i++)
+            db[i] = TestUtil.randomSequence(NucleotideSequence.ALPHABET, generator, 100, 500);
+        for (int i = 0; i < initialSize; i++)
+            kMapper.addReference(db[i]);
+
+        final AtomicInteger added = new AtomicInteger(initialSize);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = initialSize; i < db.length; i++) {
+                        Assert.assertEquals(i, kMapper.addReference(db[i]));
+                        added.set(i + 1);
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            }
+        });
+
+        RandomDataGenerator queries = new RandomDataGenerator(new Well1024a(1357));
+        writer.start();
+        while (added.get() < db.length && error.get() == null)
+            assertFirstHit(kMapper, db, queries.nextInt(0, added.get() - 1));
+        writer.join();
+
+        if (error.get() != null)
+            throw new AssertionError(error.get());
+
+        // All added references are visible after addReference returns
+        for (int i = 0; i < db.length; i += 17)
+            assertFirstHit(kMapper, db, i);
+    }
+
+    @Test
+    public void testSerialization() throws Exception {
+        RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(97531));
+        KMapper2 kMapper = KMapper2.createFromParameters(gParams);
+        NucleotideSequence[] db = new NucleotideSequence[101];
+        for (int i = 0; i < db.length; i++)
+            db[i] = TestUtil.randomSequence(NucleotideSequence.ALPHABET, generator, 100, 500);
+        for (int i = 0; i < db.length - 1; i++)
+            kMapper.addReference(db[i]);
+
+        KMapper2 deserialized = serializeAndDeserialize(kMapper);
+        for (int i = 0; i < db.length - 1; i++)
+            assertFirstHit(deserialized, db, i);
+
+        // Deserialized base is independent from the original one and can be extended
+        Assert.assertEquals(db.length - 1, deserialized.addReference(db[db.length - 1]));
+        assertFirstHit(deserialized, db, db.length - 1);
+        Assert.assertEquals(db.length - 1, kMapper.addReference(db[db.length - 1]));
+    }
+
+    @Test
+    public void testSerializationOfMappedIndex() throws Exception {
+        RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(86420));
+        KMapper2 kMapper = KMapper2.createFromParameters(gParams);
+        NucleotideSequence[] db = new NucleotideSequence[100];
+        for (int i = 0; i < db.length; i++) {
+            db[i] = TestUtil.randomSequence(NucleotideSequence.ALPHABET, generator, 100, 500);
+            kMapper.addReference(db[i]);
+        }
+
+        File index = TempFileManager.getTempFile();
+        kMapper.writeIndex(index);
+        KMapper2 deserialized = serializeAndDeserialize(KMapper2.openIndex(index, gParams));
+        for (int i = 0; i < db.length; i++)
+            assertFirstHit(deserialized, db, i);
+    }
+
+    private static KMapper2 serializeAndDeserialize(KMapper2 kMapper) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(kMapper);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            return (KMapper2) in.readObject();
+        }
+    }
+
+    @Test
+    public void testMinimizerPositions() throws Exception {
+        RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(13579));
+        int nValue = 10, window = 6;
+        for (int t = 0; t < 100; ++t) {
+            NucleotideSequence seq = TestUtil.randomSequence(NucleotideSequence.ALPHABET, generator, 5, 300);
+            int from = generator.nextInt(0, seq.size() / 2), to = generator.nextInt(from, seq.size());
+            IntArrayList positions = new IntArrayList();
+            KMapper2.addMinimizerPositions(seq, from, to, nValue, window, positions);
+
+            // Brute force
+            IntArrayList expected = new IntArrayList();
+            int count = to - from - nValue + 1;
+            for (int start = from; count > 0 && start < from + count - min(window, count) + 1; ++start) {
+                int minPosition = -1, minHash = 0;
+                for (int i = start; i < start + min(window, count); ++i) {
+                    int hash = KMapper2.hash(nMer(seq, i, nValue));
+                    if (minPosition == -1 || hash < minHash) {
+                        minPosition = i;
+                        minHash = hash;
+                    }
+                }
+                if (expected.isEmpty() || expected.last() != minPosition)
+                    expected.add(minPosition);
+            }
+            Assert.assertArrayEquals(expected.toArray(), positions.toArray());
+        }
+    }
+
+    private static int nMer(NucleotideSequence seq, int from, int nValue) {
+        int nMer = 0;
+        for (int i = from; i < from + nValue; ++i)
+            nMer = nMer << 2 | seq.codeAt(i);
+        return nMer;
+    }
+
+    @Test
+    public void testMinimizerSeeding() throws Exception {
+        RandomDataGenerator generator = new RandomDataGenerator(new Well1024a(97531));
+        KAlignerParameters2 params = gParams.clone().setMapperMinimizerWindow(5);
+        KMapper2 kMapper = KMapper2.createFromParameters(gParams),
+                minimizerMapper = KMapper2.createFromParameters(params);
+        NucleotideSequence[] db = new NucleotideSequence[300];
+        for (int i = 0; i < db.length; i++) {
+            db[i] = TestUtil.randomSequence(NucleotideSequence.ALPHABET, generator, 100, 500);
+            kMapper.addReference(db[i]);
+            minimizerMapper.addReference(db[i]);
+        }
+
+        double allRecords = kMapper.getRecordSizeSummaryStatistics().getSum(),
+                minimizerRecords = minimizerMapper.getRecordSizeSummaryStatistics().getSum();
+        // Expected density of (w, n)-minimizers is 2 / (w + 1)
+        Assert.assertTrue(minimizerRecords < allRecords / 2);
+
+        File indexFile = TempFileManager.getTempFile();
+        minimizerMapper.writeIndex(indexFile);
+        KMapper2 mapped = KMapper2.openIndex(indexFile, params);
+
+        for (KMapper2 mapper : new KMapper2[]{minimizerMapper, mapped})
+            for (int i = 0; i < 100; ++i) {
+                int id = generator.nextInt(0, db.length - 1);
+                int from = generator.nextInt(0, db[id].size() - 80);
+                KMappingResult2 result = mapper.align(db[id].getRange(from, from + 80));
+                Assert.assertFalse(result.hits.isEmpty());
+                Assert.assertEquals(id, result.hits.get(0).id);
+            }
+    }
+
+    private static void assertFirstHit(KMapper2 kMapper, NucleotideSequence[] db, int id) {
+        KMappingResult2 result = kMapper.align(db[id]);
+        Assert.assertFalse(result.hits.isEmpty());
+        Assert.assertEquals(id, result.hits.get(0).id);
+    }
+
     public static NucleotideSequence[] generateDB(RandomDataGenerator generator, ChallengeParameters params) {
         NucleotideSequence[] db = new NucleotideSequence[params.dbSize];
         for (int i = 0; i < params.dbSize; i++)
@@ -300,6 +300,54 @@ public class ClusteringTest {
         }
     }
 
+    @Test
+    public void testCompactTree() throws Exception {
+        Well19937a rand = new Well19937a(12345);
+        int N = 50;
+        Cluster<TestObject>[] clusters = new Cluster[N];
+        TestStrategy strategy = new TestStrategy(5, new TreeSearchParameters(1, 1, 1, 1));
+        for (int i = 0; i < N; ++i)
+            clusters[i] = getRandomTestCluster(
+                    TestUtil.randomSequence(NucleotideSequence.ALPHABET, rand, 45, 55), strategy.depth, 5,
+                    10000 + rand.nextInt(10000), 5 + rand.nextInt(900), rand.nextLong());
+        ArrayList<TestObject> input = Cluster.getAll(clusters);
+
+        List<Cluster<TestObject>> expected = new Clustering<>(input, EXTRACTOR, strategy).performClustering(),
+                actual = new Clustering<>(input, EXTRACTOR, strategy, true).performClustering();
+        Assert.assertEquals(N, expected.size());
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        Well19937a rand = new Well19937a(54321);
+        for (int t = 0; t < 5; ++t) {
+            int N = 10 + rand.nextInt(50);
+            Cluster<TestObject>[] clusters = new Cluster[N];
+            TestStrategy strategy = new TestStrategy(4, new TreeSearchParameters(1, 1, 1, 2));
+            // Short sequences to make clusters overlap
+            for (int i = 0; i < N; ++i)
+                clusters[i] = getRandomTestCluster(
+                        TestUtil.randomSequence(NucleotideSequence.ALPHABET, rand, 8, 12), strategy.depth, 5,
+                        10000 + rand.nextInt(10000), 5 + rand.nextInt(900), rand.nextLong());
+            ArrayList<TestObject> input = Cluster.getAll(clusters);
+
+            for (DummyStrategy s : new DummyStrategy[]{strategy, strategy.getDummy()}) {
+                List<Cluster<TestObject>> expected = new Clustering<>(input, EXTRACTOR, s).performClustering();
+                for (int threads : new int[]{2, 4})
+                    for (boolean compact : new boolean[]{false, true})
+                        Assert.assertEquals(expected,
+                                new Clustering<>(input, EXTRACTOR, s, compact).performClustering(threads));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParallelWrongThreads() throws Exception {
+        Clustering.performClustering(new ArrayList<TestObject>(), EXTRACTOR,
+                new TestStrategy(1, new TreeSearchParameters(1, 1, 1, 1)), 0);
+    }
+
     private static class DummyStrategy
             implements ClusteringStrategy<TestObject, NucleotideSequence> {
         final int depth;
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence;
+
+import cc.redberry.pipe.CUtils;
+import cc.redberry.pipe.OutputPort;
+import com.milaboratory.core.alignment.batch.BatchAlignmentUtil;
+import com.milaboratory.core.alignment.batch.PipedAlignmentResult;
+import com.milaboratory.core.alignment.kaligner1.KAligner;
+import com.milaboratory.core.alignment.kaligner1.KAlignerParameters;
+import com.milaboratory.core.alignment.kaligner1.KAlignmentHit;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.fasta.FastaReader;
+import com.milaboratory.core.io.sequence.fasta.FastaSequenceReaderWrapper;
+import com.milaboratory.core.io.sequence.fastq.QualityFormat;
+import com.milaboratory.core.io.sequence.fastq.SingleFastqReader;
+import com.milaboratory.core.sequence.NSequenceWithQuality;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceQuality;
+import com.milaboratory.test.TestUtil;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqParallelReaderTest.randomFastq;
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqParallelReaderTest.readAll;
+
+public class ReadBatchTest {
+    @Test
+    public void testBuilder() throws Exception {
+        List<SingleRead> reads = new ArrayList<>();
+        reads.add(new SingleReadImpl(3, new NSequenceWithQuality("ATTAGACA", "IIIIII++"), "read1"));
+        reads.add(new SingleReadImpl(5, new NSequenceWithQuality("", ""), null));
+        reads.add(new SingleReadImpl(7, new NSequenceWithQuality("NNGCR", "+++++"), ""));
+
+        ReadBatch.Builder builder = new ReadBatch.Builder(1, 1);
+        for (SingleRead read : reads)
+            builder.append(read);
+        ReadBatch batch = builder.build();
+
+        Assert.assertEquals(3, batch.size());
+        assertBatchEquals(reads, batch);
+        Assert.assertNull(batch.getDescription(1));
+        Assert.assertEquals(0, batch.length(1));
+        Assert.assertEquals(NucleotideSequence.ALPHABET.symbolToCode('G'), batch.codeAt(2, 2));
+        Assert.assertEquals(reads.get(2).getData().getQuality().value(4), batch.qualityAt(2, 4));
+        Assert.assertEquals(new NucleotideSequence("NNGCR"), batch.getSequence(2));
+        Assert.assertEquals(new SequenceQuality("IIIIII++"), batch.getQuality(0));
+        Assert.assertEquals(reads.get(0).toString(), batch.get(0).toString());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testOutOfBounds() throws Exception {
+        ReadBatch batch = new ReadBatch.Builder()
+                .append(new SingleReadImpl(0, new NSequenceWithQuality("ATTAGACA"), "read")).build();
+        batch.codeAt(0, 8);
+    }
+
+    @Test
+    public void testFastq() throws Exception {
+        byte[] fastq = randomFastq(new Well19937c(1234), 1000);
+        for (boolean replaceWildcards : new boolean[]{false, true}) {
+            List<SingleRead> expected = readAll(createReader(fastq, replaceWildcards));
+            List<SingleRead> actual = new ArrayList<>();
+            try (SingleFastqReader reader = createReader(fastq, replaceWildcards)) {
+                ReadBatch batch;
+                while ((batch = reader.takeBatch(77)) != null) {
+                    Assert.assertTrue(batch.size() <= 77);
+                    for (SingleRead read : batch)
+                        actual.add(read);
+                }
+                Assert.assertNull(reader.takeBatch(77));
+                Assert.assertEquals(expected.size(), reader.getNumberOfReads());
+            }
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testFasta() throws Exception {
+        File sample = new File(ReadBatchTest.class.getClassLoader().getResource("sequences/some_fasta.fasta").toURI());
+        List<SingleRead> expected = new ArrayList<>(), actual = new ArrayList<>();
+        for (SingleRead read : CUtils.it(createFastaReader(sample)))
+            expected.add(read);
+        for (ReadBatch batch : CUtils.it(ReadBatch.batched(createFastaReader(sample), 3)))
+            for (SingleRead read : batch)
+                actual.add(read);
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testAlignBatches() throws Exception {
+        Well19937c rg = new Well19937c(4321);
+        KAligner<Integer> aligner = new KAligner<>(KAlignerParameters.getByName("default"));
+        List<NucleotideSequence> references = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            NucleotideSequence reference = TestUtil.randomSequence(NucleotideSequence.ALPHABET, rg, 200, 300);
+            references.add(reference);
+            aligner.addReference(reference, i);
+        }
+
+        List<SingleRead> reads = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            NucleotideSequence reference = references.get(i % references.size());
+            int from = rg.nextInt(reference.size() - 100);
+            NucleotideSequence query = reference.getRange(from, from + 100);
+            reads.add(new SingleReadImpl(i, new NSequenceWithQuality(query,
+                    SequenceQuality.getUniformQuality(SequenceQuality.GOOD_QUALITY_VALUE, query.size())), "q" + i));
+        }
+
+        OutputPort<? extends PipedAlignmentResult<KAlignmentHit<Integer>, SingleRead>> results =
+                BatchAlignmentUtil.alignBatches(aligner, ReadBatch.batched(CUtils.asOutputPort(reads), 30));
+        int count = 0;
+        for (PipedAlignmentResult<KAlignmentHit<Integer>, SingleRead> result : CUtils.it(results)) {
+            SingleRead query = result.getQuery();
+            Assert.assertEquals(reads.get((int) query.getId()), query);
+            Assert.assertNotNull(result.getBestHit());
+            Assert.assertEquals((int) (query.getId() % references.size()), (int) result.getBestHit().getRecordPayload());
+            ++count;
+        }
+        Assert.assertEquals(reads.size(), count);
+    }
+
+    static SingleFastqReader createReader(byte[] fastq, boolean replaceWildcards) throws Exception {
+        return new SingleFastqReader(new ByteArrayInputStream(fastq), QualityFormat.Phred33, CompressionType.None,
+                false, SingleFastqReader.DEFAULT_BUFFER_SIZE, replaceWildcards, false);
+    }
+
+    static FastaSequenceReaderWrapper createFastaReader(File file) throws Exception {
+        return new FastaSequenceReaderWrapper(new FastaReader<>(file, NucleotideSequence.ALPHABET));
+    }
+
+    static void assertBatchEquals(List<SingleRead> expected, ReadBatch batch) {
+        Assert.assertEquals(expected.size(), batch.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            SingleRead read = batch.get(i);
+            Assert.assertEquals(expected.get(i).getId(), read.getId());
+            Assert.assertEquals(expected.get(i).getData(), read.getData());
+            Assert.assertEquals(expected.get(i).getDescription(), read.getDescription());
+            if (expected.get(i).getDescription() != null) {
+                Assert.assertEquals(expected.get(i), read);
+                Assert.assertEquals(expected.get(i).hashCode(), read.hashCode());
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import cc.redberry.pipe.CUtils;
+import com.milaboratory.core.io.sequence.PairedRead;
+import com.milaboratory.core.io.sequence.fastq.PairedFastqReader;
+import com.milaboratory.core.io.sequence.fastq.SingleFastqReaderTest;
+import com.milaboratory.util.TempFileManager;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqWriterTest.assertReadsEquals;
+
+public class PairedBinaryReadsReaderTest {
+    @Test
+    public void testSample() throws Exception {
+        File sample1 = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r1.fastq").toURI()),
+                sample2 = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r2.fastq").toURI());
+        List<PairedRead> expected = new ArrayList<>();
+        try (PairedFastqReader reader = new PairedFastqReader(sample1, sample2)) {
+            for (PairedRead read : CUtils.it(reader))
+                expected.add(read);
+        }
+
+        for (int blockSize : new int[]{1, 4, 100}) {
+            File file = TempFileManager.getTempFile();
+            try (PairedBinaryReadsWriter writer = new PairedBinaryReadsWriter(new FileOutputStream(file), blockSize,
+                    BinaryReadsWriter.DEFAULT_COMPRESSION_LEVEL)) {
+                for (PairedRead read : expected)
+                    writer.write(read);
+            }
+
+            try (PairedBinaryReadsReader reader = new PairedBinaryReadsReader(file)) {
+                Assert.assertEquals(expected.size(), reader.getNumberOfReads());
+                int i = 0;
+                for (PairedRead read : CUtils.it(reader))
+                    assertPairsEquals(expected.get(i++), read);
+                Assert.assertEquals(expected.size(), i);
+
+                for (i = expected.size() - 1; i >= 0; --i)
+                    assertPairsEquals(expected.get(i), reader.take(i));
+            }
+        }
+    }
+
+    static void assertPairsEquals(PairedRead expected, PairedRead actual) {
+        assertReadsEquals(expected.getR1(), actual.getR1());
+        assertReadsEquals(expected.getR2(), actual.getR2());
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.binary;
+
+import cc.redberry.pipe.CUtils;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.core.io.sequence.SingleReadImpl;
+import com.milaboratory.core.io.sequence.fastq.QualityFormat;
+import com.milaboratory.core.io.sequence.fastq.SingleFastqReader;
+import com.milaboratory.core.io.sequence.fastq.SingleFastqReaderTest;
+import com.milaboratory.core.sequence.NSequenceWithQuality;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceQuality;
+import com.milaboratory.util.TempFileManager;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqParallelReaderTest.randomFastq;
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqWriterTest.assertReadsEquals;
+
+public class SingleBinaryReadsReaderTest {
+    @Test
+    public void testSample() throws Exception {
+        File sample = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r1.fastq").toURI());
+        List<SingleRead> expected = readAll(new SingleFastqReader(sample));
+
+        for (int blockSize : new int[]{1, 3, 10, 100}) {
+            File file = write(expected, blockSize);
+            try (SingleBinaryReadsReader reader = new SingleBinaryReadsReader(file)) {
+                Assert.assertEquals(expected.size(), reader.getNumberOfReads());
+                assertSameReads(expected, reader);
+            }
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        RandomGenerator random = new Well19937c(12345);
+        List<SingleRead> expected = readAll(new SingleFastqReader(new ByteArrayInputStream(randomFastq(random, 3000)),
+                QualityFormat.Phred33, CompressionType.None, false, SingleFastqReader.DEFAULT_BUFFER_SIZE,
+                false, false));
+        // Arbitrary ids, null description and empty sequence
+        expected.add(new SingleReadImpl(-10, NSequenceWithQuality.EMPTY, null));
+        expected.add(new SingleReadImpl(Long.MAX_VALUE, new NSequenceWithQuality(
+                new NucleotideSequence("ATTNAGACA"), SequenceQuality.getUniformQuality((byte) 20, 9)), "Юникод"));
+        expected.add(new SingleReadImpl(0, NSequenceWithQuality.EMPTY, ""));
+
+        for (int blockSize : new int[]{7, 1000, 5000}) {
+            File file = write(expected, blockSize);
+            try (SingleBinaryReadsReader reader = new SingleBinaryReadsReader(file)) {
+                assertSameReads(expected, reader);
+
+                // Random access
+                for (int i = 0; i < 1000; ++i) {
+                    int recordNumber = random.nextInt(expected.size());
+                    assertReadsEquals(expected.get(recordNumber), reader.take(recordNumber));
+                    // Sequential reading continues after random access
+                    if (recordNumber + 1 < expected.size())
+                        assertReadsEquals(expected.get(recordNumber + 1), reader.take());
+                }
+                Assert.assertNull(reader.take(expected.size()));
+            }
+        }
+    }
+
+    @Test
+    public void testLongDescriptions() throws Exception {
+        StringBuilder tail = new StringBuilder();
+        for (int i = 0; i < 300; ++i)
+            tail.append((char) ('a' + i % 26));
+        NSequenceWithQuality data = new NSequenceWithQuality(new NucleotideSequence("ATTAGACA"),
+                SequenceQuality.getUniformQuality((byte) 20, 8));
+        String prefix = "XXXXXXXXXX", nulls = "\u0000\u0000\u0000\u0000\u0000";
+        // Description buffer of the codec grows on the second read, the third read shares prefix with the second one
+        // (or consists of zero bytes, that must not be treated as a prefix of the second one)
+        for (String last : new String[]{prefix + tail + "-1", nulls}) {
+            List<SingleRead> expected = new ArrayList<>();
+            for (String description : new String[]{prefix, prefix + tail, last})
+                expected.add(new SingleReadImpl(expected.size(), data, description));
+
+            File file = write(expected, 100);
+            try (SingleBinaryReadsReader reader = new SingleBinaryReadsReader(file)) {
+                assertSameReads(expected, reader);
+            }
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        File file = write(new ArrayList<SingleRead>(), 10);
+        try (SingleBinaryReadsReader reader = new SingleBinaryReadsReader(file)) {
+            Assert.assertEquals(0, reader.getNumberOfReads());
+            Assert.assertNull(reader.take());
+            Assert.assertNull(reader.take(0));
+        }
+    }
+
+    @Test(expected = IllegalFileFormatException.class)
+    public void testWrongNumberOfReads() throws Exception {
+        File file = TempFileManager.getTempFile();
+        new PairedBinaryReadsWriter(file).close();
+        new SingleBinaryReadsReader(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void testWrongFile() throws Exception {
+        File sample = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r1.fastq").toURI());
+        new SingleBinaryReadsReader(sample);
+    }
+
+    static File write(List<SingleRead> reads, int blockSize) throws IOException {
+        File file = TempFileManager.getTempFile();
+        try (SingleBinaryReadsWriter writer = new SingleBinaryReadsWriter(new FileOutputStream(file), blockSize,
+                BinaryReadsWriter.DEFAULT_COMPRESSION_LEVEL)) {
+            for (SingleRead read : reads)
+                writer.write(read);
+        }
+        return file;
+    }
+
+    static void assertSameReads(List<SingleRead> expected, SingleBinaryReadsReader reader) {
+        int i = 0;
+        for (SingleRead read : CUtils.it(reader))
+            assertReadsEquals(expected.get(i++), read);
+        Assert.assertEquals(expected.size(), i);
+    }
+
+    static List<SingleRead> readAll(SingleFastqReader reader) {
+        List<SingleRead> reads = new ArrayList<>();
+        try (SingleFastqReader r = reader) {
+            for (SingleRead read : CUtils.it(r))
+                reads.add(read);
+        }
+        return reads;
+    }
+}
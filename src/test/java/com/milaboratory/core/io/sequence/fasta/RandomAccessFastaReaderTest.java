@@ -38,6 +38,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class RandomAccessFastaReaderTest {
     @Before
@@ -75,18 +76,65 @@ public class RandomAccessFastaReaderTest {
         assertRA(seqs, tempFile.toPath(), NucleotideSequence.ALPHABET, true);
     }
 
+    @Test
+    public void testMemoryMapped() throws Exception {
+        File tempFile = TempFileManager.getTempFile();
+        final List<FastaRecord<NucleotideSequence>> seqs = new ArrayList<>();
+        try (FastaWriter<NucleotideSequence> writer = new FastaWriter<>(tempFile)) {
+            for (int i = 0; i < 50; i++) {
+                FastaRecord<NucleotideSequence> rec = new FastaRecord<>(i, UUID.randomUUID().toString(), TestUtil.randomSequence(NucleotideSequence.ALPHABET, 10, 20000));
+                seqs.add(rec);
+                writer.write(rec);
+            }
+        }
+        RandomAccessFastaIndex index = RandomAccessFastaIndex.index(tempFile.toPath());
+
+        // Default and small (to test regions crossing segment boundaries) segments
+        for (int segmentBits : new int[]{RandomAccessFastaReader.DEFAULT_SEGMENT_BITS, 10}) {
+            try (final RandomAccessFastaReader<NucleotideSequence> raReader =
+                         new RandomAccessFastaReader<>(tempFile.toPath(), index, NucleotideSequence.ALPHABET, segmentBits)) {
+                Assert.assertTrue(raReader.isMemoryMapped());
+                assertRA(seqs, raReader, true);
+
+                // Concurrent reads
+                final AtomicReference<Throwable> error = new AtomicReference<>();
+                Thread[] threads = new Thread[4];
+                for (int i = 0; i < threads.length; i++) {
+                    threads[i] = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                assertRA(seqs, raReader, true);
+                            } catch (Throwable e) {
+                                error.set(e);
+                            }
+                        }
+                    });
+                    threads[i].start();
+                }
+                for (Thread thread : threads)
+                    thread.join();
+                Assert.assertNull(error.get());
+            }
+        }
+    }
+
     public static <S extends Sequence<S>> void assertRA(List<FastaRecord<S>> seqs, Path path, Alphabet<S> alphabet, boolean allowReverse) throws Exception {
         try (RandomAccessFastaReader<S> raReader = new RandomAccessFastaReader<>(path, alphabet)) {
-            ThreadLocalRandom r = ThreadLocalRandom.current();
+            assertRA(seqs, raReader, allowReverse);
+        }
+    }
 
-            for (int i = 0; i < 1000; i++) {
-                FastaRecord<S> rec = seqs.get(r.nextInt(seqs.size()));
-                int from = r.nextInt(rec.getSequence().size() - 1);
-                int to = allowReverse ? r.nextInt(rec.getSequence().size() - 1) : r.nextInt(from, rec.getSequence().size());
-                Range range = new Range(from, to);
-                Assert.assertEquals(rec.getSequence().getRange(range), raReader.getSequence((int) rec.getId(), range));
-                Assert.assertEquals(rec.getSequence().getRange(range), raReader.getSequence(rec.getDescription(), range));
-            }
+    public static <S extends Sequence<S>> void assertRA(List<FastaRecord<S>> seqs, RandomAccessFastaReader<S> raReader, boolean allowReverse) {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+
+        for (int i = 0; i < 1000; i++) {
+            FastaRecord<S> rec = seqs.get(r.nextInt(seqs.size()));
+            int from = r.nextInt(rec.getSequence().size() - 1);
+            int to = allowReverse ? r.nextInt(rec.getSequence().size() - 1) : r.nextInt(from, rec.getSequence().size());
+            Range range = new Range(from, to);
+            Assert.assertEquals(rec.getSequence().getRange(range), raReader.getSequence((int) rec.getId(), range));
+            Assert.assertEquals(rec.getSequence().getRange(range), raReader.getSequence(rec.getDescription(), range));
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import cc.redberry.pipe.CUtils;
+import cc.redberry.pipe.util.Chunk;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.PairedRead;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqParallelReaderTest.randomFastq;
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqWriterTest.assertReadsEquals;
+
+public class PairedFastqParallelReaderTest {
+    @Test
+    public void testSample() throws Exception {
+        File sample1 = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r1.fastq").toURI()),
+                sample2 = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r2.fastq").toURI());
+        List<PairedRead> expected = new ArrayList<>();
+        try (PairedFastqReader reader = new PairedFastqReader(sample1, sample2)) {
+            for (PairedRead read : CUtils.it(reader))
+                expected.add(read);
+        }
+
+        try (PairedFastqParallelReader reader = new PairedFastqParallelReader(new FileInputStream(sample1),
+                new FileInputStream(sample2), QualityFormat.Phred33, CompressionType.None, true, 500,
+                false, true, 2)) {
+            int i = 0;
+            for (Chunk<PairedRead> chunk : CUtils.it(reader))
+                for (PairedRead read : chunk) {
+                    assertReadsEquals(expected.get(i).getR1(), read.getR1());
+                    assertReadsEquals(expected.get(i++).getR2(), read.getR2());
+                }
+            Assert.assertEquals(expected.size(), i);
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        RandomGenerator random = new Well19937c(2468);
+        byte[] fastq1 = randomFastq(random, 2000),
+                fastq2 = randomFastq(random, 2000);
+        List<PairedRead> expected = new ArrayList<>();
+        try (PairedFastqReader reader = new PairedFastqReader(new ByteArrayInputStream(fastq1),
+                new ByteArrayInputStream(fastq2))) {
+            for (PairedRead read : CUtils.it(reader))
+                expected.add(read);
+        }
+
+        for (int blockSize : new int[]{100, 3000, 1 << 16})
+            try (PairedFastqParallelReader reader = new PairedFastqParallelReader(new ByteArrayInputStream(fastq1),
+                    new ByteArrayInputStream(fastq2), QualityFormat.Phred33, CompressionType.None, false, blockSize,
+                    false, true, 3)) {
+                int i = 0;
+                for (Chunk<PairedRead> chunk : CUtils.it(reader))
+                    for (PairedRead read : chunk) {
+                        Assert.assertEquals(i, read.getId());
+                        assertReadsEquals(expected.get(i).getR1(), read.getR1());
+                        assertReadsEquals(expected.get(i++).getR2(), read.getR2());
+                    }
+                Assert.assertEquals(2000, i);
+            }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testDifferentNumberOfReads() throws Exception {
+        RandomGenerator random = new Well19937c(1357);
+        byte[] fastq1 = randomFastq(random, 200),
+                fastq2 = randomFastq(random, 199);
+        try (PairedFastqParallelReader reader = new PairedFastqParallelReader(new ByteArrayInputStream(fastq1),
+                new ByteArrayInputStream(fastq2), QualityFormat.Phred33, CompressionType.None, false, 1000,
+                false, true, 2)) {
+            for (Chunk<PairedRead> chunk : CUtils.it(reader)) ;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import cc.redberry.pipe.CUtils;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+import com.milaboratory.core.io.sequence.SingleRead;
+import com.milaboratory.util.TempFileManager;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqParallelReaderTest.randomFastq;
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqParallelReaderTest.readAll;
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqWriterTest.assertReadsEquals;
+
+public class SingleFastqMappedReaderTest {
+    @Test
+    public void testSample() throws Exception {
+        File sample = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r1.fastq").toURI());
+        List<SingleRead> expected = readAll(new SingleFastqReader(sample));
+        try (SingleFastqMappedReader reader = new SingleFastqMappedReader(sample)) {
+            Assert.assertEquals(QualityFormat.Phred33, reader.getQualityFormat());
+            assertSameReads(expected, reader);
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        byte[] fastq = randomFastq(new Well19937c(9753), 2000);
+        File file = TempFileManager.getTempFile(), noTrailingNewLine = TempFileManager.getTempFile();
+        FileUtils.writeByteArrayToFile(file, fastq);
+        // Last line without line delimiter
+        FileUtils.writeByteArrayToFile(noTrailingNewLine, Arrays.copyOf(fastq, fastq.length - 1));
+
+        for (boolean replaceWildcards : new boolean[]{false, true}) {
+            List<SingleRead> expected = readAll(new SingleFastqReader(new ByteArrayInputStream(fastq),
+                    QualityFormat.Phred33, CompressionType.None, false,
+                    SingleFastqReader.DEFAULT_BUFFER_SIZE, replaceWildcards, false));
+            for (File f : new File[]{file, noTrailingNewLine})
+                // Small windows make records cross window boundaries
+                for (int windowSize : new int[]{600, 4096, SingleFastqMappedReader.DEFAULT_WINDOW_SIZE})
+                    try (SingleFastqMappedReader reader = new SingleFastqMappedReader(f, QualityFormat.Phred33,
+                            false, replaceWildcards, windowSize)) {
+                        assertSameReads(expected, reader);
+                    }
+        }
+    }
+
+    @Test
+    public void testReadsAvailableAfterClose() throws Exception {
+        File sample = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r2.fastq").toURI());
+        List<SingleRead> expected = readAll(new SingleFastqReader(sample, false, false)),
+                actual = new ArrayList<>();
+        try (SingleFastqMappedReader reader = new SingleFastqMappedReader(sample)) {
+            for (SingleRead read : CUtils.it(reader))
+                actual.add(read);
+        }
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++)
+            assertReadsEquals(expected.get(i), actual.get(i));
+    }
+
+    @Test(expected = IllegalFileFormatException.class)
+    public void testTruncated() throws Exception {
+        byte[] fastq = randomFastq(new Well19937c(2222), 10);
+        File file = TempFileManager.getTempFile();
+        FileUtils.writeByteArrayToFile(file, Arrays.copyOf(fastq, fastq.length - 100));
+        try (SingleFastqMappedReader reader = new SingleFastqMappedReader(file, QualityFormat.Phred33, false,
+                false, 1000)) {
+            for (SingleRead read : CUtils.it(reader)) ;
+        }
+    }
+
+    static void assertSameReads(List<SingleRead> expected, SingleFastqMappedReader reader) {
+        int i = 0;
+        for (SingleRead read : CUtils.it(reader))
+            assertReadsEquals(expected.get(i++), read);
+        Assert.assertEquals(expected.size(), i);
+        Assert.assertEquals(expected.size(), reader.getNumberOfReads());
+        Assert.assertTrue(reader.isFinished());
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.sequence.fastq;
+
+import cc.redberry.pipe.CUtils;
+import cc.redberry.pipe.util.Chunk;
+import com.milaboratory.core.io.CompressionType;
+import com.milaboratory.core.io.sequence.IllegalFileFormatException;
+import com.milaboratory.core.io.sequence.SingleRead;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.milaboratory.core.io.sequence.fastq.SingleFastqWriterTest.assertReadsEquals;
+
+public class SingleFastqParallelReaderTest {
+    @Test
+    public void testSample() throws Exception {
+        File sample = new File(SingleFastqReaderTest.class.getClassLoader().getResource("sequences/sample_r1.fastq.gz").toURI());
+        List<SingleRead> expected = readAll(new SingleFastqReader(sample));
+        try (SingleFastqParallelReader reader = new SingleFastqParallelReader(sample, 2)) {
+            Assert.assertEquals(QualityFormat.Phred33, reader.getQualityFormat());
+            assertSameReads(expected, reader);
+        }
+    }
+
+    @Test
+    public void testRandom() throws Exception {
+        RandomGenerator random = new Well19937c(12345);
+        byte[] fastq = randomFastq(random, 3000);
+        for (boolean lazy : new boolean[]{false, true}) {
+            List<SingleRead> expected = readAll(new SingleFastqReader(new ByteArrayInputStream(fastq),
+                    QualityFormat.Phred33, CompressionType.None, false, SingleFastqReader.DEFAULT_BUFFER_SIZE,
+                    true, lazy));
+            Assert.assertEquals(3000, expected.size());
+            // Last line without line delimiter
+            byte[] noTrailingNewLine = Arrays.copyOf(fastq, fastq.length - 1);
+            for (byte[] data : new byte[][]{fastq, noTrailingNewLine, gzip(fastq)}) {
+                CompressionType ct = data[0] == '@' ? CompressionType.None : CompressionType.GZIP;
+                // Block size smaller than a single record is also allowed
+                for (int blockSize : new int[]{100, 1000, 1 << 16})
+                    try (SingleFastqParallelReader reader = new SingleFastqParallelReader(
+                            new ByteArrayInputStream(data), QualityFormat.Phred33, ct, false, blockSize,
+                            true, lazy, 3)) {
+                        assertSameReads(expected, reader);
+                    }
+            }
+        }
+    }
+
+    @Test
+    public void testTruncated() throws Exception {
+        byte[] fastq = randomFastq(new Well19937c(54321), 100);
+        try (SingleFastqParallelReader reader = new SingleFastqParallelReader(
+                new ByteArrayInputStream(fastq, 0, fastq.length - 150), QualityFormat.Phred33, CompressionType.None,
+                false, 1000, false, true, 2)) {
+            for (Chunk<SingleRead> chunk : CUtils.it(reader)) ;
+            Assert.fail();
+        } catch (RuntimeException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalFileFormatException);
+        }
+    }
+
+    public static List<SingleRead> readAll(SingleFastqReader reader) {
+        List<SingleRead> reads = new ArrayList<>();
+        try (SingleFastqReader r = reader) {
+            for (SingleRead read : CUtils.it(r))
+                reads.add(read);
+        }
+        return reads;
+    }
+
+    static void assertSameReads(List<SingleRead> expected, SingleFastqParallelReader reader) {
+        int i = 0;
+        for (Chunk<SingleRead> chunk : CUtils.it(reader))
+            for (SingleRead read : chunk)
+                assertReadsEquals(expected.get(i++), read);
+        Assert.assertEquals(expected.size(), i);
+        Assert.assertTrue(reader.isFinished());
+    }
+
+    public static byte[] randomFastq(RandomGenerator random, int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            int length = 20 + random.nextInt(200);
+            sb.append("@read").append(i).append(" description\n");
+            for (int j = 0; j < length; j++)
+                sb.append("ACGTN".charAt(random.nextInt(5)));
+            sb.append("\n+\n");
+            for (int j = 0; j < length; j++)
+                sb.append((char) ('!' + 2 + random.nextInt(39)));
+            sb.append('\n');
+        }
+        return sb.toString().getBytes();
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(bos)) {
+            os.write(data);
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.io.util;
+
+import com.milaboratory.core.io.CompressionType;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937a;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class ParallelGZIPInputStreamTest {
+    @Test
+    public void testRoundTrip() throws Exception {
+        RandomGenerator rg = new Well19937a(123);
+        for (int size : new int[]{0, 1, 1000, ParallelGZIPOutputStream.BLOCK_DATA_SIZE, 1_000_000}) {
+            byte[] data = randomData(rg, size);
+            byte[] compressed = bgzf(data, 3);
+
+            // Readable by ordinary gzip decompressor
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+            try (InputStream is = CompressionType.BGZF.createInputStream(new ByteArrayInputStream(compressed))) {
+                Assert.assertTrue(is instanceof ParallelGZIPInputStream);
+                Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+            }
+
+            // Byte-by-byte reading
+            try (InputStream is = new ParallelGZIPInputStream(new ByteArrayInputStream(compressed), 2)) {
+                for (byte b : data)
+                    Assert.assertEquals(b & 0xFF, is.read());
+                Assert.assertEquals(-1, is.read());
+            }
+        }
+    }
+
+    @Test
+    public void testOrdinaryGzip() throws Exception {
+        byte[] data = randomData(new Well19937a(321), 100_000);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (OutputStream os = new GZIPOutputStream(bos)) {
+            os.write(data);
+        }
+        try (InputStream is = CompressionType.BGZF.createInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            Assert.assertFalse(is instanceof ParallelGZIPInputStream);
+            Assert.assertArrayEquals(data, IOUtils.toByteArray(is));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorrupted() throws Exception {
+        byte[] compressed = bgzf(randomData(new Well19937a(111), 200_000), 2);
+        compressed[compressed.length / 2] ^= 0x55;
+        try (InputStream is = new ParallelGZIPInputStream(new ByteArrayInputStream(compressed), 2)) {
+            IOUtils.toByteArray(is);
+        }
+    }
+
+    static byte[] bgzf(byte[] data, int threads) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (OutputStream os = new ParallelGZIPOutputStream(bos, threads)) {
+            // Writing in pieces of different sizes
+            for (int i = 0; i < data.length; ) {
+                int l = Math.min(data.length - i, 1 + (i * 31 % 100_000));
+                os.write(data, i, l);
+                i += l;
+            }
+        }
+        return bos.toByteArray();
+    }
+
+    static byte[] randomData(RandomGenerator rg, int size) {
+        // Compressible data
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++)
+            data[i] = (byte) "ACGT\n".charAt(rg.nextInt(5));
+        return data;
+    }
+}
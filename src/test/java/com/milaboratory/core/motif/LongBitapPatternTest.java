@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.motif;
+
+import com.milaboratory.core.mutations.generator.UniformMutationsGenerator;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.core.sequence.SequenceBuilder;
+import com.milaboratory.test.TestUtil;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.milaboratory.test.TestUtil.its;
+
+public class LongBitapPatternTest {
+    @Test
+    public void testSameAsBitapPattern() throws Exception {
+        RandomGenerator random = new Well19937c(123);
+        for (int i = 0; i < its(300, 3000); ++i) {
+            Motif<NucleotideSequence> motif = TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 1, 63,
+                    random.nextBoolean()).toMotif();
+            NucleotideSequence seq = TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 50, 200);
+            int from = random.nextInt(10), to = seq.size() - random.nextInt(10);
+            BitapPattern bp = motif.getBitapPattern();
+            LongBitapPattern lbp = motif.getLongBitapPattern();
+
+            Assert.assertEquals(matches(bp.exactMatcher(seq, from, to)), matches(lbp.exactMatcher(seq, from, to)));
+            for (int errors = 0; errors < 5; ++errors) {
+                Assert.assertEquals(matches(bp.substitutionOnlyMatcherFirst(errors, seq, from, to)),
+                        matches(lbp.substitutionOnlyMatcherFirst(errors, seq, from, to)));
+                Assert.assertEquals(matches(bp.substitutionAndIndelMatcherLast(errors, seq, from, to)),
+                        matches(lbp.substitutionAndIndelMatcherLast(errors, seq, from, to)));
+                Assert.assertEquals(matches(bp.substitutionAndIndelMatcherFirst(errors, seq, from, to)),
+                        matches(lbp.substitutionAndIndelMatcherFirst(errors, seq, from, to)));
+            }
+        }
+    }
+
+    @Test
+    public void testLongMotifs() throws Exception {
+        RandomGenerator random = new Well19937c(1234);
+        for (int i = 0; i < its(100, 1000); ++i) {
+            NucleotideSequence motifSeq = TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 64, 300);
+            Motif<NucleotideSequence> motif = motifSeq.toMotif();
+            LongBitapPattern pattern = motif.getLongBitapPattern();
+
+            // Planting mutated motif into random sequence
+            NucleotideSequence planted = motifSeq;
+            for (int m = random.nextInt(3); m > 0; --m)
+                planted = UniformMutationsGenerator.createUniformMutationAsObject(planted, random).mutate(planted);
+            SequenceBuilder<NucleotideSequence> builder = NucleotideSequence.ALPHABET.createBuilder();
+            builder.append(TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 0, 100));
+            builder.append(planted);
+            builder.append(TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 0, 100));
+            NucleotideSequence seq = builder.createAndDestroy();
+
+            // Exact and substitutions
+            for (int errors = 0; errors < 4; ++errors) {
+                List<String> expected = new ArrayList<>();
+                for (int s = 0; s + motif.size() <= seq.size(); ++s) {
+                    int mm = 0;
+                    for (int j = 0; j < motif.size(); ++j)
+                        if (!motif.allows(seq.codeAt(s + j), j))
+                            ++mm;
+                    if (mm <= errors)
+                        expected.add(s + ":" + mm);
+                }
+                Assert.assertEquals(expected,
+                        matches(pattern.substitutionOnlyMatcherFirst(errors, seq)));
+                if (errors == 0)
+                    Assert.assertEquals(expected, matches(pattern.exactMatcher(seq, 0, seq.size())));
+            }
+
+            // Indels
+            for (int errors : new int[]{0, 1, 3, 70}) {
+                Assert.assertEquals(editDistanceMatches(motif, seq, errors, false),
+                        matches(pattern.substitutionAndIndelMatcherLast(errors, seq)));
+                Assert.assertEquals(editDistanceMatches(motif, seq, errors, true),
+                        matches(pattern.substitutionAndIndelMatcherFirst(errors, seq)));
+            }
+        }
+    }
+
+    /**
+     * Semi-global edit distance of the motif to the sequence ending (or starting for reverse) at each position
+     */
+    static List<String> editDistanceMatches(Motif<NucleotideSequence> motif, NucleotideSequence seq, int maxErrors,
+                                            boolean reverse) {
+        int size = motif.size();
+        int[] prev = new int[size + 1], cur = new int[size + 1];
+        for (int j = 0; j <= size; ++j)
+            prev[j] = j;
+        List<String> result = new ArrayList<>();
+        for (int k = 0; k < seq.size(); ++k) {
+            int i = reverse ? seq.size() - 1 - k : k;
+            byte code = seq.codeAt(i);
+            cur[0] = 0;
+            for (int j = 1; j <= size; ++j) {
+                int position = reverse ? size - j : j - 1;
+                cur[j] = Math.min(prev[j - 1] + (motif.allows(code, position) ? 0 : 1),
+                        Math.min(prev[j] + 1, cur[j - 1] + 1));
+            }
+            if (cur[size] <= maxErrors)
+                result.add(i + ":" + cur[size]);
+            int[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        return result;
+    }
+
+    static List<String> matches(BitapMatcher matcher) {
+        List<String> result = new ArrayList<>();
+        int pos;
+        while ((pos = matcher.findNext()) >= 0)
+            result.add(pos + ":" + matcher.getNumberOfErrors());
+        return result;
+    }
+}
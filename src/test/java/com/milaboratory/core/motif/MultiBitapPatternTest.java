@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.motif;
+
+import com.milaboratory.core.sequence.NucleotideSequence;
+import com.milaboratory.test.TestUtil;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.milaboratory.test.TestUtil.its;
+
+public class MultiBitapPatternTest {
+    @Test
+    public void test1() throws Exception {
+        List<Motif<NucleotideSequence>> motifs = Arrays.asList(
+                new NucleotideSequence("ATTAGACA").toMotif(),
+                new NucleotideSequence("GTACG").toMotif(),
+                new NucleotideSequence("ATTRGACA").toMotif());
+        MultiBitapPattern pattern = new MultiBitapPattern(motifs);
+        Assert.assertEquals(1, pattern.getNumberOfWords());
+
+        NucleotideSequence seq = new NucleotideSequence("ACTGCGATAAATTAGACAGTACGTA");
+        MultiBitapMatcher matcher = pattern.exactMatcher(seq, 0, seq.size());
+        Assert.assertEquals(10, matcher.findNext());
+        Assert.assertEquals(0, matcher.getPatternIndex());
+        Assert.assertEquals(10, matcher.findNext());
+        Assert.assertEquals(2, matcher.getPatternIndex());
+        Assert.assertEquals(18, matcher.findNext());
+        Assert.assertEquals(1, matcher.getPatternIndex());
+        Assert.assertEquals(0, matcher.getNumberOfErrors());
+        Assert.assertEquals(-1, matcher.findNext());
+    }
+
+    @Test
+    public void testSameAsSinglePattern() throws Exception {
+        RandomGenerator random = new Well19937c(123);
+        for (int i = 0; i < its(100, 1000); ++i) {
+            List<Motif<NucleotideSequence>> motifs = new ArrayList<>();
+            for (int j = random.nextInt(30); j >= 0; --j)
+                motifs.add(TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 1, 30,
+                        random.nextBoolean()).toMotif());
+            MultiBitapPattern pattern = new MultiBitapPattern(motifs);
+            NucleotideSequence seq = TestUtil.randomSequence(NucleotideSequence.ALPHABET, random, 50, 300);
+            int from = random.nextInt(10), to = seq.size() - random.nextInt(10);
+
+            for (int errors = 0; errors < 4; ++errors) {
+                for (int mode = 0; mode < 3; ++mode) {
+                    List<List<String>> expected = new ArrayList<>(), actual = new ArrayList<>();
+                    for (Motif<NucleotideSequence> motif : motifs) {
+                        List<String> matches = new ArrayList<>();
+                        BitapPattern bp = motif.getBitapPattern();
+                        BitapMatcher matcher = mode == 0
+                                ? bp.substitutionOnlyMatcherFirst(errors, seq, from, to)
+                                : mode == 1
+                                ? bp.substitutionAndIndelMatcherLast(errors, seq, from, to)
+                                : bp.substitutionAndIndelMatcherFirst(errors, seq, from, to);
+                        int pos;
+                        while ((pos = matcher.findNext()) >= 0)
+                            matches.add(pos + ":" + matcher.getNumberOfErrors());
+                        expected.add(matches);
+                        actual.add(new ArrayList<String>());
+                    }
+
+                    MultiBitapMatcher matcher = mode == 0
+                            ? pattern.substitutionOnlyMatcherFirst(errors, seq, from, to)
+                            : mode == 1
+                            ? pattern.substitutionAndIndelMatcherLast(errors, seq, from, to)
+                            : pattern.substitutionAndIndelMatcherFirst(errors, seq, from, to);
+                    int pos;
+                    while ((pos = matcher.findNext()) >= 0)
+                        actual.get(matcher.getPatternIndex()).add(pos + ":" + matcher.getNumberOfErrors());
+
+                    Assert.assertEquals(expected, actual);
+                }
+            }
+        }
+    }
+}
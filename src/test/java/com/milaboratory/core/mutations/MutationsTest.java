@@ -395,6 +395,40 @@ public class MutationsTest {
         }
     }
 
+    @Test
+    public void testIntoBuilder() throws Exception {
+        NucleotideMutationModel model = MutationModels.getEmpiricalNucleotideMutationModel().multiplyProbabilities(30);
+        MutationsBuilder<NucleotideSequence> builder = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+        for (int i = 0; i < 100; i++) {
+            NucleotideSequence seq0 = TestUtil.randomSequence(NucleotideSequence.ALPHABET, 100, 300);
+            Mutations<NucleotideSequence> mutsA = MutationsGenerator.generateMutations(seq0, model);
+            Mutations<NucleotideSequence> mutsB = MutationsGenerator.generateMutations(mutsA.mutate(seq0), model);
+
+            builder.clear();
+            assertEquals(mutsA.combineWith(mutsB), mutsA.combineWith(mutsB, builder).create());
+
+            int from = getThreadLocalRandom().nextInt(seq0.size() + 1) - 1;
+            int to = from + getThreadLocalRandom().nextInt(seq0.size() - from);
+            Mutations<NucleotideSequence> prefix = mutsA.extractRelativeMutationsForRange(-1, 0);
+            builder.clear().append(prefix);
+            assertEquals(prefix.concat(mutsA.extractRelativeMutationsForRange(from, to)),
+                    mutsA.extractRelativeMutationsForRange(from, to, builder).create());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCombineIntoReversedBuilder() throws Exception {
+        Mutations<NucleotideSequence> mutsA = Mutations.decode("SA2T", NucleotideSequence.ALPHABET),
+                mutsB = Mutations.decode("SC5G", NucleotideSequence.ALPHABET);
+        mutsA.combineWith(mutsB, new MutationsBuilder<>(NucleotideSequence.ALPHABET, true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testExtractIntoReversedBuilder() throws Exception {
+        Mutations<NucleotideSequence> muts = Mutations.decode("SA2T", NucleotideSequence.ALPHABET);
+        muts.extractRelativeMutationsForRange(0, 5, new MutationsBuilder<>(NucleotideSequence.ALPHABET, true));
+    }
+
     @Test
     public void testCanonical1() throws Exception {
         NucleotideSequence seq0 = TestUtil.randomSequence(NucleotideSequence.ALPHABET, 400, 800);
@@ -401,4 +401,22 @@ public class MutationsUtilTest {
                 Mutations.decode("DT12DT13", NucleotideSequence.ALPHABET),
                 shiftIndelsAtHomopolymers(seq1, 12, mutations));
     }
+
+    @Test
+    public void testShiftIndelsInBuilder() throws Exception {
+        NucleotideSequence seq1 = new NucleotideSequence("aaaaaaaaaatttttttttt");
+        Mutations<NucleotideSequence> mutations = Mutations.decode("SA2TDT13DT16", NucleotideSequence.ALPHABET);
+        MutationsBuilder<NucleotideSequence> builder = new MutationsBuilder<>(NucleotideSequence.ALPHABET);
+        builder.append(mutations);
+        shiftIndelsAtHomopolymers(seq1, 0, builder);
+        Assert.assertEquals(Mutations.decode("SA2TDT10DT11", NucleotideSequence.ALPHABET), builder.createAndDestroy());
+
+        // Nothing to shift, the same object
+        Mutations<NucleotideSequence> shifted = Mutations.decode("SA2TDT10DT11", NucleotideSequence.ALPHABET);
+        Assert.assertSame(shifted, shiftIndelsAtHomopolymers(seq1, shifted));
+        // Source object is not modified
+        Assert.assertEquals(Mutations.decode("SA2TDT10DT11", NucleotideSequence.ALPHABET),
+                shiftIndelsAtHomopolymers(seq1, mutations));
+        Assert.assertEquals(Mutations.decode("SA2TDT13DT16", NucleotideSequence.ALPHABET), mutations);
+    }
 }
\ No newline at end of file
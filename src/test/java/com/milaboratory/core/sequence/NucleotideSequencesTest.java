@@ -15,6 +15,7 @@
  */
 package com.milaboratory.core.sequence;
 
+import com.milaboratory.core.Range;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -40,6 +41,13 @@ public class NucleotideSequencesTest {
         assertEquals(NucleotideSequence.EMPTY, NucleotideSequence.EMPTY.getReverseComplement());
     }
 
+    @Test
+    public void testReverseOneLetterRange() {
+        NucleotideSequence sequence = new NucleotideSequence("ATTAGACA");
+        assertEquals(new NucleotideSequence("C"), sequence.getRange(new Range(5, 4)));
+        assertEquals(new NucleotideSequence("T"), sequence.getRange(new Range(8, 7)));
+    }
+
     @Test
     public void testConcatenate1() throws Exception {
         NucleotideSequence s1 = new NucleotideSequence("ATTAGACA"),
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.sequence;
+
+import com.milaboratory.core.Range;
+import com.milaboratory.test.TestUtil;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PackedNucleotideSequenceTest {
+    @Test
+    public void test1() {
+        PackedNucleotideSequence sequence = new PackedNucleotideSequence("ATTAGACATAGACA");
+        assertEquals("ATTAGACATAGACA", sequence.toString());
+        assertFalse(sequence.containsWildcards());
+        assertEquals(new PackedNucleotideSequence("TGTCTATGTCTAAT"), sequence.getReverseComplement());
+        assertEquals(new PackedNucleotideSequence("AGACATAGACA"), sequence.getRange(3, sequence.size()));
+        assertEquals(new PackedNucleotideSequence("AGACATAGACA").hashCode(),
+                sequence.getRange(3, sequence.size()).hashCode());
+        assertEquals(new PackedNucleotideSequence("ATTAGACANNGACA"),
+                new PackedNucleotideSequence("ATTAGACA").concatenate(new PackedNucleotideSequence("NNGACA")));
+        assertNotEquals(new PackedNucleotideSequence("ATTAGACA"), new PackedNucleotideSequence("ATTANACA"));
+        assertEquals(PackedNucleotideSequence.EMPTY, PackedNucleotideSequence.EMPTY.getReverseComplement());
+        assertEquals(PackedNucleotideSequence.EMPTY, new PackedNucleotideSequence(""));
+    }
+
+    @Test
+    public void testRandom() {
+        RandomGenerator rg = new Well19937c(1234);
+        for (int n = 0; n < 1000; ++n) {
+            NucleotideSequence seq = randomSequence(rg, n % 2 == 0);
+            PackedNucleotideSequence packed = new PackedNucleotideSequence(seq);
+
+            assertEquals(seq.size(), packed.size());
+            assertEquals(seq.containsWildcards(), packed.containsWildcards());
+            assertEquals(seq, packed.toNucleotideSequence());
+            for (int i = 0; i < seq.size(); ++i)
+                assertEquals(seq.codeAt(i), packed.codeAt(i));
+
+            assertPacked(seq.getReverseComplement(), packed.getReverseComplement());
+            assertPacked(seq, packed.getReverseComplement().getReverseComplement());
+
+            int from = rg.nextInt(seq.size() + 1), to = from + rg.nextInt(seq.size() - from + 1);
+            assertPacked(seq.getRange(from, to), packed.getRange(from, to));
+            Range range = new Range(to, from);
+            assertPacked(seq.getRange(range), packed.getRange(range));
+
+            NucleotideSequence other = randomSequence(rg, n % 3 == 0);
+            assertPacked(seq.concatenate(other), packed.concatenate(new PackedNucleotideSequence(other)));
+        }
+    }
+
+    @Test
+    public void testBuilder() {
+        RandomGenerator rg = new Well19937c(4321);
+        SequenceBuilder<NucleotideSequence> expected = NucleotideSequence.ALPHABET.createBuilder();
+        SeqBuilder<PackedNucleotideSequence> builder = PackedNucleotideSequence.EMPTY.getBuilder();
+        for (int i = 0; i < 100; ++i) {
+            NucleotideSequence seq = randomSequence(rg, i % 5 == 0);
+            expected.append(seq);
+            builder.append(new PackedNucleotideSequence(seq));
+        }
+        SeqBuilder<PackedNucleotideSequence> copy = builder.clone();
+        NucleotideSequence exp = expected.createAndDestroy();
+        assertPacked(exp, builder.createAndDestroy());
+        assertPacked(exp, copy.createAndDestroy());
+    }
+
+    static void assertPacked(NucleotideSequence expected, PackedNucleotideSequence actual) {
+        PackedNucleotideSequence packed = new PackedNucleotideSequence(expected);
+        assertEquals(expected, actual.toNucleotideSequence());
+        assertEquals(packed, actual);
+        assertEquals(packed.hashCode(), actual.hashCode());
+    }
+
+    static NucleotideSequence randomSequence(RandomGenerator rg, boolean wildcards) {
+        NucleotideSequence seq = TestUtil.randomSequence(NucleotideSequence.ALPHABET, rg, 0, 50);
+        if (!wildcards || seq.size() == 0)
+            return seq;
+        byte[] codes = seq.asArray();
+        for (int i = rg.nextInt(4); i >= 0; --i)
+            codes[rg.nextInt(codes.length)] = (byte) (4 + rg.nextInt(NucleotideSequence.ALPHABET.size() - 4));
+        return new NucleotideSequence(codes);
+    }
+}
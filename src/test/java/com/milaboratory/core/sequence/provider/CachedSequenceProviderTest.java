@@ -27,6 +27,9 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class CachedSequenceProviderTest {
     @Test
@@ -139,6 +142,104 @@ public class CachedSequenceProviderTest {
         }
     }
 
+    @Test
+    public void testBounded() throws Exception {
+        Well44497b w = new Well44497b();
+        SequenceRegionCache regionCache = new SequenceRegionCache(500);
+        List<NucleotideSequence> sequences = new ArrayList<>();
+        List<CachedSequenceProvider<NucleotideSequence>> providers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            NucleotideSequence sequence = TestUtil.randomSequence(NucleotideSequence.ALPHABET, 1000, 2000);
+            sequences.add(sequence);
+            providers.add(new CachedSequenceProvider<>(NucleotideSequence.ALPHABET,
+                    SequenceProviderUtils.fromSequence(sequence), regionCache));
+        }
+
+        for (int j = 0; j < 10000; j++) {
+            int i = w.nextInt(sequences.size());
+            // Frequent requests to the beginning of the first sequence
+            if (i == 0)
+                i = w.nextInt(sequences.size());
+            NucleotideSequence sequence = sequences.get(i);
+            int from = i == 0 ? w.nextInt(100) : w.nextInt(sequence.size() - 1);
+            int to = Math.min(sequence.size(), from + 1 + w.nextInt(100));
+            Range r = new Range(from, to);
+            Assert.assertEquals(sequence.getRange(r), providers.get(i).getRegion(r));
+
+            Assert.assertTrue(regionCache.getWeight() <= 500);
+            long weight = 0;
+            for (CachedSequenceProvider<NucleotideSequence> provider : providers)
+                for (Map.Entry<Range, NucleotideSequence> e : provider.entrySet())
+                    weight += e.getKey().length();
+            Assert.assertEquals(regionCache.getWeight(), weight);
+        }
+
+        Assert.assertTrue(regionCache.getEvictionCount() > 0);
+        Assert.assertTrue(regionCache.getHitCount() > 0);
+        Assert.assertEquals(10000, regionCache.getHitCount() + regionCache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedConcurrent() throws Exception {
+        final NucleotideSequence sequence = TestUtil.randomSequence(NucleotideSequence.ALPHABET, 10000, 20000);
+        final AtomicInteger loads = new AtomicInteger();
+        final SequenceRegionCache regionCache = new SequenceRegionCache(5000);
+        final CachedSequenceProvider<NucleotideSequence> cache = new CachedSequenceProvider<>(NucleotideSequence.ALPHABET,
+                new SequenceProvider<NucleotideSequence>() {
+                    @Override
+                    public void forceInitialize() {
+                    }
+
+                    @Override
+                    public int size() {
+                        return sequence.size();
+                    }
+
+                    @Override
+                    public NucleotideSequence getRegion(Range range) {
+                        loads.incrementAndGet();
+                        return sequence.getRange(range);
+                    }
+                }, regionCache);
+
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Well44497b w = new Well44497b(seed);
+                        for (int j = 0; j < 5000; j++) {
+                            int from = w.nextInt(sequence.size() - 1);
+                            Range r = new Range(from, Math.min(sequence.size(), from + 1 + w.nextInt(200)));
+                            Assert.assertEquals(sequence.getRange(r), cache.getRegion(r));
+                        }
+                    } catch (Throwable e) {
+                        error.set(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+
+        // Iterating over snapshots of cached regions concurrently with eviction and merging
+        boolean running = true;
+        while (running && error.get() == null) {
+            running = false;
+            for (Thread thread : threads)
+                running |= thread.isAlive();
+            for (Map.Entry<Range, NucleotideSequence> e : cache.entrySet())
+                Assert.assertEquals(sequence.getRange(e.getKey()), e.getValue());
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        Assert.assertNull(error.get());
+        Assert.assertTrue(regionCache.getWeight() <= 5000);
+        Assert.assertTrue(loads.get() <= regionCache.getMissCount());
+    }
 
     public static void assertList(List<Range> ranges, int... boundaries) {
         Assert.assertEquals(boundaries.length / 2, ranges.size());
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2016 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.sequence.provider;
+
+import com.milaboratory.core.Range;
+import com.milaboratory.core.sequence.NucleotideSequence;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class SequenceRegionCacheTest {
+    @Test
+    public void testSegmentedLRU() throws Exception {
+        CachedSequenceProvider<NucleotideSequence> owner = new CachedSequenceProvider<>(NucleotideSequence.ALPHABET, 100);
+        SequenceRegionCache cache = new SequenceRegionCache(30, 0.5);
+        Range a = new Range(0, 10), b = new Range(10, 20), c = new Range(20, 30), d = new Range(30, 40);
+        List<Range> none = Collections.emptyList();
+
+        Assert.assertTrue(cache.replace(owner, none, a, 10).isEmpty());
+        Assert.assertTrue(cache.replace(owner, none, b, 10).isEmpty());
+        Assert.assertTrue(cache.replace(owner, none, c, 10).isEmpty());
+        Assert.assertEquals(30, cache.getWeight());
+
+        // a is promoted to protected segment, so the least recently used probationary entry (b) is evicted
+        cache.hit(owner, a);
+        assertEvicted(cache.replace(owner, none, d, 10), b);
+
+        // protected segment can hold only one entry, so a is demoted to the most recently used end of probationary
+        // segment when c is promoted
+        cache.hit(owner, c);
+        assertEvicted(cache.replace(owner, none, b, 10), d);
+
+        // merged entries are replaced
+        Assert.assertTrue(cache.replace(owner, Collections.singletonList(b), new Range(10, 12), 2).isEmpty());
+        Assert.assertEquals(22, cache.getWeight());
+        Assert.assertEquals(3, cache.getSize());
+
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(2, cache.getEvictionCount());
+    }
+
+    private static void assertEvicted(List<SequenceRegionCache.Key> evicted, Range range) {
+        Assert.assertEquals(1, evicted.size());
+        Assert.assertEquals(range, evicted.get(0).range);
+    }
+}
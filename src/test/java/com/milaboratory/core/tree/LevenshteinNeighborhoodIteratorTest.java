@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.core.tree;
+
+import com.milaboratory.core.sequence.*;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937a;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.milaboratory.test.TestUtil.randomSequence;
+
+public class LevenshteinNeighborhoodIteratorTest {
+    @Test
+    public void testBruteForce() throws Exception {
+        RandomGenerator gen = new Well19937a(1234);
+        for (int t = 0; t < 100; ++t) {
+            // Different number of words per column
+            int maxLength = t % 3 == 0 ? 150 : 20;
+            assertBruteForce(NucleotideSequence.ALPHABET, maxLength, gen);
+            assertBruteForce(AminoAcidSequence.ALPHABET, maxLength, gen);
+        }
+    }
+
+    static <S extends Sequence<S>> void assertBruteForce(Alphabet<S> alphabet, int maxLength, RandomGenerator gen) {
+        S reference = randomSequence(alphabet, gen, 0, maxLength);
+        SequenceTreeMap<S, Integer> map = new SequenceTreeMap<>(alphabet, gen.nextBoolean());
+        fill(map, reference, gen);
+
+        for (int maxDistance = 0; maxDistance <= 3; ++maxDistance) {
+            Map<Integer, Integer> expected = new HashMap<>();
+            for (Map.Entry<S, Integer> e : map.toMap().entrySet()) {
+                int distance = distance(reference, e.getKey());
+                if (distance <= maxDistance)
+                    expected.put(e.getValue(), distance);
+            }
+            // Empty key is not listed by toMap()
+            if (map.root.getObject() != null && reference.size() <= maxDistance)
+                expected.put(map.root.getObject(), reference.size());
+
+            Map<Integer, Integer> actual = new HashMap<>();
+            LevenshteinNeighborhoodIterator<S, Integer> iterator = map.getLevenshteinIterator(reference, maxDistance);
+            Integer value;
+            int previousDistance = 0;
+            while ((value = iterator.next()) != null) {
+                Assert.assertNull(actual.put(value, iterator.getDistance()));
+                Assert.assertTrue(previousDistance <= iterator.getDistance());
+                Assert.assertEquals(iterator.getDistance(), iterator.getPenalty(), 1E-10);
+                previousDistance = iterator.getDistance();
+            }
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testSameAsNeighborhoodIterator() throws Exception {
+        RandomGenerator gen = new Well19937a(4321);
+        TreeSearchParameters[] parameters = {
+                new TreeSearchParameters(1, 1, 1, 1),
+                new TreeSearchParameters(2, 2, 2, 2),
+                new TreeSearchParameters(3, 3, 3, 3),
+                new TreeSearchParameters(3, 3, 3, 3, false),
+                new TreeSearchParameters(2, 2, 2, 0.5, 0.5, 0.5, 1.2)};
+        for (int t = 0; t < 50; ++t) {
+            NucleotideSequence reference = randomSequence(NucleotideSequence.ALPHABET, gen, 1, 30);
+            SequenceTreeMap<NucleotideSequence, Integer> map =
+                    new SequenceTreeMap<>(NucleotideSequence.ALPHABET, gen.nextBoolean());
+            fill(map, reference, gen);
+
+            for (TreeSearchParameters params : parameters) {
+                Map<Integer, Double> expected = new HashMap<>();
+                NeighborhoodIterator<NucleotideSequence, Integer> ni = map.getNeighborhoodIterator(reference, params);
+                Integer value;
+                while ((value = ni.next()) != null)
+                    if (!expected.containsKey(value))
+                        expected.put(value, ni.getPenalty());
+
+                Map<Integer, Double> actual = new HashMap<>();
+                LevenshteinNeighborhoodIterator<NucleotideSequence, Integer> li =
+                        map.getLevenshteinIterator(reference, params);
+                while ((value = li.next()) != null)
+                    actual.put(value, li.getPenalty());
+
+                Assert.assertEquals(expected, actual);
+            }
+        }
+    }
+
+    @Test
+    public void testSupported() throws Exception {
+        Assert.assertTrue(LevenshteinNeighborhoodIterator.isSupported(new TreeSearchParameters(2, 2, 2, 2)));
+        Assert.assertFalse(LevenshteinNeighborhoodIterator.isSupported(new TreeSearchParameters(2, 2, 2)));
+        Assert.assertFalse(LevenshteinNeighborhoodIterator.isSupported(new TreeSearchParameters(2, 1, 2, 2)));
+        Assert.assertTrue(LevenshteinNeighborhoodIterator.isSupported(new TreeSearchParameters(2, 1, 2, 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupported() throws Exception {
+        new SequenceTreeMap<NucleotideSequence, Integer>(NucleotideSequence.ALPHABET)
+                .getLevenshteinIterator(new NucleotideSequence("ATTAGACA"), TreeSearchParameters.ONE_MISMATCH);
+    }
+
+    /**
+     * Puts random sequences and mutated versions of reference to the map
+     */
+    @SuppressWarnings("unchecked")
+    static void fill(SequenceTreeMap map, Sequence reference, RandomGenerator gen) {
+        int count = 0;
+        for (int i = 0; i < 100; ++i)
+            map.put(randomSequence(reference.getAlphabet(), gen, 0, reference.size() + 3), count++);
+        for (int i = 0; i < 300; ++i)
+            map.put(mutate(reference, 1 + gen.nextInt(5), gen), count++);
+    }
+
+    @SuppressWarnings("unchecked")
+    static Sequence mutate(Sequence sequence, int mutations, RandomGenerator gen) {
+        for (int i = 0; i < mutations; ++i) {
+            SequenceBuilder builder = sequence.getAlphabet().createBuilder();
+            int position = gen.nextInt(sequence.size() + 1), type = gen.nextInt(3);
+            byte code = (byte) gen.nextInt(Math.min(4, sequence.getAlphabet().size()));
+            builder.append(sequence.getRange(0, position));
+            if (type == 0 && position < sequence.size()) {
+                builder.append(code);
+                builder.append(sequence.getRange(position + 1, sequence.size()));
+            } else if (type == 1 && position < sequence.size())
+                builder.append(sequence.getRange(position + 1, sequence.size()));
+            else {
+                builder.append(code);
+                builder.append(sequence.getRange(position, sequence.size()));
+            }
+            sequence = builder.createAndDestroy();
+        }
+        return sequence;
+    }
+
+    static int distance(Sequence s1, Sequence s2) {
+        int[] previous = new int[s2.size() + 1], current = new int[s2.size() + 1], tmp;
+        for (int j = 0; j <= s2.size(); ++j)
+            previous[j] = j;
+        for (int i = 1; i <= s1.size(); ++i) {
+            current[0] = i;
+            for (int j = 1; j <= s2.size(); ++j)
+                current[j] = Math.min(previous[j - 1] + (s1.codeAt(i - 1) == s2.codeAt(j - 1) ? 0 : 1),
+                        Math.min(previous[j], current[j - 1]) + 1);
+            tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+        return previous[s2.size()];
+    }
+}
@@ -680,6 +680,76 @@ public class SequenceTreeMapTest {
         }
     }
 
+    @Test
+    public void testCompactRandomized() throws Exception {
+        RandomGenerator gen = new Well19937a(1234);
+        for (int k = 0; k < 20; ++k) {
+            SequenceTreeMap<NucleotideSequence, Integer> map = new SequenceTreeMap<>(NucleotideSequence.ALPHABET),
+                    compact = new SequenceTreeMap<>(NucleotideSequence.ALPHABET, true);
+
+            // Sequences with common prefixes
+            List<NucleotideSequence> sequences = new ArrayList<>();
+            NucleotideSequence prefix = randomSequence(NucleotideSequence.ALPHABET, gen, 0, 10);
+            for (int i = 0; i < 300; ++i) {
+                NucleotideSequence seq = gen.nextInt(3) == 0 ?
+                        prefix.concatenate(randomSequence(NucleotideSequence.ALPHABET, gen, 0, 10)) :
+                        randomSequence(NucleotideSequence.ALPHABET, gen, 0, 15);
+                if (gen.nextInt(5) == 0 && !sequences.isEmpty()) {
+                    NucleotideSequence other = sequences.get(gen.nextInt(sequences.size()));
+                    seq = other.getRange(0, gen.nextInt(other.size() + 1));
+                }
+                sequences.add(seq);
+                assertEquals(map.put(seq, i), compact.put(seq, i));
+            }
+
+            assertCompactEquals(map, compact, sequences, gen);
+
+            for (int i = 0; i < sequences.size(); i += 2)
+                assertEquals(map.remove(sequences.get(i)), compact.remove(sequences.get(i)));
+
+            assertCompactEquals(map, compact, sequences, gen);
+
+            for (NucleotideSequence seq : sequences)
+                assertEquals(map.remove(seq), compact.remove(seq));
+            assertFalse(compact.values().iterator().hasNext());
+        }
+    }
+
+    static void assertCompactEquals(SequenceTreeMap<NucleotideSequence, Integer> map,
+                                    SequenceTreeMap<NucleotideSequence, Integer> compact,
+                                    List<NucleotideSequence> sequences, RandomGenerator gen) {
+        assertEquals(map.toMap(), compact.toMap());
+        for (NucleotideSequence seq : sequences) {
+            assertEquals(map.get(seq), compact.get(seq));
+            assertEquals(compact.getNode(seq), compact.getNode(seq));
+            NucleotideSequence mutated = seq.size() == 0 ? seq : seq.getRange(0, seq.size() - 1);
+            assertEquals(map.get(mutated), compact.get(mutated));
+        }
+
+        // Same traversal order
+        List<NucleotideSequence> keys = new ArrayList<>(), compactKeys = new ArrayList<>();
+        for (SequenceTreeMap<NucleotideSequence, Integer>.NodeIterator it = map.nodeIterator(); it.hasNext(); it.next())
+            keys.add(it.getSequence());
+        for (SequenceTreeMap<NucleotideSequence, Integer>.NodeIterator it = compact.nodeIterator(); it.hasNext(); it.next())
+            compactKeys.add(it.getSequence());
+        assertEquals(keys, compactKeys);
+
+        for (int i = 0; i < 30; ++i) {
+            NucleotideSequence reference = sequences.get(gen.nextInt(sequences.size()));
+            NeighborhoodIterator<NucleotideSequence, Integer> expected =
+                    map.getNeighborhoodIterator(reference, TWO_MISMATCHES_OR_INDELS),
+                    actual = compact.getNeighborhoodIterator(reference, TWO_MISMATCHES_OR_INDELS);
+            Integer e, a;
+            do {
+                e = expected.next();
+                a = actual.next();
+                assertEquals(e, a);
+                if (e != null)
+                    assertEquals(expected.getCurrentMutations(), actual.getCurrentMutations());
+            } while (e != null);
+        }
+    }
+
     int randomInt(int i) {
         if (i == 0)
             return 0;
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.primitivio;
+
+import cc.redberry.pipe.CUtils;
+import com.milaboratory.primitivio.test.TestClass1;
+import com.milaboratory.primitivio.test.TestSubClass2;
+import org.apache.commons.math3.random.RandomGenerator;
+import org.apache.commons.math3.random.Well19937c;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ParallelPipeReaderTest {
+    @Test
+    public void test1() throws Exception {
+        RandomGenerator random = new Well19937c(123);
+        List<TestClass1> objects = new ArrayList<>();
+        for (int i = 0; i < 5000; ++i) {
+            TestClass1 sub = new TestClass1(random.nextInt(), "Sub" + i);
+            objects.add(random.nextBoolean()
+                    ? new TestClass1(i, "Object" + i, sub, sub)
+                    : new TestSubClass2(i, "Object" + i, sub, null));
+        }
+
+        for (int threads : new int[]{1, 3})
+            for (int blockSize : new int[]{1, 7, 1000, 10000}) {
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                PrimitivOState state = new PrimitivO(bos).getState();
+                try (ParallelPipeWriter<TestClass1> writer = new ParallelPipeWriter<>(bos, state, threads, blockSize)) {
+                    for (TestClass1 object : objects)
+                        writer.put(object);
+                }
+
+                List<TestClass1> actual = new ArrayList<>();
+                try (ParallelPipeReader<TestClass1> reader = new ParallelPipeReader<>(TestClass1.class,
+                        new ByteArrayInputStream(bos.toByteArray()), threads)) {
+                    for (TestClass1 object : CUtils.it(reader))
+                        actual.add(object);
+                    Assert.assertNull(reader.take());
+                }
+                Assert.assertEquals(objects, actual);
+            }
+    }
+
+    @Test
+    public void testKnownObjects() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        PrimitivO po = new PrimitivO(bos);
+        po.getSerializersManager().registerCustomSerializer(PrimitivIOTest.StringWrapper.class,
+                PrimitivIO.dummySerializer());
+        PrimitivI pi = new PrimitivI(new ByteArrayInputStream(new byte[0]));
+        pi.getSerializersManager().registerCustomSerializer(PrimitivIOTest.StringWrapper.class,
+                PrimitivIO.dummySerializer());
+        for (int i = 0; i < 10; ++i) {
+            po.putKnownObject(new PrimitivIOTest.StringWrapper("HiThere" + i));
+            pi.putKnownObject(new PrimitivIOTest.StringWrapper("HiThere" + i));
+        }
+
+        try (ParallelPipeWriter<PrimitivIOTest.StringWrapper> writer =
+                     new ParallelPipeWriter<>(bos, po.getState(), 2, 3)) {
+            for (int i = 0; i < 100; ++i)
+                writer.put(new PrimitivIOTest.StringWrapper("HiThere" + (i % 10)));
+        }
+
+        try (ParallelPipeReader<PrimitivIOTest.StringWrapper> reader = new ParallelPipeReader<>(
+                PrimitivIOTest.StringWrapper.class, new ByteArrayInputStream(bos.toByteArray()), pi.getState(), 2)) {
+            for (int i = 0; i < 100; ++i)
+                Assert.assertEquals(new PrimitivIOTest.StringWrapper("HiThere" + (i % 10)), reader.take());
+            Assert.assertNull(reader.take());
+        }
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        new ParallelPipeWriter<TestClass1>(bos, 2).close();
+        try (ParallelPipeReader<TestClass1> reader = new ParallelPipeReader<>(TestClass1.class,
+                new ByteArrayInputStream(bos.toByteArray()), 2)) {
+            Assert.assertNull(reader.take());
+        }
+    }
+}
@@ -17,7 +17,10 @@ package com.milaboratory.util;
 
 import org.junit.Test;
 
-import static org.junit.Assert.assertArrayEquals;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
 
 public class ArraysUtilsTest {
     @Test
@@ -52,4 +55,38 @@ public class ArraysUtilsTest {
         ArraysUtils.reverse(a, 2, 5);
         assertArrayEquals(b, a);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRadixSort() throws Exception {
+        Random random = new Random(123);
+        for (int n : new int[]{0, 1, 10, 1000}) {
+            long[] keys = new long[n];
+            for (int i = 0; i < n; ++i)
+                switch (i % 3) {
+                    case 0:
+                        keys[i] = random.nextLong();
+                        break;
+                    case 1:
+                        keys[i] = random.nextInt(10) - 5;
+                        break;
+                    default:
+                        keys[i] = random.nextInt(1000) << 20;
+                }
+            long[] expected = keys.clone();
+            Arrays.sort(expected);
+
+            int[] order = new int[n];
+            for (int i = 0; i < n; ++i)
+                order[i] = i;
+            long[] sorted = keys.clone();
+            ArraysUtils.radixSort(sorted, order);
+            assertArrayEquals(expected, sorted);
+            for (int i = 0; i < n; ++i) {
+                assertEquals(keys[order[i]], sorted[i]);
+                // Stability
+                if (i > 0 && sorted[i] == sorted[i - 1])
+                    assertTrue(order[i - 1] < order[i]);
+            }
+        }
+    }
+}
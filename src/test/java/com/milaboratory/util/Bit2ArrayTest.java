@@ -69,6 +69,35 @@ public class Bit2ArrayTest {
         }
     }
 
+    @Test
+    public void copyFromTest() {
+        Random r = new Random(123);
+        for (int n = 0; n < 1000; ++n) {
+            Bit2Array source = new Bit2Array(r.nextInt(100));
+            for (int i = 0; i < source.size(); ++i)
+                source.set(i, r.nextInt(4));
+            Bit2Array target = new Bit2Array(source.size() + r.nextInt(10));
+            for (int i = 0; i < target.size(); ++i)
+                target.set(i, r.nextInt(4));
+            Bit2Array expected = target.clone();
+
+            int otherOffset = r.nextInt(source.size() + 1),
+                    length = r.nextInt(source.size() - otherOffset + 1),
+                    thisOffset = r.nextInt(target.size() - length + 1);
+            for (int i = 0; i < length; ++i)
+                expected.set(thisOffset + i, source.get(otherOffset + i));
+            target.copyFrom(source, otherOffset, thisOffset, length);
+            assertEquals(expected, target);
+
+            if (otherOffset == source.size())
+                continue;
+            Bit2Array range = source.getRange(otherOffset, otherOffset + length);
+            assertEquals(length, range.size());
+            for (int i = 0; i < length; ++i)
+                assertEquals(source.get(otherOffset + i), range.get(i));
+        }
+    }
+
     /*@Test
     public void generalTestPlusIO() throws IOException {
         Random r = new Random();
@@ -8,6 +8,9 @@ import org.junit.Test;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by poslavsky on 28/02/2017.
@@ -29,7 +32,117 @@ public class SorterTest {
         testWithInts(0, 10);
     }
 
+    @Test
+    public void testMultiPassMerge() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            for (boolean compressRuns : new boolean[]{false, true}) {
+                // 101 runs merged by 2 and 7 runs at once
+                testWithInts(10_050, 100, executor, 2, compressRuns);
+                testWithInts(10_050, 100, executor, 7, compressRuns);
+                // Single pass
+                testWithInts(10_050, 1000, executor, 16, compressRuns);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testKeys() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (boolean compressRuns : new boolean[]{false, true}) {
+                testWithInts(10_050, 100, executor, 7, compressRuns, true);
+                testWithInts(10_050, 1000, executor, 16, compressRuns, true);
+            }
+            testWithInts(0, 10, executor, 16, false, true);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTempFilesRemovedOnFailure() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Failure while writing runs
+            assertTempFilesRemovedOnFailure(executor, 5_000, Integer.MAX_VALUE);
+            // Failure during the first and a subsequent merge pass (101 runs merged by 2 runs at once)
+            assertTempFilesRemovedOnFailure(executor, Integer.MAX_VALUE, 1_000);
+            assertTempFilesRemovedOnFailure(executor, Integer.MAX_VALUE, 15_000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void assertTempFilesRemovedOnFailure(ExecutorService executor, final int failOnTake,
+                                                        final int failOnRead) throws Exception {
+        File tmpFile = TempFileManager.getTempFile();
+        Set<File> before = new HashSet<>(TempFileManager.createdFiles.values());
+
+        final int[] taken = {0};
+        OutputPort<Integer> source = () -> {
+            if (taken[0] == 10_050)
+                return null;
+            if (++taken[0] == failOnTake)
+                throw new IllegalStateException("Source failure.");
+            return taken[0] * 7919 % 10_050;
+        };
+        ObjectSerializer<Integer> serializer = new ObjectSerializer<Integer>() {
+            final AtomicInteger read = new AtomicInteger();
+
+            @Override
+            public void write(Collection<Integer> data, OutputStream stream) {
+                try (DataOutputStream out = new DataOutputStream(stream)) {
+                    for (Integer datum : data)
+                        out.writeInt(datum);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public OutputPort<Integer> read(InputStream stream) {
+                final DataInputStream in = new DataInputStream(stream);
+                return () -> {
+                    if (read.incrementAndGet() == failOnRead)
+                        throw new IllegalStateException("Serializer failure.");
+                    try {
+                        return in.readInt();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                };
+            }
+        };
+
+        Sorter<Integer> sorter = new Sorter<>(source, i -> (long) (i >> 4), Integer::compareTo, 100, serializer,
+                tmpFile, executor, 3, 2, false);
+        try {
+            sorter.build();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(e.getMessage().endsWith("failure."));
+        }
+
+        for (File file : TempFileManager.createdFiles.values())
+            if (!before.contains(file))
+                Assert.assertFalse(file.exists());
+        tmpFile.delete();
+    }
+
     private static void testWithInts(int nElements, int chunkSize) throws Exception {
+        testWithInts(nElements, chunkSize, null, Sorter.DEFAULT_MERGE_FAN_IN, false, false);
+    }
+
+    private static void testWithInts(int nElements, int chunkSize, ExecutorService executor,
+                                     int mergeFanIn, boolean compressRuns) throws Exception {
+        testWithInts(nElements, chunkSize, executor, mergeFanIn, compressRuns, false);
+    }
+
+    private static void testWithInts(int nElements, int chunkSize, ExecutorService executor,
+                                     int mergeFanIn, boolean compressRuns, boolean useKeys) throws Exception {
         File tmpFile = TempFileManager.getTempFile();
 
         ArrayList<Integer> source = new ArrayList<>();
@@ -66,12 +179,22 @@ public class SorterTest {
             }
         };
 
-        OutputPortCloseable<Integer> sorted = Sorter.sort(CUtils.asOutputPort(source), new Comparator<Integer>() {
+        Comparator<Integer> comparator = new Comparator<Integer>() {
             @Override
             public int compare(Integer o1, Integer o2) {
                 return o1.compareTo(o2);
             }
-        }, chunkSize, intSerializer, tmpFile);
+        };
+        OutputPortCloseable<Integer> sorted;
+        if (executor == null)
+            sorted = Sorter.sort(CUtils.asOutputPort(source), comparator, chunkSize, intSerializer, tmpFile);
+        else {
+            // Key is a prefix of the value (highest 8 bits), ties are resolved by comparator
+            Sorter<Integer> sorter = new Sorter<>(CUtils.asOutputPort(source), useKeys ? i -> (long) (i >> 24) : null,
+                    comparator, chunkSize, intSerializer, tmpFile, executor, 3, mergeFanIn, compressRuns);
+            sorter.build();
+            sorted = sorter.getSorted();
+        }
 
 
         List<Integer> result = new ArrayList<>();
@@ -79,6 +202,8 @@ public class SorterTest {
             result.add(integer);
 
 
+        sorted.close();
+
         Collections.sort(source);
         Assert.assertEquals(source, result);
     }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 MiLaboratory.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.milaboratory.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ThreadLocalCacheTest {
+    static final Factory<IntArrayList> FACTORY = new Factory<IntArrayList>() {
+        @Override
+        public IntArrayList create() {
+            return new IntArrayList();
+        }
+    };
+
+    @Test
+    public void test1() throws Exception {
+        final ThreadLocalCache<IntArrayList> cache = new ThreadLocalCache<>(FACTORY, 5);
+        IntArrayList l1 = cache.get(), l2 = cache.get();
+        Assert.assertNotSame(l1, l2);
+        cache.release();
+        Assert.assertSame(l2, cache.get());
+        cache.release();
+        cache.release();
+        Assert.assertSame(l1, cache.get());
+        cache.release();
+
+        // Other thread gets its own objects
+        final AtomicReference<IntArrayList> other = new AtomicReference<>();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                other.set(cache.get());
+                cache.release();
+            }
+        });
+        thread.start();
+        thread.join();
+        Assert.assertNotNull(other.get());
+        Assert.assertNotSame(l1, other.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testLimit() throws Exception {
+        ThreadLocalCache<IntArrayList> cache = new ThreadLocalCache<>(FACTORY, 5);
+        for (int i = 0; i < 6; ++i)
+            cache.get();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRelease() throws Exception {
+        new ThreadLocalCache<>(FACTORY, 5).release();
+    }
+}